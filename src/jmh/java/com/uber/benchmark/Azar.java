@@ -0,0 +1,18 @@
+package com.uber.benchmark;
+
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.SplittableRandom;
+
+/**
+ * Generador de números aleatorios de cada hilo, con semilla fija para que
+ * todas las ejecuciones pidan los mismos ids en el mismo orden.
+ */
+@State(Scope.Thread)
+public class Azar {
+
+    static final long SEMILLA = 42;
+
+    final SplittableRandom random = new SplittableRandom(SEMILLA);
+}
@@ -0,0 +1,178 @@
+package com.uber.benchmark;
+
+import com.uber.database.ConnectionBD;
+import com.uber.database.Migraciones;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.SplittableRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * BD H2 en memoria con el esquema de uber.sql y datos generados, compartida
+ * por todas las pruebas de rendimiento de los DAO.
+ *
+ * El tamaño se elige con el parámetro "filas" (número de reservas); el resto
+ * de tablas crece en proporción. Los datos salen de fórmulas fijas sobre el
+ * número de fila, así que dos ejecuciones con el mismo tamaño tienen
+ * exactamente los mismos datos y sus resultados se pueden comparar.
+ *
+ * Encima del esquema se aplican las migraciones ({@link Migraciones}),
+ * igual que al arrancar la aplicación.
+ *
+ * Los DAO no saben nada de esto: la BD se elige con -Ddb.type/-Dh2.url
+ * (ver ConnectionBD), igual que en la aplicación.
+ */
+@State(Scope.Benchmark)
+public class BaseDatosBenchmark {
+
+    // Reservas de la BD; el resto de tablas se calcula a partir de aquí
+    @Param({"1000", "100000", "1000000"})
+    public int filas;
+
+    static final int ESTACIONES = 50;
+    static final int TIPOS_MANTENIMIENTO = 5;
+    static final double SALDO_INICIAL = 1_000_000_000;
+
+    int usuarios;
+    int vehiculos;
+    int historial;
+
+    // Vehículos reservados para las pruebas que escriben: cada hilo coge uno distinto
+    private final AtomicInteger siguienteVehiculoEscritura = new AtomicInteger();
+
+    @Setup(Level.Trial)
+    public void crear() throws SQLException, IOException {
+        usuarios = Math.max(100, filas / 10);
+        vehiculos = Math.max(100, filas / 100);
+        historial = Math.max(10, filas / 10);
+
+        System.setProperty("db.type", "h2");
+        System.setProperty("h2.url", "jdbc:h2:mem:benchmark;DB_CLOSE_DELAY=-1;MODE=MySQL");
+        System.setProperty("h2.user", "sa");
+        System.setProperty("h2.password", "");
+        // Generar un millón de filas tiene la conexión ocupada más de lo que el aviso de fugas considera normal
+        System.setProperty("pool.leakThresholdMs", "0");
+        ConnectionBD.closeConnection();
+
+        long inicio = System.currentTimeMillis();
+
+        try (Connection conn = ConnectionBD.getConnection();
+             Statement st = conn.createStatement()) {
+
+            st.execute("DROP ALL OBJECTS");
+            for (String sql : leerEsquema().split(";")) {
+                if (!sql.isBlank()) st.execute(sql);
+            }
+            sembrar(conn);
+        }
+        // Con los datos ya cargados, los índices de las migraciones se crean de una vez
+        Migraciones.aplicar();
+
+        System.out.println("🗄️ BD de pruebas con " + filas + " reservas creada en "
+                + (System.currentTimeMillis() - inicio) + " ms");
+    }
+
+    @TearDown(Level.Trial)
+    public void cerrar() {
+        ConnectionBD.closeConnection();
+    }
+
+    /** @return un id de usuario cualquiera (de 1 a usuarios) */
+    int usuario(SplittableRandom azar) {
+        return 1 + azar.nextInt(usuarios);
+    }
+
+    /** @return un id de vehículo de los que solo se leen */
+    int vehiculo(SplittableRandom azar) {
+        return 1 + azar.nextInt(vehiculos);
+    }
+
+    /**
+     * Vehículo para un hilo que crea y finaliza reservas. Se cogen desde el
+     * último hacia atrás para que dos hilos no se peleen por el mismo.
+     *
+     * @return id de vehículo que solo usará quien lo pide
+     */
+    int vehiculoParaEscribir() {
+        return vehiculos - siguienteVehiculoEscritura.getAndIncrement() % vehiculos;
+    }
+
+    /** @return email del usuario con ese id en los datos generados */
+    static String email(int idUsuario) {
+        return "usuario" + idUsuario + "@benchmark.uber";
+    }
+
+    private static String leerEsquema() throws IOException {
+        try (InputStream in = BaseDatosBenchmark.class.getResourceAsStream("/esquema-benchmark.sql")) {
+            if (in == null) throw new IOException("No se encuentra esquema-benchmark.sql");
+
+            StringBuilder sb = new StringBuilder();
+            for (String linea : new String(in.readAllBytes(), StandardCharsets.UTF_8).split("\n")) {
+                if (!linea.startsWith("--")) sb.append(linea).append('\n');
+            }
+            return sb.toString();
+        }
+    }
+
+    /**
+     * Genera los datos con INSERT ... SELECT sobre SYSTEM_RANGE de H2:
+     * una sentencia por tabla, sin pasar millones de filas por JDBC.
+     * Las reservas están todas en el pasado (FINALIZADA o CANCELADA),
+     * así que todos los vehículos empiezan DISPONIBLES.
+     */
+    private void sembrar(Connection conn) throws SQLException {
+        ejecutar(conn, "INSERT INTO estacion (ciudad, nombre_estacion, direccion, capacidad) "
+                + "SELECT CONCAT('Ciudad ', MOD(X, 10)), CONCAT('Estación ', X), CONCAT('Calle ', X), 20 "
+                + "FROM SYSTEM_RANGE(1, ?)", ESTACIONES);
+
+        ejecutar(conn, "INSERT INTO mantenimiento (tipo, descripcion) VALUES "
+                + "('CAMBIO_RUEDAS', 'Sustitución de ruedas'), ('REVISION_GENERAL', 'Revisión completa'), "
+                + "('CAMBIO_BATERIA', 'Sustitución de batería'), ('FRENOS', 'Ajuste de frenos'), "
+                + "('DIAGNOSTICO', 'Diagnóstico')");
+
+        ejecutar(conn, "INSERT INTO usuario (nombre, apellidos, email, contrasena, telefono, metodo_pago, saldo, estado_cuenta, rol) "
+                + "SELECT 'Usuario', CONCAT('Prueba ', X), CONCAT('usuario', X, '@benchmark.uber'), 'clave', "
+                + "'600000000', 'Tarjeta', " + SALDO_INICIAL + ", 'ACTIVO', 'CLIENTE' "
+                + "FROM SYSTEM_RANGE(1, ?)", usuarios);
+
+        ejecutar(conn, "INSERT INTO movimiento (id_usuario, tipo, importe, saldo_resultante, id_reserva, fecha_hora) "
+                + "SELECT id_usuario, 'SALDO_INICIAL', saldo, saldo, NULL, TIMESTAMP '2020-01-01 00:00:00' FROM usuario");
+
+        ejecutar(conn, "INSERT INTO vehiculo (tipo, marca, modelo, estado_vehiculo, id_estacion, nivel_bateria, kilometraje) "
+                + "SELECT CASE MOD(X, 3) WHEN 0 THEN 'COCHE' WHEN 1 THEN 'MOTO' ELSE 'PATINETE' END, "
+                + "CONCAT('Marca ', MOD(X, 20)), CONCAT('Modelo ', X), 'DISPONIBLE', MOD(X, " + ESTACIONES + ") + 1, "
+                + "20 + MOD(X * 37, 81), MOD(X * 7919, 50000) "
+                + "FROM SYSTEM_RANGE(1, ?)", vehiculos);
+
+        ejecutar(conn, "INSERT INTO reserva (id_usuario, id_vehiculo, fecha_hora_inicio, fecha_hora_fin, coste, estado) "
+                + "SELECT MOD(X * 7919, " + usuarios + ") + 1, MOD(X * 104729, " + vehiculos + ") + 1, "
+                + "DATEADD('MINUTE', X, TIMESTAMP '2020-01-01 00:00:00'), "
+                + "DATEADD('MINUTE', X + 60, TIMESTAMP '2020-01-01 00:00:00'), 5.0, "
+                + "CASE WHEN MOD(X, 20) = 0 THEN 'CANCELADA' ELSE 'FINALIZADA' END "
+                + "FROM SYSTEM_RANGE(1, ?)", filas);
+
+        ejecutar(conn, "INSERT INTO tiene (id_vehiculo, id_mantenimiento, fecha_hora, coste, notas) "
+                + "SELECT MOD(X, " + vehiculos + ") + 1, MOD(X, " + TIPOS_MANTENIMIENTO + ") + 1, "
+                + "DATEADD('HOUR', X, TIMESTAMP '2020-01-01 00:00:00'), 50.0, 'Generado' "
+                + "FROM SYSTEM_RANGE(1, ?)", historial);
+    }
+
+    private static void ejecutar(Connection conn, String sql, int... parametros) throws SQLException {
+        try (PreparedStatement ps = conn.prepareStatement(sql)) {
+            for (int i = 0; i < parametros.length; i++) ps.setInt(i + 1, parametros[i]);
+            ps.executeUpdate();
+        }
+    }
+}
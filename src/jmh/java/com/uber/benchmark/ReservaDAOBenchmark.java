@@ -0,0 +1,128 @@
+package com.uber.benchmark;
+
+import com.uber.dao.ReservaDAO;
+import com.uber.enums.EstadoReserva;
+import com.uber.model.Reserva;
+import com.uber.model.Usuario;
+import com.uber.model.Vehiculo;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Reservas: consulta de las de un usuario, alta y finalización.
+ *
+ * Para medir el alta y la finalización por separado, cada hilo usa su propio
+ * vehículo y deja la BD como estaba fuera del tiempo medido: tras crear una
+ * reserva se finaliza, y antes de finalizar una se crea (Level.Invocation).
+ * Ambas operaciones tocan la BD varias veces, así que el coste de esos
+ * preparativos por invocación no desvirtúa la medida.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx2g")
+@State(Scope.Benchmark)
+public class ReservaDAOBenchmark {
+
+    private static final double COSTE = 5.0;
+
+    private final ReservaDAO dao = new ReservaDAO();
+
+    /**
+     * Vehículo y usuario de un hilo para las pruebas que escriben.
+     */
+    @State(Scope.Thread)
+    public static class Escritura {
+        final ReservaDAO dao = new ReservaDAO();
+        int idVehiculo;
+        int idUsuario;
+        Reserva reserva;
+
+        @Setup(Level.Trial)
+        public void elegir(BaseDatosBenchmark bd) {
+            idVehiculo = bd.vehiculoParaEscribir();
+            idUsuario = 1 + idVehiculo % bd.usuarios;
+        }
+
+        Reserva nueva() {
+            Usuario u = new Usuario();
+            u.setIdUsuario(idUsuario);
+            Vehiculo v = new Vehiculo();
+            v.setIdVehiculo(idVehiculo);
+
+            LocalDateTime inicio = LocalDateTime.now();
+            Reserva r = new Reserva();
+            r.setUsuario(u);
+            r.setVehiculo(v);
+            r.setFechaHoraInicio(inicio);
+            r.setFechaHoraFin(inicio.plusHours(1));
+            r.setCoste(COSTE);
+            r.setEstado(EstadoReserva.ACTIVA);
+            return r;
+        }
+
+        void finalizar() {
+            if (reserva != null && reserva.getIdReserva() > 0) {
+                dao.finalizarReserva(reserva.getIdReserva(), idVehiculo, idUsuario, COSTE);
+            }
+            reserva = null;
+        }
+    }
+
+    /** Estado para crearReserva: la reserva creada se finaliza después de medir. */
+    @State(Scope.Thread)
+    public static class PorCrear extends Escritura {
+        @Setup(Level.Invocation)
+        public void preparar() {
+            reserva = nueva();
+        }
+
+        @TearDown(Level.Invocation)
+        public void deshacer() {
+            finalizar();
+        }
+    }
+
+    /** Estado para finalizarReserva: la reserva se crea antes de medir. */
+    @State(Scope.Thread)
+    public static class PorFinalizar extends Escritura {
+        @Setup(Level.Invocation)
+        public void preparar() {
+            reserva = nueva();
+            if (!dao.crearReserva(reserva)) {
+                throw new IllegalStateException("No se pudo crear la reserva del vehículo " + idVehiculo);
+            }
+        }
+    }
+
+    @Benchmark
+    public List<Reserva> getReservasPorUsuario(BaseDatosBenchmark bd, Azar azar) {
+        return dao.getReservasPorUsuario(bd.usuario(azar.random));
+    }
+
+    @Benchmark
+    public boolean crearReserva(BaseDatosBenchmark bd, PorCrear e) {
+        return dao.crearReserva(e.reserva);
+    }
+
+    @Benchmark
+    public boolean finalizarReserva(BaseDatosBenchmark bd, PorFinalizar e) {
+        Reserva r = e.reserva;
+        return dao.finalizarReserva(r.getIdReserva(), e.idVehiculo, e.idUsuario, COSTE);
+    }
+}
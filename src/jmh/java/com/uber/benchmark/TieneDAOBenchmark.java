@@ -0,0 +1,35 @@
+package com.uber.benchmark;
+
+import com.uber.dao.TieneDAO;
+import com.uber.model.Tiene;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Historial de mantenimientos de un vehículo (JOIN con Mantenimiento).
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx2g")
+@State(Scope.Benchmark)
+public class TieneDAOBenchmark {
+
+    private final TieneDAO dao = new TieneDAO();
+
+    @Benchmark
+    public List<Tiene> getHistorialVehiculo(BaseDatosBenchmark bd, Azar azar) {
+        return dao.getHistorialVehiculo(bd.vehiculo(azar.random));
+    }
+}
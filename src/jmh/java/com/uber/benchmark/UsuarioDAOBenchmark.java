@@ -0,0 +1,45 @@
+package com.uber.benchmark;
+
+import com.uber.dao.UsuarioDAO;
+import com.uber.model.Usuario;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Lecturas de usuarios: listado completo, búsqueda por id y login por email.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx2g")
+@State(Scope.Benchmark)
+public class UsuarioDAOBenchmark {
+
+    private final UsuarioDAO dao = new UsuarioDAO();
+
+    @Benchmark
+    public List<Usuario> getAll(BaseDatosBenchmark bd) {
+        return dao.getAll();
+    }
+
+    @Benchmark
+    public Usuario getById(BaseDatosBenchmark bd, Azar azar) {
+        return dao.getById(bd.usuario(azar.random));
+    }
+
+    @Benchmark
+    public Usuario login(BaseDatosBenchmark bd, Azar azar) {
+        return dao.login(BaseDatosBenchmark.email(bd.usuario(azar.random)), "clave");
+    }
+}
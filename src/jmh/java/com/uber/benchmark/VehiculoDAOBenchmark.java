@@ -0,0 +1,41 @@
+package com.uber.benchmark;
+
+import com.uber.dao.VehiculoDAO;
+import com.uber.model.Vehiculo;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Lecturas de vehículos. getAll sale de {@link com.uber.dao.VehiculoCache}
+ * salvo cuando caduca, que es justo lo que pasa en la aplicación.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx2g")
+@State(Scope.Benchmark)
+public class VehiculoDAOBenchmark {
+
+    private final VehiculoDAO dao = new VehiculoDAO();
+
+    @Benchmark
+    public List<Vehiculo> getAll(BaseDatosBenchmark bd) {
+        return dao.getAll();
+    }
+
+    @Benchmark
+    public Vehiculo getById(BaseDatosBenchmark bd, Azar azar) {
+        return dao.getById(bd.vehiculo(azar.random));
+    }
+}
@@ -0,0 +1,81 @@
+-- Esquema de uber.sql (tablas, índices y claves ajenas) para la BD H2 en memoria
+-- de las pruebas de rendimiento. Si cambia uber.sql hay que cambiar también esto.
+
+CREATE TABLE estacion (
+  id_estacion int NOT NULL AUTO_INCREMENT PRIMARY KEY,
+  ciudad varchar(50) NOT NULL,
+  nombre_estacion varchar(80) NOT NULL,
+  direccion varchar(120) NOT NULL,
+  capacidad int NOT NULL
+);
+CREATE INDEX idx_ciudad ON estacion (ciudad);
+
+CREATE TABLE mantenimiento (
+  id_mantenimiento int NOT NULL AUTO_INCREMENT PRIMARY KEY,
+  tipo varchar(50) DEFAULT NULL,
+  descripcion varchar(200) DEFAULT NULL
+);
+
+CREATE TABLE usuario (
+  id_usuario int NOT NULL AUTO_INCREMENT PRIMARY KEY,
+  nombre varchar(50) NOT NULL,
+  apellidos varchar(80) NOT NULL,
+  email varchar(80) NOT NULL UNIQUE,
+  contrasena varchar(200) NOT NULL,
+  telefono varchar(20) DEFAULT NULL,
+  metodo_pago varchar(50) DEFAULT NULL,
+  saldo double DEFAULT 0,
+  estado_cuenta enum('ACTIVO','SUSPENDIDO','BLOQUEADO') NOT NULL,
+  rol varchar(20) DEFAULT 'USER'
+);
+
+CREATE TABLE vehiculo (
+  id_vehiculo int NOT NULL AUTO_INCREMENT PRIMARY KEY,
+  tipo enum('COCHE','MOTO','PATINETE') NOT NULL,
+  marca varchar(50) NOT NULL,
+  modelo varchar(50) NOT NULL,
+  estado_vehiculo enum('DISPONIBLE','EN_USO','MANTENIMIENTO','INACTIVO') NOT NULL,
+  id_estacion int NOT NULL,
+  nivel_bateria double DEFAULT 100,
+  kilometraje double DEFAULT 0,
+  FOREIGN KEY (id_estacion) REFERENCES estacion (id_estacion)
+);
+CREATE INDEX idx_estado_tipo_bateria ON vehiculo (estado_vehiculo, tipo, nivel_bateria);
+CREATE INDEX idx_estacion_estado ON vehiculo (id_estacion, estado_vehiculo, nivel_bateria);
+
+CREATE TABLE reserva (
+  id_reserva int NOT NULL AUTO_INCREMENT PRIMARY KEY,
+  id_usuario int NOT NULL,
+  id_vehiculo int NOT NULL,
+  fecha_hora_inicio datetime NOT NULL,
+  fecha_hora_fin datetime DEFAULT NULL,
+  coste double DEFAULT NULL,
+  estado enum('ACTIVA','FINALIZADA','CANCELADA') NOT NULL,
+  FOREIGN KEY (id_usuario) REFERENCES usuario (id_usuario),
+  FOREIGN KEY (id_vehiculo) REFERENCES vehiculo (id_vehiculo)
+);
+
+CREATE TABLE movimiento (
+  id_movimiento int NOT NULL AUTO_INCREMENT PRIMARY KEY,
+  id_usuario int NOT NULL,
+  tipo enum('SALDO_INICIAL','RECARGA','COBRO_VIAJE','REEMBOLSO') NOT NULL,
+  importe double NOT NULL,
+  saldo_resultante double NOT NULL,
+  id_reserva int DEFAULT NULL,
+  fecha_hora datetime NOT NULL,
+  FOREIGN KEY (id_usuario) REFERENCES usuario (id_usuario),
+  FOREIGN KEY (id_reserva) REFERENCES reserva (id_reserva)
+);
+CREATE INDEX idx_usuario_movimiento ON movimiento (id_usuario, id_movimiento);
+
+CREATE TABLE tiene (
+  id_vehiculo int NOT NULL,
+  id_mantenimiento int NOT NULL,
+  fecha_hora datetime NOT NULL,
+  coste double DEFAULT NULL,
+  notas varchar(200) DEFAULT NULL,
+  PRIMARY KEY (id_vehiculo, id_mantenimiento, fecha_hora),
+  FOREIGN KEY (id_vehiculo) REFERENCES vehiculo (id_vehiculo),
+  FOREIGN KEY (id_mantenimiento) REFERENCES mantenimiento (id_mantenimiento)
+);
+CREATE INDEX fecha_hora ON tiene (fecha_hora);
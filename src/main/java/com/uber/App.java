@@ -1,11 +1,18 @@
 package com.uber;
 
+import com.uber.dao.AsyncDAO;
+import com.uber.dao.CatalogoMantenimiento;
+import com.uber.dao.ExpiradorReservas;
+import com.uber.dao.IndiceDisponibilidad;
+import com.uber.database.ConnectionBD;
 import javafx.application.Application;
 import javafx.fxml.FXMLLoader;
 import javafx.scene.Parent;
 import javafx.scene.Scene;
 import javafx.stage.Stage;
 
+import java.sql.SQLException;
+
 /**
  * Clase principal de la aplicación UberCar.
  * Se encarga de iniciar la interfaz gráfica JavaFX y cargar la ventana de Login.
@@ -31,12 +38,40 @@ public class App extends Application {
 
             stage.show();
 
+            // El índice de reservas y el catálogo de mantenimientos se cargan mientras el usuario inicia sesión
+            AsyncDAO.ejecutar(() -> {
+                try {
+                    IndiceDisponibilidad.getInstancia().cargar();
+                } catch (SQLException e) {
+                    System.err.println("⚠️ No se pudo cargar el índice de disponibilidad: " + e.getMessage());
+                }
+                try {
+                    CatalogoMantenimiento.getInstancia().cargar();
+                } catch (SQLException e) {
+                    System.err.println("⚠️ No se pudo cargar el catálogo de mantenimientos: " + e.getMessage());
+                }
+                return null;
+            });
+
+            // Finaliza en segundo plano las reservas cuyo fin ya ha pasado
+            ExpiradorReservas.getInstancia().iniciar();
+
         } catch (Exception e) {
             e.printStackTrace();
             System.out.println("Error crítico: No se pudo cargar la pantalla de inicio.");
         }
     }
 
+    /**
+     * Se llama al cerrar la ventana principal.
+     * Para las tareas en segundo plano y cierra el pool de conexiones a la base de datos.
+     */
+    @Override
+    public void stop() {
+        ExpiradorReservas.getInstancia().detener();
+        ConnectionBD.closeConnection();
+    }
+
     /**
      * Método main, punto de entrada de la aplicación Java.
      * Lanza la aplicación JavaFX.
@@ -1,13 +1,17 @@
 package com.uber.controllers;
 
 import com.uber.dao.*;
+import com.uber.database.MetricasSQL;
 import com.uber.enums.EstadoCuenta;
 import com.uber.enums.EstadoVehiculo;
 import com.uber.enums.Rol;
 import com.uber.enums.TipoVehiculo;
 import com.uber.model.Estacion;
+import com.uber.model.ResumenDashboard;
 import com.uber.model.Usuario;
 import com.uber.model.Vehiculo;
+import com.uber.utils.CargaVista;
+import com.uber.utils.TablaPaginada;
 import com.uber.utils.Sesion;
 import javafx.beans.property.SimpleStringProperty;
 import javafx.collections.FXCollections;
@@ -22,8 +26,12 @@ import javafx.stage.Stage;
 import javafx.util.Callback;
 
 import java.io.IOException;
+import java.util.LinkedHashMap;
 import java.util.List;
-import java.util.stream.Collectors;
+import java.util.Map;
+import java.util.function.Function;
+import java.util.function.Predicate;
+import java.util.function.Supplier;
 
 /**
  * Controlador de la vista del administrador.
@@ -97,6 +105,18 @@ public class AdminController {
     private final EstacionDAO estacionDAO = new EstacionDAO();
     private final TieneDAO tieneDAO = new TieneDAO();
     private final MantenimientoDAO mantenimientoDAO = new MantenimientoDAO();
+    private final DashboardDAO dashboardDAO = new DashboardDAO();
+
+    // Consultas en segundo plano de la pestaña visible
+    private final CargaVista cargas = new CargaVista();
+
+    // Paginación de tablas e historial
+    private static final int FILAS_POR_PAGINA = 100;
+    private static final int HISTORIAL_POR_PAGINA = 50;
+    private TablaPaginada<Vehiculo> paginasVehiculos;
+    private TablaPaginada<Usuario> paginasUsuarios;
+    private com.uber.model.Tiene ultimoHistorial = null;
+    private final Button btnMasHistorial = crearBotonMasHistorial();
 
     /**
      * Inicializa la interfaz al cargarse la vista.
@@ -140,6 +160,7 @@ public class AdminController {
         ocultarTodasLasVistas();
         vistaResumen.setVisible(true);
         resaltarBoton(btnNavResumen);
+        cargas.cancelarTodo();
         cargarDatosResumen();
     }
 
@@ -148,6 +169,7 @@ public class AdminController {
         ocultarTodasLasVistas();
         vistaVehiculos.setVisible(true);
         resaltarBoton(btnNavVehiculos);
+        cargas.cancelarTodo();
         cargarTablaVehiculos();
     }
 
@@ -156,6 +178,7 @@ public class AdminController {
         ocultarTodasLasVistas();
         vistaEstaciones.setVisible(true);
         resaltarBoton(btnNavEstaciones);
+        cargas.cancelarTodo();
         cargarEstaciones();
     }
 
@@ -164,6 +187,7 @@ public class AdminController {
         ocultarTodasLasVistas();
         vistaMantenimiento.setVisible(true);
         resaltarBoton(btnNavMantenimiento);
+        cargas.cancelarTodo();
         cargarHistorialMantenimiento();
     }
 
@@ -172,6 +196,7 @@ public class AdminController {
         ocultarTodasLasVistas();
         vistaUsuarios.setVisible(true);
         resaltarBoton(btnNavUsuarios);
+        cargas.cancelarTodo();
         cargarTablaUsuarios();
     }
 
@@ -181,28 +206,30 @@ public class AdminController {
 
     /**
      * Carga estadísticas generales y avisos de estado del sistema.
+     * Todo sale de una sola consulta agregada en segundo plano.
      */
     private void cargarDatosResumen() {
-        List<Vehiculo> listaVehiculos = vehiculoDAO.getAll();
-
-        long disponibles = listaVehiculos.stream().filter(v -> v.getEstadoVehiculo() == EstadoVehiculo.DISPONIBLE).count();
-        long enUso = listaVehiculos.stream().filter(v -> v.getEstadoVehiculo() == EstadoVehiculo.EN_USO).count();
-        long mantenimiento = listaVehiculos.stream().filter(v -> v.getEstadoVehiculo() == EstadoVehiculo.MANTENIMIENTO).count();
+        cargas.cargar("AdminController.cargarDatosResumen", dashboardDAO::getResumen, this::pintarResumen);
+    }
 
-        lblTotalVehiculos.setText(String.valueOf(listaVehiculos.size()));
-        lblVehiculosDisponibles.setText(String.valueOf(disponibles));
-        lblTotalUsuarios.setText(String.valueOf(usuarioDAO.getAll().size()));
-        lblTotalEstaciones.setText(String.valueOf(estacionDAO.getAll().size()));
+    /**
+     * Pinta los contadores y los avisos del resumen.
+     */
+    private void pintarResumen(ResumenDashboard resumen) {
+        lblTotalVehiculos.setText(String.valueOf(resumen.getTotalVehiculos()));
+        lblVehiculosDisponibles.setText(String.valueOf(resumen.getDisponibles()));
+        lblTotalUsuarios.setText(String.valueOf(resumen.getTotalUsuarios()));
+        lblTotalEstaciones.setText(String.valueOf(resumen.getTotalEstaciones()));
 
-        badgeDisponibles.setText(String.valueOf(disponibles));
-        badgeEnUso.setText(String.valueOf(enUso));
-        badgeMantenimiento.setText(String.valueOf(mantenimiento));
+        badgeDisponibles.setText(String.valueOf(resumen.getDisponibles()));
+        badgeEnUso.setText(String.valueOf(resumen.getEnUso()));
+        badgeMantenimiento.setText(String.valueOf(resumen.getEnMantenimiento()));
 
         contenedorAlertas.getChildren().clear();
         boolean hayAlertas = false;
 
-        for (Vehiculo v : listaVehiculos) {
-            if (v.getNivelBateria() < 20) {
+        for (Vehiculo v : resumen.getAlertas()) {
+            if (v.getNivelBateria() < DashboardDAO.BATERIA_BAJA) {
                 crearAlerta("Batería baja", v.getMarca() + " (" + v.getNivelBateria() + "%)", "alert-warning-box");
                 hayAlertas = true;
             }
@@ -244,6 +271,9 @@ public class AdminController {
      * Configura columnas, celdas personalizadas y acciones de la tabla.
      */
     private void configurarTablaVehiculos() {
+        paginasVehiculos = new TablaPaginada<>(tablaVehiculos, cargas, FILAS_POR_PAGINA,
+                (ultimo, limite) -> vehiculoDAO.page(ultimo == null ? 0 : ultimo.getIdVehiculo(), limite, null));
+
         colId.setCellValueFactory(new PropertyValueFactory<>("idVehiculo"));
         colTipo.setCellValueFactory(new PropertyValueFactory<>("tipo"));
 
@@ -336,9 +366,9 @@ public class AdminController {
         });
     }
 
-    /** Carga los vehículos en la tabla. */
+    /** Carga la primera página de vehículos; el resto llega al hacer scroll. */
     private void cargarTablaVehiculos() {
-        tablaVehiculos.setItems(FXCollections.observableArrayList(vehiculoDAO.getAll()));
+        paginasVehiculos.recargar();
     }
 
     @FXML
@@ -397,8 +427,9 @@ public class AdminController {
         txtModelo.setPromptText("Modelo");
         txtModelo.getStyleClass().add("dialog-textfield");
 
-        ComboBox<Estacion> comboEstacion =
-                new ComboBox<>(FXCollections.observableArrayList(estacionDAO.getAll()));
+        ComboBox<Estacion> comboEstacion = new ComboBox<>();
+        rellenarCombo(comboEstacion, "AdminController.comboEstaciones", estacionDAO::getAll,
+                e -> esEdicion && e.getIdEstacion() == vEditar.getEstacion().getIdEstacion());
         comboEstacion.setMaxWidth(Double.MAX_VALUE);
         comboEstacion.setPromptText("Estación...");
         comboEstacion.getStyleClass().add("dialog-textfield");
@@ -430,13 +461,6 @@ public class AdminController {
             txtMarca.setText(vEditar.getMarca());
             txtModelo.setText(vEditar.getModelo());
 
-            for (Estacion e : comboEstacion.getItems()) {
-                if (e.getIdEstacion() == vEditar.getEstacion().getIdEstacion()) {
-                    comboEstacion.setValue(e);
-                    break;
-                }
-            }
-
             comboEstado.setValue(vEditar.getEstadoVehiculo());
             txtBateria.setText(String.valueOf(vEditar.getNivelBateria()));
             txtKm.setText(String.valueOf(vEditar.getKilometraje()));
@@ -533,18 +557,24 @@ public class AdminController {
 
     /** Carga todas las estaciones con tarjetas informativas. */
     private void cargarEstaciones() {
-        contenedorEstaciones.getChildren().clear();
-
-        List<Estacion> lista = estacionDAO.getAll();
-        List<Vehiculo> vehiculos = vehiculoDAO.getAll();
-
-        for (Estacion e : lista) {
-            long numVehiculos = vehiculos.stream()
-                    .filter(v -> v.getEstacion().getIdEstacion() == e.getIdEstacion())
-                    .count();
+        cargas.cargar("AdminController.cargarEstaciones", () -> {
+            List<Estacion> lista = estacionDAO.getAll();
+            List<Vehiculo> vehiculos = vehiculoDAO.getAll();
+
+            Map<Estacion, Long> conteo = new LinkedHashMap<>();
+            for (Estacion e : lista) {
+                long numVehiculos = vehiculos.stream()
+                        .filter(v -> v.getEstacion().getIdEstacion() == e.getIdEstacion())
+                        .count();
+                conteo.put(e, numVehiculos);
+            }
+            return conteo;
 
-            contenedorEstaciones.getChildren().add(crearTarjetaEstacion(e, numVehiculos));
-        }
+        }, conteo -> {
+            contenedorEstaciones.getChildren().clear();
+            conteo.forEach((e, numVehiculos) ->
+                    contenedorEstaciones.getChildren().add(crearTarjetaEstacion(e, numVehiculos)));
+        });
     }
 
     /**
@@ -702,23 +732,41 @@ public class AdminController {
        MANTENIMIENTO
        ================================================================ */
 
-    /** Carga el historial completo ordenado por fecha. */
+    /** Carga la primera página del historial, del más reciente al más antiguo. */
     private void cargarHistorialMantenimiento() {
         if (contenedorMantenimiento == null) return;
 
         contenedorMantenimiento.getChildren().clear();
-        List<com.uber.model.Tiene> historial = tieneDAO.getAll();
+        ultimoHistorial = null;
+        cargarPaginaHistorial();
+    }
 
-        if (historial.isEmpty()) {
-            contenedorMantenimiento.getChildren().add(new Label("No hay registros."));
-            return;
-        }
+    /**
+     * Pide la siguiente página del historial y la añade al final de la lista.
+     * Si la página viene llena, se añade un botón "Cargar más".
+     */
+    private void cargarPaginaHistorial() {
+        com.uber.model.Tiene desde = ultimoHistorial;
 
-        historial.sort((a, b) -> b.getFechaHora().compareTo(a.getFechaHora()));
+        cargas.cargar("AdminController.cargarHistorialMantenimiento", () -> tieneDAO.page(desde, HISTORIAL_POR_PAGINA, null), pagina -> {
+            // Si mientras tanto se ha recargado el historial, esta página ya no vale
+            if (desde != ultimoHistorial) return;
+            contenedorMantenimiento.getChildren().remove(btnMasHistorial);
 
-        for (com.uber.model.Tiene t : historial) {
-            contenedorMantenimiento.getChildren().add(crearTarjetaMantenimiento(t));
-        }
+            if (pagina.isEmpty() && desde == null) {
+                contenedorMantenimiento.getChildren().add(new Label("No hay registros."));
+                return;
+            }
+
+            for (com.uber.model.Tiene t : pagina) {
+                contenedorMantenimiento.getChildren().add(crearTarjetaMantenimiento(t));
+            }
+            if (!pagina.isEmpty()) ultimoHistorial = pagina.get(pagina.size() - 1);
+
+            if (pagina.size() == HISTORIAL_POR_PAGINA) {
+                contenedorMantenimiento.getChildren().add(btnMasHistorial);
+            }
+        });
     }
 
     /**
@@ -731,9 +779,11 @@ public class AdminController {
         HBox header = new HBox(20);
         header.setAlignment(Pos.CENTER_LEFT);
 
-        String nombreCoche = "Vehículo #" + t.getVehiculo().getIdVehiculo();
-        Vehiculo vFull = vehiculoDAO.getById(t.getVehiculo().getIdVehiculo());
-        if (vFull != null) nombreCoche = vFull.getMarca() + " " + vFull.getModelo();
+        // La marca y el modelo ya vienen del JOIN del historial
+        Vehiculo v = t.getVehiculo();
+        String nombreCoche = v.getMarca() != null
+                ? v.getMarca() + " " + v.getModelo()
+                : "Vehículo #" + v.getIdVehiculo();
 
         Label lblCoche = new Label(nombreCoche);
         lblCoche.setStyle("-fx-font-weight: bold; -fx-font-size: 16px;");
@@ -760,6 +810,21 @@ public class AdminController {
         return card;
     }
 
+    /**
+     * Botón que se coloca al final del historial para pedir la página siguiente.
+     */
+    private Button crearBotonMasHistorial() {
+        Button btn = new Button("Cargar más");
+        btn.getStyleClass().add("btn-reservar");
+        btn.setMaxWidth(Double.MAX_VALUE);
+        btn.setOnAction(e -> {
+            // Se quita al pulsar para no pedir dos veces la misma página
+            contenedorMantenimiento.getChildren().remove(btn);
+            cargarPaginaHistorial();
+        });
+        return btn;
+    }
+
     @FXML
     private void onAddMantenimiento() {
         Dialog<ButtonType> dialog = new Dialog<>();
@@ -784,14 +849,14 @@ public class AdminController {
         VBox content = new VBox(15);
         content.getStyleClass().add("dialog-content-box");
 
-        ComboBox<Vehiculo> comboVehiculo =
-                new ComboBox<>(FXCollections.observableArrayList(vehiculoDAO.getAll()));
+        ComboBox<Vehiculo> comboVehiculo = new ComboBox<>();
+        rellenarCombo(comboVehiculo, "AdminController.comboVehiculos", vehiculoDAO::getAll, v -> false);
         comboVehiculo.setMaxWidth(Double.MAX_VALUE);
         comboVehiculo.setPromptText("Vehículo...");
         comboVehiculo.getStyleClass().add("dialog-textfield");
 
-        ComboBox<com.uber.model.Mantenimiento> comboTipo =
-                new ComboBox<>(FXCollections.observableArrayList(mantenimientoDAO.getAll()));
+        ComboBox<com.uber.model.Mantenimiento> comboTipo = new ComboBox<>();
+        rellenarCombo(comboTipo, "AdminController.comboMantenimientos", mantenimientoDAO::getAll, m -> false);
         comboTipo.setMaxWidth(Double.MAX_VALUE);
         comboTipo.setPromptText("Tipo de mantenimiento...");
         comboTipo.getStyleClass().add("dialog-textfield");
@@ -881,6 +946,26 @@ public class AdminController {
         });
     }
 
+    /**
+     * Rellena las opciones de un desplegable en segundo plano; queda desactivado hasta que llegan.
+     *
+     * @param elegir marca la opción que hay que dejar seleccionada (p. ej. la actual al editar)
+     */
+    private <T> void rellenarCombo(ComboBox<T> combo, String accion, Supplier<List<T>> consulta,
+                                   Predicate<T> elegir) {
+        combo.setDisable(true);
+        cargas.cargar(accion, consulta, opciones -> {
+            combo.getItems().setAll(opciones);
+            for (T opcion : opciones) {
+                if (elegir.test(opcion)) {
+                    combo.setValue(opcion);
+                    break;
+                }
+            }
+            combo.setDisable(false);
+        });
+    }
+
     /**
      * Crea un bloque simple con una etiqueta y un campo de formulario.
      */
@@ -900,6 +985,10 @@ public class AdminController {
     private void configurarTablaUsuarios() {
         if (tablaUsuarios == null) return;
 
+        paginasUsuarios = new TablaPaginada<>(tablaUsuarios, cargas, FILAS_POR_PAGINA,
+                (ultimo, limite) -> usuarioDAO.page(ultimo == null ? 0 : ultimo.getIdUsuario(), limite,
+                        List.of(Filtro.distinto("rol", Rol.ADMIN))));
+
         colUserId.setCellValueFactory(new PropertyValueFactory<>("idUsuario"));
 
         colUserNombre.setCellValueFactory(cd ->
@@ -977,16 +1066,11 @@ public class AdminController {
         });
     }
 
-    /** Carga los usuarios registrados, excluyendo administradores. */
+    /** Carga los usuarios registrados, excluyendo administradores, por páginas. */
     private void cargarTablaUsuarios() {
         if (tablaUsuarios == null) return;
 
-        List<Usuario> todos = usuarioDAO.getAll();
-        List<Usuario> soloClientes = todos.stream()
-                .filter(u -> u.getRol() != Rol.ADMIN)
-                .collect(Collectors.toList());
-
-        tablaUsuarios.setItems(FXCollections.observableArrayList(soloClientes));
+        paginasUsuarios.recargar();
     }
 
     /**
@@ -1037,6 +1121,90 @@ public class AdminController {
         }
     }
 
+    /* ================================================================
+       RENDIMIENTO SQL
+       ================================================================ */
+
+    /**
+     * Muestra los tiempos de cada consulta SQL desde que arrancó la aplicación
+     * (o desde el último reinicio), de la que más tiempo total consume a la que menos.
+     */
+    @FXML
+    private void onVerMetricasSQL() {
+        Dialog<ButtonType> dialog = new Dialog<>();
+        dialog.setTitle("Rendimiento SQL");
+        dialog.setHeaderText(null);
+        dialog.setResizable(true);
+
+        dialog.getDialogPane().getStylesheets()
+                .add(getClass().getResource("/com/uber/css/style.css").toExternalForm());
+        dialog.getDialogPane().getStyleClass().add("dialog-pane");
+
+        VBox header = new VBox(5);
+        header.getStyleClass().add("custom-dialog-header");
+
+        Label lblTitulo = new Label("Rendimiento SQL");
+        lblTitulo.getStyleClass().add("dialog-title-text");
+
+        Label lblSubtitulo = new Label(MetricasSQL.isActivas()
+                ? "Tiempos por consulta en milisegundos"
+                : "Las métricas están desactivadas (metricas.activas en db.properties)");
+        lblSubtitulo.getStyleClass().add("dialog-subtitle-text");
+
+        header.getChildren().addAll(lblTitulo, lblSubtitulo);
+
+        VBox content = new VBox(15);
+        content.getStyleClass().add("dialog-content-box");
+
+        TableView<MetricasSQL.Resumen> tabla = new TableView<>();
+        tabla.setPrefSize(900, 420);
+        tabla.setPlaceholder(new Label("Todavía no se ha ejecutado ninguna consulta."));
+
+        TableColumn<MetricasSQL.Resumen, String> colSql = columnaMetrica("SQL", MetricasSQL.Resumen::sql);
+        colSql.setPrefWidth(330);
+
+        tabla.getColumns().addAll(List.of(
+                colSql,
+                columnaMetrica("Ejecuciones", r -> String.valueOf(r.ejecuciones())),
+                columnaMetrica("Errores", r -> String.valueOf(r.errores())),
+                columnaMetrica("Filas", r -> String.valueOf(r.filas())),
+                columnaMetrica("p50", r -> String.format("%.2f", r.p50())),
+                columnaMetrica("p95", r -> String.format("%.2f", r.p95())),
+                columnaMetrica("p99", r -> String.format("%.2f", r.p99())),
+                columnaMetrica("Máx", r -> String.format("%.2f", r.max())),
+                columnaMetrica("Total", r -> String.format("%.1f", r.total()))
+        ));
+        tabla.setItems(FXCollections.observableArrayList(MetricasSQL.snapshot()));
+
+        Button btnRefrescar = new Button("Refrescar");
+        btnRefrescar.setOnAction(e -> tabla.setItems(FXCollections.observableArrayList(MetricasSQL.snapshot())));
+
+        Button btnReiniciar = new Button("Reiniciar");
+        btnReiniciar.setOnAction(e -> {
+            MetricasSQL.reiniciar();
+            tabla.getItems().clear();
+        });
+
+        HBox acciones = new HBox(10, btnRefrescar, btnReiniciar);
+        acciones.setAlignment(Pos.CENTER_RIGHT);
+
+        content.getChildren().addAll(tabla, acciones);
+
+        VBox root = new VBox(header, content);
+        dialog.getDialogPane().setContent(root);
+        dialog.getDialogPane().getButtonTypes().add(ButtonType.CLOSE);
+
+        dialog.showAndWait();
+    }
+
+    /** Columna de texto para la tabla de métricas SQL. */
+    private TableColumn<MetricasSQL.Resumen, String> columnaMetrica(
+            String titulo, Function<MetricasSQL.Resumen, String> valor) {
+        TableColumn<MetricasSQL.Resumen, String> col = new TableColumn<>(titulo);
+        col.setCellValueFactory(cd -> new SimpleStringProperty(valor.apply(cd.getValue())));
+        return col;
+    }
+
     /* ================================================================
        SESIÓN / UTILIDADES
        ================================================================ */
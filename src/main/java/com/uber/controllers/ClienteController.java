@@ -1,18 +1,24 @@
 package com.uber.controllers;
 
+import com.uber.dao.MovimientoDAO;
 import com.uber.dao.ReservaDAO;
 import com.uber.dao.UsuarioDAO;
 import com.uber.dao.VehiculoDAO;
 import com.uber.enums.EstadoReserva;
 import com.uber.enums.EstadoVehiculo;
+import com.uber.enums.TipoMovimiento;
 import com.uber.enums.TipoVehiculo;
+import com.uber.model.Movimiento;
 import com.uber.model.Reserva;
 import com.uber.model.Usuario;
 import com.uber.model.Vehiculo;
+import com.uber.utils.CargaVista;
+import com.uber.utils.RejillaVirtual;
 import com.uber.utils.Sesion;
 import javafx.fxml.FXML;
 import javafx.fxml.FXMLLoader;
 import javafx.geometry.Pos;
+import javafx.scene.Node;
 import javafx.scene.Scene;
 import javafx.scene.control.*;
 import javafx.scene.layout.*;
@@ -22,7 +28,7 @@ import java.io.IOException;
 import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
 import java.util.List;
-import java.util.stream.Collectors;
+import java.util.concurrent.CompletableFuture;
 
 /**
  * Controlador principal para la vista del Cliente.
@@ -35,12 +41,11 @@ public class ClienteController {
     @FXML private Label lblSaldo;
 
     // Contenedores principales (Vistas)
-    @FXML private ScrollPane vistaVehiculos;
+    @FXML private ListView<List<Vehiculo>> vistaVehiculos;
     @FXML private ScrollPane vistaReservas;
     @FXML private ScrollPane vistaPerfil;
 
     // Contenido dinámico
-    @FXML private FlowPane contenedorVehiculos;
     @FXML private VBox contenedorReservas;
 
     // Barra de navegación y filtros
@@ -56,8 +61,23 @@ public class ClienteController {
     private final VehiculoDAO vehiculoDAO = new VehiculoDAO();
     private final ReservaDAO reservaDAO = new ReservaDAO();
     private final UsuarioDAO usuarioDAO = new UsuarioDAO();
+    private final MovimientoDAO movimientoDAO = new MovimientoDAO();
 
-    private List<Vehiculo> listaVehiculosCompleta;
+    // Ancho de las tarjetas del catálogo (igual que .vehicle-card en style.css)
+    private static final double ANCHO_TARJETA = 300;
+
+    // Solo se muestran vehículos disponibles con al menos esta batería
+    private static final double BATERIA_MINIMA = 20;
+
+    // Tipo elegido en los filtros (null = todos) y consulta del catálogo en curso
+    private TipoVehiculo tipoSeleccionado = null;
+    private CompletableFuture<List<Vehiculo>> cargaVehiculos = null;
+
+    // Consultas en segundo plano de la pestaña visible
+    private final CargaVista cargas = new CargaVista();
+
+    // Catálogo: solo se crean las tarjetas visibles
+    private RejillaVirtual<Vehiculo> rejillaVehiculos;
 
     /**
      * Método de inicialización. Carga los datos del usuario y la lista de vehículos.
@@ -68,10 +88,11 @@ public class ClienteController {
         if (usuario != null) {
             actualizarHeader(usuario);
         }
-        listaVehiculosCompleta = vehiculoDAO.getAll();
+
+        rejillaVehiculos = new RejillaVirtual<>(vistaVehiculos, ANCHO_TARJETA, 20,
+                TarjetaVehiculo::new, "No hay vehículos disponibles");
 
         mostrarVistaVehiculos();
-        cargarVehiculos(listaVehiculosCompleta);
     }
 
     /**
@@ -99,8 +120,8 @@ public class ClienteController {
         panelFiltros.setVisible(true);
         actualizarEstiloBotones(btnNavVehiculos);
 
-        listaVehiculosCompleta = vehiculoDAO.getAll();
-        filtrarTodos();
+        cargas.cancelarTodo();
+        recargarVehiculos();
     }
 
     /**
@@ -115,6 +136,7 @@ public class ClienteController {
         panelFiltros.setVisible(false);
         actualizarEstiloBotones(btnNavReservas);
 
+        cargas.cancelarTodo();
         cargarReservas();
     }
 
@@ -130,6 +152,7 @@ public class ClienteController {
         panelFiltros.setVisible(false);
         actualizarEstiloBotones(btnNavPerfil);
 
+        cargas.cancelarTodo();
         cargarDatosPerfil();
     }
 
@@ -150,87 +173,128 @@ public class ClienteController {
     // ================================================================
 
     /**
-     * Carga las tarjetas de vehículos en el contenedor.
+     * Pide a la BD los vehículos que se pueden reservar del tipo seleccionado
+     * y los pinta al recibirlos. Si había otra consulta del catálogo en curso,
+     * se cancela para que no pise a esta.
+     */
+    private void recargarVehiculos() {
+        if (cargaVehiculos != null) cargaVehiculos.cancel(false);
+
+        TipoVehiculo tipo = tipoSeleccionado;
+        cargaVehiculos = cargas.cargar("ClienteController.recargarVehiculos",
+                () -> vehiculoDAO.buscar(tipo, EstadoVehiculo.DISPONIBLE, null, null, BATERIA_MINIMA),
+                this::cargarVehiculos);
+    }
+
+    /**
+     * Cambia el tipo del filtro y vuelve a consultar el catálogo.
+     * @param tipo tipo a mostrar, o null para todos.
+     */
+    private void filtrarPorTipo(TipoVehiculo tipo) {
+        tipoSeleccionado = tipo;
+        recargarVehiculos();
+    }
+
+    /**
+     * Muestra los vehículos en la rejilla del catálogo.
      * @param lista La lista de vehículos a mostrar.
      */
     private void cargarVehiculos(List<Vehiculo> lista) {
-        contenedorVehiculos.getChildren().clear();
-        for (Vehiculo v : lista) {
-            contenedorVehiculos.getChildren().add(crearTarjetaVehiculo(v));
-        }
+        rejillaVehiculos.setElementos(lista);
     }
 
     /**
      * Filtra y muestra todos los vehículos.
      */
-    @FXML void filtrarTodos() { cargarVehiculos(listaVehiculosCompleta); }
+    @FXML void filtrarTodos() { filtrarPorTipo(null); }
 
     /**
      * Filtra y muestra solo los coches.
      */
-    @FXML void filtrarCoches() { cargarVehiculos(listaVehiculosCompleta.stream().filter(v -> v.getTipo() == TipoVehiculo.COCHE).collect(Collectors.toList())); }
+    @FXML void filtrarCoches() { filtrarPorTipo(TipoVehiculo.COCHE); }
 
     /**
      * Filtra y muestra solo las motos.
      */
-    @FXML void filtrarMotos() { cargarVehiculos(listaVehiculosCompleta.stream().filter(v -> v.getTipo() == TipoVehiculo.MOTO).collect(Collectors.toList())); }
+    @FXML void filtrarMotos() { filtrarPorTipo(TipoVehiculo.MOTO); }
 
     /**
      * Filtra y muestra solo los patinetes.
      */
-    @FXML void filtrarPatinetes() { cargarVehiculos(listaVehiculosCompleta.stream().filter(v -> v.getTipo() == TipoVehiculo.PATINETE).collect(Collectors.toList())); }
+    @FXML void filtrarPatinetes() { filtrarPorTipo(TipoVehiculo.PATINETE); }
 
     /**
-     * Crea una tarjeta visual para un vehículo.
-     * @param v El vehículo a mostrar.
-     * @return Un VBox con la tarjeta del vehículo.
+     * Tarjeta visual de un vehículo. Se crea una sola vez y la rejilla
+     * la reutiliza para distintos vehículos al hacer scroll.
      */
-    private VBox crearTarjetaVehiculo(Vehiculo v) {
-        VBox card = new VBox();
-        card.getStyleClass().add("vehicle-card");
-        card.setSpacing(10);
+    private final class TarjetaVehiculo implements RejillaVirtual.Tarjeta<Vehiculo> {
+
+        private final VBox card = new VBox();
+        private final Label badge = new Label();
+        private final Label lblMarca = new Label();
+        private final Label lblTipo = new Label();
+        private final Label lblUbi = new Label();
+        private final ProgressBar pb = new ProgressBar();
+        private final Label lblPorc = new Label();
+        private final Button btnReservar = new Button();
+
+        private Vehiculo vehiculo;
+
+        TarjetaVehiculo() {
+            card.getStyleClass().add("vehicle-card");
+            card.setSpacing(10);
+
+            // Cabecera
+            HBox header = new HBox();
+            header.setAlignment(Pos.CENTER_RIGHT);
+            badge.getStyleClass().add("badge-disponible");
+            header.getChildren().add(badge);
+
+            // Info
+            lblMarca.getStyleClass().add("card-title");
+            lblTipo.getStyleClass().add("card-subtitle");
+            lblUbi.getStyleClass().add("card-location");
+
+            // Batería
+            HBox batteryBox = new HBox(10);
+            batteryBox.setAlignment(Pos.CENTER_LEFT);
+            Label lblBat = new Label("Batería");
+            pb.setPrefWidth(100);
+            batteryBox.getChildren().addAll(lblBat, pb, lblPorc);
+
+            // Botón
+            btnReservar.setMaxWidth(Double.MAX_VALUE);
+            btnReservar.getStyleClass().add("btn-reservar");
+            btnReservar.setOnAction(e -> mostrarDialogoReserva(vehiculo));
+
+            card.getChildren().addAll(header, lblMarca, lblTipo, lblUbi, new Separator(), batteryBox, btnReservar);
+        }
 
-        // Cabecera
-        HBox header = new HBox();
-        header.setAlignment(Pos.CENTER_RIGHT);
-        Label badge = new Label(v.getEstadoVehiculo().name());
-        badge.getStyleClass().add("badge-disponible");
+        @Override
+        public Node getNodo() { return card; }
 
-        if (v.getEstadoVehiculo() != EstadoVehiculo.DISPONIBLE) {
-            badge.setStyle("-fx-background-color: #BDBDBD; -fx-text-fill: #555;");
-        }
-        header.getChildren().add(badge);
-
-        // Info
-        Label lblMarca = new Label(v.getMarca() + " " + v.getModelo());
-        lblMarca.getStyleClass().add("card-title");
-        Label lblTipo = new Label(v.getTipo().toString());
-        lblTipo.getStyleClass().add("card-subtitle");
-        Label lblUbi = new Label("📍 " + v.getEstacion().getNombreEstacion() + ", " + v.getEstacion().getCiudad());
-        lblUbi.getStyleClass().add("card-location");
-
-        // Batería
-        HBox batteryBox = new HBox(10);
-        batteryBox.setAlignment(Pos.CENTER_LEFT);
-        Label lblBat = new Label("Batería");
-        ProgressBar pb = new ProgressBar(v.getNivelBateria() / 100.0);
-        pb.setPrefWidth(100);
-        Label lblPorc = new Label((int)v.getNivelBateria() + "%");
-        batteryBox.getChildren().addAll(lblBat, pb, lblPorc);
-
-        // Botón
-        Button btnReservar = new Button("Reservar Ahora");
-        btnReservar.setMaxWidth(Double.MAX_VALUE);
-        btnReservar.getStyleClass().add("btn-reservar");
-        btnReservar.setOnAction(e -> mostrarDialogoReserva(v));
-
-        if (v.getEstadoVehiculo() != EstadoVehiculo.DISPONIBLE) {
-            btnReservar.setDisable(true);
-            btnReservar.setText("No disponible");
-        }
+        /**
+         * Rellena la tarjeta con los datos de un vehículo.
+         * @param v El vehículo a mostrar.
+         */
+        @Override
+        public void mostrar(Vehiculo v) {
+            vehiculo = v;
+            boolean disponible = v.getEstadoVehiculo() == EstadoVehiculo.DISPONIBLE;
 
-        card.getChildren().addAll(header, lblMarca, lblTipo, lblUbi, new Separator(), batteryBox, btnReservar);
-        return card;
+            badge.setText(v.getEstadoVehiculo().name());
+            badge.setStyle(disponible ? "" : "-fx-background-color: #BDBDBD; -fx-text-fill: #555;");
+
+            lblMarca.setText(v.getMarca() + " " + v.getModelo());
+            lblTipo.setText(v.getTipo().toString());
+            lblUbi.setText("📍 " + v.getEstacion().getNombreEstacion() + ", " + v.getEstacion().getCiudad());
+
+            pb.setProgress(v.getNivelBateria() / 100.0);
+            lblPorc.setText((int) v.getNivelBateria() + "%");
+
+            btnReservar.setDisable(!disponible);
+            btnReservar.setText(disponible ? "Reservar Ahora" : "No disponible");
+        }
     }
 
     // ================================================================
@@ -335,13 +399,22 @@ public class ClienteController {
         r.setCoste(horas * precioPorHora);
         r.setEstado(EstadoReserva.ACTIVA);
 
-        if (reservaDAO.crearReserva(r)) {
-            mostrarAlerta(Alert.AlertType.INFORMATION, "¡Reserva Exitosa!", "Has reservado el vehículo por " + r.getCoste() + "€");
-            listaVehiculosCompleta = vehiculoDAO.getAll();
-            filtrarTodos();
-        } else {
-            mostrarAlerta(Alert.AlertType.ERROR, "Error", "No se pudo realizar la reserva.");
-        }
+        // reservar puede esperar entre reintentos: se hace fuera del hilo de JavaFX con la lista bloqueada
+        cargas.ejecutar("ClienteController.realizarReserva", () -> reservaDAO.reservar(r), resultado -> {
+            switch (resultado) {
+                case OK -> {
+                    mostrarAlerta(Alert.AlertType.INFORMATION, "¡Reserva Exitosa!", "Has reservado el vehículo por " + r.getCoste() + "€");
+                    recargarVehiculos();
+                }
+                case VEHICULO_OCUPADO -> {
+                    mostrarAlerta(Alert.AlertType.WARNING, "Vehículo no disponible", "Otro cliente acaba de reservar este vehículo. Elige otro.");
+                    recargarVehiculos();
+                }
+                case FRANJA_OCUPADA -> mostrarAlerta(Alert.AlertType.WARNING, "Fechas no disponibles",
+                        "El vehículo ya está reservado en parte de ese horario. Elige otra fecha u otro vehículo.");
+                default -> mostrarAlerta(Alert.AlertType.ERROR, "Error", "No se pudo realizar la reserva.");
+            }
+        }, vistaVehiculos);
     }
 
     // ================================================================
@@ -352,9 +425,17 @@ public class ClienteController {
      * Carga las reservas del usuario en la vista.
      */
     private void cargarReservas() {
-        contenedorReservas.getChildren().clear();
         Usuario u = Sesion.getInstancia().getUsuarioLogueado();
-        List<Reserva> reservas = reservaDAO.getReservasPorUsuario(u.getIdUsuario());
+        cargas.cargar("ClienteController.cargarReservas",
+                () -> reservaDAO.getReservasPorUsuario(u.getIdUsuario()), this::pintarReservas);
+    }
+
+    /**
+     * Pinta las tarjetas de las reservas ya cargadas.
+     * @param reservas Reservas del usuario.
+     */
+    private void pintarReservas(List<Reserva> reservas) {
+        contenedorReservas.getChildren().clear();
 
         if (reservas == null || reservas.isEmpty()) {
             Label vacio = new Label("No tienes reservas registradas.");
@@ -415,12 +496,12 @@ public class ClienteController {
             Button btnFinalizar = new Button("Finalizar y Pagar");
             btnFinalizar.setMaxWidth(Double.MAX_VALUE);
             btnFinalizar.getStyleClass().add("btn-finalizar");
-            btnFinalizar.setOnAction(e -> finalizarReserva(r));
+            btnFinalizar.setOnAction(e -> finalizarReserva(r, bottomBox));
 
             Button btnCancelar = new Button("Cancelar Reserva");
             btnCancelar.setMaxWidth(Double.MAX_VALUE);
             btnCancelar.getStyleClass().add("btn-secondary-action");
-            btnCancelar.setOnAction(e -> accionCancelar(r));
+            btnCancelar.setOnAction(e -> accionCancelar(r, bottomBox));
 
             bottomBox.getChildren().addAll(btnFinalizar, btnCancelar);
         } else {
@@ -444,8 +525,9 @@ public class ClienteController {
     /**
      * Finaliza una reserva activa.
      * @param r La reserva a finalizar.
+     * @param botones Botones de la tarjeta, bloqueados mientras se cobra.
      */
-    private void finalizarReserva(Reserva r) {
+    private void finalizarReserva(Reserva r, Node botones) {
         Usuario u = Sesion.getInstancia().getUsuarioLogueado();
         double costeFinal = r.getCoste();
 
@@ -454,37 +536,54 @@ public class ClienteController {
             return;
         }
 
-        if (reservaDAO.finalizarReserva(r.getIdReserva(), r.getVehiculo().getIdVehiculo(), u.getIdUsuario(), costeFinal)) {
+        // Resultado del cobro: si se finalizó y el apunte que dejó en el historial
+        record Pago(boolean finalizada, Movimiento cobro) {}
 
-            // ACTUALIZAMOS EL SALDO EN LA APP (Memoria y Vista)
-            u.setSaldo(u.getSaldo() - costeFinal);
-            actualizarHeader(u);
+        cargas.ejecutar("ClienteController.finalizarReserva", () -> {
+            if (!reservaDAO.finalizarReserva(r.getIdReserva(), r.getVehiculo().getIdVehiculo(), u.getIdUsuario(), costeFinal)) {
+                return new Pago(false, null);
+            }
+            return new Pago(true, movimientoDAO.getCobroReserva(r.getIdReserva()));
 
-            cargarReservas();
-            mostrarAlerta(Alert.AlertType.INFORMATION, "Viaje Finalizado",
-                    "Cobro realizado correctamente: " + String.format("%.2f€", costeFinal));
-        } else {
-            mostrarAlerta(Alert.AlertType.ERROR, "Error", "No se pudo finalizar la reserva.");
-        }
+        }, pago -> {
+            if (pago.finalizada()) {
+
+                // ACTUALIZAMOS EL SALDO EN LA APP (Memoria y Vista) con el que ha quedado en el historial
+                if (pago.cobro() != null) u.setSaldo(pago.cobro().getSaldoResultante());
+                actualizarHeader(u);
+
+                cargarReservas();
+                mostrarAlerta(Alert.AlertType.INFORMATION, "Viaje Finalizado",
+                        "Cobro realizado correctamente: " + String.format("%.2f€", costeFinal));
+            } else {
+                mostrarAlerta(Alert.AlertType.ERROR, "Error", "No se pudo finalizar la reserva.");
+            }
+        }, botones);
     }
 
     /**
      * Cancela una reserva activa.
      * @param r La reserva a cancelar.
+     * @param botones Botones de la tarjeta, bloqueados mientras se cancela.
      */
-    private void accionCancelar(Reserva r) {
+    private void accionCancelar(Reserva r, Node botones) {
         Alert alert = new Alert(Alert.AlertType.CONFIRMATION);
         alert.setTitle("Cancelar Reserva");
         alert.setHeaderText("¿Estás seguro?");
         alert.setContentText("El vehículo quedará libre inmediatamente.");
 
         if (alert.showAndWait().get() == ButtonType.OK) {
-            if (reservaDAO.cancelarReserva(r.getIdReserva(), r.getVehiculo().getIdVehiculo())) {
-                cargarReservas();
-                mostrarAlerta(Alert.AlertType.INFORMATION, "Cancelada", "Reserva cancelada correctamente.");
-            } else {
-                mostrarAlerta(Alert.AlertType.ERROR, "Error", "No se pudo cancelar.");
-            }
+            cargas.ejecutar("ClienteController.accionCancelar",
+                    () -> reservaDAO.cancelarReserva(r.getIdReserva(), r.getVehiculo().getIdVehiculo()), cancelada -> {
+                if (cancelada) {
+                    cargarReservas();
+                    mostrarAlerta(Alert.AlertType.INFORMATION, "Cancelada", "Reserva cancelada correctamente.");
+                } else {
+                    // Puede que ya se haya finalizado mientras tanto: se recarga para verla como está
+                    cargarReservas();
+                    mostrarAlerta(Alert.AlertType.ERROR, "Error", "No se pudo cancelar: puede que la reserva ya haya terminado.");
+                }
+            }, botones);
         }
     }
 
@@ -653,16 +752,17 @@ public class ClienteController {
             try {
                 double monto = Double.parseDouble(cantidad);
                 if (monto > 0) {
-                    double nuevoSaldo = u.getSaldo() + monto;
-
-                    if (usuarioDAO.actualizarSaldo(u.getIdUsuario(), nuevoSaldo)) {
-                        u.setSaldo(nuevoSaldo);
-                        mostrarAlerta(Alert.AlertType.INFORMATION, "Recarga Exitosa", "Se han añadido " + monto + "€ a tu cuenta.");
-                        cargarDatosPerfil();
-                        actualizarHeader(u);
-                    } else {
-                        mostrarAlerta(Alert.AlertType.ERROR, "Error", "Fallo al actualizar saldo en BD.");
-                    }
+                    cargas.ejecutar("ClienteController.onAnadirSaldo",
+                            () -> movimientoDAO.registrar(u.getIdUsuario(), TipoMovimiento.RECARGA, monto, null), recarga -> {
+                        if (recarga != null) {
+                            u.setSaldo(recarga.getSaldoResultante());
+                            mostrarAlerta(Alert.AlertType.INFORMATION, "Recarga Exitosa", "Se han añadido " + monto + "€ a tu cuenta.");
+                            cargarDatosPerfil();
+                            actualizarHeader(u);
+                        } else {
+                            mostrarAlerta(Alert.AlertType.ERROR, "Error", "Fallo al actualizar saldo en BD.");
+                        }
+                    }, vistaPerfil);
                 } else {
                     mostrarAlerta(Alert.AlertType.WARNING, "Inválido", "Introduce una cantidad positiva.");
                 }
@@ -4,6 +4,7 @@ import com.uber.dao.UsuarioDAO;
 import com.uber.model.Usuario;
 import com.uber.enums.Rol;
 import com.uber.utils.Sesion;
+import com.uber.utils.Traza;
 import javafx.event.ActionEvent;
 import javafx.fxml.FXML;
 import javafx.fxml.FXMLLoader;
@@ -55,24 +56,31 @@ public class LoginController {
             lblError.setText("Introduce email y contraseña");
             return;
         }
-        Usuario u = usuarioDAO.login(email, pass);
 
-        if (u == null) {
-            lblError.setText("❌ Credenciales incorrectas");
-            return;
-        }
+        // Evento JFR: comprobar credenciales y cargar la vista siguiente
+        Traza traza = Traza.accion("LoginController.onLogin");
+        try {
+            Usuario u = usuarioDAO.login(email, pass);
+
+            if (u == null) {
+                lblError.setText("❌ Credenciales incorrectas");
+                return;
+            }
+
+            Sesion.getInstancia().logIn(u);
 
-        Sesion.getInstancia().logIn(u);
-
-        switch (u.getRol()) {
-            case ADMIN:
-                abrirVista("/com/uber/fxml/AdminView.fxml");
-                break;
-            case CLIENTE:
-                abrirVista("/com/uber/fxml/ClienteView.fxml");
-                break;
-            default:
-                lblError.setText("Rol de usuario desconocido");
+            switch (u.getRol()) {
+                case ADMIN:
+                    abrirVista("/com/uber/fxml/AdminView.fxml");
+                    break;
+                case CLIENTE:
+                    abrirVista("/com/uber/fxml/ClienteView.fxml");
+                    break;
+                default:
+                    lblError.setText("Rol de usuario desconocido");
+            }
+        } finally {
+            traza.close();
         }
     }
 
@@ -0,0 +1,90 @@
+package com.uber.dao;
+
+import com.uber.database.ConnectionBD;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+/**
+ * Ejecuta llamadas a los DAO fuera del hilo que las pide y devuelve un CompletableFuture.
+ * Se usa desde los controladores para que la interfaz no se congele esperando a la BD.
+ *
+ * En JDK 21 o superior usa hilos virtuales; en versiones anteriores, un pool
+ * fijo de hilos normales. En ambos casos nunca hay más consultas en curso que
+ * conexiones en el pool.
+ */
+public final class AsyncDAO {
+
+    private static final int MAX_EN_CURSO = ConnectionBD.getPool().getMaxSize();
+    private static final Semaphore EN_CURSO = new Semaphore(MAX_EN_CURSO);
+    private static final ExecutorService EJECUTOR = crearEjecutor();
+
+    private AsyncDAO() {}
+
+    /**
+     * Lanza una consulta en segundo plano.
+     * Si el futuro se cancela antes de empezar, la consulta no llega a ejecutarse;
+     * si ya estaba en marcha, termina pero su resultado se descarta.
+     *
+     * @param consulta llamada al DAO
+     * @param <T> tipo del resultado
+     * @return futuro con el resultado de la consulta
+     */
+    public static <T> CompletableFuture<T> ejecutar(Supplier<T> consulta) {
+        CompletableFuture<T> resultado = new CompletableFuture<>();
+
+        Future<?> tarea = EJECUTOR.submit(() -> {
+            if (resultado.isDone()) return;
+
+            try {
+                EN_CURSO.acquire();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                resultado.completeExceptionally(e);
+                return;
+            }
+
+            try {
+                if (!resultado.isDone()) resultado.complete(consulta.get());
+            } catch (Throwable t) {
+                resultado.completeExceptionally(t);
+            } finally {
+                EN_CURSO.release();
+            }
+        });
+
+        // No se interrumpe el hilo: un JDBC interrumpido puede dejar la conexión inservible
+        resultado.whenComplete((r, e) -> {
+            if (resultado.isCancelled()) tarea.cancel(false);
+        });
+
+        return resultado;
+    }
+
+    /** @return número máximo de consultas en curso a la vez */
+    public static int getMaxEnCurso() { return MAX_EN_CURSO; }
+
+    /**
+     * Crea el ejecutor: hilos virtuales si la JVM los tiene, pool fijo si no.
+     */
+    private static ExecutorService crearEjecutor() {
+        try {
+            Method virtuales = Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+            return (ExecutorService) virtuales.invoke(null);
+
+        } catch (ReflectiveOperationException e) {
+            AtomicInteger contador = new AtomicInteger();
+            return Executors.newFixedThreadPool(MAX_EN_CURSO, r -> {
+                Thread t = new Thread(r, "dao-async-" + contador.incrementAndGet());
+                t.setDaemon(true);
+                return t;
+            });
+        }
+    }
+}
@@ -0,0 +1,113 @@
+package com.uber.dao;
+
+import com.uber.model.Mantenimiento;
+
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Copia en memoria del catálogo de mantenimientos (tabla Mantenimiento).
+ *
+ * El catálogo casi nunca cambia, así que se lee entero al arrancar (o la
+ * primera vez que se consulta) y no se vuelve a la BD hasta que alguien llama
+ * a {@link #recargar()}: lo hace {@link MantenimientoDAO} después de cada
+ * alta, cambio o borrado. Con él {@link TieneDAO} completa el tipo y la
+ * descripción de cada fila sin hacer JOIN con Mantenimiento.
+ *
+ * El mapa interno no se modifica nunca: cada recarga crea uno nuevo y lo
+ * cambia de golpe, así las lecturas no necesitan bloqueo. Como Mantenimiento
+ * tiene setters, se devuelven copias.
+ */
+public final class CatalogoMantenimiento {
+
+    private static final CatalogoMantenimiento INSTANCIA = new CatalogoMantenimiento();
+
+    // null hasta la primera carga; después, un mapa inmodificable ordenado por id
+    private volatile Map<Integer, Mantenimiento> porId;
+
+    // Consulta completa de la tabla, sin pasar por el catálogo
+    private final MantenimientoDAO dao = new MantenimientoDAO();
+
+    private CatalogoMantenimiento() {}
+
+    /** @return el catálogo compartido */
+    public static CatalogoMantenimiento getInstancia() {
+        return INSTANCIA;
+    }
+
+    /**
+     * @return copia de todos los mantenimientos, ordenados por id
+     * @throws SQLException si todavía no estaba cargado y la consulta falla
+     */
+    public List<Mantenimiento> getAll() throws SQLException {
+        List<Mantenimiento> lista = new ArrayList<>();
+        for (Mantenimiento m : cargado().values()) lista.add(copiar(m));
+        return lista;
+    }
+
+    /**
+     * @param id id del mantenimiento
+     * @return copia del mantenimiento o null si no existe
+     * @throws SQLException si todavía no estaba cargado y la consulta falla
+     */
+    public Mantenimiento getById(int id) throws SQLException {
+        Mantenimiento m = cargado().get(id);
+        return m != null ? copiar(m) : null;
+    }
+
+    /**
+     * Pone el tipo y la descripción del catálogo en un mantenimiento del que
+     * solo se conoce el id (p. ej. el de una fila de Tiene). Si el id no está
+     * en el catálogo se deja como está.
+     *
+     * @param m mantenimiento con el id puesto
+     * @throws SQLException si todavía no estaba cargado y la consulta falla
+     */
+    public void completar(Mantenimiento m) throws SQLException {
+        Mantenimiento c = cargado().get(m.getIdMantenimiento());
+        if (c == null) return;
+
+        m.setTipo(c.getTipo());
+        m.setDescripcion(c.getDescripcion());
+    }
+
+    /**
+     * Vuelve a leer el catálogo de la BD y sustituye el que había.
+     *
+     * @throws SQLException si falla la consulta (se sigue usando el anterior)
+     */
+    public synchronized void recargar() throws SQLException {
+        Map<Integer, Mantenimiento> nuevo = new TreeMap<>();
+        for (Mantenimiento m : dao.cargarDesdeBD()) nuevo.put(m.getIdMantenimiento(), m);
+
+        porId = Collections.unmodifiableMap(nuevo);
+        System.out.println("🔧 Catálogo de mantenimientos cargado: " + nuevo.size() + " tipos.");
+    }
+
+    /**
+     * Carga el catálogo si todavía no se ha hecho (al arrancar se llama en segundo plano).
+     *
+     * @throws SQLException si falla la consulta
+     */
+    public void cargar() throws SQLException {
+        cargado();
+    }
+
+    private Map<Integer, Mantenimiento> cargado() throws SQLException {
+        Map<Integer, Mantenimiento> actual = porId;
+        if (actual != null) return actual;
+
+        synchronized (this) {
+            if (porId == null) recargar();
+            return porId;
+        }
+    }
+
+    private static Mantenimiento copiar(Mantenimiento m) {
+        return new Mantenimiento(m.getIdMantenimiento(), m.getTipo(), m.getDescripcion());
+    }
+}
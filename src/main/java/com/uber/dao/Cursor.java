@@ -0,0 +1,188 @@
+package com.uber.dao;
+
+import com.uber.database.ConnectionBD;
+import com.uber.database.MapaShards;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.Iterator;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * Recorrido de una consulta fila a fila sin cargarla entera en memoria.
+ *
+ * Usa un ResultSet de solo avance y solo lectura con el fetch size de
+ * db.properties (db.fetchSize). En MySQL hace falta useCursorFetch=true en la
+ * URL para que el servidor envíe las filas por bloques.
+ *
+ * El Stream tiene prestada una conexión del pool mientras está abierto,
+ * así que siempre se usa dentro de un try-with-resources. Con la flota
+ * repartida en shards ({@link MapaShards}) se recorren uno detrás de otro y
+ * cada uno se abre al llegar a él, así solo hay una conexión prestada a la vez.
+ */
+final class Cursor {
+
+    /**
+     * Convierte la fila actual del ResultSet en un objeto.
+     *
+     * @param <T> tipo del objeto
+     */
+    @FunctionalInterface
+    interface MapeadorFila<T> {
+        T map(ResultSet rs) throws SQLException;
+    }
+
+    private Cursor() {}
+
+    /**
+     * Abre la consulta y devuelve sus filas como Stream.
+     * Al cerrar el Stream se cierran el ResultSet, la sentencia y la conexión.
+     *
+     * @param sql      consulta sin parámetros
+     * @param mapeador conversión de cada fila
+     * @param <T> tipo de los elementos
+     * @return Stream perezoso de las filas
+     * @throws SQLException si no se puede abrir la consulta
+     */
+    static <T> Stream<T> abrir(String sql, MapeadorFila<T> mapeador) throws SQLException {
+        return abrir(sql, mapeador, false);
+    }
+
+    /**
+     * Igual que {@link #abrir(String, MapeadorFila)}, pudiendo leer de la réplica.
+     *
+     * @param sql      consulta sin parámetros
+     * @param mapeador conversión de cada fila
+     * @param lectura  true para usar {@link ConnectionBD#getConnectionLectura()}
+     *                 (exportaciones, informes); false para leer del principal
+     * @param <T> tipo de los elementos
+     * @return Stream perezoso de las filas
+     * @throws SQLException si no se puede abrir la consulta
+     */
+    static <T> Stream<T> abrir(String sql, MapeadorFila<T> mapeador, boolean lectura) throws SQLException {
+        if (MapaShards.activos()) {
+            EnShards<T> recorrido = new EnShards<>(sql, mapeador);
+            return StreamSupport.stream(recorrido, false).onClose(recorrido::cerrar);
+        }
+        return abrir(lectura ? ConnectionBD.getConnectionLectura() : ConnectionBD.getConnection(), sql, mapeador);
+    }
+
+    /**
+     * Abre la consulta en una conexión ya prestada, que se devuelve al cerrar el Stream.
+     */
+    private static <T> Stream<T> abrir(Connection conn, String sql, MapeadorFila<T> mapeador) throws SQLException {
+        PreparedStatement ps = null;
+        ResultSet rs = null;
+        boolean soloLectura = false;
+
+        try {
+            // Las de la réplica ya vienen de solo lectura y así deben volver al pool
+            soloLectura = conn.isReadOnly();
+            conn.setReadOnly(true);
+
+            // Con tipo y concurrencia explícitos la sentencia no pasa por la caché del pool
+            ps = conn.prepareStatement(sql, ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+            ps.setFetchSize(ConnectionBD.getFetchSize());
+            rs = ps.executeQuery();
+
+        } catch (SQLException | RuntimeException e) {
+            cerrar(rs, ps, conn, soloLectura);
+            throw e;
+        }
+
+        ResultSet filas = rs;
+        PreparedStatement sentencia = ps;
+        boolean estabaSoloLectura = soloLectura;
+
+        Spliterator<T> recorrido = new Spliterators.AbstractSpliterator<>(
+                Long.MAX_VALUE, Spliterator.ORDERED | Spliterator.NONNULL) {
+            @Override
+            public boolean tryAdvance(Consumer<? super T> accion) {
+                try {
+                    if (!filas.next()) return false;
+                    accion.accept(mapeador.map(filas));
+                    return true;
+                } catch (SQLException e) {
+                    throw new IllegalStateException("Error leyendo el cursor", e);
+                }
+            }
+        };
+
+        return StreamSupport.stream(recorrido, false)
+                .onClose(() -> cerrar(filas, sentencia, conn, estabaSoloLectura));
+    }
+
+    /**
+     * Recorre la consulta en todos los shards, en el orden de shards.lista.
+     * Cuando se acaba un shard se cierra su cursor y se abre el del siguiente.
+     */
+    private static final class EnShards<T> extends Spliterators.AbstractSpliterator<T> {
+
+        private final String sql;
+        private final MapeadorFila<T> mapeador;
+        private final Iterator<String> pendientes = MapaShards.nombres().iterator();
+        private Stream<T> actual;
+        private Spliterator<T> filas;
+
+        EnShards(String sql, MapeadorFila<T> mapeador) {
+            super(Long.MAX_VALUE, Spliterator.ORDERED | Spliterator.NONNULL);
+            this.sql = sql;
+            this.mapeador = mapeador;
+        }
+
+        @Override
+        public boolean tryAdvance(Consumer<? super T> accion) {
+            while (true) {
+                if (filas != null && filas.tryAdvance(accion)) return true;
+                cerrar();
+                if (!pendientes.hasNext()) return false;
+
+                String shard = pendientes.next();
+                try {
+                    actual = abrir(MapaShards.getConnection(shard), sql, mapeador);
+                    filas = actual.spliterator();
+                } catch (SQLException e) {
+                    throw new IllegalStateException("Error abriendo el cursor en el shard " + shard, e);
+                }
+            }
+        }
+
+        void cerrar() {
+            if (actual != null) actual.close();
+            actual = null;
+            filas = null;
+        }
+    }
+
+    /**
+     * Cierra el cursor y devuelve la conexión al pool dejándola como estaba.
+     */
+    private static void cerrar(ResultSet rs, PreparedStatement ps, Connection conn, boolean soloLectura) {
+        try {
+            if (rs != null) rs.close();
+        } catch (SQLException e) {
+            e.printStackTrace();
+        }
+        try {
+            if (ps != null) ps.close();
+        } catch (SQLException e) {
+            e.printStackTrace();
+        }
+        try {
+            conn.setReadOnly(soloLectura);
+        } catch (SQLException e) {
+            e.printStackTrace();
+        }
+        try {
+            conn.close();
+        } catch (SQLException e) {
+            e.printStackTrace();
+        }
+    }
+}
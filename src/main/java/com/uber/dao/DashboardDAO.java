@@ -0,0 +1,138 @@
+package com.uber.dao;
+
+import com.uber.database.ConnectionBD;
+import com.uber.database.MapaShards;
+import com.uber.enums.EstadoVehiculo;
+import com.uber.model.ResumenDashboard;
+import com.uber.model.Vehiculo;
+import com.uber.utils.Traza;
+
+import java.sql.*;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * DAO de solo lectura para el panel de resumen del administrador.
+ * Obtiene todos los contadores y los avisos en una única consulta,
+ * de modo que el coste no depende del tamaño de la flota ni de los usuarios.
+ *
+ * Con la flota repartida en shards ({@link MapaShards}) la consulta se lanza a
+ * la vez en todos, se suman los contadores y se juntan los avisos; los
+ * usuarios se cuentan en la BD principal, que es donde están.
+ */
+public class DashboardDAO {
+
+    // Umbral de batería por debajo del cual se avisa
+    public static final double BATERIA_BAJA = 20;
+
+    // Máximo de avisos que se devuelven
+    public static final int MAX_ALERTAS = 50;
+
+    /*
+     * Primera fila: contadores agrupados (fila = 'RESUMEN').
+     * Resto de filas: vehículos con batería baja o inactivos (fila = 'ALERTA').
+     */
+    private static final String SELECT_RESUMEN =
+            "SELECT 'RESUMEN' AS fila, COUNT(*) AS total_vehiculos, " +
+                    "SUM(CASE WHEN estado_vehiculo = 'DISPONIBLE' THEN 1 ELSE 0 END) AS disponibles, " +
+                    "SUM(CASE WHEN estado_vehiculo = 'EN_USO' THEN 1 ELSE 0 END) AS en_uso, " +
+                    "SUM(CASE WHEN estado_vehiculo = 'MANTENIMIENTO' THEN 1 ELSE 0 END) AS en_mantenimiento, " +
+                    "(SELECT COUNT(*) FROM Usuario) AS total_usuarios, " +
+                    "(SELECT COUNT(*) FROM Estacion) AS total_estaciones, " +
+                    "NULL AS id_vehiculo, NULL AS marca, NULL AS nivel_bateria, NULL AS estado_vehiculo " +
+                    "FROM Vehiculo " +
+            "UNION ALL " +
+            "SELECT 'ALERTA', 0, 0, 0, 0, 0, 0, a.id_vehiculo, a.marca, a.nivel_bateria, a.estado_vehiculo " +
+                    "FROM (SELECT id_vehiculo, marca, nivel_bateria, estado_vehiculo FROM Vehiculo " +
+                    "WHERE nivel_bateria < ? OR estado_vehiculo = 'INACTIVO' " +
+                    "ORDER BY id_vehiculo LIMIT ?) a";
+
+    private static final String COUNT_USUARIOS = "SELECT COUNT(*) FROM Usuario";
+
+    /**
+     * Obtiene los contadores del resumen y los vehículos con avisos.
+     *
+     * @return resumen del sistema (con contadores a 0 si falla la consulta)
+     */
+    public ResumenDashboard getResumen() {
+        try (Traza traza = Traza.operacionDAO()) {
+            List<ResumenDashboard> partes = MapaShards.enTodos(this::leerResumen);
+            if (partes.size() == 1) return partes.get(0);
+
+            ResumenDashboard total = new ResumenDashboard();
+            for (ResumenDashboard p : partes) {
+                total.setTotalVehiculos(total.getTotalVehiculos() + p.getTotalVehiculos());
+                total.setDisponibles(total.getDisponibles() + p.getDisponibles());
+                total.setEnUso(total.getEnUso() + p.getEnUso());
+                total.setEnMantenimiento(total.getEnMantenimiento() + p.getEnMantenimiento());
+                total.setTotalEstaciones(total.getTotalEstaciones() + p.getTotalEstaciones());
+                total.getAlertas().addAll(p.getAlertas());
+            }
+
+            total.getAlertas().sort(Comparator.comparingInt(Vehiculo::getIdVehiculo));
+            if (total.getAlertas().size() > MAX_ALERTAS) {
+                total.getAlertas().subList(MAX_ALERTAS, total.getAlertas().size()).clear();
+            }
+            total.setTotalUsuarios(contarUsuarios());
+            return total;
+
+        } catch (SQLException e) {
+            e.printStackTrace();
+            return new ResumenDashboard();
+        }
+    }
+
+    /**
+     * Lee el resumen de una sola BD (la principal o un shard).
+     */
+    private ResumenDashboard leerResumen(Connection conn) throws SQLException {
+        ResumenDashboard resumen = new ResumenDashboard();
+
+        try (PreparedStatement ps = conn.prepareStatement(SELECT_RESUMEN)) {
+
+            ps.setDouble(1, BATERIA_BAJA);
+            ps.setInt(2, MAX_ALERTAS);
+
+            try (ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) {
+                    if ("RESUMEN".equals(rs.getString("fila"))) {
+                        resumen.setTotalVehiculos(rs.getLong("total_vehiculos"));
+                        resumen.setDisponibles(rs.getLong("disponibles"));
+                        resumen.setEnUso(rs.getLong("en_uso"));
+                        resumen.setEnMantenimiento(rs.getLong("en_mantenimiento"));
+                        resumen.setTotalUsuarios(rs.getLong("total_usuarios"));
+                        resumen.setTotalEstaciones(rs.getLong("total_estaciones"));
+                    } else {
+                        resumen.getAlertas().add(mapAlerta(rs));
+                    }
+                }
+            }
+        }
+
+        return resumen;
+    }
+
+    private long contarUsuarios() throws SQLException {
+        try (Connection conn = ConnectionBD.getConnectionLectura();
+             Statement st = conn.createStatement();
+             ResultSet rs = st.executeQuery(COUNT_USUARIOS)) {
+            return rs.next() ? rs.getLong(1) : 0;
+        }
+    }
+
+    /**
+     * Convierte una fila de aviso en un vehículo con los datos mínimos.
+     *
+     * @param rs fila de tipo 'ALERTA'
+     * @return vehículo con id, marca, batería y estado
+     * @throws SQLException si ocurre un error al leer los datos
+     */
+    private Vehiculo mapAlerta(ResultSet rs) throws SQLException {
+        Vehiculo v = new Vehiculo();
+        v.setIdVehiculo(rs.getInt("id_vehiculo"));
+        v.setMarca(rs.getString("marca"));
+        v.setNivelBateria(rs.getDouble("nivel_bateria"));
+        v.setEstadoVehiculo(EstadoVehiculo.valueOf(rs.getString("estado_vehiculo")));
+        return v;
+    }
+}
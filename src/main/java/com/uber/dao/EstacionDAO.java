@@ -1,16 +1,22 @@
 package com.uber.dao;
 
-import com.uber.database.ConnectionBD;
+import com.uber.database.MapaShards;
 import com.uber.model.Estacion;
+import com.uber.utils.Traza;
 
 import java.sql.*;
 import java.util.ArrayList;
+import java.util.Comparator;
 import java.util.List;
+import java.util.Map;
 
 /**
  * Clase de Acceso a Datos (DAO) para la entidad Estacion.
  * Se encarga de realizar las operaciones CRUD (Crear, Leer, Actualizar, Borrar)
  * sobre la tabla 'Estacion' en la base de datos.
+ *
+ * Con la flota repartida por ciudades ({@link MapaShards}) cada estación se
+ * guarda en el shard de su ciudad y los listados se piden a todos los shards.
  */
 public class EstacionDAO {
 
@@ -19,6 +25,11 @@ public class EstacionDAO {
 
     private static final String SELECT_BY_ID = "SELECT * FROM Estacion WHERE id_estacion = ?";
 
+    // Campos por los que se puede filtrar en page(...)
+    private static final Map<String, String> COLUMNAS_FILTRO = Map.of(
+            "ciudad", "ciudad",
+            "nombre_estacion", "nombre_estacion");
+
     private static final String INSERT = "INSERT INTO Estacion (nombre_estacion, direccion, capacidad, ciudad) " +
             "VALUES (?, ?, ?, ?)";
 
@@ -31,17 +42,6 @@ public class EstacionDAO {
             "FROM Estacion e LEFT JOIN Vehiculo v ON e.id_estacion = v.id_estacion " +
             "WHERE e.id_estacion = ? GROUP BY e.id_estacion";
 
-    // Objeto de conexión a la base de datos
-    private final Connection conn;
-
-    /**
-     * Constructor de la clase.
-     * Obtiene la instancia de conexión a la base de datos.
-     */
-    public EstacionDAO() {
-        this.conn = ConnectionBD.getConnection();
-    }
-
     // ================================================================
     //   MÉTODOS PRIVADOS (AUXILIARES)
     // ================================================================
@@ -73,20 +73,64 @@ public class EstacionDAO {
      * @return Una lista de objetos Estacion.
      */
     public List<Estacion> getAll() {
-        List<Estacion> lista = new ArrayList<>();
+        try (Traza traza = Traza.operacionDAO()) {
+            return traza.filas(MapaShards.juntar(conn -> {
+                List<Estacion> lista = new ArrayList<>();
 
-        try (Statement st = conn.createStatement();
-             ResultSet rs = st.executeQuery(SELECT_ALL)) {
+                try (Statement st = conn.createStatement();
+                     ResultSet rs = st.executeQuery(SELECT_ALL)) {
 
-            while (rs.next()) {
-                lista.add(mapEstacion(rs));
-            }
+                    while (rs.next()) {
+                        lista.add(mapEstacion(rs));
+                    }
+                }
+                return lista;
+            }));
 
         } catch (SQLException e) {
             e.printStackTrace();
+            return new ArrayList<>();
         }
+    }
+
+    /**
+     * Devuelve la página de estaciones siguiente a la clave indicada, ordenada por id.
+     * Para la primera página se pasa 0 y para las siguientes el id del último
+     * elemento recibido.
+     *
+     * @param despuesDeId id del último elemento de la página anterior (0 para empezar)
+     * @param limite número máximo de elementos
+     * @param filtros condiciones sobre ciudad o nombre_estacion (puede ser null)
+     * @return lista con como mucho {@code limite} elementos
+     */
+    public List<Estacion> page(int despuesDeId, int limite, List<Filtro> filtros) {
+        List<Object> parametros = new ArrayList<>();
+        parametros.add(despuesDeId);
+
+        String sql = SELECT_ALL + " WHERE id_estacion > ?"
+                + Paginacion.condiciones(filtros, COLUMNAS_FILTRO, parametros)
+                + " ORDER BY id_estacion LIMIT ?";
+        parametros.add(Paginacion.limite(limite));
+
+        try (Traza traza = Traza.operacionDAO()) {
+            List<Estacion> lista = MapaShards.juntar(conn -> {
+                List<Estacion> parte = new ArrayList<>();
+
+                try (PreparedStatement ps = conn.prepareStatement(sql)) {
+                    Paginacion.asignar(ps, parametros);
+
+                    try (ResultSet rs = ps.executeQuery()) {
+                        while (rs.next()) parte.add(mapEstacion(rs));
+                    }
+                }
+                return parte;
+            });
+            return traza.filas(Paginacion.primeros(lista, Comparator.comparingInt(Estacion::getIdEstacion), limite));
 
-        return lista;
+        } catch (SQLException e) {
+            e.printStackTrace();
+            return new ArrayList<>();
+        }
     }
 
     /**
@@ -95,12 +139,14 @@ public class EstacionDAO {
      * @return El objeto Estacion si se encuentra, o null si no existe.
      */
     public Estacion getById(int id) {
-        try (PreparedStatement ps = conn.prepareStatement(SELECT_BY_ID)) {
+        try (Traza traza = Traza.operacionDAO();
+             Connection conn = MapaShards.conexionEstacion(id);
+             PreparedStatement ps = conn.prepareStatement(SELECT_BY_ID)) {
 
             ps.setInt(1, id);
             ResultSet rs = ps.executeQuery();
 
-            if (rs.next()) return mapEstacion(rs);
+            if (rs.next()) return traza.fila(mapEstacion(rs));
 
         } catch (SQLException e) {
             e.printStackTrace();
@@ -115,14 +161,16 @@ public class EstacionDAO {
      * @return true si la inserción fue exitosa, false en caso contrario.
      */
     public boolean insert(Estacion e) {
-        try (PreparedStatement ps = conn.prepareStatement(INSERT)) {
+        try (Traza traza = Traza.operacionDAO();
+             Connection conn = MapaShards.conexionCiudad(e.getCiudad());
+             PreparedStatement ps = conn.prepareStatement(INSERT)) {
 
             ps.setString(1, e.getNombreEstacion());
             ps.setString(2, e.getDireccion());
             ps.setInt(3, e.getCapacidad());
             ps.setString(4, e.getCiudad());
 
-            return ps.executeUpdate() > 0;
+            return traza.filas(ps.executeUpdate()) > 0;
 
         } catch (SQLException ex) {
             ex.printStackTrace();
@@ -132,19 +180,35 @@ public class EstacionDAO {
 
     /**
      * Actualiza los datos de una estación existente.
+     * No se puede cambiar a una ciudad de otro shard: sus vehículos y reservas
+     * se quedarían en el shard de antes (para eso está RebalanceoShards).
      * @param e El objeto Estacion con los datos modificados.
      * @return true si la actualización fue exitosa, false en caso contrario.
      */
     public boolean update(Estacion e) {
-        try (PreparedStatement ps = conn.prepareStatement(UPDATE)) {
+        try (Traza traza = Traza.operacionDAO()) {
+            String shard = MapaShards.shardDeEstacion(e.getIdEstacion());
+            if (!shard.equals(MapaShards.shardDeCiudad(e.getCiudad()))) {
+                System.err.println("❌ La estación " + e.getIdEstacion() + " no puede pasar a " + e.getCiudad()
+                        + ": esa ciudad está en otro shard.");
+                return false;
+            }
 
-            ps.setString(1, e.getNombreEstacion());
-            ps.setString(2, e.getDireccion());
-            ps.setInt(3, e.getCapacidad());
-            ps.setString(4, e.getCiudad());
-            ps.setInt(5, e.getIdEstacion());
+            try (Connection conn = MapaShards.getConnection(shard);
+                 PreparedStatement ps = conn.prepareStatement(UPDATE)) {
+
+                ps.setString(1, e.getNombreEstacion());
+                ps.setString(2, e.getDireccion());
+                ps.setInt(3, e.getCapacidad());
+                ps.setString(4, e.getCiudad());
+                ps.setInt(5, e.getIdEstacion());
 
-            return ps.executeUpdate() > 0;
+                if (traza.filas(ps.executeUpdate()) == 0) return false;
+
+                // Los vehículos en caché llevan copia de los datos de su estación
+                VehiculoCache.getInstancia().invalidar();
+                return true;
+            }
 
         } catch (SQLException ex) {
             ex.printStackTrace();
@@ -158,11 +222,13 @@ public class EstacionDAO {
      * @return true si la eliminación fue exitosa, false en caso contrario.
      */
     public boolean delete(int id) {
-        try (PreparedStatement ps = conn.prepareStatement(DELETE)) {
+        try (Traza traza = Traza.operacionDAO();
+             Connection conn = MapaShards.conexionEstacion(id);
+             PreparedStatement ps = conn.prepareStatement(DELETE)) {
 
             ps.setInt(1, id);
 
-            return ps.executeUpdate() > 0;
+            return traza.filas(ps.executeUpdate()) > 0;
 
         } catch (SQLException ex) {
             ex.printStackTrace();
@@ -180,12 +246,15 @@ public class EstacionDAO {
      * @param idEstacion El ID de la estación a consultar.
      */
     public void mostrarEstacionConCantidadVehiculos(int idEstacion) {
-        try (PreparedStatement ps = conn.prepareStatement(SELECT_ESTACION_CON_VEHICULOS)) {
+        try (Traza traza = Traza.operacionDAO();
+             Connection conn = MapaShards.conexionEstacion(idEstacion);
+             PreparedStatement ps = conn.prepareStatement(SELECT_ESTACION_CON_VEHICULOS)) {
 
             ps.setInt(1, idEstacion);
             ResultSet rs = ps.executeQuery();
 
             if (rs.next()) {
+                traza.filas(1);
                 System.out.println("Estación: " + rs.getString("nombre_estacion"));
                 System.out.println("Vehículos en esta estación: " + rs.getInt("totalVehiculos"));
             } else {
@@ -0,0 +1,251 @@
+package com.uber.dao;
+
+import com.uber.database.ConnectionBD;
+import com.uber.enums.EstadoReserva;
+import com.uber.enums.ResultadoLiquidacion;
+import com.uber.model.Reserva;
+
+import java.sql.SQLException;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.DelayQueue;
+import java.util.concurrent.Delayed;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/**
+ * Tarea en segundo plano que finaliza las reservas ACTIVAS cuyo fin ya ha pasado.
+ *
+ * Las reservas pendientes esperan en una DelayQueue ordenada por su hora de fin,
+ * así cada revisión solo saca las que ya han vencido, sin consultar la tabla.
+ * Las vencidas se cierran por lotes con {@link ReservaDAO#expirarVencidas(List)},
+ * que usa {@link LiquidacionReservas}: una transacción por lote, no una por reserva.
+ *
+ * No hace falta quitar de la cola las reservas canceladas o pagadas a mano:
+ * al vencer, la BD ya no las tiene ACTIVAS y simplemente se ignoran.
+ *
+ * Si una reserva no se puede cobrar (sin saldo o por un error) vuelve a la cola
+ * con una espera que se dobla en cada intento. Agotados los intentos
+ * (expirador.maxIntentos) se cierra igualmente y se cobra dejando el saldo en
+ * negativo ({@link LiquidacionReservas#liquidarConDeuda(List)}), para que el
+ * vehículo no se quede ocupado para siempre; si ni así se puede, se avisa una
+ * sola vez para revisarla a mano y sale de la cola.
+ *
+ * Cada cuánto se revisa y el tamaño de los lotes se configuran en db.properties
+ * (expirador.intervaloMs y expirador.lote).
+ */
+public final class ExpiradorReservas {
+
+    private static final ExpiradorReservas INSTANCIA = new ExpiradorReservas();
+
+    // Espera máxima entre dos intentos de cobrar la misma reserva
+    private static final long MAX_ESPERA_REINTENTO_MS = 60 * 60 * 1000L;
+
+    /**
+     * Reserva en la cola: vence cuando llega su hora de fin (o la del siguiente intento).
+     *
+     * @param intentos veces que ya se ha intentado cobrar sin conseguirlo
+     */
+    private record Vencimiento(int idReserva, long venceEn, int intentos) implements Delayed {
+
+        @Override
+        public long getDelay(TimeUnit unidad) {
+            return unidad.convert(venceEn - System.currentTimeMillis(), TimeUnit.MILLISECONDS);
+        }
+
+        @Override
+        public int compareTo(Delayed otro) {
+            return Long.compare(venceEn, ((Vencimiento) otro).venceEn);
+        }
+    }
+
+    private final DelayQueue<Vencimiento> cola = new DelayQueue<>();
+    private final ReservaDAO dao = new ReservaDAO();
+
+    private ScheduledExecutorService planificador;
+
+    // Solo lo toca el hilo del planificador
+    private boolean cargada = false;
+
+    private ExpiradorReservas() {}
+
+    /** @return el expirador compartido */
+    public static ExpiradorReservas getInstancia() {
+        return INSTANCIA;
+    }
+
+    /**
+     * Arranca la tarea. La primera revisión carga las reservas activas de la BD.
+     * Si ya estaba en marcha no hace nada.
+     */
+    public synchronized void iniciar() {
+        if (planificador != null) return;
+
+        long intervalo = ConnectionBD.getEntero("expirador.intervaloMs", 30_000);
+
+        planificador = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "expirador-reservas");
+            t.setDaemon(true);
+            return t;
+        });
+        planificador.scheduleWithFixedDelay(this::revisar, 0, intervalo, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Para la tarea esperando a que termine el lote que esté en curso.
+     */
+    public synchronized void detener() {
+        if (planificador == null) return;
+
+        planificador.shutdown();
+        try {
+            if (!planificador.awaitTermination(10, TimeUnit.SECONDS)) {
+                System.err.println("⚠️ El expirador de reservas no terminó a tiempo.");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        planificador = null;
+    }
+
+    /**
+     * Añade a la cola una reserva recién creada.
+     * Las que no tienen fin o no están activas no vencen nunca.
+     *
+     * @param r reserva ya guardada en la BD
+     */
+    void programar(Reserva r) {
+        if (r.getEstado() != EstadoReserva.ACTIVA || r.getFechaHoraFin() == null) return;
+        cola.add(new Vencimiento(r.getIdReserva(), milisegundos(r.getFechaHoraFin()), 0));
+    }
+
+    /**
+     * Una pasada: saca de la cola las reservas vencidas y las finaliza por lotes.
+     * Nunca lanza excepciones; si una falla, el planificador cancelaría las siguientes.
+     */
+    private void revisar() {
+        try {
+            if (!cargada) cargada = cargar();
+
+            int lote = Math.max(1, ConnectionBD.getEntero("expirador.lote", 500));
+            List<Vencimiento> vencidos = new ArrayList<>(lote);
+            List<Vencimiento> reintentar = new ArrayList<>();
+            List<Vencimiento> agotados = new ArrayList<>();
+            int finalizadas = 0;
+
+            while (cola.drainTo(vencidos, lote) > 0) {
+                List<Integer> ids = new ArrayList<>(vencidos.size());
+                for (Vencimiento v : vencidos) ids.add(v.idReserva());
+
+                try {
+                    Map<Integer, ResultadoLiquidacion> resultados = dao.expirarVencidas(ids, false);
+                    for (ResultadoLiquidacion r : resultados.values()) {
+                        if (r == ResultadoLiquidacion.LIQUIDADA) finalizadas++;
+                    }
+                    for (Vencimiento v : vencidos) {
+                        // Sin saldo se reintenta también: puede que el usuario recargue mientras tanto
+                        ResultadoLiquidacion r = resultados.get(v.idReserva());
+                        if (r == ResultadoLiquidacion.ERROR || r == ResultadoLiquidacion.SIN_SALDO) {
+                            fallido(v, reintentar, agotados);
+                        }
+                    }
+                } catch (SQLException e) {
+                    System.err.println("❌ Error leyendo reservas vencidas: " + e.getMessage());
+                    for (Vencimiento v : vencidos) fallido(v, reintentar, agotados);
+                    break;
+                }
+                vencidos.clear();
+            }
+
+            // Las que no se pudieron cobrar vuelven a la cola con su espera; las agotadas se cierran con deuda
+            cola.addAll(reintentar);
+            finalizadas += cerrarConDeuda(agotados);
+
+            if (finalizadas > 0) {
+                System.out.println("⏰ Reservas vencidas finalizadas: " + finalizadas);
+            }
+
+        } catch (RuntimeException e) {
+            e.printStackTrace();
+        }
+    }
+
+    /**
+     * Apunta un intento fallido: la reserva vuelve a la cola más tarde o, si ya
+     * no le quedan intentos, pasa a la lista de las que se cierran con deuda.
+     */
+    private void fallido(Vencimiento v, List<Vencimiento> reintentar, List<Vencimiento> agotados) {
+        int intentos = v.intentos() + 1;
+        if (intentos >= Math.max(1, ConnectionBD.getEntero("expirador.maxIntentos", 5))) {
+            agotados.add(v);
+            return;
+        }
+
+        long intervalo = Math.max(1, ConnectionBD.getEntero("expirador.intervaloMs", 30_000));
+        long espera = Math.min(intervalo << Math.min(intentos, 20), MAX_ESPERA_REINTENTO_MS);
+        reintentar.add(new Vencimiento(v.idReserva(), System.currentTimeMillis() + espera, intentos));
+    }
+
+    /**
+     * Cierra las reservas que han agotado los intentos cobrando aunque el saldo
+     * quede negativo. Las que ni así se pueden cerrar se avisan y salen de la cola.
+     *
+     * @return reservas cerradas
+     */
+    private int cerrarConDeuda(List<Vencimiento> agotados) {
+        if (agotados.isEmpty()) return 0;
+
+        List<Integer> ids = new ArrayList<>(agotados.size());
+        for (Vencimiento v : agotados) ids.add(v.idReserva());
+
+        Map<Integer, ResultadoLiquidacion> resultados = Map.of();
+        boolean leidas = true;
+        try {
+            resultados = dao.expirarVencidas(ids, true);
+        } catch (SQLException e) {
+            leidas = false;
+        }
+
+        int cerradas = 0;
+        List<Integer> sinCerrar = new ArrayList<>();
+        for (int id : ids) {
+            ResultadoLiquidacion r = resultados.get(id);
+            if (r == ResultadoLiquidacion.LIQUIDADA) cerradas++;
+            // NO_ACTIVA o ausente de los resultados: ya la ha cerrado otro, no hay nada que hacer
+            else if (r == ResultadoLiquidacion.ERROR || !leidas) sinCerrar.add(id);
+        }
+
+        if (cerradas > 0) {
+            System.out.println("💸 Reservas vencidas cerradas sin saldo suficiente (el usuario queda en negativo): " + cerradas);
+        }
+        if (!sinCerrar.isEmpty()) {
+            System.err.println("❌ Reservas vencidas que no se han podido cerrar tras varios intentos (revisar a mano): " + sinCerrar);
+        }
+        return cerradas;
+    }
+
+    /**
+     * Mete en la cola todas las reservas activas con fecha de fin.
+     *
+     * @return true si se pudieron leer
+     */
+    private boolean cargar() {
+        try (Stream<Reserva> activas = dao.streamActivas()) {
+            activas.forEach(this::programar);
+            return true;
+
+        } catch (SQLException | IllegalStateException e) {
+            System.err.println("❌ No se pudieron cargar las reservas activas: " + e.getMessage());
+            return false;
+        }
+    }
+
+    private static long milisegundos(LocalDateTime fecha) {
+        return fecha.atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+    }
+}
@@ -0,0 +1,79 @@
+package com.uber.dao;
+
+/**
+ * Condición simple que se puede pasar a los métodos page(...) de los DAO.
+ * El campo es el nombre de la columna (por ejemplo "estado_vehiculo");
+ * cada DAO decide qué campos admite y rechaza el resto.
+ *
+ * Los enums se comparan por su nombre, igual que se guardan en la BD.
+ */
+public final class Filtro {
+
+    /** Operadores permitidos. */
+    enum Operador {
+        IGUAL("="),
+        DISTINTO("<>"),
+        MAYOR_O_IGUAL(">="),
+        MENOR_O_IGUAL("<="),
+        CONTIENE("LIKE");
+
+        private final String sql;
+
+        Operador(String sql) { this.sql = sql; }
+
+        String getSql() { return sql; }
+    }
+
+    private final String campo;
+    private final Operador operador;
+    private final Object valor;
+
+    private Filtro(String campo, Operador operador, Object valor) {
+        this.campo = campo;
+        this.operador = operador;
+        this.valor = valor;
+    }
+
+    /** campo = valor */
+    public static Filtro igual(String campo, Object valor) {
+        return new Filtro(campo, Operador.IGUAL, valor);
+    }
+
+    /** campo distinto de valor */
+    public static Filtro distinto(String campo, Object valor) {
+        return new Filtro(campo, Operador.DISTINTO, valor);
+    }
+
+    /** campo mayor o igual que valor */
+    public static Filtro mayorOIgual(String campo, Object valor) {
+        return new Filtro(campo, Operador.MAYOR_O_IGUAL, valor);
+    }
+
+    /** campo menor o igual que valor */
+    public static Filtro menorOIgual(String campo, Object valor) {
+        return new Filtro(campo, Operador.MENOR_O_IGUAL, valor);
+    }
+
+    /** El texto del campo contiene el valor */
+    public static Filtro contiene(String campo, String valor) {
+        return new Filtro(campo, Operador.CONTIENE, valor);
+    }
+
+    String getCampo() { return campo; }
+
+    Operador getOperador() { return operador; }
+
+    /**
+     * Valor listo para pasar al PreparedStatement.
+     */
+    Object getValorSql() {
+        if (valor instanceof Enum<?> e) return e.name();
+        if (operador == Operador.CONTIENE) return "%" + valor + "%";
+        return valor;
+    }
+
+    @Override
+    public String toString() {
+        return campo + " " + operador.getSql() + " " + valor;
+    }
+}
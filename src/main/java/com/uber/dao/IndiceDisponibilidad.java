@@ -0,0 +1,181 @@
+package com.uber.dao;
+
+import com.uber.enums.EstadoReserva;
+import com.uber.model.Reserva;
+import com.uber.utils.ArbolIntervalos;
+
+import java.sql.SQLException;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Stream;
+
+/**
+ * Índice en memoria de las franjas ocupadas por las reservas ACTIVAS.
+ *
+ * Cada vehículo tiene un {@link ArbolIntervalos} con sus reservas, así que
+ * saber si está libre entre dos fechas cuesta O(log n) sin consultar la tabla
+ * Reserva. Se carga una vez desde la BD (al arrancar la aplicación) y
+ * {@link ReservaDAO} lo mantiene al día al crear, cancelar o finalizar reservas.
+ *
+ * Las franjas son semiabiertas [inicio, fin): una reserva que termina a las
+ * 10:00 no choca con otra que empieza a las 10:00. Una reserva sin fin ocupa
+ * el vehículo indefinidamente.
+ */
+public final class IndiceDisponibilidad {
+
+    private static final IndiceDisponibilidad INSTANCIA = new IndiceDisponibilidad();
+
+    // Árbol de franjas por vehículo
+    private final Map<Integer, ArbolIntervalos> porVehiculo = new HashMap<>();
+
+    // Datos de cada reserva indexada, para poder quitarla solo con su id
+    private final Map<Integer, Franja> porReserva = new HashMap<>();
+
+    private boolean cargado = false;
+
+    // Cambios que llegan mientras se está cargando; se aplican al terminar la carga
+    private List<Runnable> pendientes = null;
+
+    // Solo puede haber una carga a la vez (comparten la lista de pendientes)
+    private final Object carga = new Object();
+
+    private record Franja(int idVehiculo, long inicio) {}
+
+    private IndiceDisponibilidad() {}
+
+    /** @return el índice compartido */
+    public static IndiceDisponibilidad getInstancia() {
+        return INSTANCIA;
+    }
+
+    /**
+     * Carga las reservas ACTIVAS de la BD, sustituyendo lo que hubiera.
+     * Se recorren con cursor, sin traer la tabla entera a memoria.
+     *
+     * @throws SQLException si falla la consulta
+     */
+    public void cargar() throws SQLException {
+        synchronized (carga) {
+            cargarBloqueado();
+        }
+    }
+
+    private void cargarBloqueado() throws SQLException {
+        Map<Integer, ArbolIntervalos> arboles = new HashMap<>();
+        Map<Integer, Franja> reservas = new HashMap<>();
+
+        synchronized (this) {
+            pendientes = new ArrayList<>();
+        }
+
+        try (Stream<Reserva> activas = new ReservaDAO().streamActivas()) {
+            activas.forEach(r -> anadir(arboles, reservas, r.getIdReserva(), r.getVehiculo().getIdVehiculo(),
+                    r.getFechaHoraInicio(), r.getFechaHoraFin()));
+
+        } catch (SQLException | RuntimeException e) {
+            synchronized (this) {
+                pendientes = null;
+            }
+            throw e;
+        }
+
+        synchronized (this) {
+            porVehiculo.clear();
+            porVehiculo.putAll(arboles);
+            porReserva.clear();
+            porReserva.putAll(reservas);
+
+            // Lo que cambió durante la lectura puede no estar en ella
+            pendientes.forEach(Runnable::run);
+            pendientes = null;
+            cargado = true;
+        }
+        System.out.println("📅 Índice de disponibilidad cargado: " + reservas.size() + " reservas activas.");
+    }
+
+    /**
+     * Indica si un vehículo no tiene ninguna reserva activa que se solape con [desde, hasta).
+     *
+     * @param idVehiculo vehículo
+     * @param desde inicio de la franja
+     * @param hasta fin de la franja (null = sin fin)
+     * @return true si está libre en toda la franja
+     * @throws SQLException si el índice aún no estaba cargado y falla la carga
+     */
+    public boolean estaLibre(int idVehiculo, LocalDateTime desde, LocalDateTime hasta) throws SQLException {
+        asegurarCargado();
+        synchronized (this) {
+            ArbolIntervalos arbol = porVehiculo.get(idVehiculo);
+            return arbol == null || !arbol.haySolape(segundos(desde), fin(hasta));
+        }
+    }
+
+    // ================================================================
+    //   ESCRITURAS (las llama ReservaDAO después de hacer commit)
+    // ================================================================
+
+    /**
+     * Añade una reserva activa recién creada.
+     */
+    synchronized void anadir(Reserva r) {
+        if (r.getEstado() != EstadoReserva.ACTIVA) return;
+
+        Runnable cambio = () -> anadir(porVehiculo, porReserva, r.getIdReserva(), r.getVehiculo().getIdVehiculo(),
+                r.getFechaHoraInicio(), r.getFechaHoraFin());
+        if (pendientes != null) pendientes.add(cambio);
+        if (cargado) cambio.run();
+    }
+
+    /**
+     * Quita una reserva que ha dejado de estar activa (cancelada o finalizada).
+     */
+    synchronized void quitar(int idReserva) {
+        if (pendientes != null) pendientes.add(() -> quitarDeArbol(idReserva));
+        quitarDeArbol(idReserva);
+    }
+
+    private void quitarDeArbol(int idReserva) {
+        Franja f = porReserva.remove(idReserva);
+        if (f == null) return;
+
+        ArbolIntervalos arbol = porVehiculo.get(f.idVehiculo());
+        if (arbol != null) {
+            arbol.eliminar(f.inicio(), idReserva);
+            if (arbol.estaVacio()) porVehiculo.remove(f.idVehiculo());
+        }
+    }
+
+    private static void anadir(Map<Integer, ArbolIntervalos> arboles, Map<Integer, Franja> reservas,
+                               int idReserva, int idVehiculo, LocalDateTime inicio, LocalDateTime fin) {
+        if (inicio == null) return;
+
+        long a = segundos(inicio);
+        arboles.computeIfAbsent(idVehiculo, k -> new ArbolIntervalos()).insertar(a, fin(fin), idReserva);
+        reservas.put(idReserva, new Franja(idVehiculo, a));
+    }
+
+    private void asegurarCargado() throws SQLException {
+        synchronized (this) {
+            if (cargado) return;
+        }
+        // Si varios hilos llegan a la vez, carga el primero y los demás esperan a que termine
+        synchronized (carga) {
+            synchronized (this) {
+                if (cargado) return;
+            }
+            cargarBloqueado();
+        }
+    }
+
+    private static long segundos(LocalDateTime fecha) {
+        return fecha.toEpochSecond(ZoneOffset.UTC);
+    }
+
+    private static long fin(LocalDateTime fecha) {
+        return fecha == null ? Long.MAX_VALUE : segundos(fecha);
+    }
+}
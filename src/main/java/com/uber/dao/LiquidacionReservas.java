@@ -0,0 +1,360 @@
+package com.uber.dao;
+
+import com.uber.database.ConnectionBD;
+import com.uber.database.MapaShards;
+import com.uber.enums.EstadoVehiculo;
+import com.uber.enums.ResultadoLiquidacion;
+import com.uber.enums.TipoMovimiento;
+import com.uber.utils.Traza;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Cierra y cobra muchas reservas de una vez.
+ *
+ * Liquidar una reserva es cerrarla, liberar el vehículo y cobrar el viaje
+ * (un apunte COBRO_VIAJE en {@link MovimientoDAO}). Aquí se agrupan las reservas
+ * en lotes (liquidacion.lote en db.properties) y cada lote va en una transacción
+ * con executeBatch, en lugar de varias sentencias y un commit por reserva.
+ *
+ * Cada lote bloquea primero las reservas que siguen ACTIVAS, cobra solo esas y
+ * cierra solo las que ha podido cobrar. Así una reserva no se cobra dos veces
+ * aunque llegue repetida o alguien la haya pagado a la vez, y a quien no le llega
+ * el saldo se le deja la reserva abierta (SIN_SALDO) sin tocar al resto del lote.
+ * Solo si el lote falla por un error de SQL se deshace y sus reservas se repiten
+ * una a una, de modo que el problema solo afecta a la reserva que lo provoca.
+ *
+ * Con la flota repartida en shards ({@link MapaShards}) las reservas se agrupan
+ * por el shard de su vehículo. Cada lote abre entonces dos transacciones: la del
+ * shard (cerrar reservas y liberar vehículos) y la del cobro en la BD principal.
+ * Se confirma primero el cobro; si después falla el commit del shard, esas
+ * reservas quedan cobradas pero abiertas. El siguiente intento lo detecta por su
+ * COBRO_VIAJE y las cierra sin volver a cobrarlas, así que nunca queda un viaje
+ * cerrado sin cobrar.
+ *
+ * {@link #liquidarConDeuda(List)} cierra y cobra aunque no llegue el saldo:
+ * lo usa {@link ExpiradorReservas} con las reservas que no ha podido cobrar
+ * tras varios intentos, para no dejar el vehículo cogido para siempre.
+ */
+public class LiquidacionReservas {
+
+    private static final String CLOSE_RESERVA_SQL = "UPDATE Reserva SET estado = 'FINALIZADA', fecha_hora_fin = ?, coste = ? WHERE id_reserva = ? AND estado = 'ACTIVA'";
+    private static final String LOCK_ACTIVAS_SQL = "SELECT id_reserva FROM Reserva WHERE estado = 'ACTIVA' AND id_reserva IN (%s) FOR UPDATE";
+    private static final String SELECT_COBRADAS_SQL = "SELECT id_reserva FROM Movimiento WHERE tipo = 'COBRO_VIAJE' AND id_reserva IN (%s)";
+
+    /**
+     * Datos necesarios para liquidar una reserva.
+     *
+     * @param idReserva  reserva a cerrar
+     * @param idVehiculo vehículo que se libera
+     * @param idUsuario  usuario al que se cobra
+     * @param coste      importe a cobrar
+     * @param fin        hora de fin que se guarda en la reserva
+     */
+    public record Liquidacion(int idReserva, int idVehiculo, int idUsuario, double coste, LocalDateTime fin) {}
+
+    private final int lote;
+    private final MovimientoDAO movimientos = new MovimientoDAO();
+
+    /**
+     * Crea el proceso con el tamaño de lote de db.properties (liquidacion.lote).
+     */
+    public LiquidacionReservas() {
+        this(ConnectionBD.getEntero("liquidacion.lote", 500));
+    }
+
+    /**
+     * @param lote reservas que se liquidan en cada transacción
+     */
+    public LiquidacionReservas(int lote) {
+        this.lote = Math.max(1, lote);
+    }
+
+    /**
+     * Liquida todas las reservas indicadas.
+     *
+     * @param liquidaciones reservas a cerrar y cobrar
+     * @return resultado de cada reserva, por id y en el orden recibido
+     */
+    public Map<Integer, ResultadoLiquidacion> liquidar(List<Liquidacion> liquidaciones) {
+        return liquidar(liquidaciones, false);
+    }
+
+    /**
+     * Liquida las reservas cobrando aunque el saldo quede negativo.
+     * El cobro queda en el historial como un COBRO_VIAJE normal y el saldo
+     * negativo es la deuda, que se salda con la siguiente recarga.
+     *
+     * @param liquidaciones reservas a cerrar y cobrar
+     * @return resultado de cada reserva (nunca SIN_SALDO), por id y en el orden recibido
+     */
+    public Map<Integer, ResultadoLiquidacion> liquidarConDeuda(List<Liquidacion> liquidaciones) {
+        return liquidar(liquidaciones, true);
+    }
+
+    private Map<Integer, ResultadoLiquidacion> liquidar(List<Liquidacion> liquidaciones, boolean conDeuda) {
+        try (Traza traza = Traza.operacionDAO()) {
+            Map<Integer, ResultadoLiquidacion> resultados = liquidarTodas(liquidaciones, conDeuda);
+            traza.filas(resultados.values().stream().filter(r -> r == ResultadoLiquidacion.LIQUIDADA).count());
+            return resultados;
+        }
+    }
+
+    private Map<Integer, ResultadoLiquidacion> liquidarTodas(List<Liquidacion> liquidaciones, boolean conDeuda) {
+        Map<Integer, ResultadoLiquidacion> resultados = new LinkedHashMap<>();
+
+        porShard(liquidaciones, resultados).forEach((shard, grupo) -> {
+            for (int i = 0; i < grupo.size(); i += lote) {
+                List<Liquidacion> bloque = grupo.subList(i, Math.min(i + lote, grupo.size()));
+                if (bloque.size() == 1) {
+                    anotar(resultados, bloque.get(0).idReserva(), liquidarUna(bloque.get(0), shard, conDeuda));
+                    continue;
+                }
+
+                try {
+                    liquidarBloque(bloque, shard, conDeuda).forEach((id, r) -> anotar(resultados, id, r));
+                } catch (SQLException | RuntimeException e) {
+                    System.err.println("⚠️ Falló un lote de " + bloque.size()
+                            + " liquidaciones, se repiten una a una: " + e.getMessage());
+                    for (Liquidacion l : bloque) {
+                        anotar(resultados, l.idReserva(), liquidarUna(l, shard, conDeuda));
+                    }
+                }
+            }
+        });
+
+        return enOrden(liquidaciones, resultados);
+    }
+
+    /**
+     * Resultados en el orden recibido, aunque se hayan liquidado agrupados por shard.
+     */
+    private static Map<Integer, ResultadoLiquidacion> enOrden(List<Liquidacion> liquidaciones,
+                                                              Map<Integer, ResultadoLiquidacion> resultados) {
+        Map<Integer, ResultadoLiquidacion> enOrden = new LinkedHashMap<>();
+        for (Liquidacion l : liquidaciones) enOrden.put(l.idReserva(), resultados.get(l.idReserva()));
+        return enOrden;
+    }
+
+    /**
+     * Agrupa las reservas por el shard de su vehículo (todas en
+     * {@link MapaShards#PRINCIPAL} si no hay shards). Las que no se pueden
+     * ubicar quedan como ERROR.
+     */
+    private static Map<String, List<Liquidacion>> porShard(List<Liquidacion> liquidaciones,
+                                                          Map<Integer, ResultadoLiquidacion> resultados) {
+        if (!MapaShards.activos()) return Map.of(MapaShards.PRINCIPAL, liquidaciones);
+
+        Map<String, List<Liquidacion>> grupos = new LinkedHashMap<>();
+        for (Liquidacion l : liquidaciones) {
+            try {
+                grupos.computeIfAbsent(MapaShards.shardDeVehiculo(l.idVehiculo()), s -> new ArrayList<>()).add(l);
+            } catch (SQLException e) {
+                System.err.println("❌ No se encuentra el shard de la reserva " + l.idReserva() + ": " + e.getMessage());
+                anotar(resultados, l.idReserva(), ResultadoLiquidacion.ERROR);
+            }
+        }
+        return grupos;
+    }
+
+    /**
+     * Liquida un lote en una transacción. Se bloquean las reservas que siguen
+     * activas, se cobran en un lote y solo las cobradas se cierran y liberan su
+     * vehículo. A quien no le llega el saldo se le deja la reserva como estaba.
+     *
+     * @param conDeuda true para cobrar aunque el saldo quede negativo
+     * @throws SQLException si falla alguna sentencia; entonces no se ha guardado nada
+     */
+    private Map<Integer, ResultadoLiquidacion> liquidarBloque(List<Liquidacion> bloque, String shard,
+                                                              boolean conDeuda) throws SQLException {
+        Map<Integer, ResultadoLiquidacion> resultados = new LinkedHashMap<>();
+        List<Liquidacion> cerradas = new ArrayList<>();
+        Set<Integer> liberados = new HashSet<>();
+
+        try (Connection saldo = ConnectionBD.getConnection();
+             Connection enShard = MapaShards.PRINCIPAL.equals(shard) ? null : MapaShards.getConnection(shard)) {
+            Connection flota = enShard != null ? enShard : saldo;
+            empezar(flota, saldo);
+
+            try {
+                Set<Integer> activas = buscar(flota, LOCK_ACTIVAS_SQL, bloque);
+                // Con shards, un intento anterior pudo cobrar sin llegar a cerrar en el shard
+                Set<Integer> cobradas = saldo != flota ? buscar(saldo, SELECT_COBRADAS_SQL, bloque) : Set.of();
+
+                List<Liquidacion> porCobrar = new ArrayList<>();
+                Set<Integer> vistas = new HashSet<>();
+                for (Liquidacion l : bloque) {
+                    if (!activas.contains(l.idReserva()) || !vistas.add(l.idReserva())) {
+                        anotar(resultados, l.idReserva(), ResultadoLiquidacion.NO_ACTIVA);
+                    } else if (cobradas.contains(l.idReserva())) {
+                        cerradas.add(l);
+                    } else {
+                        porCobrar.add(l);
+                    }
+                }
+
+                List<MovimientoDAO.Apunte> cobros = new ArrayList<>(porCobrar.size());
+                for (Liquidacion l : porCobrar) cobros.add(cobro(l));
+                Set<Integer> sinSaldo = new HashSet<>();
+                for (MovimientoDAO.Apunte a : movimientos.registrarLote(saldo, cobros, conDeuda)) {
+                    sinSaldo.add(a.idReserva());
+                }
+                for (Liquidacion l : porCobrar) {
+                    if (sinSaldo.contains(l.idReserva())) {
+                        anotar(resultados, l.idReserva(), ResultadoLiquidacion.SIN_SALDO);
+                    } else {
+                        cerradas.add(l);
+                    }
+                }
+
+                cerrar(flota, cerradas, liberados);
+                confirmar(flota, saldo, cerradas);
+
+            } catch (SQLException | RuntimeException e) {
+                deshacer(flota, saldo);
+                throw e;
+
+            } finally {
+                terminar(flota, saldo);
+            }
+        }
+
+        for (Liquidacion l : cerradas) {
+            anotar(resultados, l.idReserva(), ResultadoLiquidacion.LIQUIDADA);
+            actualizarMemoria(l, liberados);
+        }
+        return resultados;
+    }
+
+    /**
+     * Liquida una sola reserva en su propia transacción (plan B cuando falla un lote).
+     *
+     * @param conDeuda true para cobrar aunque el saldo quede negativo
+     */
+    private ResultadoLiquidacion liquidarUna(Liquidacion l, String shard, boolean conDeuda) {
+        try {
+            return liquidarBloque(List.of(l), shard, conDeuda).get(l.idReserva());
+        } catch (SQLException | RuntimeException e) {
+            System.err.println("❌ Error liquidando la reserva " + l.idReserva() + ": " + e.getMessage());
+            return ResultadoLiquidacion.ERROR;
+        }
+    }
+
+    /**
+     * Ids de las reservas del lote que devuelve la consulta (con un hueco %s para la lista de ids).
+     */
+    private static Set<Integer> buscar(Connection conn, String sql, List<Liquidacion> bloque) throws SQLException {
+        Set<Integer> ids = new HashSet<>();
+        String huecos = String.join(", ", Collections.nCopies(bloque.size(), "?"));
+
+        try (PreparedStatement ps = conn.prepareStatement(String.format(sql, huecos))) {
+            for (int i = 0; i < bloque.size(); i++) ps.setInt(i + 1, bloque.get(i).idReserva());
+            try (ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) ids.add(rs.getInt(1));
+            }
+        }
+        return ids;
+    }
+
+    /**
+     * Cierra las reservas (bloqueadas y activas) y libera los vehículos que ya no usa nadie.
+     */
+    private static void cerrar(Connection flota, List<Liquidacion> cerradas, Set<Integer> liberados) throws SQLException {
+        if (cerradas.isEmpty()) return;
+
+        try (PreparedStatement psReserva = flota.prepareStatement(CLOSE_RESERVA_SQL);
+             PreparedStatement psVehiculo = flota.prepareStatement(ReservaDAO.RELEASE_VEHICULO_SQL)) {
+
+            for (Liquidacion l : cerradas) {
+                asignarCierre(psReserva, l);
+                psReserva.addBatch();
+                ReservaDAO.asignarLiberacion(psVehiculo, l.idVehiculo());
+                psVehiculo.addBatch();
+            }
+            psReserva.executeBatch();
+
+            int[] liberadas = psVehiculo.executeBatch();
+            for (int i = 0; i < liberadas.length; i++) {
+                if (liberadas[i] > 0) liberados.add(cerradas.get(i).idVehiculo());
+            }
+        }
+    }
+
+    // Sin shards flota y saldo son la misma conexión y todo va en una transacción
+
+    private static void empezar(Connection flota, Connection saldo) throws SQLException {
+        flota.setAutoCommit(false);
+        if (saldo != flota) saldo.setAutoCommit(false);
+    }
+
+    /**
+     * Confirma primero el cobro y después el shard. Si falla el shard, las
+     * reservas quedan cobradas pero abiertas: el siguiente intento las cierra
+     * sin volver a cobrarlas.
+     */
+    private static void confirmar(Connection flota, Connection saldo, List<Liquidacion> cerradas) throws SQLException {
+        if (saldo != flota) saldo.commit();
+
+        try {
+            flota.commit();
+        } catch (SQLException e) {
+            if (saldo != flota) {
+                List<Integer> ids = new ArrayList<>();
+                cerradas.forEach(l -> ids.add(l.idReserva()));
+                System.err.println("⚠️ Reservas cobradas pero sin cerrar en su shard (se cerrarán sin volver a cobrar): " + ids);
+            }
+            throw e;
+        }
+    }
+
+    private static void deshacer(Connection flota, Connection saldo) throws SQLException {
+        flota.rollback();
+        if (saldo != flota) saldo.rollback();
+    }
+
+    private static void terminar(Connection flota, Connection saldo) throws SQLException {
+        flota.setAutoCommit(true);
+        if (saldo != flota) saldo.setAutoCommit(true);
+    }
+
+    /**
+     * Guarda el resultado de una reserva. Si venía repetida, la segunda vez sale
+     * NO_ACTIVA, pero lo que cuenta es que la primera se liquidó.
+     */
+    private static void anotar(Map<Integer, ResultadoLiquidacion> resultados, int idReserva, ResultadoLiquidacion r) {
+        resultados.merge(idReserva, r, (antes, ahora) -> antes == ResultadoLiquidacion.LIQUIDADA ? antes : ahora);
+    }
+
+    private static MovimientoDAO.Apunte cobro(Liquidacion l) {
+        return new MovimientoDAO.Apunte(l.idUsuario(), TipoMovimiento.COBRO_VIAJE, -l.coste(), l.idReserva());
+    }
+
+    private static void asignarCierre(PreparedStatement ps, Liquidacion l) throws SQLException {
+        ps.setTimestamp(1, Timestamp.valueOf(l.fin() != null ? l.fin() : LocalDateTime.now()));
+        ps.setDouble(2, l.coste());
+        ps.setInt(3, l.idReserva());
+    }
+
+    /**
+     * Tras el commit: la reserva deja de ocupar su franja y, si la BD lo ha
+     * liberado (no lo usa otra reserva), el vehículo vuelve a estar libre.
+     */
+    private static void actualizarMemoria(Liquidacion l, Set<Integer> liberados) {
+        if (liberados.contains(l.idVehiculo())) {
+            VehiculoCache.getInstancia().cambiarEstado(l.idVehiculo(), EstadoVehiculo.DISPONIBLE);
+        }
+        IndiceDisponibilidad.getInstancia().quitar(l.idReserva());
+    }
+}
@@ -1,8 +1,10 @@
 package com.uber.dao;
 
 import com.uber.database.ConnectionBD;
+import com.uber.database.MapaShards;
 import com.uber.enums.TipoMantenimiento;
 import com.uber.model.Mantenimiento;
+import com.uber.utils.Traza;
 
 import java.sql.*;
 import java.util.ArrayList;
@@ -11,24 +13,19 @@ import java.util.List;
 /**
  * DAO encargado de gestionar los registros de la tabla Mantenimiento.
  * Permite realizar operaciones CRUD sobre los tipos de mantenimiento.
+ * El catálogo está en la BD principal; si hay shards ({@link MapaShards}),
+ * cada alta o cambio se copia también a ellos.
+ *
+ * Las lecturas salen de {@link CatalogoMantenimiento}, que se recarga
+ * después de cada escritura.
  */
 public class MantenimientoDAO {
 
     private static final String SELECT_ALL = "SELECT * FROM Mantenimiento";
-    private static final String SELECT_BY_ID = "SELECT * FROM Mantenimiento WHERE id_mantenimiento = ?";
     private static final String INSERT = "INSERT INTO Mantenimiento (tipo, descripcion) VALUES (?, ?)";
     private static final String UPDATE = "UPDATE Mantenimiento SET tipo = ?, descripcion = ? WHERE id_mantenimiento = ?";
     private static final String DELETE = "DELETE FROM Mantenimiento WHERE id_mantenimiento = ?";
 
-    private final Connection conn;
-
-    /**
-     * Constructor que establece la conexión con la base de datos.
-     */
-    public MantenimientoDAO() {
-        conn = ConnectionBD.getConnection();
-    }
-
     // ================================================================
     //   MÉTODOS AUXILIARES
     // ================================================================
@@ -44,12 +41,8 @@ public class MantenimientoDAO {
         Mantenimiento m = new Mantenimiento();
         m.setIdMantenimiento(rs.getInt("id_mantenimiento"));
         String tipoStr = rs.getString("tipo");
-        try {
-            m.setTipo(TipoMantenimiento.valueOf(tipoStr));
-        } catch (IllegalArgumentException e) {
-            System.out.println("⚠ Tipo de mantenimiento desconocido: " + tipoStr);
-            m.setTipo(null);
-        }
+        m.setTipo(TipoMantenimiento.desdeNombre(tipoStr));
+        if (m.getTipo() == null) System.out.println("⚠ Tipo de mantenimiento desconocido: " + tipoStr);
 
         m.setDescripcion(rs.getString("descripcion"));
 
@@ -61,48 +54,57 @@ public class MantenimientoDAO {
     // ================================================================
 
     /**
-     * Obtiene todos los tipos de mantenimiento almacenados en la BD.
+     * Obtiene todos los tipos de mantenimiento.
+     * Se leen de {@link CatalogoMantenimiento}; solo se consulta la BD si todavía no estaba cargado.
      *
-     * @return Lista de objetos Mantenimiento.
+     * @return Lista de objetos Mantenimiento, ordenados por ID.
      */
     public List<Mantenimiento> getAll() {
+        try (Traza traza = Traza.operacionDAO()) {
+            return traza.filas(CatalogoMantenimiento.getInstancia().getAll());
+        } catch (SQLException e) {
+            System.out.println("Error al obtener mantenimientos: " + e.getMessage());
+            return new ArrayList<>();
+        }
+    }
+
+    /**
+     * Lee todos los mantenimientos de la BD sin pasar por el catálogo.
+     * Es la consulta con la que se carga {@link CatalogoMantenimiento}; va a
+     * la BD principal y no a la réplica, que podría no tener aún un cambio
+     * recién escrito y dejar el catálogo desfasado hasta la siguiente escritura.
+     *
+     * @return Lista de objetos Mantenimiento.
+     * @throws SQLException si falla la consulta
+     */
+    List<Mantenimiento> cargarDesdeBD() throws SQLException {
         List<Mantenimiento> lista = new ArrayList<>();
 
-        try (Statement st = conn.createStatement();
+        try (Connection conn = ConnectionBD.getConnection();
+             Statement st = conn.createStatement();
              ResultSet rs = st.executeQuery(SELECT_ALL)) {
 
             while (rs.next()) {
                 lista.add(mapMantenimiento(rs));
             }
-
-        } catch (SQLException e) {
-            System.out.println("Error al obtener mantenimientos: " + e.getMessage());
         }
 
         return lista;
     }
 
     /**
-     * Busca un registro de mantenimiento por su ID.
+     * Busca un registro de mantenimiento por su ID en {@link CatalogoMantenimiento}.
      *
      * @param id Identificador único del mantenimiento.
      * @return El objeto Mantenimiento correspondiente, o null si no existe.
      */
     public Mantenimiento getById(int id) {
-        try (PreparedStatement ps = conn.prepareStatement(SELECT_BY_ID)) {
-
-            ps.setInt(1, id);
-            ResultSet rs = ps.executeQuery();
-
-            if (rs.next()) {
-                return mapMantenimiento(rs);
-            }
-
+        try (Traza traza = Traza.operacionDAO()) {
+            return traza.fila(CatalogoMantenimiento.getInstancia().getById(id));
         } catch (SQLException e) {
             System.out.println("Error al buscar mantenimiento por ID: " + e.getMessage());
+            return null;
         }
-
-        return null;
     }
 
     /**
@@ -112,17 +114,22 @@ public class MantenimientoDAO {
      * @return true si se insertó correctamente, false en caso contrario.
      */
     public boolean insert(Mantenimiento m) {
-        try (PreparedStatement ps = conn.prepareStatement(INSERT)) {
+        try (Traza traza = Traza.operacionDAO();
+             Connection conn = ConnectionBD.getConnection();
+             PreparedStatement ps = conn.prepareStatement(INSERT)) {
 
             ps.setString(1, m.getTipo().name());
             ps.setString(2, m.getDescripcion());
 
-            return ps.executeUpdate() > 0;
+            if (traza.filas(ps.executeUpdate()) == 0) return false;
 
         } catch (SQLException e) {
             System.out.println("Error al insertar mantenimiento: " + e.getMessage());
             return false;
         }
+
+        actualizarCopias();
+        return true;
     }
 
     /**
@@ -132,18 +139,23 @@ public class MantenimientoDAO {
      * @return true si se actualizó correctamente, false si hubo error.
      */
     public boolean update(Mantenimiento m) {
-        try (PreparedStatement ps = conn.prepareStatement(UPDATE)) {
+        try (Traza traza = Traza.operacionDAO();
+             Connection conn = ConnectionBD.getConnection();
+             PreparedStatement ps = conn.prepareStatement(UPDATE)) {
 
             ps.setString(1, m.getTipo().name());
             ps.setString(2, m.getDescripcion());
             ps.setInt(3, m.getIdMantenimiento());
 
-            return ps.executeUpdate() > 0;
+            if (traza.filas(ps.executeUpdate()) == 0) return false;
 
         } catch (SQLException e) {
             System.out.println("Error al actualizar mantenimiento: " + e.getMessage());
             return false;
         }
+
+        actualizarCopias();
+        return true;
     }
 
     /**
@@ -153,14 +165,33 @@ public class MantenimientoDAO {
      * @return true si se eliminó correctamente, false si falló.
      */
     public boolean delete(int id) {
-        try (PreparedStatement ps = conn.prepareStatement(DELETE)) {
+        try (Traza traza = Traza.operacionDAO();
+             Connection conn = ConnectionBD.getConnection();
+             PreparedStatement ps = conn.prepareStatement(DELETE)) {
 
             ps.setInt(1, id);
-            return ps.executeUpdate() > 0;
+            if (traza.filas(ps.executeUpdate()) == 0) return false;
 
         } catch (SQLException e) {
             System.out.println("Error al eliminar mantenimiento: " + e.getMessage());
             return false;
         }
+
+        actualizarCopias();
+        return true;
+    }
+
+    /**
+     * Lleva el cambio recién escrito al catálogo en memoria y, si los hay, a los shards.
+     * Se llama con la conexión de la escritura ya devuelta al pool.
+     */
+    private void actualizarCopias() {
+        if (MapaShards.activos()) MapaShards.sincronizarMantenimientos();
+
+        try {
+            CatalogoMantenimiento.getInstancia().recargar();
+        } catch (SQLException e) {
+            System.out.println("Error al recargar el catálogo de mantenimientos: " + e.getMessage());
+        }
     }
 }
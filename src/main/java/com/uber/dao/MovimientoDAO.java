@@ -0,0 +1,334 @@
+package com.uber.dao;
+
+import com.uber.database.ConnectionBD;
+import com.uber.enums.TipoMovimiento;
+import com.uber.model.Movimiento;
+import com.uber.model.Reserva;
+import com.uber.model.Usuario;
+import com.uber.utils.Traza;
+
+import java.sql.*;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Historial de saldo de los usuarios (tabla Movimiento).
+ *
+ * Cada cambio de saldo añade un apunte y actualiza Usuario.saldo en la misma
+ * transacción, así el saldo siempre es la suma de los apuntes. El saldo se
+ * modifica con "saldo = saldo + ?" en la BD, no con un valor calculado fuera,
+ * por lo que recargas y cobros simultáneos no se pisan. Un apunte que resta
+ * solo se aplica si el saldo no queda negativo, salvo los cobros que se hacen
+ * con deuda permitida: entonces el saldo negativo es lo que el usuario debe.
+ */
+public class MovimientoDAO {
+
+    private static final String APPLY_SALDO_SQL = "UPDATE Usuario SET saldo = saldo + ? WHERE id_usuario = ? AND (? >= 0 OR saldo + ? >= 0)";
+    private static final String SELECT_SALDO = "SELECT saldo FROM Usuario WHERE id_usuario = ?";
+    private static final String SELECT_SALDOS = "SELECT id_usuario, saldo FROM Usuario WHERE id_usuario IN (%s)";
+    private static final String INSERT = "INSERT INTO Movimiento (id_usuario, tipo, importe, saldo_resultante, id_reserva, fecha_hora) VALUES (?, ?, ?, ?, ?, ?)";
+    private static final String SELECT_COBRO_RESERVA = "SELECT * FROM Movimiento WHERE id_reserva = ? AND tipo = 'COBRO_VIAJE' ORDER BY id_movimiento DESC LIMIT 1";
+    static final String SELECT_BY_USUARIO = "SELECT * FROM Movimiento WHERE id_usuario = ? AND id_movimiento < ? ORDER BY id_movimiento DESC LIMIT ?";
+
+    /**
+     * Apunte pendiente de aplicar dentro de un lote.
+     *
+     * @param idUsuario usuario
+     * @param tipo      tipo de apunte
+     * @param importe   positivo si suma saldo, negativo si resta
+     * @param idReserva reserva relacionada (puede ser null)
+     */
+    record Apunte(int idUsuario, TipoMovimiento tipo, double importe, Integer idReserva) {}
+
+    /**
+     * Convierte una fila del ResultSet en un objeto Movimiento.
+     *
+     * @param rs fila del resultado de la consulta
+     * @return apunte con los datos cargados
+     * @throws SQLException si ocurre un error al leer los datos
+     */
+    private Movimiento mapMovimiento(ResultSet rs) throws SQLException {
+        Movimiento m = new Movimiento();
+        m.setIdMovimiento(rs.getInt("id_movimiento"));
+
+        Usuario usuario = new Usuario();
+        usuario.setIdUsuario(rs.getInt("id_usuario"));
+        m.setUsuario(usuario);
+
+        m.setTipo(TipoMovimiento.valueOf(rs.getString("tipo")));
+        m.setImporte(rs.getDouble("importe"));
+        m.setSaldoResultante(rs.getDouble("saldo_resultante"));
+
+        int idReserva = rs.getInt("id_reserva");
+        if (!rs.wasNull()) {
+            Reserva reserva = new Reserva();
+            reserva.setIdReserva(idReserva);
+            m.setReserva(reserva);
+        }
+
+        m.setFechaHora(rs.getTimestamp("fecha_hora").toLocalDateTime());
+        return m;
+    }
+
+    /**
+     * Registra un apunte y actualiza el saldo en una transacción.
+     *
+     * @param idUsuario usuario
+     * @param tipo      tipo de apunte
+     * @param importe   positivo si suma saldo, negativo si resta
+     * @param idReserva reserva relacionada (puede ser null)
+     * @return el apunte guardado, con el saldo resultante, o null si no hay saldo suficiente o falla la BD
+     */
+    public Movimiento registrar(int idUsuario, TipoMovimiento tipo, double importe, Integer idReserva) {
+        try (Traza traza = Traza.operacionDAO();
+             Connection conn = ConnectionBD.getConnection()) {
+            conn.setAutoCommit(false);
+
+            try {
+                Movimiento m = registrar(conn, new Apunte(idUsuario, tipo, importe, idReserva));
+                if (m == null) {
+                    conn.rollback();
+                    return null;
+                }
+                conn.commit();
+                return traza.fila(m);
+
+            } catch (SQLException | RuntimeException e) {
+                conn.rollback();
+                throw e;
+
+            } finally {
+                conn.setAutoCommit(true);
+            }
+
+        } catch (SQLException e) {
+            e.printStackTrace();
+            return null;
+        }
+    }
+
+    /**
+     * Registra un apunte dentro de una transacción que lleva quien llama.
+     * Si devuelve null no se ha cambiado nada y quien llama decide si deshace el resto.
+     *
+     * @param conn conexión con la transacción abierta
+     * @param a    apunte a aplicar
+     * @return el apunte guardado o null si el saldo quedaría negativo
+     * @throws SQLException si falla alguna sentencia
+     */
+    Movimiento registrar(Connection conn, Apunte a) throws SQLException {
+        return registrar(conn, a, false);
+    }
+
+    /**
+     * Igual que {@link #registrar(Connection, Apunte)}, pero con permitirDeuda
+     * el apunte se aplica aunque el saldo quede negativo.
+     *
+     * @param conn          conexión con la transacción abierta
+     * @param a             apunte a aplicar
+     * @param permitirDeuda true para cobrar aunque no llegue el saldo
+     * @return el apunte guardado, o null si el saldo quedaría negativo (sin permitirDeuda) o el usuario no existe
+     * @throws SQLException si falla alguna sentencia
+     */
+    Movimiento registrar(Connection conn, Apunte a, boolean permitirDeuda) throws SQLException {
+        try (PreparedStatement psSaldo = conn.prepareStatement(APPLY_SALDO_SQL);
+             PreparedStatement psLeer = conn.prepareStatement(SELECT_SALDO);
+             PreparedStatement psInsert = conn.prepareStatement(INSERT, Statement.RETURN_GENERATED_KEYS)) {
+
+            asignarSaldo(psSaldo, a, permitirDeuda);
+            if (psSaldo.executeUpdate() == 0) return null;
+
+            // La fila del usuario está bloqueada por el UPDATE: nadie la cambia hasta el commit
+            double saldo;
+            psLeer.setInt(1, a.idUsuario());
+            try (ResultSet rs = psLeer.executeQuery()) {
+                rs.next();
+                saldo = rs.getDouble("saldo");
+            }
+
+            LocalDateTime ahora = LocalDateTime.now();
+            asignarInsert(psInsert, a, saldo, ahora);
+            psInsert.executeUpdate();
+
+            Movimiento m = new Movimiento();
+            try (ResultSet claves = psInsert.getGeneratedKeys()) {
+                if (claves.next()) m.setIdMovimiento(claves.getInt(1));
+            }
+
+            Usuario usuario = new Usuario();
+            usuario.setIdUsuario(a.idUsuario());
+            m.setUsuario(usuario);
+            m.setTipo(a.tipo());
+            m.setImporte(a.importe());
+            m.setSaldoResultante(saldo);
+            if (a.idReserva() != null) {
+                Reserva reserva = new Reserva();
+                reserva.setIdReserva(a.idReserva());
+                m.setReserva(reserva);
+            }
+            m.setFechaHora(ahora);
+            return m;
+        }
+    }
+
+    /**
+     * Registra varios apuntes con lotes de sentencias dentro de la transacción
+     * de quien llama: un lote actualiza los saldos y otro inserta los apuntes.
+     *
+     * Cada UPDATE del lote comprueba el saldo por su cuenta, así que un apunte al
+     * que no le llega el saldo no toca nada (0 filas) y el resto sigue adelante:
+     * se devuelve para que quien llama decida qué hacer con él, sin deshacer la
+     * transacción.
+     *
+     * El saldo resultante de cada apunte se calcula sin volver a consultar fila a
+     * fila: se lee el saldo final de cada usuario y se recorre la lista hacia atrás
+     * deshaciendo los importes de los apuntes aplicados.
+     *
+     * @param conn          conexión con la transacción abierta
+     * @param apuntes       apuntes en el orden en que se aplican
+     * @param permitirDeuda true para aplicarlos aunque el saldo quede negativo
+     * @return apuntes rechazados por falta de saldo o porque el usuario no existe (vacía si se aplicaron todos)
+     * @throws SQLException si falla alguna sentencia o el driver no informa de las filas actualizadas
+     */
+    List<Apunte> registrarLote(Connection conn, List<Apunte> apuntes, boolean permitirDeuda) throws SQLException {
+        if (apuntes.isEmpty()) return List.of();
+
+        Set<Integer> usuarios = new LinkedHashSet<>();
+        for (Apunte a : apuntes) usuarios.add(a.idUsuario());
+        String huecos = String.join(", ", Collections.nCopies(usuarios.size(), "?"));
+
+        try (PreparedStatement psSaldo = conn.prepareStatement(APPLY_SALDO_SQL);
+             PreparedStatement psLeer = conn.prepareStatement(String.format(SELECT_SALDOS, huecos));
+             PreparedStatement psInsert = conn.prepareStatement(INSERT)) {
+
+            int[] filas;
+            if (apuntes.size() == 1) {
+                // Con uno solo no hace falta lote y executeUpdate siempre da las filas
+                asignarSaldo(psSaldo, apuntes.get(0), permitirDeuda);
+                filas = new int[]{psSaldo.executeUpdate()};
+            } else {
+                for (Apunte a : apuntes) {
+                    asignarSaldo(psSaldo, a, permitirDeuda);
+                    psSaldo.addBatch();
+                }
+                filas = psSaldo.executeBatch();
+            }
+
+            List<Apunte> aplicados = new ArrayList<>(apuntes.size());
+            List<Apunte> rechazados = new ArrayList<>();
+            for (int j = 0; j < apuntes.size(); j++) {
+                // Sin el número de filas no se puede saber si el saldo llegaba
+                if (filas[j] == Statement.SUCCESS_NO_INFO) {
+                    throw new SQLException("El driver no informa de las filas actualizadas en el lote");
+                }
+                (filas[j] > 0 ? aplicados : rechazados).add(apuntes.get(j));
+            }
+            if (aplicados.isEmpty()) return rechazados;
+
+            Map<Integer, Double> saldos = new HashMap<>();
+            int i = 1;
+            for (int idUsuario : usuarios) psLeer.setInt(i++, idUsuario);
+            try (ResultSet rs = psLeer.executeQuery()) {
+                while (rs.next()) saldos.put(rs.getInt("id_usuario"), rs.getDouble("saldo"));
+            }
+
+            double[] resultantes = new double[aplicados.size()];
+            for (int j = aplicados.size() - 1; j >= 0; j--) {
+                Apunte a = aplicados.get(j);
+                double saldo = saldos.get(a.idUsuario());
+                resultantes[j] = saldo;
+                saldos.put(a.idUsuario(), saldo - a.importe());
+            }
+
+            LocalDateTime ahora = LocalDateTime.now();
+            for (int j = 0; j < aplicados.size(); j++) {
+                asignarInsert(psInsert, aplicados.get(j), resultantes[j], ahora);
+                psInsert.addBatch();
+            }
+            psInsert.executeBatch();
+            return rechazados;
+        }
+    }
+
+    /**
+     * Busca el cobro de una reserva. Se lee de la BD principal para ver el
+     * apunte aunque se acabe de escribir.
+     *
+     * @param idReserva reserva cobrada
+     * @return el apunte COBRO_VIAJE, con el saldo resultante, o null si no se ha cobrado
+     */
+    public Movimiento getCobroReserva(int idReserva) {
+        try (Traza traza = Traza.operacionDAO();
+             Connection conn = ConnectionBD.getConnection();
+             PreparedStatement ps = conn.prepareStatement(SELECT_COBRO_RESERVA)) {
+
+            ps.setInt(1, idReserva);
+            try (ResultSet rs = ps.executeQuery()) {
+                if (rs.next()) return traza.fila(mapMovimiento(rs));
+            }
+
+        } catch (SQLException e) {
+            e.printStackTrace();
+        }
+
+        return null;
+    }
+
+    /**
+     * Devuelve los apuntes de un usuario del más reciente al más antiguo, por páginas.
+     * Para la primera página se pasa 0 y para las siguientes el id del último
+     * apunte recibido.
+     *
+     * @param idUsuario usuario
+     * @param antesDeId id del último apunte de la página anterior (0 para empezar)
+     * @param limite    número máximo de apuntes
+     * @return lista con como mucho {@code limite} apuntes
+     */
+    public List<Movimiento> getPorUsuario(int idUsuario, int antesDeId, int limite) {
+        List<Movimiento> lista = new ArrayList<>();
+
+        try (Traza traza = Traza.operacionDAO();
+             Connection conn = ConnectionBD.getConnectionLectura();
+             PreparedStatement ps = conn.prepareStatement(SELECT_BY_USUARIO)) {
+
+            ps.setInt(1, idUsuario);
+            ps.setInt(2, antesDeId > 0 ? antesDeId : Integer.MAX_VALUE);
+            ps.setInt(3, Paginacion.limite(limite));
+
+            try (ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) lista.add(mapMovimiento(rs));
+                traza.filas(lista.size());
+            }
+
+        } catch (SQLException e) {
+            e.printStackTrace();
+        }
+
+        return lista;
+    }
+
+    private static void asignarSaldo(PreparedStatement ps, Apunte a, boolean permitirDeuda) throws SQLException {
+        ps.setDouble(1, a.importe());
+        ps.setInt(2, a.idUsuario());
+        // Con deuda permitida la condición "? >= 0" se cumple siempre
+        ps.setDouble(3, permitirDeuda ? 0 : a.importe());
+        ps.setDouble(4, a.importe());
+    }
+
+    private static void asignarInsert(PreparedStatement ps, Apunte a, double saldoResultante,
+                                      LocalDateTime fecha) throws SQLException {
+        ps.setInt(1, a.idUsuario());
+        ps.setString(2, a.tipo().name());
+        ps.setDouble(3, a.importe());
+        ps.setDouble(4, saldoResultante);
+        if (a.idReserva() != null) ps.setInt(5, a.idReserva());
+        else ps.setNull(5, Types.INTEGER);
+        ps.setTimestamp(6, Timestamp.valueOf(fecha));
+    }
+}
@@ -0,0 +1,82 @@
+package com.uber.dao;
+
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Utilidades comunes de los métodos page(...) de los DAO.
+ *
+ * Las páginas se piden por clave (keyset): "dame los N siguientes al último
+ * que ya tengo", en lugar de LIMIT/OFFSET. Así la BD salta directamente al
+ * punto de la clave primaria y el coste no crece al avanzar páginas.
+ */
+final class Paginacion {
+
+    // Tope de filas por página para no cargar tablas enteras por error
+    static final int MAX_LIMITE = 1000;
+
+    private Paginacion() {}
+
+    /**
+     * Convierte los filtros en condiciones SQL " AND columna op ?".
+     * Solo se aceptan los campos del mapa de columnas del DAO; así nunca
+     * se concatena al SQL nada que venga de fuera.
+     *
+     * @param filtros    filtros pedidos (puede ser null)
+     * @param columnas   campo admitido → columna SQL (con alias de tabla)
+     * @param parametros lista donde se añaden los valores en orden
+     * @return texto a añadir después del WHERE
+     * @throws IllegalArgumentException si algún campo no está permitido
+     */
+    static String condiciones(List<Filtro> filtros, Map<String, String> columnas, List<Object> parametros) {
+        if (filtros == null || filtros.isEmpty()) return "";
+
+        StringBuilder sql = new StringBuilder();
+        for (Filtro f : filtros) {
+            String columna = columnas.get(f.getCampo());
+            if (columna == null) {
+                throw new IllegalArgumentException("Campo de filtro no permitido: " + f.getCampo());
+            }
+            sql.append(" AND ").append(columna).append(' ').append(f.getOperador().getSql()).append(" ?");
+            parametros.add(f.getValorSql());
+        }
+        return sql.toString();
+    }
+
+    /**
+     * Ajusta el tamaño de página pedido a un valor razonable.
+     */
+    static int limite(int limite) {
+        return Math.max(1, Math.min(limite, MAX_LIMITE));
+    }
+
+    /**
+     * Junta las páginas que ha dado cada shard ({@link com.uber.database.MapaShards#juntar}):
+     * las ordena como las ordenaría la BD y se queda con las primeras.
+     * Como cada shard ya devuelve sus primeras {@code limite} filas a partir de
+     * la misma clave, entre todas están seguro las de la página buena.
+     *
+     * @param filas  filas de todos los shards
+     * @param orden  el mismo orden que el ORDER BY de la consulta
+     * @param limite tamaño de página pedido
+     * @return como mucho {@code limite} filas, en orden
+     */
+    static <T> List<T> primeros(List<T> filas, Comparator<T> orden, int limite) {
+        filas.sort(orden);
+        int n = Math.min(filas.size(), limite(limite));
+        return n == filas.size() ? filas : new ArrayList<>(filas.subList(0, n));
+    }
+
+    /**
+     * Asigna los parámetros en orden al PreparedStatement.
+     */
+    static void asignar(PreparedStatement ps, List<Object> parametros) throws SQLException {
+        for (int i = 0; i < parametros.size(); i++) {
+            ps.setObject(i + 1, parametros.get(i));
+        }
+    }
+}
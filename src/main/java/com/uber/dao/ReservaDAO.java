@@ -1,37 +1,61 @@
 package com.uber.dao;
 
 import com.uber.database.ConnectionBD;
+import com.uber.database.MapaShards;
 import com.uber.enums.EstadoReserva;
+import com.uber.enums.EstadoVehiculo;
+import com.uber.enums.ResultadoLiquidacion;
+import com.uber.enums.ResultadoReserva;
 import com.uber.enums.TipoVehiculo;
 import com.uber.model.Reserva;
 import com.uber.model.Usuario;
 import com.uber.model.Vehiculo;
+import com.uber.utils.Traza;
 
 import java.sql.*;
+import java.time.LocalDateTime;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
 
 public class ReservaDAO {
 
     private static final String SELECT_ALL = "SELECT * FROM Reserva";
     private static final String SELECT_BY_ID = "SELECT * FROM Reserva WHERE id_reserva = ?";
+    static final String SELECT_ACTIVAS = "SELECT * FROM Reserva WHERE estado = 'ACTIVA'";
     private static final String INSERT = "INSERT INTO Reserva (id_usuario, id_vehiculo, fecha_hora_inicio, fecha_hora_fin, coste, estado) VALUES (?, ?, ?, ?, ?, ?)";
     private static final String UPDATE = "UPDATE Reserva SET id_usuario = ?, id_vehiculo = ?, fecha_hora_inicio = ?, fecha_hora_fin = ?, coste = ?, estado = ? WHERE id_reserva = ?";
     private static final String DELETE = "DELETE FROM Reserva WHERE id_reserva = ?";
     private static final String SELECT_RESERVA_COMPLETA = "SELECT r.*, u.nombre AS usuarioNombre, v.marca AS vehiculoMarca FROM Reserva r JOIN Usuario u ON r.id_usuario = u.id_usuario JOIN Vehiculo v ON r.id_vehiculo = v.id_vehiculo WHERE r.id_reserva = ?";
-    private static final String SELECT_BY_USUARIO = "SELECT r.*, v.marca, v.modelo, v.tipo FROM Reserva r JOIN Vehiculo v ON r.id_vehiculo = v.id_vehiculo WHERE r.id_usuario = ? ORDER BY r.fecha_hora_inicio DESC";
-
-    private static final String CANCEL_RESERVA_SQL = "UPDATE Reserva SET estado = 'CANCELADA', fecha_hora_fin = NOW() WHERE id_reserva = ?";
-    private static final String RELEASE_VEHICULO_SQL = "UPDATE Vehiculo SET estado_vehiculo = 'DISPONIBLE' WHERE id_vehiculo = ?";
-    private static final String UPDATE_VEHICULO_OCUPADO = "UPDATE Vehiculo SET estado_vehiculo = 'EN_USO' WHERE id_vehiculo = ?";
-    private static final String FINALIZE_RESERVA_SQL = "UPDATE Reserva SET estado = 'FINALIZADA', fecha_hora_fin = NOW(), coste = ? WHERE id_reserva = ?";
-    private static final String DEDUCT_SALDO_SQL = "UPDATE Usuario SET saldo = saldo - ? WHERE id_usuario = ?";
-
-    private final Connection conn;
-
-    public ReservaDAO() {
-        conn = ConnectionBD.getConnection();
-    }
+    static final String SELECT_BY_USUARIO = "SELECT r.*, v.marca, v.modelo, v.tipo FROM Reserva r JOIN Vehiculo v ON r.id_vehiculo = v.id_vehiculo WHERE r.id_usuario = ? ORDER BY r.fecha_hora_inicio DESC";
+
+    private static final String CANCEL_RESERVA_SQL = "UPDATE Reserva SET estado = 'CANCELADA', fecha_hora_fin = NOW() WHERE id_reserva = ? AND estado = 'ACTIVA'";
+    // Solo se libera si nadie más lo tiene ahora: puede quedar otra reserva activa ya empezada
+    static final String RELEASE_VEHICULO_SQL = "UPDATE Vehiculo SET estado_vehiculo = 'DISPONIBLE' WHERE id_vehiculo = ? AND estado_vehiculo = 'EN_USO' "
+            + "AND NOT EXISTS (SELECT 1 FROM Reserva WHERE id_vehiculo = ? AND estado = 'ACTIVA' AND fecha_hora_inicio <= ?)";
+    private static final String CLAIM_VEHICULO_SQL = "UPDATE Vehiculo SET estado_vehiculo = 'EN_USO' WHERE id_vehiculo = ? AND estado_vehiculo = 'DISPONIBLE'";
+    private static final String LOCK_VEHICULO_SQL = "SELECT estado_vehiculo FROM Vehiculo WHERE id_vehiculo = ? FOR UPDATE";
+    private static final String SOLAPE_SQL = "SELECT 1 FROM Reserva WHERE id_vehiculo = ? AND estado = 'ACTIVA' "
+            + "AND fecha_hora_inicio < ? AND (fecha_hora_fin IS NULL OR fecha_hora_fin > ?) LIMIT 1";
+    private static final String SOLAPE_SIN_FIN_SQL = "SELECT 1 FROM Reserva WHERE id_vehiculo = ? AND estado = 'ACTIVA' "
+            + "AND (fecha_hora_fin IS NULL OR fecha_hora_fin > ?) LIMIT 1";
+    private static final String SELECT_VENCIDAS_SQL = "SELECT id_reserva, id_usuario, id_vehiculo, fecha_hora_fin, coste FROM Reserva WHERE estado = 'ACTIVA' AND fecha_hora_fin <= ? AND id_reserva IN (%s)";
+
+    // Campos por los que se puede filtrar en page(...)
+    private static final Map<String, String> COLUMNAS_FILTRO = Map.of(
+            "id_usuario", "id_usuario",
+            "id_vehiculo", "id_vehiculo",
+            "estado", "estado",
+            "fecha_hora_inicio", "fecha_hora_inicio");
+
+    // Intentos de una reserva si la BD la aborta por un conflicto de bloqueos
+    private static final int MAX_INTENTOS_RESERVA = 4;
 
     /**
      * Convierte una fila del ResultSet en un objeto Reserva.
@@ -75,16 +99,113 @@ public class ReservaDAO {
      * @return lista completa de reservas
      */
     public List<Reserva> getAll() {
-        List<Reserva> lista = new ArrayList<>();
-        try (Statement st = conn.createStatement();
-             ResultSet rs = st.executeQuery(SELECT_ALL)) {
+        try (Traza traza = Traza.operacionDAO()) {
+            return traza.filas(MapaShards.juntar(conn -> {
+                List<Reserva> lista = new ArrayList<>();
+                try (Statement st = conn.createStatement();
+                     ResultSet rs = st.executeQuery(SELECT_ALL)) {
 
-            while (rs.next()) lista.add(mapReserva(rs));
+                    while (rs.next()) lista.add(mapReserva(rs));
+                }
+                return lista;
+            }));
 
         } catch (SQLException e) {
             e.printStackTrace();
+            return new ArrayList<>();
+        }
+    }
+
+    /**
+     * Recorre todas las reservas sin cargarlas a la vez en memoria.
+     * El Stream mantiene abierta una conexión hasta que se cierra, así que
+     * se usa siempre con try-with-resources:
+     * <pre>
+     * try (Stream&lt;Reserva&gt; s = dao.stream()) { ... }
+     * </pre>
+     *
+     * @return Stream perezoso de reservas
+     * @throws SQLException si no se puede abrir la consulta
+     */
+    public Stream<Reserva> stream() throws SQLException {
+        return Cursor.abrir(SELECT_ALL, this::mapReserva, true);
+    }
+
+    /**
+     * Recorre solo las reservas ACTIVAS, igual que {@link #stream()}.
+     * Lo usa {@link IndiceDisponibilidad} para cargarse.
+     *
+     * @return Stream perezoso de reservas activas
+     * @throws SQLException si no se puede abrir la consulta
+     */
+    Stream<Reserva> streamActivas() throws SQLException {
+        return Cursor.abrir(SELECT_ACTIVAS, this::mapReserva);
+    }
+
+    /**
+     * Aplica una acción a cada una de las reservas, leyéndolas por bloques.
+     *
+     * @param accion código a ejecutar con cada elemento
+     * @return número de elementos recorridos, o -1 si hubo un error
+     */
+    public long forEach(Consumer<Reserva> accion) {
+        long total = 0;
+
+        try (Traza traza = Traza.operacionDAO();
+             Stream<Reserva> s = stream()) {
+            Iterator<Reserva> it = s.iterator();
+            while (it.hasNext()) {
+                accion.accept(it.next());
+                total++;
+            }
+            traza.filas(total);
+
+        } catch (SQLException | IllegalStateException e) {
+            e.printStackTrace();
+            return -1;
+        }
+
+        return total;
+    }
+
+    /**
+     * Devuelve la página de reservas siguiente a la clave indicada, ordenada por id.
+     * Para la primera página se pasa 0 y para las siguientes el id del último
+     * elemento recibido.
+     *
+     * @param despuesDeId id del último elemento de la página anterior (0 para empezar)
+     * @param limite número máximo de elementos
+     * @param filtros condiciones sobre id_usuario, id_vehiculo, estado o fecha_hora_inicio (puede ser null)
+     * @return lista con como mucho {@code limite} elementos
+     */
+    public List<Reserva> page(int despuesDeId, int limite, List<Filtro> filtros) {
+        List<Object> parametros = new ArrayList<>();
+        parametros.add(despuesDeId);
+
+        String sql = SELECT_ALL + " WHERE id_reserva > ?"
+                + Paginacion.condiciones(filtros, COLUMNAS_FILTRO, parametros)
+                + " ORDER BY id_reserva LIMIT ?";
+        parametros.add(Paginacion.limite(limite));
+
+        try (Traza traza = Traza.operacionDAO()) {
+            List<Reserva> lista = MapaShards.juntar(conn -> {
+                List<Reserva> parte = new ArrayList<>();
+
+                try (PreparedStatement ps = conn.prepareStatement(sql)) {
+                    Paginacion.asignar(ps, parametros);
+
+                    try (ResultSet rs = ps.executeQuery()) {
+                        while (rs.next()) parte.add(mapReserva(rs));
+                    }
+                }
+                return parte;
+            });
+            return traza.filas(Paginacion.primeros(lista, Comparator.comparingInt(Reserva::getIdReserva), limite));
+
+        } catch (SQLException e) {
+            e.printStackTrace();
+            return new ArrayList<>();
         }
-        return lista;
     }
 
     /**
@@ -94,11 +215,13 @@ public class ReservaDAO {
      * @return reserva encontrada o null si no existe
      */
     public Reserva getById(int id) {
-        try (PreparedStatement ps = conn.prepareStatement(SELECT_BY_ID)) {
+        try (Traza traza = Traza.operacionDAO();
+             Connection conn = MapaShards.conexionReserva(id);
+             PreparedStatement ps = conn.prepareStatement(SELECT_BY_ID)) {
             ps.setInt(1, id);
 
             ResultSet rs = ps.executeQuery();
-            if (rs.next()) return mapReserva(rs);
+            if (rs.next()) return traza.fila(mapReserva(rs));
 
         } catch (SQLException e) {
             e.printStackTrace();
@@ -113,7 +236,9 @@ public class ReservaDAO {
      * @return true si se actualizó correctamente
      */
     public boolean update(Reserva r) {
-        try (PreparedStatement ps = conn.prepareStatement(UPDATE)) {
+        try (Traza traza = Traza.operacionDAO();
+             Connection conn = MapaShards.conexionReserva(r.getIdReserva());
+             PreparedStatement ps = conn.prepareStatement(UPDATE)) {
 
             ps.setInt(1, r.getUsuario().getIdUsuario());
             ps.setInt(2, r.getVehiculo().getIdVehiculo());
@@ -132,7 +257,7 @@ public class ReservaDAO {
             ps.setString(6, r.getEstado().name());
             ps.setInt(7, r.getIdReserva());
 
-            return ps.executeUpdate() > 0;
+            return traza.filas(ps.executeUpdate()) > 0;
 
         } catch (SQLException e) {
             e.printStackTrace();
@@ -147,9 +272,11 @@ public class ReservaDAO {
      * @return true si se eliminó con éxito
      */
     public boolean delete(int idReserva) {
-        try (PreparedStatement ps = conn.prepareStatement(DELETE)) {
+        try (Traza traza = Traza.operacionDAO();
+             Connection conn = MapaShards.conexionReserva(idReserva);
+             PreparedStatement ps = conn.prepareStatement(DELETE)) {
             ps.setInt(1, idReserva);
-            return ps.executeUpdate() > 0;
+            return traza.filas(ps.executeUpdate()) > 0;
 
         } catch (SQLException e) {
             e.printStackTrace();
@@ -159,90 +286,275 @@ public class ReservaDAO {
 
     /**
      * Inserta una nueva reserva y marca el vehículo como en uso.
-     * Todo se hace dentro de una transacción.
+     * Equivale a {@link #reservar(Reserva)} cuando solo interesa si ha ido bien.
      *
      * @param r reserva a registrar
      * @return true si todo funcionó correctamente
      */
     public boolean crearReserva(Reserva r) {
-        try {
+        return reservar(r) == ResultadoReserva.OK;
+    }
+
+    /**
+     * Reserva un vehículo sin que dos clientes puedan quedarse con la misma franja.
+     *
+     * Antes de tocar la BD se mira en {@link IndiceDisponibilidad} si la franja
+     * de la reserva choca con otra reserva activa del mismo vehículo; así la
+     * mayoría de los choques se contestan sin ir a la BD.
+     *
+     * En la BD, dentro de una transacción, se bloquea la fila del vehículo (las
+     * reservas del mismo vehículo van de una en una), se vuelve a comprobar el
+     * solape contra la tabla Reserva y se inserta. Solo si la reserva empieza ya
+     * se pasa el vehículo a EN_USO, y para eso tiene que estar DISPONIBLE; una
+     * reserva para más adelante deja el vehículo como está, de modo que se puede
+     * reservar otra franja que no se solape.
+     *
+     * Si la BD aborta la transacción por un interbloqueo o por esperar
+     * demasiado un bloqueo, se reintenta unas pocas veces con esperas crecientes.
+     *
+     * @param r reserva a registrar (estado ACTIVA); si va bien recibe su id
+     * @return OK, VEHICULO_OCUPADO, FRANJA_OCUPADA o ERROR
+     */
+    public ResultadoReserva reservar(Reserva r) {
+        try (Traza traza = Traza.operacionDAO()) {
+            int idVehiculo = r.getVehiculo().getIdVehiculo();
+
+            try {
+                if (!IndiceDisponibilidad.getInstancia().estaLibre(idVehiculo, r.getFechaHoraInicio(), r.getFechaHoraFin())) {
+                    return ResultadoReserva.FRANJA_OCUPADA;
+                }
+            } catch (SQLException e) {
+                e.printStackTrace();
+                return ResultadoReserva.ERROR;
+            }
+
+            for (int intento = 1; ; intento++) {
+                try {
+                    ResultadoReserva resultado = intentarReserva(r);
+
+                    if (resultado == ResultadoReserva.OK) {
+                        traza.filas(1);
+                        if (empiezaYa(r)) VehiculoCache.getInstancia().cambiarEstado(idVehiculo, EstadoVehiculo.EN_USO);
+                        IndiceDisponibilidad.getInstancia().anadir(r);
+                        ExpiradorReservas.getInstancia().programar(r);
+                    } else {
+                        // La caché creía que estaba libre: se vuelve a leer de la BD
+                        VehiculoCache.getInstancia().invalidar();
+                    }
+                    return resultado;
+
+                } catch (SQLException e) {
+                    if (!esConflictoDeBloqueo(e) || intento >= MAX_INTENTOS_RESERVA) {
+                        e.printStackTrace();
+                        return ResultadoReserva.ERROR;
+                    }
+                    esperarAntesDeReintentar(intento);
+
+                } catch (RuntimeException e) {
+                    e.printStackTrace();
+                    return ResultadoReserva.ERROR;
+                }
+            }
+        }
+    }
+
+    /**
+     * Un intento de reserva en una transacción: bloquear el vehículo, comprobar
+     * la franja, reclamarlo si la reserva empieza ya e insertar.
+     * La reserva va al shard de su vehículo, así las dos filas están en la misma BD.
+     */
+    private ResultadoReserva intentarReserva(Reserva r) throws SQLException {
+        int idVehiculo = r.getVehiculo().getIdVehiculo();
+
+        try (Connection conn = MapaShards.conexionVehiculo(idVehiculo)) {
             conn.setAutoCommit(false);
 
-            PreparedStatement ps = conn.prepareStatement(INSERT);
-            ps.setInt(1, r.getUsuario().getIdUsuario());
-            ps.setInt(2, r.getVehiculo().getIdVehiculo());
+            try (PreparedStatement psBloqueo = conn.prepareStatement(LOCK_VEHICULO_SQL);
+                 PreparedStatement psSolape = conn.prepareStatement(r.getFechaHoraFin() != null ? SOLAPE_SQL : SOLAPE_SIN_FIN_SQL);
+                 PreparedStatement psVehiculo = conn.prepareStatement(CLAIM_VEHICULO_SQL);
+                 PreparedStatement ps = conn.prepareStatement(INSERT, Statement.RETURN_GENERATED_KEYS)) {
 
-            if (r.getFechaHoraInicio() != null)
-                ps.setTimestamp(3, Timestamp.valueOf(r.getFechaHoraInicio()));
-            else
-                ps.setNull(3, Types.TIMESTAMP);
+                EstadoVehiculo estado;
+                psBloqueo.setInt(1, idVehiculo);
+                try (ResultSet rs = psBloqueo.executeQuery()) {
+                    estado = rs.next() ? EstadoVehiculo.valueOf(rs.getString(1)) : null;
+                }
+                // En mantenimiento o inactivo no se puede reservar ni ahora ni más adelante
+                if (estado != EstadoVehiculo.DISPONIBLE && estado != EstadoVehiculo.EN_USO) {
+                    conn.rollback();
+                    return ResultadoReserva.VEHICULO_OCUPADO;
+                }
 
-            if (r.getFechaHoraFin() != null)
-                ps.setTimestamp(4, Timestamp.valueOf(r.getFechaHoraFin()));
-            else
-                ps.setNull(4, Types.TIMESTAMP);
+                psSolape.setInt(1, idVehiculo);
+                if (r.getFechaHoraFin() != null) {
+                    psSolape.setTimestamp(2, Timestamp.valueOf(r.getFechaHoraFin()));
+                    psSolape.setTimestamp(3, Timestamp.valueOf(r.getFechaHoraInicio()));
+                } else {
+                    psSolape.setTimestamp(2, Timestamp.valueOf(r.getFechaHoraInicio()));
+                }
+                try (ResultSet rs = psSolape.executeQuery()) {
+                    if (rs.next()) {
+                        conn.rollback();
+                        return ResultadoReserva.FRANJA_OCUPADA;
+                    }
+                }
 
-            ps.setDouble(5, r.getCoste());
-            ps.setString(6, r.getEstado().name());
-            ps.executeUpdate();
+                if (empiezaYa(r)) {
+                    psVehiculo.setInt(1, idVehiculo);
+                    if (psVehiculo.executeUpdate() == 0) {
+                        conn.rollback();
+                        return ResultadoReserva.VEHICULO_OCUPADO;
+                    }
+                }
 
-            PreparedStatement psVehiculo = conn.prepareStatement(UPDATE_VEHICULO_OCUPADO);
-            psVehiculo.setInt(1, r.getVehiculo().getIdVehiculo());
-            psVehiculo.executeUpdate();
+                ps.setInt(1, r.getUsuario().getIdUsuario());
+                ps.setInt(2, r.getVehiculo().getIdVehiculo());
 
-            conn.commit();
-            return true;
+                if (r.getFechaHoraInicio() != null)
+                    ps.setTimestamp(3, Timestamp.valueOf(r.getFechaHoraInicio()));
+                else
+                    ps.setNull(3, Types.TIMESTAMP);
 
-        } catch (Exception e) {
-            try { conn.rollback(); } catch (SQLException ignored) {}
-            e.printStackTrace();
-            return false;
+                if (r.getFechaHoraFin() != null)
+                    ps.setTimestamp(4, Timestamp.valueOf(r.getFechaHoraFin()));
+                else
+                    ps.setNull(4, Types.TIMESTAMP);
 
-        } finally {
-            try { conn.setAutoCommit(true); } catch (SQLException ignored) {}
+                ps.setDouble(5, r.getCoste());
+                ps.setString(6, r.getEstado().name());
+                ps.executeUpdate();
+
+                try (ResultSet claves = ps.getGeneratedKeys()) {
+                    if (claves.next()) r.setIdReserva(claves.getInt(1));
+                }
+
+                conn.commit();
+                return ResultadoReserva.OK;
+
+            } catch (SQLException | RuntimeException e) {
+                conn.rollback();
+                throw e;
+
+            } finally {
+                conn.setAutoCommit(true);
+            }
         }
     }
 
+    /**
+     * Una reserva que ya ha empezado (o empieza ahora) ocupa el vehículo; una
+     * futura solo ocupa su franja en el índice y en la tabla Reserva.
+     */
+    static boolean empiezaYa(Reserva r) {
+        return !r.getFechaHoraInicio().isAfter(LocalDateTime.now());
+    }
+
+    /**
+     * Indica si el error es de los que se arreglan reintentando:
+     * interbloqueo o tiempo de espera de un bloqueo agotado.
+     */
+    private static boolean esConflictoDeBloqueo(SQLException e) {
+        String estado = e.getSQLState();
+        int codigo = e.getErrorCode();
+
+        return (estado != null && estado.startsWith("40"))  // rollback de transacción (SQL estándar)
+                || codigo == 1213 || codigo == 1205        // MySQL: deadlock, lock wait timeout
+                || codigo == 50200;                        // H2: lock timeout
+    }
+
+    /**
+     * Espera antes del siguiente intento: 20, 40, 80 ms... más un poco de azar
+     * para que los clientes que chocaron no vuelvan a chocar a la vez.
+     */
+    private static void esperarAntesDeReintentar(int intento) {
+        long espera = (20L << (intento - 1)) + ThreadLocalRandom.current().nextLong(20);
+        try {
+            Thread.sleep(espera);
+        } catch (InterruptedException ie) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Parámetros de {@link #RELEASE_VEHICULO_SQL}: el vehículo y la hora actual, después
+     * de haber cerrado la reserva en la misma transacción.
+     */
+    static void asignarLiberacion(PreparedStatement ps, int idVehiculo) throws SQLException {
+        ps.setInt(1, idVehiculo);
+        ps.setInt(2, idVehiculo);
+        ps.setTimestamp(3, Timestamp.valueOf(LocalDateTime.now()));
+    }
+
     /**
      * Cambia una reserva a cancelada y vuelve a marcar el vehículo como disponible.
+     * Solo se cancela si sigue ACTIVA: si mientras tanto se ha finalizado (por
+     * ejemplo, el {@link ExpiradorReservas}) no se toca ni la reserva ni el
+     * vehículo, que puede tenerlo ya otro usuario. El vehículo tampoco se libera
+     * si lo está usando otra reserva (al cancelar una reserva futura).
      *
      * @param idReserva id de la reserva a cancelar
      * @param idVehiculo vehículo implicado
-     * @return true si se canceló correctamente
+     * @return true si se canceló; false si ya no estaba activa o hubo un error
      */
     public boolean cancelarReserva(int idReserva, int idVehiculo) {
-        try {
+        try (Traza traza = Traza.operacionDAO();
+             Connection conn = MapaShards.conexionVehiculo(idVehiculo)) {
             conn.setAutoCommit(false);
 
-            PreparedStatement psReserva = conn.prepareStatement(CANCEL_RESERVA_SQL);
-            psReserva.setInt(1, idReserva);
-            psReserva.executeUpdate();
+            try (PreparedStatement psReserva = conn.prepareStatement(CANCEL_RESERVA_SQL);
+                 PreparedStatement psVehiculo = conn.prepareStatement(RELEASE_VEHICULO_SQL)) {
+
+                psReserva.setInt(1, idReserva);
+                if (psReserva.executeUpdate() != 1) {
+                    conn.rollback();
+                    System.out.println("ℹ️ La reserva " + idReserva + " ya no está activa: no se cancela.");
+                    return false;
+                }
 
-            PreparedStatement psVehiculo = conn.prepareStatement(RELEASE_VEHICULO_SQL);
-            psVehiculo.setInt(1, idVehiculo);
-            psVehiculo.executeUpdate();
+                asignarLiberacion(psVehiculo, idVehiculo);
+                boolean liberado = psVehiculo.executeUpdate() > 0;
 
-            conn.commit();
-            return true;
+                conn.commit();
+                traza.filas(liberado ? 2 : 1);
+                if (liberado) VehiculoCache.getInstancia().cambiarEstado(idVehiculo, EstadoVehiculo.DISPONIBLE);
+                IndiceDisponibilidad.getInstancia().quitar(idReserva);
+                return true;
+
+            } catch (SQLException | RuntimeException e) {
+                conn.rollback();
+                throw e;
+
+            } finally {
+                conn.setAutoCommit(true);
+            }
 
         } catch (SQLException e) {
-            try { conn.rollback(); } catch (SQLException ignored) {}
             e.printStackTrace();
             return false;
-
-        } finally {
-            try { conn.setAutoCommit(true); } catch (SQLException ignored) {}
         }
     }
 
     /**
      * Obtiene todas las reservas hechas por un usuario concreto.
-     * Incluye datos del vehículo gracias al JOIN.
+     * Incluye datos del vehículo gracias al JOIN. Un usuario puede tener
+     * reservas en varias ciudades, así que con shards se buscan en todos.
      *
      * @param idUsuario id del usuario
-     * @return lista de reservas asociadas a ese usuario
+     * @return lista de reservas asociadas a ese usuario, de la más reciente a la más antigua
      */
     public List<Reserva> getReservasPorUsuario(int idUsuario) {
+        try (Traza traza = Traza.operacionDAO()) {
+            List<Reserva> lista = MapaShards.juntar(conn -> reservasPorUsuario(conn, idUsuario));
+            lista.sort(Comparator.comparing(Reserva::getFechaHoraInicio, Comparator.reverseOrder()));
+            return traza.filas(lista);
+
+        } catch (SQLException e) {
+            e.printStackTrace();
+            return new ArrayList<>();
+        }
+    }
+
+    private List<Reserva> reservasPorUsuario(Connection conn, int idUsuario) throws SQLException {
         List<Reserva> lista = new ArrayList<>();
 
         try (PreparedStatement ps = conn.prepareStatement(SELECT_BY_USUARIO)) {
@@ -275,9 +587,6 @@ public class ReservaDAO {
                 r.setVehiculo(v);
                 lista.add(r);
             }
-
-        } catch (SQLException e) {
-            e.printStackTrace();
         }
 
         return lista;
@@ -290,11 +599,14 @@ public class ReservaDAO {
      * @param idReserva id de la reserva
      */
     public void mostrarReservaCompleta(int idReserva) {
-        try (PreparedStatement ps = conn.prepareStatement(SELECT_RESERVA_COMPLETA)) {
+        try (Traza traza = Traza.operacionDAO();
+             Connection conn = ConnectionBD.getConnection();
+             PreparedStatement ps = conn.prepareStatement(SELECT_RESERVA_COMPLETA)) {
             ps.setInt(1, idReserva);
 
             ResultSet rs = ps.executeQuery();
             if (rs.next()) {
+                traza.filas(1);
                 System.out.println("Reserva " + idReserva);
                 System.out.println("Usuario: " + rs.getString("usuarioNombre"));
                 System.out.println("Vehículo: " + rs.getString("vehiculoMarca"));
@@ -307,7 +619,8 @@ public class ReservaDAO {
 
     /**
      * Marca una reserva como finalizada, guarda el coste
-     * y libera el vehículo.
+     * y libera el vehículo. Es una liquidación de una sola reserva
+     * ({@link LiquidacionReservas}): si ya no estaba activa no se cobra.
      *
      * @param idReserva id de la reserva
      * @param idVehiculo id del vehículo asociado
@@ -315,32 +628,69 @@ public class ReservaDAO {
      * @return true si se completó correctamente
      */
     public boolean finalizarReserva(int idReserva, int idVehiculo, int idUsuario, double costeFinal) {
-        try {
-            conn.setAutoCommit(false);
-            PreparedStatement psReserva = conn.prepareStatement(FINALIZE_RESERVA_SQL);
-            psReserva.setDouble(1, costeFinal);
-            psReserva.setInt(2, idReserva);
-            psReserva.executeUpdate();
+        LiquidacionReservas.Liquidacion l = new LiquidacionReservas.Liquidacion(
+                idReserva, idVehiculo, idUsuario, costeFinal, LocalDateTime.now());
 
-            PreparedStatement psVehiculo = conn.prepareStatement(RELEASE_VEHICULO_SQL);
-            psVehiculo.setInt(1, idVehiculo);
-            psVehiculo.executeUpdate();
+        try (Traza traza = Traza.operacionDAO()) {
+            boolean liquidada = new LiquidacionReservas().liquidar(List.of(l)).get(idReserva) == ResultadoLiquidacion.LIQUIDADA;
+            if (liquidada) traza.filas(1);
+            return liquidada;
+        }
+    }
 
-            PreparedStatement psSaldo = conn.prepareStatement(DEDUCT_SALDO_SQL);
-            psSaldo.setDouble(1, costeFinal);
-            psSaldo.setInt(2, idUsuario);
-            psSaldo.executeUpdate();
+    /**
+     * Finaliza las reservas cuyo fin ya ha pasado (las llama {@link ExpiradorReservas}).
+     *
+     * Se leen las que siguen ACTIVAS y vencidas (las canceladas o ya pagadas se
+     * ignoran) y se liquidan por lotes con {@link LiquidacionReservas}, cobrando
+     * el coste calculado al reservar y dejando como fin la hora prevista.
+     *
+     * @param idsReserva reservas candidatas
+     * @param conDeuda   true para cobrarlas aunque el saldo quede negativo
+     *                   ({@link LiquidacionReservas#liquidarConDeuda(List)})
+     * @return resultado de cada reserva que seguía activa y vencida
+     * @throws SQLException si no se pueden leer las reservas
+     */
+    Map<Integer, ResultadoLiquidacion> expirarVencidas(List<Integer> idsReserva, boolean conDeuda) throws SQLException {
+        List<LiquidacionReservas.Liquidacion> vencidas = new ArrayList<>();
+        if (idsReserva.isEmpty()) return Map.of();
 
-            conn.commit();
-            return true;
+        String huecos = String.join(", ", Collections.nCopies(idsReserva.size(), "?"));
+        Timestamp ahora = Timestamp.valueOf(LocalDateTime.now());
 
-        } catch (SQLException e) {
-            try { conn.rollback(); } catch (SQLException ignored) {}
-            e.printStackTrace();
-            return false;
+        // Con shards cada uno devuelve las suyas; sin shards se leen del principal, no de la réplica
+        MapaShards.ConsultaShard<List<LiquidacionReservas.Liquidacion>> consulta = conn -> {
+            List<LiquidacionReservas.Liquidacion> parte = new ArrayList<>();
+
+            try (PreparedStatement ps = conn.prepareStatement(String.format(SELECT_VENCIDAS_SQL, huecos))) {
+                ps.setTimestamp(1, ahora);
+                for (int i = 0; i < idsReserva.size(); i++) {
+                    ps.setInt(i + 2, idsReserva.get(i));
+                }
 
-        } finally {
-            try { conn.setAutoCommit(true); } catch (SQLException ignored) {}
+                try (ResultSet rs = ps.executeQuery()) {
+                    while (rs.next()) {
+                        parte.add(new LiquidacionReservas.Liquidacion(
+                                rs.getInt("id_reserva"),
+                                rs.getInt("id_vehiculo"),
+                                rs.getInt("id_usuario"),
+                                rs.getDouble("coste"),
+                                rs.getTimestamp("fecha_hora_fin").toLocalDateTime()));
+                    }
+                }
+            }
+            return parte;
+        };
+
+        if (MapaShards.activos()) {
+            vencidas.addAll(MapaShards.juntar(consulta));
+        } else {
+            try (Connection conn = ConnectionBD.getConnection()) {
+                vencidas.addAll(consulta.ejecutar(conn));
+            }
         }
+
+        LiquidacionReservas liquidacion = new LiquidacionReservas();
+        return conDeuda ? liquidacion.liquidarConDeuda(vencidas) : liquidacion.liquidar(vencidas);
     }
 }
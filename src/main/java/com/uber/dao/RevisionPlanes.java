@@ -0,0 +1,171 @@
+package com.uber.dao;
+
+import com.uber.database.ConnectionBD;
+import com.uber.enums.EstadoVehiculo;
+import com.uber.enums.TipoVehiculo;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Comprueba con EXPLAIN que las consultas más frecuentes de los DAO usan
+ * índices y no recorren tablas enteras. Se usa el mismo SQL que ejecutan los
+ * DAO, así que si alguien cambia una consulta o quita un índice se nota aquí.
+ *
+ * La comprobación se hace en RevisionPlanesTest, sobre H2 en memoria con datos
+ * de {@link com.uber.utils.GeneradorDatos}. Para revisar otra BD (p. ej. la
+ * MySQL de producción) se lanza contra la de db.properties (o -Ddb.type=...,
+ * como siempre); termina con código 1 si alguna consulta hace un recorrido completo:
+ * <pre>
+ * java com.uber.dao.RevisionPlanes
+ * </pre>
+ *
+ * Con tablas casi vacías el optimizador puede preferir recorrerlas aunque haya
+ * índice, así que conviene lanzarlo sobre una BD con datos.
+ */
+public final class RevisionPlanes {
+
+    /**
+     * Consulta que se revisa, con valores de ejemplo para sus huecos.
+     */
+    record Consulta(String nombre, String sql, List<Object> parametros) {}
+
+    /**
+     * Resultado de revisar una consulta.
+     *
+     * @param plan plan tal como lo da la BD
+     * @param recorridoCompleto tablas que se leen enteras (vacío si todo va por índice)
+     */
+    public record Plan(String nombre, String plan, List<String> recorridoCompleto) {
+        public boolean usaIndices() {
+            return recorridoCompleto.isEmpty();
+        }
+    }
+
+    // Comentario de H2 con un acceso sin condición: "/* PUBLIC.RESERVA.tableScan */" o "/* PUBLIC.PRIMARY_KEY_A */"
+    private static final Pattern ACCESO_H2 = Pattern.compile("/\\*\\s*(PUBLIC\\.[^\\s:*]+)\\s*\\*/");
+
+    private RevisionPlanes() {}
+
+    public static void main(String[] args) {
+        int fallos = 0;
+
+        try {
+            for (Plan p : revisar()) {
+                if (!p.usaIndices()) fallos++;
+                System.out.println(describir(p));
+            }
+        } catch (SQLException e) {
+            e.printStackTrace();
+            fallos++;
+        } finally {
+            ConnectionBD.closeConnection();
+        }
+
+        System.exit(fallos > 0 ? 1 : 0);
+    }
+
+    /**
+     * Texto de un plan para el informe: una línea si usa índices y, si no,
+     * también las tablas que recorre y el plan completo.
+     */
+    static String describir(Plan p) {
+        if (p.usaIndices()) return "✅ " + p.nombre();
+
+        return "❌ " + p.nombre() + ": recorre entera " + String.join(", ", p.recorridoCompleto())
+                + "\n   " + p.plan().replace("\n", "\n   ");
+    }
+
+    /**
+     * Consultas que se revisan: las de las pantallas y procesos que más se usan.
+     */
+    static List<Consulta> consultas() {
+        List<Consulta> lista = new ArrayList<>();
+
+        lista.add(new Consulta("UsuarioDAO.login", UsuarioDAO.LOGIN, List.of("cliente@uber.com", "clave")));
+        lista.add(new Consulta("ReservaDAO.getReservasPorUsuario", ReservaDAO.SELECT_BY_USUARIO, List.of(1)));
+        lista.add(new Consulta("ReservaDAO.streamActivas", ReservaDAO.SELECT_ACTIVAS, List.of()));
+        lista.add(new Consulta("TieneDAO.getUltimoMantenimiento", TieneDAO.SELECT_ULTIMO_MANTENIMIENTO, List.of(1)));
+        lista.add(new Consulta("MovimientoDAO.getPorUsuario", MovimientoDAO.SELECT_BY_USUARIO,
+                List.of(1, Integer.MAX_VALUE, 50)));
+
+        List<Object> parametros = new ArrayList<>();
+        String sql = VehiculoDAO.sqlBuscar(TipoVehiculo.COCHE, EstadoVehiculo.DISPONIBLE, null, null, 20.0, parametros);
+        lista.add(new Consulta("VehiculoDAO.buscarEnBD (tipo, estado, batería)", sql, parametros));
+
+        parametros = new ArrayList<>();
+        sql = VehiculoDAO.sqlBuscar(null, EstadoVehiculo.DISPONIBLE, 1, null, null, parametros);
+        lista.add(new Consulta("VehiculoDAO.buscarEnBD (estación, estado)", sql, parametros));
+
+        return lista;
+    }
+
+    /**
+     * Pide a la BD el plan de cada consulta.
+     *
+     * @return un plan por consulta, en el orden de {@link #consultas()}
+     * @throws SQLException si falla algún EXPLAIN
+     */
+    public static List<Plan> revisar() throws SQLException {
+        List<Plan> planes = new ArrayList<>();
+
+        try (Connection conn = ConnectionBD.getConnection()) {
+            boolean h2 = conn.getMetaData().getDatabaseProductName().toUpperCase().contains("H2");
+
+            for (Consulta c : consultas()) {
+                try (PreparedStatement ps = conn.prepareStatement("EXPLAIN " + c.sql())) {
+                    Paginacion.asignar(ps, c.parametros());
+                    try (ResultSet rs = ps.executeQuery()) {
+                        planes.add(h2 ? planH2(c, rs) : planMySQL(c, rs));
+                    }
+                }
+            }
+        }
+        return planes;
+    }
+
+    /**
+     * H2 devuelve el plan como texto y bajo cada tabla pone un comentario con
+     * cómo la lee: "PUBLIC.INDICE: COLUMNA = ?" si busca por índice,
+     * "PUBLIC.TABLA.tableScan" si la recorre entera y "PUBLIC.INDICE" sin
+     * condición si recorre el índice entero (p. ej. la clave primaria para ordenar).
+     */
+    private static Plan planH2(Consulta c, ResultSet rs) throws SQLException {
+        StringBuilder plan = new StringBuilder();
+        while (rs.next()) plan.append(rs.getString(1));
+
+        List<String> recorridas = new ArrayList<>();
+        Matcher m = ACCESO_H2.matcher(plan);
+        while (m.find()) {
+            recorridas.add(m.group(1).replace(".tableScan", ""));
+        }
+        return new Plan(c.nombre(), plan.toString(), recorridas);
+    }
+
+    /**
+     * MySQL devuelve una fila por tabla; type = ALL es un recorrido de la
+     * tabla entera y type = index uno del índice entero.
+     */
+    private static Plan planMySQL(Consulta c, ResultSet rs) throws SQLException {
+        StringBuilder plan = new StringBuilder();
+        List<String> recorridas = new ArrayList<>();
+
+        while (rs.next()) {
+            String tabla = rs.getString("table");
+            String tipo = rs.getString("type");
+            String indice = rs.getString("key");
+            plan.append(tabla).append(": type=").append(tipo).append(", key=").append(indice)
+                    .append(", rows=").append(rs.getString("rows"))
+                    .append(", Extra=").append(rs.getString("Extra")).append('\n');
+
+            if ("ALL".equalsIgnoreCase(tipo) || "index".equalsIgnoreCase(tipo)) recorridas.add(tabla);
+        }
+        return new Plan(c.nombre(), plan.toString().trim(), recorridas);
+    }
+}
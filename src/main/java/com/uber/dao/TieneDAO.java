@@ -1,23 +1,25 @@
 package com.uber.dao;
 
-import com.uber.database.ConnectionBD;
-import com.uber.enums.TipoMantenimiento;
+import com.uber.database.MapaShards;
 import com.uber.model.Mantenimiento;
 import com.uber.model.Tiene;
 import com.uber.model.Vehiculo;
+import com.uber.utils.Traza;
 
 import java.sql.*;
 import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
 
 public class TieneDAO {
 
     private static final String SELECT_ALL = "SELECT * FROM Tiene";
 
-    private static final String SELECT_BY_VEHICULO =
-            "SELECT t.*, m.tipo, m.descripcion " +
-                    "FROM Tiene t INNER JOIN Mantenimiento m ON t.id_mantenimiento = m.id_mantenimiento " +
-                    "WHERE t.id_vehiculo = ?";
+    private static final String SELECT_BY_VEHICULO = "SELECT * FROM Tiene WHERE id_vehiculo = ?";
 
     private static final String INSERT =
             "INSERT INTO Tiene (id_vehiculo, id_mantenimiento, fecha_hora, coste, notas) VALUES (?, ?, ?, ?, ?)";
@@ -31,21 +33,40 @@ public class TieneDAO {
     private static final String COUNT_MANTENIMIENTOS =
             "SELECT COUNT(*) AS total FROM Tiene WHERE id_vehiculo = ?";
 
-    private static final String SELECT_ULTIMO_MANTENIMIENTO =
-            "SELECT t.*, m.tipo, m.descripcion " +
-                    "FROM Tiene t INNER JOIN Mantenimiento m ON t.id_mantenimiento = m.id_mantenimiento " +
-                    "WHERE t.id_vehiculo = ? ORDER BY t.fecha_hora DESC LIMIT 1";
+    static final String SELECT_ULTIMO_MANTENIMIENTO =
+            "SELECT * FROM Tiene WHERE id_vehiculo = ? ORDER BY fecha_hora DESC LIMIT 1";
 
-    private final Connection conn;
+    private static final String SELECT_HISTORIAL_COMPLETO =
+            "SELECT t.*, v.marca, v.modelo " +
+                    "FROM Tiene t " +
+                    "INNER JOIN Vehiculo v ON t.id_vehiculo = v.id_vehiculo " +
+                    "WHERE 1 = 1";
 
-    public TieneDAO() {
-        conn = ConnectionBD.getConnection();
-    }
+    // Registros posteriores (en el orden del historial) al último de la página anterior
+    private static final String DESPUES_DE =
+            " AND (t.fecha_hora < ? OR (t.fecha_hora = ? AND " +
+                    "(t.id_vehiculo > ? OR (t.id_vehiculo = ? AND t.id_mantenimiento > ?))))";
+
+    private static final String ORDEN_HISTORIAL =
+            " ORDER BY t.fecha_hora DESC, t.id_vehiculo, t.id_mantenimiento LIMIT ?";
+
+    // Campos por los que se puede filtrar en page(...); el tipo solo se busca en Mantenimiento si se filtra por él
+    private static final Map<String, String> COLUMNAS_FILTRO = Map.of(
+            "id_vehiculo", "t.id_vehiculo",
+            "id_mantenimiento", "t.id_mantenimiento",
+            "tipo", "(SELECT m.tipo FROM Mantenimiento m WHERE m.id_mantenimiento = t.id_mantenimiento)",
+            "fecha_hora", "t.fecha_hora");
+
+    // El mismo orden que ORDEN_HISTORIAL, para juntar las páginas de varios shards
+    private static final Comparator<Tiene> ORDEN_PAGINA =
+            Comparator.comparing(Tiene::getFechaHora, Comparator.reverseOrder())
+                    .thenComparingInt(t -> t.getVehiculo().getIdVehiculo())
+                    .thenComparingInt(t -> t.getMantenimiento().getIdMantenimiento());
 
     /**
      * Convierte una fila del ResultSet en un objeto Tiene.
-     * Solo mapea las columnas principales; los datos extra del mantenimiento
-     * se añaden en los métodos que hacen JOIN.
+     * El tipo y la descripción del mantenimiento no se leen de la BD sino de
+     * {@link CatalogoMantenimiento}, así ninguna consulta necesita JOIN con Mantenimiento.
      *
      * @param rs Resultado de la consulta
      * @return objeto Tiene con datos cargados
@@ -60,6 +81,7 @@ public class TieneDAO {
 
         Mantenimiento m = new Mantenimiento();
         m.setIdMantenimiento(rs.getInt("id_mantenimiento"));
+        CatalogoMantenimiento.getInstancia().completar(m);
         t.setMantenimiento(m);
 
         Timestamp ts = rs.getTimestamp("fecha_hora");
@@ -77,21 +99,67 @@ public class TieneDAO {
      * @return lista completa de mantenimientos aplicados
      */
     public List<Tiene> getAll() {
-        List<Tiene> lista = new ArrayList<>();
-        try (Statement st = conn.createStatement();
-             ResultSet rs = st.executeQuery(SELECT_ALL)) {
+        try (Traza traza = Traza.operacionDAO()) {
+            return traza.filas(MapaShards.juntar(conn -> {
+                List<Tiene> lista = new ArrayList<>();
+                try (Statement st = conn.createStatement();
+                     ResultSet rs = st.executeQuery(SELECT_ALL)) {
 
-            while (rs.next()) lista.add(map(rs));
+                    while (rs.next()) lista.add(map(rs));
+                }
+                return lista;
+            }));
 
         } catch (SQLException e) {
             e.printStackTrace();
+            return new ArrayList<>();
         }
-        return lista;
+    }
+
+    /**
+     * Recorre todas las filas de la tabla Tiene sin cargarlas a la vez en memoria.
+     * El Stream mantiene abierta una conexión hasta que se cierra, así que
+     * se usa siempre con try-with-resources:
+     * <pre>
+     * try (Stream&lt;Tiene&gt; s = dao.stream()) { ... }
+     * </pre>
+     *
+     * @return Stream perezoso de filas de la tabla Tiene
+     * @throws SQLException si no se puede abrir la consulta
+     */
+    public Stream<Tiene> stream() throws SQLException {
+        return Cursor.abrir(SELECT_ALL, this::map, true);
+    }
+
+    /**
+     * Aplica una acción a cada una de las filas de la tabla Tiene, leyéndolas por bloques.
+     *
+     * @param accion código a ejecutar con cada elemento
+     * @return número de elementos recorridos, o -1 si hubo un error
+     */
+    public long forEach(Consumer<Tiene> accion) {
+        long total = 0;
+
+        try (Traza traza = Traza.operacionDAO();
+             Stream<Tiene> s = stream()) {
+            Iterator<Tiene> it = s.iterator();
+            while (it.hasNext()) {
+                accion.accept(it.next());
+                total++;
+            }
+            traza.filas(total);
+
+        } catch (SQLException | IllegalStateException e) {
+            e.printStackTrace();
+            return -1;
+        }
+
+        return total;
     }
 
     /**
      * Obtiene el historial completo de un vehículo,
-     * incluyendo el nombre y la descripción del mantenimiento (JOIN).
+     * incluyendo el nombre y la descripción del mantenimiento.
      *
      * @param idVehiculo id del vehículo
      * @return lista de mantenimientos que ha tenido
@@ -99,28 +167,17 @@ public class TieneDAO {
     public List<Tiene> getHistorialVehiculo(int idVehiculo) {
         List<Tiene> historial = new ArrayList<>();
 
-        try (PreparedStatement ps = conn.prepareStatement(SELECT_BY_VEHICULO)) {
+        try (Traza traza = Traza.operacionDAO();
+             Connection conn = MapaShards.lecturaVehiculo(idVehiculo);
+             PreparedStatement ps = conn.prepareStatement(SELECT_BY_VEHICULO)) {
 
             ps.setInt(1, idVehiculo);
             ResultSet rs = ps.executeQuery();
 
             while (rs.next()) {
-                Tiene t = map(rs);
-
-                // CORREGIDO: Recuperamos la columna 'tipo' en lugar de 'nombre_mantenimiento'
-                String nombreMant = rs.getString("tipo");
-                if (nombreMant != null) {
-                    try {
-                        t.getMantenimiento().setTipo(TipoMantenimiento.valueOf(nombreMant));
-                    } catch (IllegalArgumentException e) {
-                        System.err.println("Tipo de mantenimiento desconocido: " + nombreMant);
-                    }
-                }
-
-                t.getMantenimiento().setDescripcion(rs.getString("descripcion"));
-
-                historial.add(t);
+                historial.add(map(rs));
             }
+            traza.filas(historial.size());
 
         } catch (SQLException e) {
             e.printStackTrace();
@@ -129,6 +186,64 @@ public class TieneDAO {
         return historial;
     }
 
+    /**
+     * Obtiene una página del historial de todos los vehículos, del más reciente
+     * al más antiguo. Incluye marca y modelo del vehículo y tipo y descripción
+     * del mantenimiento, así la vista no tiene que hacer más consultas.
+     *
+     * La página se pide por clave: se pasa el último registro recibido y la BD
+     * continúa desde él por (fecha_hora, id_vehiculo, id_mantenimiento).
+     *
+     * @param despuesDe último registro de la página anterior (null para empezar)
+     * @param limite número máximo de registros a devolver
+     * @param filtros condiciones sobre id_vehiculo, id_mantenimiento, tipo o fecha_hora (puede ser null)
+     * @return registros de la página pedida
+     */
+    public List<Tiene> page(Tiene despuesDe, int limite, List<Filtro> filtros) {
+        List<Object> parametros = new ArrayList<>();
+
+        StringBuilder sql = new StringBuilder(SELECT_HISTORIAL_COMPLETO);
+        if (despuesDe != null) {
+            Timestamp fecha = Timestamp.valueOf(despuesDe.getFechaHora());
+            int idVehiculo = despuesDe.getVehiculo().getIdVehiculo();
+
+            sql.append(DESPUES_DE);
+            parametros.add(fecha);
+            parametros.add(fecha);
+            parametros.add(idVehiculo);
+            parametros.add(idVehiculo);
+            parametros.add(despuesDe.getMantenimiento().getIdMantenimiento());
+        }
+        sql.append(Paginacion.condiciones(filtros, COLUMNAS_FILTRO, parametros));
+        sql.append(ORDEN_HISTORIAL);
+        parametros.add(Paginacion.limite(limite));
+
+        try (Traza traza = Traza.operacionDAO()) {
+            List<Tiene> historial = MapaShards.juntar(conn -> {
+                List<Tiene> parte = new ArrayList<>();
+
+                try (PreparedStatement ps = conn.prepareStatement(sql.toString())) {
+                    Paginacion.asignar(ps, parametros);
+
+                    try (ResultSet rs = ps.executeQuery()) {
+                        while (rs.next()) {
+                            Tiene t = map(rs);
+                            t.getVehiculo().setMarca(rs.getString("marca"));
+                            t.getVehiculo().setModelo(rs.getString("modelo"));
+                            parte.add(t);
+                        }
+                    }
+                }
+                return parte;
+            });
+            return traza.filas(Paginacion.primeros(historial, ORDEN_PAGINA, limite));
+
+        } catch (SQLException e) {
+            e.printStackTrace();
+            return new ArrayList<>();
+        }
+    }
+
     /**
      * Inserta un registro en la tabla Tiene.
      *
@@ -136,7 +251,9 @@ public class TieneDAO {
      * @return true si se insertó correctamente
      */
     public boolean insert(Tiene t) {
-        try (PreparedStatement ps = conn.prepareStatement(INSERT)) {
+        try (Traza traza = Traza.operacionDAO();
+             Connection conn = MapaShards.conexionVehiculo(t.getVehiculo().getIdVehiculo());
+             PreparedStatement ps = conn.prepareStatement(INSERT)) {
 
             ps.setInt(1, t.getVehiculo().getIdVehiculo());
             ps.setInt(2, t.getMantenimiento().getIdMantenimiento());
@@ -144,7 +261,7 @@ public class TieneDAO {
             ps.setDouble(4, t.getCoste());
             ps.setString(5, t.getNotas());
 
-            return ps.executeUpdate() > 0;
+            return traza.filas(ps.executeUpdate()) > 0;
 
         } catch (SQLException e) {
             e.printStackTrace();
@@ -159,7 +276,9 @@ public class TieneDAO {
      * @return true si se actualizó bien
      */
     public boolean update(Tiene t) {
-        try (PreparedStatement ps = conn.prepareStatement(UPDATE)) {
+        try (Traza traza = Traza.operacionDAO();
+             Connection conn = MapaShards.conexionVehiculo(t.getVehiculo().getIdVehiculo());
+             PreparedStatement ps = conn.prepareStatement(UPDATE)) {
 
             ps.setTimestamp(1, Timestamp.valueOf(t.getFechaHora()));
             ps.setDouble(2, t.getCoste());
@@ -167,7 +286,7 @@ public class TieneDAO {
             ps.setInt(4, t.getVehiculo().getIdVehiculo());
             ps.setInt(5, t.getMantenimiento().getIdMantenimiento());
 
-            return ps.executeUpdate() > 0;
+            return traza.filas(ps.executeUpdate()) > 0;
 
         } catch (SQLException e) {
             e.printStackTrace();
@@ -183,12 +302,14 @@ public class TieneDAO {
      * @return true si se borró correctamente
      */
     public boolean delete(int idVehiculo, int idMantenimiento) {
-        try (PreparedStatement ps = conn.prepareStatement(DELETE)) {
+        try (Traza traza = Traza.operacionDAO();
+             Connection conn = MapaShards.conexionVehiculo(idVehiculo);
+             PreparedStatement ps = conn.prepareStatement(DELETE)) {
 
             ps.setInt(1, idVehiculo);
             ps.setInt(2, idMantenimiento);
 
-            return ps.executeUpdate() > 0;
+            return traza.filas(ps.executeUpdate()) > 0;
 
         } catch (SQLException e) {
             e.printStackTrace();
@@ -203,12 +324,14 @@ public class TieneDAO {
      * @return número total de mantenimientos
      */
     public int contarMantenimientos(int idVehiculo) {
-        try (PreparedStatement ps = conn.prepareStatement(COUNT_MANTENIMIENTOS)) {
+        try (Traza traza = Traza.operacionDAO();
+             Connection conn = MapaShards.lecturaVehiculo(idVehiculo);
+             PreparedStatement ps = conn.prepareStatement(COUNT_MANTENIMIENTOS)) {
 
             ps.setInt(1, idVehiculo);
             ResultSet rs = ps.executeQuery();
 
-            if (rs.next()) return rs.getInt("total");
+            if (rs.next()) return traza.fila(rs.getInt("total"));
 
         } catch (SQLException e) {
             e.printStackTrace();
@@ -219,32 +342,20 @@ public class TieneDAO {
 
     /**
      * Obtiene el último mantenimiento realizado a un vehículo.
-     * Incluye datos del mantenimiento gracias al JOIN.
+     * Incluye el tipo y la descripción del mantenimiento.
      *
      * @param idVehiculo id del vehículo
      * @return objeto Tiene con el último mantenimiento o null si no tiene
      */
     public Tiene getUltimoMantenimiento(int idVehiculo) {
-        try (PreparedStatement ps = conn.prepareStatement(SELECT_ULTIMO_MANTENIMIENTO)) {
+        try (Traza traza = Traza.operacionDAO();
+             Connection conn = MapaShards.lecturaVehiculo(idVehiculo);
+             PreparedStatement ps = conn.prepareStatement(SELECT_ULTIMO_MANTENIMIENTO)) {
 
             ps.setInt(1, idVehiculo);
             ResultSet rs = ps.executeQuery();
 
-            if (rs.next()) {
-                Tiene t = map(rs);
-                String nombreMant = rs.getString("tipo");
-                if (nombreMant != null) {
-                    try {
-                        t.getMantenimiento().setTipo(TipoMantenimiento.valueOf(nombreMant));
-                    } catch (IllegalArgumentException e) {
-                        System.err.println("Tipo de mantenimiento desconocido: " + nombreMant);
-                    }
-                }
-
-                t.getMantenimiento().setDescripcion(rs.getString("descripcion"));
-
-                return t;
-            }
+            if (rs.next()) return traza.fila(map(rs));
 
         } catch (SQLException e) {
             e.printStackTrace();
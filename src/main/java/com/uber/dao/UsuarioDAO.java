@@ -4,23 +4,34 @@ import com.uber.database.ConnectionBD;
 import com.uber.enums.Rol;
 import com.uber.model.Usuario;
 import com.uber.enums.EstadoCuenta;
+import com.uber.utils.Traza;
 
 import java.sql.*;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
 
 public class UsuarioDAO {
 
     private static final String SELECT_ALL = "SELECT * FROM Usuario";
     private static final String SELECT_BY_ID = "SELECT * FROM Usuario WHERE id_usuario = ?";
 
+    // Campos por los que se puede filtrar en page(...)
+    private static final Map<String, String> COLUMNAS_FILTRO = Map.of(
+            "nombre", "nombre",
+            "apellidos", "apellidos",
+            "email", "email",
+            "estado_cuenta", "estado_cuenta",
+            "rol", "rol");
+
     private static final String INSERT =
             "INSERT INTO Usuario (nombre, apellidos, email, contrasena, telefono, metodo_pago, saldo, estado_cuenta, rol) " +
                     "VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?)";
 
+    // El saldo no se toca aquí: solo cambia con apuntes de MovimientoDAO
     private static final String UPDATE =
             "UPDATE Usuario SET nombre = ?, apellidos = ?, email = ?, contrasena = ?, telefono = ?, " +
-                    "metodo_pago = ?, saldo = ?, estado_cuenta = ?, rol = ? WHERE id_usuario = ?";
+                    "metodo_pago = ?, estado_cuenta = ?, rol = ? WHERE id_usuario = ?";
 
     private static final String DELETE = "DELETE FROM Usuario WHERE id_usuario = ?";
 
@@ -28,7 +39,7 @@ public class UsuarioDAO {
             "SELECT u.*, r.id_reserva, r.fecha_hora_inicio, r.estado " +
                     "FROM Usuario u LEFT JOIN Reserva r ON u.id_usuario = r.id_usuario WHERE u.id_usuario = ?";
 
-    private static final String LOGIN =
+    static final String LOGIN =
             "SELECT * FROM Usuario WHERE email = ? AND contrasena = ?";
 
     private static final String CHECK_EMAIL =
@@ -37,12 +48,6 @@ public class UsuarioDAO {
     private static final String UPDATE_SALDO =
             "UPDATE Usuario SET saldo = ? WHERE id_usuario = ?";
 
-    private Connection conn;
-
-    public UsuarioDAO() {
-        conn = ConnectionBD.getConnection();
-    }
-
     /**
      * Convierte una fila del ResultSet en un objeto Usuario.
      * @param rs fila obtenida de la consulta SQL
@@ -73,10 +78,51 @@ public class UsuarioDAO {
     public List<Usuario> getAll() {
         List<Usuario> lista = new ArrayList<>();
 
-        try (Statement st = conn.createStatement();
+        try (Traza traza = Traza.operacionDAO();
+             Connection conn = ConnectionBD.getConnectionLectura();
+             Statement st = conn.createStatement();
              ResultSet rs = st.executeQuery(SELECT_ALL)) {
 
             while (rs.next()) lista.add(mapUsuario(rs));
+            traza.filas(lista.size());
+
+        } catch (SQLException e) {
+            e.printStackTrace();
+        }
+
+        return lista;
+    }
+
+    /**
+     * Devuelve la página de usuarios siguiente a la clave indicada, ordenada por id.
+     * Para la primera página se pasa 0 y para las siguientes el id del último
+     * elemento recibido.
+     *
+     * @param despuesDeId id del último elemento de la página anterior (0 para empezar)
+     * @param limite número máximo de elementos
+     * @param filtros condiciones sobre nombre, apellidos, email, estado_cuenta o rol (puede ser null)
+     * @return lista con como mucho {@code limite} elementos
+     */
+    public List<Usuario> page(int despuesDeId, int limite, List<Filtro> filtros) {
+        List<Usuario> lista = new ArrayList<>();
+        List<Object> parametros = new ArrayList<>();
+        parametros.add(despuesDeId);
+
+        String sql = SELECT_ALL + " WHERE id_usuario > ?"
+                + Paginacion.condiciones(filtros, COLUMNAS_FILTRO, parametros)
+                + " ORDER BY id_usuario LIMIT ?";
+        parametros.add(Paginacion.limite(limite));
+
+        try (Traza traza = Traza.operacionDAO();
+             Connection conn = ConnectionBD.getConnectionLectura();
+             PreparedStatement ps = conn.prepareStatement(sql)) {
+
+            Paginacion.asignar(ps, parametros);
+
+            try (ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) lista.add(mapUsuario(rs));
+                traza.filas(lista.size());
+            }
 
         } catch (SQLException e) {
             e.printStackTrace();
@@ -91,12 +137,14 @@ public class UsuarioDAO {
      * @return usuario encontrado o null si no existe
      */
     public Usuario getById(int id) {
-        try (PreparedStatement ps = conn.prepareStatement(SELECT_BY_ID)) {
+        try (Traza traza = Traza.operacionDAO();
+             Connection conn = ConnectionBD.getConnection();
+             PreparedStatement ps = conn.prepareStatement(SELECT_BY_ID)) {
 
             ps.setInt(1, id);
             ResultSet rs = ps.executeQuery();
 
-            if (rs.next()) return mapUsuario(rs);
+            if (rs.next()) return traza.fila(mapUsuario(rs));
 
         } catch (SQLException e) {
             e.printStackTrace();
@@ -110,7 +158,9 @@ public class UsuarioDAO {
      * @return true si se insertó correctamente
      */
     public boolean insert(Usuario u) {
-        try (PreparedStatement ps = conn.prepareStatement(INSERT)) {
+        try (Traza traza = Traza.operacionDAO();
+             Connection conn = ConnectionBD.getConnection();
+             PreparedStatement ps = conn.prepareStatement(INSERT)) {
 
             ps.setString(1, u.getNombre());
             ps.setString(2, u.getApellidos());
@@ -122,7 +172,7 @@ public class UsuarioDAO {
             ps.setString(8, u.getEstadoCuenta().name());
             ps.setString(9, u.getRol().name());
 
-            return ps.executeUpdate() > 0;
+            return traza.filas(ps.executeUpdate()) > 0;
 
         } catch (SQLException e) {
             e.printStackTrace();
@@ -131,12 +181,14 @@ public class UsuarioDAO {
     }
 
     /**
-     * Actualiza los datos de un usuario existente.
+     * Actualiza los datos de un usuario existente (todo menos el saldo).
      * @param u objeto usuario con la información editada
      * @return true si se actualizó correctamente
      */
     public boolean update(Usuario u) {
-        try (PreparedStatement ps = conn.prepareStatement(UPDATE)) {
+        try (Traza traza = Traza.operacionDAO();
+             Connection conn = ConnectionBD.getConnection();
+             PreparedStatement ps = conn.prepareStatement(UPDATE)) {
 
             ps.setString(1, u.getNombre());
             ps.setString(2, u.getApellidos());
@@ -144,12 +196,11 @@ public class UsuarioDAO {
             ps.setString(4, u.getContrasena());
             ps.setString(5, u.getTelefono());
             ps.setString(6, u.getMetodoPago());
-            ps.setDouble(7, u.getSaldo());
-            ps.setString(8, u.getEstadoCuenta().name());
-            ps.setString(9, u.getRol().name());
-            ps.setInt(10, u.getIdUsuario());
+            ps.setString(7, u.getEstadoCuenta().name());
+            ps.setString(8, u.getRol().name());
+            ps.setInt(9, u.getIdUsuario());
 
-            return ps.executeUpdate() > 0;
+            return traza.filas(ps.executeUpdate()) > 0;
 
         } catch (SQLException e) {
             e.printStackTrace();
@@ -163,10 +214,12 @@ public class UsuarioDAO {
      * @return true si se borró con éxito
      */
     public boolean delete(int id) {
-        try (PreparedStatement ps = conn.prepareStatement(DELETE)) {
+        try (Traza traza = Traza.operacionDAO();
+             Connection conn = ConnectionBD.getConnection();
+             PreparedStatement ps = conn.prepareStatement(DELETE)) {
 
             ps.setInt(1, id);
-            return ps.executeUpdate() > 0;
+            return traza.filas(ps.executeUpdate()) > 0;
 
         } catch (SQLException e) {
             e.printStackTrace();
@@ -180,7 +233,9 @@ public class UsuarioDAO {
      * @param idUsuario id del usuario
      */
     public void mostrarUsuarioConReservas(int idUsuario) {
-        try (PreparedStatement ps = conn.prepareStatement(SELECT_USUARIO_RESERVAS)) {
+        try (Traza traza = Traza.operacionDAO();
+             Connection conn = ConnectionBD.getConnection();
+             PreparedStatement ps = conn.prepareStatement(SELECT_USUARIO_RESERVAS)) {
 
             ps.setInt(1, idUsuario);
             ResultSet rs = ps.executeQuery();
@@ -188,6 +243,7 @@ public class UsuarioDAO {
             System.out.println("\n--- Usuario y sus reservas ---");
 
             while (rs.next()) {
+                traza.filas(1);
                 System.out.println("Usuario: " + rs.getString("nombre") + " " + rs.getString("apellidos"));
                 System.out.println("Reserva: " + rs.getInt("id_reserva") +
                         " | Inicio: " + rs.getString("fecha_hora_inicio") +
@@ -207,14 +263,16 @@ public class UsuarioDAO {
      * @return usuario si es correcto, null si falla el login
      */
     public Usuario login(String email, String pass) {
-        try (PreparedStatement ps = conn.prepareStatement(LOGIN)) {
+        try (Traza traza = Traza.operacionDAO();
+             Connection conn = ConnectionBD.getConnection();
+             PreparedStatement ps = conn.prepareStatement(LOGIN)) {
 
             ps.setString(1, email);
             ps.setString(2, pass);
 
             ResultSet rs = ps.executeQuery();
 
-            if (rs.next()) return mapUsuario(rs);
+            if (rs.next()) return traza.fila(mapUsuario(rs));
 
         } catch (SQLException e) {
             e.printStackTrace();
@@ -228,12 +286,14 @@ public class UsuarioDAO {
      * @return true si ya existe en la base de datos
      */
     public boolean emailExiste(String email) {
-        try (PreparedStatement ps = conn.prepareStatement(CHECK_EMAIL)) {
+        try (Traza traza = Traza.operacionDAO();
+             Connection conn = ConnectionBD.getConnection();
+             PreparedStatement ps = conn.prepareStatement(CHECK_EMAIL)) {
 
             ps.setString(1, email);
             ResultSet rs = ps.executeQuery();
 
-            if (rs.next()) return rs.getInt(1) > 0;
+            if (rs.next()) return traza.fila(rs.getInt(1)) > 0;
 
         } catch (SQLException e) {
             e.printStackTrace();
@@ -246,14 +306,19 @@ public class UsuarioDAO {
      * @param idUsuario id del usuario
      * @param nuevoSaldo saldo final calculado
      * @return true si se guardó correctamente
+     * @deprecated sobrescribe el saldo con un valor calculado fuera de la BD, así que
+     * dos cambios a la vez se pisan y no queda registro. Usar {@link MovimientoDAO#registrar}.
      */
+    @Deprecated
     public boolean actualizarSaldo(int idUsuario, double nuevoSaldo) {
-        try (PreparedStatement ps = conn.prepareStatement(UPDATE_SALDO)) {
+        try (Traza traza = Traza.operacionDAO();
+             Connection conn = ConnectionBD.getConnection();
+             PreparedStatement ps = conn.prepareStatement(UPDATE_SALDO)) {
 
             ps.setDouble(1, nuevoSaldo);
             ps.setInt(2, idUsuario);
 
-            return ps.executeUpdate() > 0;
+            return traza.filas(ps.executeUpdate()) > 0;
 
         } catch (SQLException e) {
             e.printStackTrace();
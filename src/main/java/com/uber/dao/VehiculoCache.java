@@ -0,0 +1,268 @@
+package com.uber.dao;
+
+import com.uber.database.ConnectionBD;
+import com.uber.enums.EstadoVehiculo;
+import com.uber.enums.TipoVehiculo;
+import com.uber.model.Estacion;
+import com.uber.model.Vehiculo;
+
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+/**
+ * Copia en memoria del catálogo de vehículos (con su estación).
+ *
+ * Se carga entera la primera vez que se consulta y después {@link VehiculoDAO}
+ * y {@link ReservaDAO} la mantienen al día al escribir en la BD (write-through).
+ * Como red de seguridad, pasado el TTL de db.properties (cache.vehiculos.ttlMs)
+ * se vuelve a cargar de la BD, por si otra aplicación ha cambiado la tabla.
+ *
+ * Está indexada por id, tipo, estado y estación. Nunca se devuelven los
+ * objetos internos sino copias, así un controlador puede modificar lo que
+ * recibe sin desordenar los índices.
+ */
+public final class VehiculoCache {
+
+    private static final VehiculoCache INSTANCIA = new VehiculoCache();
+
+    // Índices: el principal ordenado por id y el resto con ids ordenados
+    private final TreeMap<Integer, Vehiculo> porId = new TreeMap<>();
+    private final Map<TipoVehiculo, Set<Integer>> porTipo = new EnumMap<>(TipoVehiculo.class);
+    private final Map<EstadoVehiculo, Set<Integer>> porEstado = new EnumMap<>(EstadoVehiculo.class);
+    private final Map<Integer, Set<Integer>> porEstacion = new HashMap<>();
+
+    private boolean cargada = false;
+    private long caducaEn = 0;
+
+    // Cambia con cada escritura; sirve para detectar escrituras durante una carga
+    private long version = 0;
+
+    // Consulta completa de la tabla, sin pasar por la caché
+    private final VehiculoDAO dao = new VehiculoDAO();
+
+    private VehiculoCache() {}
+
+    /** @return la caché compartida de vehículos */
+    public static VehiculoCache getInstancia() {
+        return INSTANCIA;
+    }
+
+    // ================================================================
+    //   LECTURAS
+    // ================================================================
+
+    /**
+     * @return copia de todos los vehículos, ordenados por id
+     * @throws SQLException si hay que recargar y la consulta falla
+     */
+    public List<Vehiculo> getAll() throws SQLException {
+        synchronized (this) {
+            if (vigente()) return copiar(porId.values());
+        }
+        recargar();
+        synchronized (this) {
+            return copiar(porId.values());
+        }
+    }
+
+    /**
+     * @param id id del vehículo
+     * @return copia del vehículo o null si no existe
+     * @throws SQLException si hay que recargar y la consulta falla
+     */
+    public Vehiculo getById(int id) throws SQLException {
+        synchronized (this) {
+            if (vigente()) return copiar(porId.get(id));
+        }
+        recargar();
+        synchronized (this) {
+            return copiar(porId.get(id));
+        }
+    }
+
+    /**
+     * Busca vehículos en memoria. Los parámetros a null no filtran.
+     * Se recorre el índice más pequeño de los pedidos y se comprueba el resto.
+     *
+     * @return copias de los vehículos que cumplen todo, ordenados por id
+     * @throws SQLException si hay que recargar y la consulta falla
+     */
+    public List<Vehiculo> buscar(TipoVehiculo tipo, EstadoVehiculo estado, Integer idEstacion,
+                                 String ciudad, Double bateriaMinima) throws SQLException {
+        synchronized (this) {
+            if (vigente()) return filtrar(tipo, estado, idEstacion, ciudad, bateriaMinima);
+        }
+        recargar();
+        synchronized (this) {
+            return filtrar(tipo, estado, idEstacion, ciudad, bateriaMinima);
+        }
+    }
+
+    private List<Vehiculo> filtrar(TipoVehiculo tipo, EstadoVehiculo estado, Integer idEstacion,
+                                   String ciudad, Double bateriaMinima) {
+        Set<Integer> candidatos = porId.keySet();
+        if (tipo != null) candidatos = menor(candidatos, porTipo.getOrDefault(tipo, Set.of()));
+        if (estado != null) candidatos = menor(candidatos, porEstado.getOrDefault(estado, Set.of()));
+        if (idEstacion != null) candidatos = menor(candidatos, porEstacion.getOrDefault(idEstacion, Set.of()));
+
+        // Todos los índices guardan los ids ordenados
+        List<Vehiculo> resultado = new ArrayList<>();
+        for (int id : candidatos) {
+            Vehiculo v = porId.get(id);
+            if (tipo != null && v.getTipo() != tipo) continue;
+            if (estado != null && v.getEstadoVehiculo() != estado) continue;
+            if (idEstacion != null && v.getEstacion().getIdEstacion() != idEstacion) continue;
+            if (ciudad != null && !ciudad.equalsIgnoreCase(v.getEstacion().getCiudad())) continue;
+            if (bateriaMinima != null && v.getNivelBateria() < bateriaMinima) continue;
+            resultado.add(copiar(v));
+        }
+        return resultado;
+    }
+
+    private static Set<Integer> menor(Set<Integer> a, Set<Integer> b) {
+        return b.size() < a.size() ? b : a;
+    }
+
+    // ================================================================
+    //   ESCRITURAS (las llaman los DAO después de escribir en la BD)
+    // ================================================================
+
+    /**
+     * Guarda o sustituye un vehículo ya escrito en la BD.
+     * Si no trae la estación completa, se marca la caché para recargar.
+     */
+    synchronized void poner(Vehiculo v) {
+        version++;
+        if (!cargada) return;
+
+        if (v.getEstacion() == null || v.getEstacion().getNombreEstacion() == null) {
+            invalidar();
+            return;
+        }
+
+        quitarDeIndices(porId.get(v.getIdVehiculo()));
+        Vehiculo copia = copiar(v);
+        porId.put(copia.getIdVehiculo(), copia);
+        anadirAIndices(copia);
+    }
+
+    /**
+     * Quita un vehículo borrado de la BD.
+     */
+    synchronized void quitar(int idVehiculo) {
+        version++;
+        if (!cargada) return;
+
+        quitarDeIndices(porId.remove(idVehiculo));
+    }
+
+    /**
+     * Cambia solo el estado de un vehículo (reservas, cancelaciones...).
+     */
+    synchronized void cambiarEstado(int idVehiculo, EstadoVehiculo estado) {
+        version++;
+        if (!cargada) return;
+
+        Vehiculo v = porId.get(idVehiculo);
+        if (v == null) {
+            invalidar();
+            return;
+        }
+        quitarDeIndices(v);
+        v.setEstadoVehiculo(estado);
+        anadirAIndices(v);
+    }
+
+    /**
+     * Fuerza que la próxima lectura vuelva a cargar de la BD.
+     * Se usa cuando cambian datos que la caché copia (por ejemplo una estación).
+     */
+    public synchronized void invalidar() {
+        version++;
+        caducaEn = 0;
+    }
+
+    // ================================================================
+    //   CARGA
+    // ================================================================
+
+    private boolean vigente() {
+        return cargada && System.currentTimeMillis() < caducaEn;
+    }
+
+    /**
+     * Vuelve a leer la tabla completa. La consulta se hace fuera del bloqueo
+     * para no frenar las lecturas; si mientras tanto hubo alguna escritura,
+     * el resultado se usa pero se deja caducado para la siguiente lectura.
+     */
+    private void recargar() throws SQLException {
+        long versionInicial;
+        synchronized (this) {
+            if (vigente()) return;
+            versionInicial = version;
+        }
+
+        List<Vehiculo> todos = dao.cargarDesdeBD();
+
+        synchronized (this) {
+            porId.clear();
+            porTipo.clear();
+            porEstado.clear();
+            porEstacion.clear();
+
+            for (Vehiculo v : todos) {
+                porId.put(v.getIdVehiculo(), v);
+                anadirAIndices(v);
+            }
+
+            cargada = true;
+            long ttl = ConnectionBD.getEntero("cache.vehiculos.ttlMs", 60_000);
+            caducaEn = version == versionInicial ? System.currentTimeMillis() + ttl : 0;
+        }
+    }
+
+    private void anadirAIndices(Vehiculo v) {
+        porTipo.computeIfAbsent(v.getTipo(), k -> new TreeSet<>()).add(v.getIdVehiculo());
+        porEstado.computeIfAbsent(v.getEstadoVehiculo(), k -> new TreeSet<>()).add(v.getIdVehiculo());
+        porEstacion.computeIfAbsent(v.getEstacion().getIdEstacion(), k -> new TreeSet<>()).add(v.getIdVehiculo());
+    }
+
+    private void quitarDeIndices(Vehiculo v) {
+        if (v == null) return;
+        quitarId(porTipo.get(v.getTipo()), v.getIdVehiculo());
+        quitarId(porEstado.get(v.getEstadoVehiculo()), v.getIdVehiculo());
+        quitarId(porEstacion.get(v.getEstacion().getIdEstacion()), v.getIdVehiculo());
+    }
+
+    private static void quitarId(Set<Integer> indice, int id) {
+        if (indice != null) indice.remove(id);
+    }
+
+    // ================================================================
+    //   COPIAS
+    // ================================================================
+
+    private static List<Vehiculo> copiar(Iterable<Vehiculo> vehiculos) {
+        List<Vehiculo> lista = new ArrayList<>();
+        for (Vehiculo v : vehiculos) lista.add(copiar(v));
+        return lista;
+    }
+
+    private static Vehiculo copiar(Vehiculo v) {
+        if (v == null) return null;
+
+        Estacion e = v.getEstacion();
+        Estacion copiaEstacion = e == null ? null : new Estacion(
+                e.getIdEstacion(), e.getCiudad(), e.getNombreEstacion(), e.getDireccion(), e.getCapacidad());
+
+        return new Vehiculo(v.getIdVehiculo(), v.getTipo(), v.getMarca(), v.getModelo(),
+                v.getEstadoVehiculo(), copiaEstacion, v.getNivelBateria(), v.getKilometraje());
+    }
+}
@@ -1,24 +1,34 @@
 package com.uber.dao;
 
-import com.uber.database.ConnectionBD;
+import com.uber.database.MapaShards;
 import com.uber.enums.EstadoVehiculo;
 import com.uber.enums.TipoVehiculo;
 import com.uber.model.Estacion;
 import com.uber.model.Vehiculo;
+import com.uber.utils.Traza;
 
 import java.sql.*;
 import java.util.ArrayList;
+import java.util.Comparator;
 import java.util.List;
+import java.util.Map;
 
 public class VehiculoDAO {
 
+    private static final Comparator<Vehiculo> POR_ID = Comparator.comparingInt(Vehiculo::getIdVehiculo);
+
     private static final String SELECT_ALL =
             "SELECT v.*, e.id_estacion, e.nombre_estacion, e.direccion, e.capacidad, e.ciudad " +
                     "FROM Vehiculo v INNER JOIN Estacion e ON v.id_estacion = e.id_estacion";
 
-    private static final String SELECT_BY_ID =
-            "SELECT v.*, e.id_estacion, e.nombre_estacion, e.direccion, e.capacidad, e.ciudad " +
-                    "FROM Vehiculo v INNER JOIN Estacion e ON v.id_estacion = e.id_estacion WHERE v.id_vehiculo = ?";
+    // Campos por los que se puede filtrar en page(...)
+    private static final Map<String, String> COLUMNAS_FILTRO = Map.of(
+            "tipo", "v.tipo",
+            "marca", "v.marca",
+            "estado_vehiculo", "v.estado_vehiculo",
+            "id_estacion", "v.id_estacion",
+            "nivel_bateria", "v.nivel_bateria",
+            "ciudad", "e.ciudad");
 
     private static final String INSERT =
             "INSERT INTO Vehiculo (tipo, marca, modelo, estado_vehiculo, id_estacion, nivel_bateria, kilometraje) " +
@@ -35,12 +45,6 @@ public class VehiculoDAO {
             "SELECT v.id_vehiculo, r.id_reserva, r.fecha_hora_inicio, r.fecha_hora_fin, r.estado " +
                     "FROM Vehiculo v LEFT JOIN Reserva r ON v.id_vehiculo = r.id_vehiculo WHERE v.id_vehiculo = ?";
 
-    private final Connection conn;
-
-    public VehiculoDAO() {
-        this.conn = ConnectionBD.getConnection();
-    }
-
     /**
      * Convierte una fila del ResultSet en un objeto Estacion.
      * @param rs datos obtenidos de la consulta SQL
@@ -80,38 +84,160 @@ public class VehiculoDAO {
 
     /**
      * Obtiene todos los vehículos registrados.
+     * Se leen de {@link VehiculoCache}; solo se consulta la BD si la caché ha caducado.
      * @return lista completa de vehículos
      */
     public List<Vehiculo> getAll() {
-        List<Vehiculo> lista = new ArrayList<>();
-        try (Statement st = conn.createStatement();
-             ResultSet rs = st.executeQuery(SELECT_ALL)) {
+        try (Traza traza = Traza.operacionDAO()) {
+            return traza.filas(VehiculoCache.getInstancia().getAll());
+        } catch (SQLException e) {
+            e.printStackTrace();
+            return new ArrayList<>();
+        }
+    }
+
+    /**
+     * Lee todos los vehículos de la BD sin pasar por la caché.
+     * Es la consulta con la que se carga {@link VehiculoCache}.
+     * Con la flota repartida ({@link MapaShards}) se leen todos los shards a la vez.
+     * @return lista completa de vehículos
+     * @throws SQLException si falla la consulta
+     */
+    List<Vehiculo> cargarDesdeBD() throws SQLException {
+        return MapaShards.juntar(conn -> {
+            List<Vehiculo> lista = new ArrayList<>();
+            try (Statement st = conn.createStatement();
+                 ResultSet rs = st.executeQuery(SELECT_ALL)) {
+
+                while (rs.next()) lista.add(mapVehiculo(rs));
+            }
+            return lista;
+        });
+    }
 
-            while (rs.next()) lista.add(mapVehiculo(rs));
+    /**
+     * Ejecuta una consulta de vehículos en todos los shards y junta las filas.
+     */
+    private List<Vehiculo> consultar(String sql, List<Object> parametros) throws SQLException {
+        return MapaShards.juntar(conn -> {
+            List<Vehiculo> lista = new ArrayList<>();
+            try (PreparedStatement ps = conn.prepareStatement(sql)) {
+                Paginacion.asignar(ps, parametros);
+
+                try (ResultSet rs = ps.executeQuery()) {
+                    while (rs.next()) lista.add(mapVehiculo(rs));
+                }
+            }
+            return lista;
+        });
+    }
+
+    /**
+     * Devuelve la página de vehículos siguiente a la clave indicada, ordenada por id.
+     * Para la primera página se pasa 0 y para las siguientes el id del último
+     * elemento recibido.
+     *
+     * @param despuesDeId id del último elemento de la página anterior (0 para empezar)
+     * @param limite número máximo de elementos
+     * @param filtros condiciones sobre tipo, marca, estado_vehiculo, id_estacion, nivel_bateria o ciudad (puede ser null)
+     * @return lista con como mucho {@code limite} elementos
+     */
+    public List<Vehiculo> page(int despuesDeId, int limite, List<Filtro> filtros) {
+        List<Object> parametros = new ArrayList<>();
+        parametros.add(despuesDeId);
 
+        String sql = SELECT_ALL + " WHERE v.id_vehiculo > ?"
+                + Paginacion.condiciones(filtros, COLUMNAS_FILTRO, parametros)
+                + " ORDER BY v.id_vehiculo LIMIT ?";
+        parametros.add(Paginacion.limite(limite));
+
+        try (Traza traza = Traza.operacionDAO()) {
+            return traza.filas(Paginacion.primeros(consultar(sql, parametros), POR_ID, limite));
         } catch (SQLException e) {
             e.printStackTrace();
+            return new ArrayList<>();
         }
-        return lista;
     }
 
     /**
-     * Busca un vehículo por su ID.
-     * @param id identificador del vehículo
-     * @return vehículo encontrado o null si no existe
+     * Busca vehículos en {@link VehiculoCache}. Los parámetros a null no filtran.
+     *
+     * @param tipo tipo de vehículo
+     * @param estado estado del vehículo
+     * @param idEstacion estación donde está aparcado
+     * @param ciudad ciudad de la estación
+     * @param bateriaMinima nivel mínimo de batería (incluido)
+     * @return vehículos que cumplen todas las condiciones, ordenados por id
      */
-    public Vehiculo getById(int id) {
-        try (PreparedStatement ps = conn.prepareStatement(SELECT_BY_ID)) {
+    public List<Vehiculo> buscar(TipoVehiculo tipo, EstadoVehiculo estado, Integer idEstacion,
+                                 String ciudad, Double bateriaMinima) {
+        try (Traza traza = Traza.operacionDAO()) {
+            return traza.filas(VehiculoCache.getInstancia().buscar(tipo, estado, idEstacion, ciudad, bateriaMinima));
+        } catch (SQLException e) {
+            e.printStackTrace();
+            return new ArrayList<>();
+        }
+    }
 
-            ps.setInt(1, id);
-            ResultSet rs = ps.executeQuery();
+    /**
+     * Busca vehículos filtrando directamente en la BD, sin pasar por la caché.
+     * Los parámetros a null no filtran. Las columnas usadas tienen índices
+     * compuestos en el esquema (estado, tipo, batería) y (estación, estado).
+     *
+     * @param tipo tipo de vehículo
+     * @param estado estado del vehículo
+     * @param idEstacion estación donde está aparcado
+     * @param ciudad ciudad de la estación
+     * @param bateriaMinima nivel mínimo de batería (incluido)
+     * @return vehículos que cumplen todas las condiciones, ordenados por id
+     */
+    public List<Vehiculo> buscarEnBD(TipoVehiculo tipo, EstadoVehiculo estado, Integer idEstacion,
+                                     String ciudad, Double bateriaMinima) {
+        List<Object> parametros = new ArrayList<>();
+        String sql = sqlBuscar(tipo, estado, idEstacion, ciudad, bateriaMinima, parametros);
+
+        try (Traza traza = Traza.operacionDAO()) {
+            List<Vehiculo> lista = consultar(sql, parametros);
+            lista.sort(POR_ID);
+            return traza.filas(lista);
+        } catch (SQLException e) {
+            e.printStackTrace();
+            return new ArrayList<>();
+        }
+    }
 
-            if (rs.next()) return mapVehiculo(rs);
+    /**
+     * SQL de {@link #buscarEnBD}. También lo usa {@link RevisionPlanes}.
+     *
+     * @param parametros lista donde se añaden los valores de los huecos, en orden
+     * @return consulta con un hueco por cada condición no nula
+     */
+    static String sqlBuscar(TipoVehiculo tipo, EstadoVehiculo estado, Integer idEstacion,
+                            String ciudad, Double bateriaMinima, List<Object> parametros) {
+        List<Filtro> filtros = new ArrayList<>();
+        if (tipo != null) filtros.add(Filtro.igual("tipo", tipo));
+        if (estado != null) filtros.add(Filtro.igual("estado_vehiculo", estado));
+        if (idEstacion != null) filtros.add(Filtro.igual("id_estacion", idEstacion));
+        if (ciudad != null) filtros.add(Filtro.igual("ciudad", ciudad));
+        if (bateriaMinima != null) filtros.add(Filtro.mayorOIgual("nivel_bateria", bateriaMinima));
+
+        return SELECT_ALL + " WHERE 1 = 1"
+                + Paginacion.condiciones(filtros, COLUMNAS_FILTRO, parametros)
+                + " ORDER BY v.id_vehiculo";
+    }
 
+    /**
+     * Busca un vehículo por su ID (en {@link VehiculoCache}).
+     * @param id identificador del vehículo
+     * @return vehículo encontrado o null si no existe
+     */
+    public Vehiculo getById(int id) {
+        try (Traza traza = Traza.operacionDAO()) {
+            return traza.fila(VehiculoCache.getInstancia().getById(id));
         } catch (SQLException e) {
             e.printStackTrace();
+            return null;
         }
-        return null;
     }
 
     /**
@@ -120,7 +246,9 @@ public class VehiculoDAO {
      * @return true si se insertó correctamente
      */
     public boolean insert(Vehiculo v) {
-        try (PreparedStatement ps = conn.prepareStatement(INSERT)) {
+        try (Traza traza = Traza.operacionDAO();
+             Connection conn = MapaShards.conexionEstacion(v.getEstacion().getIdEstacion());
+             PreparedStatement ps = conn.prepareStatement(INSERT, Statement.RETURN_GENERATED_KEYS)) {
 
             ps.setString(1, v.getTipo().name());
             ps.setString(2, v.getMarca());
@@ -130,7 +258,18 @@ public class VehiculoDAO {
             ps.setDouble(6, v.getNivelBateria());
             ps.setDouble(7, v.getKilometraje());
 
-            return ps.executeUpdate() > 0;
+            if (traza.filas(ps.executeUpdate()) == 0) return false;
+
+            // Con el id generado el vehículo ya puede entrar en la caché
+            try (ResultSet keys = ps.getGeneratedKeys()) {
+                if (keys.next()) {
+                    v.setIdVehiculo(keys.getInt(1));
+                    VehiculoCache.getInstancia().poner(v);
+                } else {
+                    VehiculoCache.getInstancia().invalidar();
+                }
+            }
+            return true;
 
         } catch (SQLException e) {
             e.printStackTrace();
@@ -140,22 +279,37 @@ public class VehiculoDAO {
 
     /**
      * Actualiza un vehículo existente.
+     * No se puede llevar a una estación de otro shard: sus reservas y
+     * mantenimientos se quedarían en el de antes.
      * @param v objeto vehículo con los nuevos datos
      * @return true si la actualización fue correcta
      */
     public boolean update(Vehiculo v) {
-        try (PreparedStatement ps = conn.prepareStatement(UPDATE)) {
+        try (Traza traza = Traza.operacionDAO()) {
+            String shard = MapaShards.shardDeVehiculo(v.getIdVehiculo());
+            if (!shard.equals(MapaShards.shardDeEstacion(v.getEstacion().getIdEstacion()))) {
+                System.err.println("❌ El vehículo " + v.getIdVehiculo() + " no puede pasar a la estación "
+                        + v.getEstacion().getIdEstacion() + ": está en otro shard.");
+                return false;
+            }
 
-            ps.setString(1, v.getTipo().name());
-            ps.setString(2, v.getMarca());
-            ps.setString(3, v.getModelo());
-            ps.setString(4, v.getEstadoVehiculo().name());
-            ps.setInt(5, v.getEstacion().getIdEstacion());
-            ps.setDouble(6, v.getNivelBateria());
-            ps.setDouble(7, v.getKilometraje());
-            ps.setInt(8, v.getIdVehiculo());
+            try (Connection conn = MapaShards.getConnection(shard);
+                 PreparedStatement ps = conn.prepareStatement(UPDATE)) {
+
+                ps.setString(1, v.getTipo().name());
+                ps.setString(2, v.getMarca());
+                ps.setString(3, v.getModelo());
+                ps.setString(4, v.getEstadoVehiculo().name());
+                ps.setInt(5, v.getEstacion().getIdEstacion());
+                ps.setDouble(6, v.getNivelBateria());
+                ps.setDouble(7, v.getKilometraje());
+                ps.setInt(8, v.getIdVehiculo());
 
-            return ps.executeUpdate() > 0;
+                if (traza.filas(ps.executeUpdate()) == 0) return false;
+
+                VehiculoCache.getInstancia().poner(v);
+                return true;
+            }
 
         } catch (SQLException e) {
             e.printStackTrace();
@@ -169,10 +323,15 @@ public class VehiculoDAO {
      * @return true si se eliminó correctamente
      */
     public boolean delete(int id) {
-        try (PreparedStatement ps = conn.prepareStatement(DELETE)) {
+        try (Traza traza = Traza.operacionDAO();
+             Connection conn = MapaShards.conexionVehiculo(id);
+             PreparedStatement ps = conn.prepareStatement(DELETE)) {
 
             ps.setInt(1, id);
-            return ps.executeUpdate() > 0;
+            if (traza.filas(ps.executeUpdate()) == 0) return false;
+
+            VehiculoCache.getInstancia().quitar(id);
+            return true;
 
         } catch (SQLException e) {
             e.printStackTrace();
@@ -186,7 +345,9 @@ public class VehiculoDAO {
      * @param idVehiculo vehículo del cual se quieren ver las reservas
      */
     public void mostrarReservasDelVehiculo(int idVehiculo) {
-        try (PreparedStatement ps = conn.prepareStatement(SELECT_VEHICULO_RESERVAS)) {
+        try (Traza traza = Traza.operacionDAO();
+             Connection conn = MapaShards.conexionVehiculo(idVehiculo);
+             PreparedStatement ps = conn.prepareStatement(SELECT_VEHICULO_RESERVAS)) {
 
             ps.setInt(1, idVehiculo);
             ResultSet rs = ps.executeQuery();
@@ -195,6 +356,7 @@ public class VehiculoDAO {
 
             while (rs.next()) {
                 int idReserva = rs.getInt("id_reserva");
+                traza.filas(1);
 
                 if (idReserva == 0) {
                     System.out.println("Este vehículo no tiene reservas.");
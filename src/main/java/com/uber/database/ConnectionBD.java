@@ -6,53 +6,260 @@ import java.sql.Connection;
 import java.sql.SQLException;
 import java.util.Properties;
 
+/**
+ * Acceso a la BD para los DAO.
+ *
+ * Hay un pool principal, donde se escribe, y opcionalmente otro contra una
+ * réplica de solo lectura (replica.* en db.properties). Los listados y paneles
+ * leen con {@link #getConnectionLectura()}, que va a la réplica si la hay;
+ * todo lo demás usa {@link #getConnection()} y va al principal.
+ *
+ * La réplica puede ir un poco por detrás del principal. Para que quien acaba
+ * de escribir (p. ej. una reserva) vea su cambio al recargar, durante
+ * replica.leerTrasEscribirMs después de cada escritura las lecturas van
+ * también al principal ({@link #leerDelPrincipal()}).
+ */
 public class ConnectionBD {
 
-    // Conexión única reutilizable
-    private static Connection connection = null;
+    // Pool de conexiones compartido por todos los DAO
+    private static ConnectionPool pool = null;
+
+    // Pool de la réplica para lecturas (null si no hay réplica: se lee del principal)
+    private static ConnectionPool poolLectura = null;
+
+    // Hasta cuándo (ms) las lecturas van al principal para ver lo que se acaba de escribir
+    private static volatile long leerDelPrincipalHasta = 0;
+    private static volatile long ventanaLecturaMs = 0;
+
+    // Configuración leída de db.properties al crear el pool
+    private static Properties config = new Properties();
+
+    // BD H2 en memoria del pool actual (db.type=h2mem), para borrarla al cerrarlo
+    private static String urlMemoria = null;
+
+    // Grupos de claves de db.properties que se pueden sobrescribir con -Dclave=valor
+    private static final String[] PREFIJOS_CONFIG = {
+            "db.", "h2.", "mysql.", "pool.", "cache.", "expirador.", "liquidacion.", "metricas.", "migraciones.", "h2mem.", "replica.", "shards.", "shard."
+    };
 
     private ConnectionBD() {}
 
     /**
-     * Devuelve la conexión activa a la base de datos.
-     * Si no existe o está cerrada, se crea una nueva.
+     * Presta una conexión del pool a la base de datos.
+     * Quien la pide debe cerrarla (try-with-resources) para devolverla al pool.
+     * El pool se crea la primera vez que se llama.
      *
      * @return conexión a la base de datos
+     * @throws SQLException si no se puede conseguir una conexión a tiempo
      */
-    public static Connection getConnection() {
-        try {
-            // Si la conexión no existe o está cerrada, volvemos a abrirla
-            if (connection == null || connection.isClosed()) {
-
-                Properties props = loadProperties();
-                String type = props.getProperty("db.type");
+    public static Connection getConnection() throws SQLException {
+        return getPool().getConnection();
+    }
 
-                // Si en db.properties pone "mysql", abrimos MySQL
-                if ("mysql".equalsIgnoreCase(type)) {
+    /**
+     * Devuelve el pool activo, creándolo si todavía no existe.
+     * Al crearlo se aplican las migraciones pendientes del esquema ({@link Migraciones}).
+     *
+     * @return pool de conexiones configurado en db.properties
+     */
+    public static synchronized ConnectionPool getPool() {
+        if (pool == null) {
+            config = loadProperties();
+            pool = crearPool(config);
 
-                    connection = ConnectionBDMySQL.getConnection(
-                            props.getProperty("mysql.url"),
-                            props.getProperty("mysql.user"),
-                            props.getProperty("mysql.password")
-                    );
+            if (!"false".equalsIgnoreCase(config.getProperty("migraciones.activas", "true").trim())) {
+                Migraciones.aplicar(pool);
+            }
+            if (urlMemoria != null) {
+                ConnectionBDH2Memoria.guardarSnapshotSiFalta(pool, config.getProperty("h2mem.snapshot"));
+            }
 
-                } else {
-                    // Cualquier otro valor carga la BD interna H2
-                    connection = ConnectionBDH2.getConnection();
-                }
+            if ("true".equalsIgnoreCase(config.getProperty("replica.activa", "false").trim())) {
+                poolLectura = crearPoolReplica(config);
+                ventanaLecturaMs = entero(config, "replica.leerTrasEscribirMs", 5_000);
+                if (poolLectura != null) pool.setAlEscribir(ConnectionBD::leerDelPrincipal);
             }
+        }
+        return pool;
+    }
+
+    /**
+     * Presta una conexión para leer: de la réplica si la hay y no se acaba de
+     * escribir nada; si no, del principal. Solo para consultas que toleran
+     * datos de hace unos instantes (listados, paneles, catálogo, exportaciones).
+     *
+     * @return conexión a la réplica o al principal
+     * @throws SQLException si no se puede conseguir una conexión a tiempo
+     */
+    public static Connection getConnectionLectura() throws SQLException {
+        ConnectionPool lectura = getPoolLectura();
+        if (lectura == null || System.currentTimeMillis() < leerDelPrincipalHasta) {
+            return getConnection();
+        }
+        return lectura.getConnection();
+    }
+
+    /**
+     * Hace que las lecturas de los próximos replica.leerTrasEscribirMs vayan al
+     * principal, para leer lo que se acaba de escribir aunque la réplica aún
+     * no lo tenga. Se llama sola cada vez que vuelve al pool una conexión del
+     * principal con la que se ha escrito; también se puede llamar a mano.
+     */
+    public static void leerDelPrincipal() {
+        leerDelPrincipalHasta = System.currentTimeMillis() + ventanaLecturaMs;
+    }
+
+    /**
+     * @return pool de la réplica, o null si no hay réplica configurada
+     */
+    public static synchronized ConnectionPool getPoolLectura() {
+        getPool();
+        return poolLectura;
+    }
+
+    /**
+     * Número de filas que se traen de cada vez al recorrer una tabla con cursor.
+     *
+     * @return fetch size configurado en db.properties (db.fetchSize)
+     */
+    public static int getFetchSize() {
+        return getEntero("db.fetchSize", 500);
+    }
+
+    /**
+     * Lee un valor numérico de db.properties.
+     *
+     * @param clave nombre de la propiedad
+     * @param porDefecto valor si no está o no es un número
+     * @return valor configurado
+     */
+    public static synchronized int getEntero(String clave, int porDefecto) {
+        getPool();
+        return entero(config, clave, porDefecto);
+    }
+
+    /**
+     * @return configuración de db.properties (con las sobrescrituras -D), creando el pool si hace falta
+     */
+    static synchronized Properties getConfig() {
+        getPool();
+        return config;
+    }
+
+    /**
+     * Crea el pool según el tipo de base de datos y los tamaños de db.properties.
+     *
+     * @param props configuración cargada
+     * @return pool listo para usar
+     */
+    private static ConnectionPool crearPool(Properties props) {
+        String type = props.getProperty("db.type");
+        ConnectionPool.FabricaConexiones fabrica;
+
+        // Si en db.properties pone "mysql", abrimos MySQL
+        if ("mysql".equalsIgnoreCase(type)) {
+            String url = props.getProperty("mysql.url");
+            String user = props.getProperty("mysql.user");
+            String password = props.getProperty("mysql.password");
+            fabrica = () -> ConnectionBDMySQL.getConnection(url, user, password);
 
-        } catch (SQLException e) {
-            e.printStackTrace();
+        } else if ("h2mem".equalsIgnoreCase(type)) {
+            // BD H2 en memoria, nueva en cada pool, cargada con uber.sql o con un snapshot
+            String user = props.getProperty("h2.user");
+            String password = props.getProperty("h2.password");
+            String url = ConnectionBDH2Memoria.crear(
+                    props.getProperty("h2mem.snapshot"), props.getProperty("h2mem.script"), user, password);
+            urlMemoria = url;
+            fabrica = () -> ConnectionBDH2.getConnection(url, user, password);
+
+        } else {
+            // Cualquier otro valor carga la BD interna H2
+            String url = props.getProperty("h2.url");
+            String user = props.getProperty("h2.user");
+            String password = props.getProperty("h2.password");
+            fabrica = () -> ConnectionBDH2.getConnection(url, user, password);
         }
 
-        return connection;
+        MetricasSQL.configurar(
+                !"false".equalsIgnoreCase(props.getProperty("metricas.activas", "true").trim()),
+                entero(props, "metricas.lentaMs", 500));
+
+        return new ConnectionPool(
+                type != null ? type : "h2",
+                fabrica,
+                entero(props, "pool.minSize", 2),
+                entero(props, "pool.maxSize", 10),
+                entero(props, "pool.idleTimeoutMs", 300_000),
+                entero(props, "pool.borrowTimeoutMs", 5_000),
+                entero(props, "pool.validationTimeoutSec", 2),
+                entero(props, "pool.leakThresholdMs", 30_000),
+                entero(props, "pool.statementCacheSize", 50)
+        );
+    }
+
+    /**
+     * Crea el pool de la réplica de lectura. Según la URL se abre con el
+     * driver de H2 o el de MySQL, y las conexiones se marcan de solo lectura.
+     * El resto de ajustes son los del pool principal salvo minSize y maxSize.
+     *
+     * @param props configuración cargada
+     * @return pool de la réplica, o null si falta replica.url
+     */
+    private static ConnectionPool crearPoolReplica(Properties props) {
+        String url = props.getProperty("replica.url");
+        String user = props.getProperty("replica.user");
+        String password = props.getProperty("replica.password");
+
+        if (url == null || url.isBlank()) {
+            System.err.println("❌ replica.activa=true pero falta replica.url: se lee del principal.");
+            return null;
+        }
+
+        ConnectionPool.FabricaConexiones fabrica = () -> {
+            Connection conn = url.startsWith("jdbc:h2:")
+                    ? ConnectionBDH2.getConnection(url, user, password)
+                    : ConnectionBDMySQL.getConnection(url, user, password);
+            conn.setReadOnly(true);
+            return conn;
+        };
+
+        System.out.println("📖 Lecturas de listados y paneles desde la réplica: " + url);
+        return new ConnectionPool(
+                "replica",
+                fabrica,
+                entero(props, "replica.minSize", entero(props, "pool.minSize", 2)),
+                entero(props, "replica.maxSize", entero(props, "pool.maxSize", 10)),
+                entero(props, "pool.idleTimeoutMs", 300_000),
+                entero(props, "pool.borrowTimeoutMs", 5_000),
+                entero(props, "pool.validationTimeoutSec", 2),
+                entero(props, "pool.leakThresholdMs", 30_000),
+                entero(props, "pool.statementCacheSize", 50)
+        );
+    }
+
+    /**
+     * Lee una propiedad numérica o devuelve el valor por defecto.
+     */
+    static int entero(Properties props, String clave, int porDefecto) {
+        String valor = props.getProperty(clave);
+        if (valor == null || valor.isBlank()) return porDefecto;
+
+        try {
+            return Integer.parseInt(valor.trim());
+        } catch (NumberFormatException e) {
+            System.err.println("Valor no válido para " + clave + ": " + valor + " (se usa " + porDefecto + ")");
+            return porDefecto;
+        }
     }
 
     /**
      * Carga el archivo db.properties del directorio resources.
      * Si no se encuentra, por defecto se utilizará H2.
      *
+     * Cualquier clave de la configuración se puede cambiar al arrancar con
+     * -Dclave=valor (p. ej. -Ddb.type=h2 o -Dpool.maxSize=20), sin tocar el archivo.
+     * Así lo hacen las pruebas de rendimiento para usar una BD en memoria.
+     *
      * @return propiedades con la configuración de la BD
      */
     private static Properties loadProperties() {
@@ -64,32 +271,50 @@ public class ConnectionBD {
             if (input == null) {
                 System.out.println("❌ No se encuentra db.properties, usando H2 por defecto.");
                 props.setProperty("db.type", "h2");
-                return props;
+            } else {
+                props.load(input);
             }
 
-            props.load(input);
-
         } catch (IOException ex) {
             ex.printStackTrace();
         }
 
+        for (String clave : System.getProperties().stringPropertyNames()) {
+            for (String prefijo : PREFIJOS_CONFIG) {
+                if (clave.startsWith(prefijo)) {
+                    props.setProperty(clave, System.getProperty(clave));
+                    break;
+                }
+            }
+        }
+
         return props;
     }
 
     /**
-     * Cierra la conexión actual y la deja en null.
+     * Cierra el pool (y los de la réplica y los shards) y todas sus conexiones libres.
+     * Si la BD era H2 en memoria, se borra.
      * Se usa al cerrar la aplicación.
      */
     public static void closeConnection() {
-        try {
-            if (connection != null && !connection.isClosed()) {
-                connection.close();
-                connection = null;
-                System.out.println("🔌 Conexión cerrada.");
+        // Fuera del cerrojo de esta clase: MapaShards lo pide al cargarse y así no se cruzan
+        MapaShards.cerrar();
+        cerrarPools();
+    }
+
+    private static synchronized void cerrarPools() {
+        if (poolLectura != null) {
+            poolLectura.close();
+            poolLectura = null;
+        }
+        if (pool != null) {
+            pool.close();
+            pool = null;
+            if (urlMemoria != null) {
+                ConnectionBDH2Memoria.borrar(urlMemoria, config.getProperty("h2.user"), config.getProperty("h2.password"));
+                urlMemoria = null;
             }
-        } catch (SQLException e) {
-            e.printStackTrace();
+            System.out.println("🔌 Conexiones cerradas.");
         }
     }
 }
-
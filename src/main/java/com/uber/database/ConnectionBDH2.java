@@ -11,23 +11,33 @@ public class ConnectionBDH2 {
     private static final String USER = "sa";
     private static final String PASSWORD = "";
 
-    private static Connection conn;
+    /**
+     * Abre una nueva conexión a la base de datos H2 con los datos por defecto.
+     * El pool de {@link ConnectionBD} es quien decide cuándo reutilizarla.
+     *
+     * @return conexión abierta a la BD H2
+     * @throws SQLException si no se puede abrir
+     */
+    public static Connection getConnection() throws SQLException {
+        return getConnection(URL, USER, PASSWORD);
+    }
 
     /**
-     * Devuelve la conexión a la base de datos H2.
-     * Si no existe, se crea una nueva conexión.
+     * Abre una nueva conexión a H2 con los datos indicados.
+     * Si la URL es nula se usa la base de datos local por defecto.
      *
-     * @return conexión activa a la BD H2
+     * @param url      URL de H2 (jdbc:h2:...)
+     * @param user     usuario
+     * @param password contraseña
+     * @return conexión abierta a la BD H2
+     * @throws SQLException si no se puede abrir
      */
-    public static Connection getConnection() {
-        if (conn == null) {
-            try {
-                conn = DriverManager.getConnection(URL, USER, PASSWORD);
-                System.out.println("Conectado a H2 (embebida)");
-            } catch (SQLException e) {
-                e.printStackTrace();
-            }
-        }
+    public static Connection getConnection(String url, String user, String password) throws SQLException {
+        Connection conn = DriverManager.getConnection(
+                url != null ? url : URL,
+                user != null ? user : USER,
+                password != null ? password : PASSWORD);
+        System.out.println("Conectado a H2 (embebida)");
         return conn;
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,261 @@
+package com.uber.database;
+
+import org.h2.tools.RunScript;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * BD H2 en memoria (db.type=h2mem) para pruebas y demostraciones.
+ *
+ * Cada vez que se crea el pool se abre una BD nueva, vacía y con nombre
+ * propio, y se carga de una de estas dos fuentes:
+ * <ul>
+ *   <li>h2mem.snapshot: volcado comprimido hecho con {@link #guardarSnapshot}.
+ *       Es lo más rápido: H2 lo lee tal cual, sin tener que traducir nada.</li>
+ *   <li>h2mem.script (por defecto uber.sql): el volcado de phpMyAdmin, que se
+ *       adapta a H2 al vuelo (fuera los SET, /*! ... *&#47;, START TRANSACTION,
+ *       COMMIT y opciones ENGINE, cada ALTER TABLE de varias cláusulas se parte
+ *       en sentencias sueltas y los AUTO_INCREMENT=n pasan a RESTART WITH n).
+ *       El texto adaptado se guarda en memoria y las BD siguientes lo reutilizan.</li>
+ * </ul>
+ * Si h2mem.snapshot apunta a un archivo que no existe, se carga uber.sql y,
+ * una vez aplicadas las migraciones, se guarda ahí el snapshot para la próxima vez.
+ *
+ * Nada se escribe en disco (salvo ese snapshot) y ninguna BD ve a otra: dos
+ * procesos, o dos pools del mismo proceso, tienen cada uno la suya. La BD
+ * se borra al cerrar el pool ({@link ConnectionBD#closeConnection()}).
+ */
+public final class ConnectionBDH2Memoria {
+
+    private static final AtomicInteger CONTADOR = new AtomicInteger();
+
+    // Líneas del volcado de MySQL que H2 no entiende o que no hacen falta
+    private static final Pattern LINEA_SOBRANTE = Pattern.compile(
+            "(?im)^\\s*(SET\\s.*|/\\*!.*|START TRANSACTION;|COMMIT;)\\s*$");
+    private static final Pattern OPCIONES_TABLA = Pattern.compile("\\)\\s*ENGINE=[^;]*;");
+    // ALTER TABLE de phpMyAdmin con varias cláusulas separadas por comas, que H2 no admite
+    private static final Pattern ALTER_TABLE = Pattern.compile("ALTER TABLE (\\S+)\\s+((?:ADD|MODIFY)\\s[^;]*);");
+    private static final Pattern INDICE = Pattern.compile("ADD (UNIQUE )?(?:KEY|INDEX) (\\S+) (\\(.*\\))");
+    private static final Pattern MODIFY = Pattern.compile("MODIFY (\\S+) .*");
+    private static final Pattern SIGUIENTE_ID = Pattern.compile("AUTO_INCREMENT=(\\d+)");
+    // Datos del volcado salvo el catálogo de mantenimientos (para los shards, que empiezan vacíos)
+    private static final Pattern DATOS_FLOTA = Pattern.compile("(?s)INSERT INTO (?!mantenimiento )\\S+ \\(.*?\\);\n");
+
+    // uber.sql ya adaptado a H2, para no leerlo y traducirlo en cada BD nueva
+    private static String scriptAdaptado;
+    private static Path scriptLeido;
+
+    private ConnectionBDH2Memoria() {}
+
+    /**
+     * Crea una BD en memoria nueva y la llena con el snapshot o con el script.
+     * Si la carga falla se escribe el error y la BD se queda vacía.
+     *
+     * @param snapshot archivo del snapshot (null o vacío para no usarlo)
+     * @param script volcado SQL de MySQL (null o vacío para uber.sql)
+     * @param user usuario
+     * @param password contraseña
+     * @return URL JDBC de la BD creada
+     */
+    static String crear(String snapshot, String script, String user, String password) {
+        String url = "jdbc:h2:mem:uber-" + CONTADOR.incrementAndGet() + ";DB_CLOSE_DELAY=-1;MODE=MySQL";
+        long inicio = System.currentTimeMillis();
+
+        Path rutaSnapshot = snapshot != null && !snapshot.isBlank() ? Path.of(snapshot.trim()) : null;
+        Path rutaScript = Path.of(script != null && !script.isBlank() ? script.trim() : "uber.sql");
+        boolean desdeSnapshot = rutaSnapshot != null && Files.exists(rutaSnapshot);
+
+        try (Connection conn = DriverManager.getConnection(url, user, password)) {
+            if (desdeSnapshot) {
+                try (PreparedStatement ps = conn.prepareStatement("RUNSCRIPT FROM ? COMPRESSION DEFLATE")) {
+                    ps.setString(1, rutaSnapshot.toString());
+                    ps.execute();
+                }
+            } else {
+                RunScript.execute(conn, new StringReader(adaptar(rutaScript)));
+            }
+
+            System.out.println("🧪 BD H2 en memoria cargada desde " + (desdeSnapshot ? rutaSnapshot : rutaScript)
+                    + " en " + (System.currentTimeMillis() - inicio) + " ms");
+
+        } catch (SQLException e) {
+            System.err.println("❌ No se pudo cargar la BD en memoria: " + e.getMessage());
+            e.printStackTrace();
+        }
+
+        return url;
+    }
+
+    /**
+     * Crea una BD en memoria para usarla como shard ({@link MapaShards}): las
+     * tablas de uber.sql sin filas, salvo el catálogo de mantenimientos.
+     *
+     * @param script volcado SQL de MySQL (null o vacío para uber.sql)
+     * @param user usuario
+     * @param password contraseña
+     * @return URL JDBC de la BD creada
+     */
+    static String crearShard(String script, String user, String password) {
+        String url = "jdbc:h2:mem:uber-shard-" + CONTADOR.incrementAndGet() + ";DB_CLOSE_DELAY=-1;MODE=MySQL";
+        Path rutaScript = Path.of(script != null && !script.isBlank() ? script.trim() : "uber.sql");
+
+        try (Connection conn = DriverManager.getConnection(url, user, password)) {
+            RunScript.execute(conn, new StringReader(DATOS_FLOTA.matcher(adaptar(rutaScript)).replaceAll("")));
+            System.out.println("🧪 Shard H2 en memoria creado con las tablas de " + rutaScript);
+
+        } catch (SQLException e) {
+            System.err.println("❌ No se pudo crear el shard en memoria: " + e.getMessage());
+            e.printStackTrace();
+        }
+
+        return url;
+    }
+
+    /**
+     * Guarda el contenido de la BD actual como snapshot comprimido (SCRIPT de H2 con DEFLATE).
+     *
+     * @param destino archivo del snapshot
+     * @throws SQLException si no se puede escribir
+     */
+    public static void guardarSnapshot(Path destino) throws SQLException {
+        try (Connection conn = ConnectionBD.getConnection()) {
+            guardarSnapshot(conn, destino);
+        }
+    }
+
+    /**
+     * Guarda el snapshot configurado si todavía no existe. Lo llama
+     * {@link ConnectionBD} después de aplicar las migraciones, así el
+     * snapshot ya las incluye.
+     *
+     * @param pool pool de la BD en memoria
+     * @param snapshot archivo del snapshot (null o vacío para no guardar nada)
+     */
+    static void guardarSnapshotSiFalta(ConnectionPool pool, String snapshot) {
+        if (snapshot == null || snapshot.isBlank() || Files.exists(Path.of(snapshot.trim()))) return;
+
+        try (Connection conn = pool.getConnection()) {
+            guardarSnapshot(conn, Path.of(snapshot.trim()));
+        } catch (SQLException e) {
+            e.printStackTrace();
+        }
+    }
+
+    private static void guardarSnapshot(Connection conn, Path destino) throws SQLException {
+        try (PreparedStatement ps = conn.prepareStatement("SCRIPT TO ? COMPRESSION DEFLATE")) {
+            ps.setString(1, destino.toString());
+            ps.execute();
+        }
+        System.out.println("💾 Snapshot de la BD guardado en " + destino);
+    }
+
+    /**
+     * Borra una BD en memoria creada con {@link #crear} o {@link #crearShard}.
+     *
+     * @param url URL que devolvió crear
+     * @param user usuario
+     * @param password contraseña
+     */
+    static void borrar(String url, String user, String password) {
+        try (Connection conn = DriverManager.getConnection(url, user, password);
+             Statement st = conn.createStatement()) {
+            st.execute("SHUTDOWN");
+        } catch (SQLException e) {
+            e.printStackTrace();
+        }
+    }
+
+    /**
+     * Lee el volcado de MySQL y lo deja en SQL que H2 (modo MySQL) acepta.
+     * Los identificadores pierden las comillas invertidas para que H2 los pase
+     * a mayúsculas igual que los que escriben los DAO.
+     */
+    private static synchronized String adaptar(Path script) throws SQLException {
+        if (scriptAdaptado != null && script.equals(scriptLeido)) return scriptAdaptado;
+
+        String sql;
+        try {
+            sql = Files.readString(script, StandardCharsets.UTF_8);
+        } catch (IOException e) {
+            throw new SQLException("No se puede leer " + script.toAbsolutePath(), e);
+        }
+
+        sql = LINEA_SOBRANTE.matcher(sql).replaceAll("");
+        sql = OPCIONES_TABLA.matcher(sql).replaceAll(");");
+        sql = sql.replace("`", "");
+
+        Matcher m = ALTER_TABLE.matcher(sql);
+        StringBuilder sb = new StringBuilder();
+        while (m.find()) {
+            m.appendReplacement(sb, Matcher.quoteReplacement(alterTable(m.group(1), m.group(2))));
+        }
+        m.appendTail(sb);
+
+        scriptAdaptado = sb.toString();
+        scriptLeido = script;
+        return scriptAdaptado;
+    }
+
+    /**
+     * Parte un ALTER TABLE de varias cláusulas en sentencias sueltas para H2:
+     * ADD KEY pasa a CREATE INDEX, y "MODIFY col ... AUTO_INCREMENT, AUTO_INCREMENT=n"
+     * a un MODIFY más un RESTART WITH n (si no, H2 empezaría a numerar desde 1
+     * aunque la tabla ya tenga filas).
+     */
+    private static String alterTable(String tabla, String clausulas) {
+        StringBuilder sb = new StringBuilder();
+        String columna = null;
+
+        for (String clausula : separarClausulas(clausulas)) {
+            Matcher indice = INDICE.matcher(clausula);
+            Matcher modify = MODIFY.matcher(clausula);
+            Matcher siguiente = SIGUIENTE_ID.matcher(clausula);
+
+            if (indice.matches()) {
+                sb.append("CREATE ").append(indice.group(1) != null ? "UNIQUE " : "").append("INDEX ")
+                        .append(indice.group(2)).append(" ON ").append(tabla).append(' ').append(indice.group(3));
+            } else if (siguiente.matches() && columna != null) {
+                sb.append("ALTER TABLE ").append(tabla).append(" ALTER COLUMN ").append(columna)
+                        .append(" RESTART WITH ").append(siguiente.group(1));
+            } else {
+                if (modify.matches()) columna = modify.group(1);
+                sb.append("ALTER TABLE ").append(tabla).append(' ').append(clausula);
+            }
+            sb.append(";\n");
+        }
+        return sb.toString();
+    }
+
+    /** Separa por las comas que no están dentro de paréntesis. */
+    private static List<String> separarClausulas(String texto) {
+        List<String> lista = new ArrayList<>();
+        int nivel = 0;
+        int desde = 0;
+
+        for (int i = 0; i < texto.length(); i++) {
+            char c = texto.charAt(i);
+            if (c == '(') nivel++;
+            else if (c == ')') nivel--;
+            else if (c == ',' && nivel == 0) {
+                lista.add(texto.substring(desde, i).trim());
+                desde = i + 1;
+            }
+        }
+        lista.add(texto.substring(desde).trim());
+        return lista;
+    }
+}
@@ -9,27 +9,30 @@ public class ConnectionBDMySQL {
     /**
      * Abre una conexión a una base de datos MySQL usando los datos proporcionados.
      * Se carga el driver manualmente para evitar problemas en algunos entornos.
+     * El pool de {@link ConnectionBD} llama a este método cada vez que necesita
+     * una conexión física nueva.
      *
      * @param url      URL completa de la BD (jdbc:mysql://...)
      * @param user     usuario de MySQL
      * @param password contraseña del usuario
-     * @return conexión abierta o null si falla
+     * @return conexión abierta
+     * @throws SQLException si no se puede conectar
      */
-    public static Connection getConnection(String url, String user, String password) {
-        Connection conn = null;
-
+    public static Connection getConnection(String url, String user, String password) throws SQLException {
         try {
             // Cargar el driver manualmente (necesario en algunos servidores)
             Class.forName("com.mysql.cj.jdbc.Driver");
 
-            conn = DriverManager.getConnection(url, user, password);
+            Connection conn = DriverManager.getConnection(url, user, password);
             System.out.println("Conectado a MySQL (XAMPP)");
+            return conn;
+
+        } catch (ClassNotFoundException e) {
+            throw new SQLException("No se encuentra el driver de MySQL", e);
 
-        } catch (ClassNotFoundException | SQLException e) {
+        } catch (SQLException e) {
             System.err.println("Error conectando a MySQL: " + e.getMessage());
-            e.printStackTrace();
+            throw e;
         }
-
-        return conn;
     }
 }
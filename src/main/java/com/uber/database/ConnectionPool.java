@@ -0,0 +1,427 @@
+package com.uber.database;
+
+import com.uber.utils.Traza;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Iterator;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingDeque;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Pool acotado de conexiones JDBC.
+ * Cada DAO pide una conexión por operación y la devuelve al cerrarla
+ * (try-with-resources), de modo que varias consultas y transacciones
+ * pueden ejecutarse en paralelo sin compartir la misma conexión.
+ *
+ * Incluye tamaño mínimo y máximo, expulsión de conexiones inactivas,
+ * validación al prestar, tiempo máximo de espera y detección de fugas.
+ * Cada conexión física tiene además su propia {@link StatementCache}.
+ */
+public class ConnectionPool {
+
+    /**
+     * Abre una conexión física nueva contra la base de datos.
+     */
+    @FunctionalInterface
+    public interface FabricaConexiones {
+        Connection crear() throws SQLException;
+    }
+
+    // Si la conexión se usó hace menos de esto, no se vuelve a validar
+    private static final long VALIDAR_TRAS_MS = 500;
+
+    private final String nombre;
+    private final FabricaConexiones fabrica;
+    private final int minSize;
+    private final int maxSize;
+    private final long idleTimeoutMs;
+    private final long borrowTimeoutMs;
+    private final int validationTimeoutSec;
+    private final long leakThresholdMs;
+    private final int statementCacheSize;
+
+    // Conexiones libres; se reutiliza primero la última devuelta (LIFO)
+    private final LinkedBlockingDeque<ConexionFisica> libres = new LinkedBlockingDeque<>();
+    private final Set<ConexionFisica> prestadas = ConcurrentHashMap.newKeySet();
+
+    // Un permiso por conexión prestada o que se está abriendo para rellenar: limita el total a maxSize
+    private final Semaphore permisos;
+    private final ScheduledExecutorService mantenimiento;
+
+    private volatile boolean cerrado = false;
+
+    // Se llama al devolver una conexión en la que se preparó alguna sentencia que no es SELECT
+    private volatile Runnable alEscribir = null;
+
+    /**
+     * Crea el pool y abre las conexiones mínimas.
+     *
+     * @param nombre              nombre del pool (para los mensajes)
+     * @param fabrica             forma de abrir una conexión física
+     * @param minSize             conexiones que se mantienen abiertas siempre
+     * @param maxSize             máximo de conexiones abiertas a la vez
+     * @param idleTimeoutMs       tiempo que una conexión libre puede estar sin usarse
+     * @param borrowTimeoutMs     espera máxima para conseguir una conexión
+     * @param validationTimeoutSec tiempo máximo de la validación al prestar
+     * @param leakThresholdMs     tiempo a partir del cual una conexión prestada se considera fuga (0 = desactivado)
+     * @param statementCacheSize  sentencias preparadas guardadas por conexión (0 = sin caché)
+     */
+    public ConnectionPool(String nombre, FabricaConexiones fabrica, int minSize, int maxSize,
+                          long idleTimeoutMs, long borrowTimeoutMs,
+                          int validationTimeoutSec, long leakThresholdMs, int statementCacheSize) {
+        if (maxSize < 1 || minSize < 0 || minSize > maxSize) {
+            throw new IllegalArgumentException("Tamaños de pool no válidos: min=" + minSize + ", max=" + maxSize);
+        }
+
+        this.nombre = nombre;
+        this.fabrica = fabrica;
+        this.minSize = minSize;
+        this.maxSize = maxSize;
+        this.idleTimeoutMs = idleTimeoutMs;
+        this.borrowTimeoutMs = borrowTimeoutMs;
+        this.validationTimeoutSec = validationTimeoutSec;
+        this.leakThresholdMs = leakThresholdMs;
+        this.statementCacheSize = statementCacheSize;
+        this.permisos = new Semaphore(maxSize, true);
+
+        this.mantenimiento = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "pool-" + nombre + "-mantenimiento");
+            t.setDaemon(true);
+            return t;
+        });
+
+        rellenarMinimo();
+
+        long periodo = Math.max(1000, Math.min(idleTimeoutMs, 30_000) / 2);
+        mantenimiento.scheduleWithFixedDelay(this::tareaMantenimiento, periodo, periodo, TimeUnit.MILLISECONDS);
+    }
+
+    // ================================================================
+    //   PRÉSTAMO Y DEVOLUCIÓN
+    // ================================================================
+
+    /**
+     * Presta una conexión del pool. Al cerrarla vuelve al pool en lugar de cerrarse.
+     *
+     * @return conexión lista para usar
+     * @throws SQLException si no hay conexión disponible dentro del tiempo de espera
+     */
+    public Connection getConnection() throws SQLException {
+        if (cerrado) throw new SQLException("El pool '" + nombre + "' está cerrado");
+
+        // Evento JFR de la operación DAO: incluye la espera por la conexión
+        Traza traza = Traza.operacionDAO();
+
+        try {
+            if (!permisos.tryAcquire(borrowTimeoutMs, TimeUnit.MILLISECONDS)) {
+                traza.close();
+                throw new SQLException("Tiempo de espera agotado (" + borrowTimeoutMs
+                        + " ms) esperando conexión del pool '" + nombre + "'");
+            }
+        } catch (InterruptedException e) {
+            traza.close();
+            Thread.currentThread().interrupt();
+            throw new SQLException("Interrumpido esperando conexión del pool '" + nombre + "'", e);
+        }
+
+        try {
+            ConexionFisica fisica = obtenerValida();
+            fisica.prestada(leakThresholdMs > 0 ? new Exception("Conexión prestada aquí") : null);
+            prestadas.add(fisica);
+            return fisica.crearProxy(traza);
+
+        } catch (SQLException | RuntimeException e) {
+            permisos.release();
+            traza.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Busca una conexión libre que siga viva o abre una nueva.
+     */
+    private ConexionFisica obtenerValida() throws SQLException {
+        ConexionFisica c;
+        while ((c = libres.pollFirst()) != null) {
+            if (c.esValida()) return c;
+            c.cerrarFisica();
+        }
+        return new ConexionFisica(fabrica.crear());
+    }
+
+    /**
+     * Recibe una conexión devuelta por un DAO.
+     * Deshace cualquier transacción a medias y la deja como nueva.
+     */
+    private void devolver(ConexionFisica c) {
+        prestadas.remove(c);
+        try {
+            boolean reutilizable = !cerrado && !c.real.isClosed();
+
+            if (reutilizable && !c.real.getAutoCommit()) {
+                c.real.rollback();
+                c.real.setAutoCommit(true);
+            }
+
+            if (reutilizable) {
+                c.ultimoUso = System.currentTimeMillis();
+                libres.offerFirst(c);
+            } else {
+                c.cerrarFisica();
+            }
+
+        } catch (SQLException e) {
+            c.cerrarFisica();
+        } finally {
+            permisos.release();
+        }
+    }
+
+    // ================================================================
+    //   MANTENIMIENTO
+    // ================================================================
+
+    /**
+     * Tarea periódica: expulsa las conexiones inactivas, rellena el mínimo
+     * y avisa de las conexiones que llevan demasiado tiempo prestadas.
+     */
+    private void tareaMantenimiento() {
+        try {
+            long ahora = System.currentTimeMillis();
+
+            // Las más antiguas están al final de la cola
+            Iterator<ConexionFisica> it = libres.descendingIterator();
+            while (it.hasNext() && totalAbiertas() > minSize) {
+                ConexionFisica c = it.next();
+                if (ahora - c.ultimoUso > idleTimeoutMs && libres.remove(c)) {
+                    c.cerrarFisica();
+                }
+            }
+
+            rellenarMinimo();
+
+            if (leakThresholdMs > 0) {
+                for (ConexionFisica c : prestadas) {
+                    if (!c.fugaAvisada && ahora - c.prestadaDesde > leakThresholdMs) {
+                        c.fugaAvisada = true;
+                        System.err.println("⚠ Posible fuga en el pool '" + nombre + "': conexión prestada hace "
+                                + (ahora - c.prestadaDesde) + " ms sin devolver");
+                        if (c.origen != null) c.origen.printStackTrace();
+                    }
+                }
+            }
+
+        } catch (RuntimeException e) {
+            e.printStackTrace();
+        }
+    }
+
+    /**
+     * Abre conexiones libres hasta llegar al tamaño mínimo.
+     *
+     * Cada conexión se abre con un permiso, igual que al prestar: mientras se
+     * abre cuenta como una más, así que junto con las que abren los hilos que
+     * están pidiendo conexión nunca se pasa de maxSize. Si no queda permiso
+     * libre, el pool está lleno y no hace falta rellenar.
+     */
+    private void rellenarMinimo() {
+        while (!cerrado && totalAbiertas() < minSize) {
+            try {
+                if (!permisos.tryAcquire(0, TimeUnit.MILLISECONDS)) return;
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+
+            try {
+                ConexionFisica c = new ConexionFisica(fabrica.crear());
+                c.ultimoUso = System.currentTimeMillis();
+                libres.offerLast(c);
+            } catch (SQLException e) {
+                System.err.println("Error abriendo conexión para el pool '" + nombre + "': " + e.getMessage());
+                return;
+            } finally {
+                permisos.release();
+            }
+        }
+    }
+
+    private int totalAbiertas() {
+        return libres.size() + prestadas.size();
+    }
+
+    /**
+     * Cierra todas las conexiones libres y marca el pool como cerrado.
+     * Las conexiones prestadas se cierran al devolverse.
+     */
+    public void close() {
+        cerrado = true;
+        mantenimiento.shutdownNow();
+
+        ConexionFisica c;
+        while ((c = libres.pollFirst()) != null) {
+            c.cerrarFisica();
+        }
+    }
+
+    /** @return número de conexiones prestadas ahora mismo */
+    public int getPrestadas() { return prestadas.size(); }
+
+    /** @return número de conexiones libres ahora mismo */
+    public int getLibres() { return libres.size(); }
+
+    /** @return tamaño máximo del pool */
+    public int getMaxSize() { return maxSize; }
+
+    /**
+     * Aviso cada vez que vuelve al pool una conexión con la que se ha escrito
+     * (se preparó alguna sentencia que no empieza por SELECT). Lo usa
+     * {@link ConnectionBD} para que las lecturas vean lo recién escrito.
+     *
+     * @param accion qué hacer (null = nada)
+     */
+    public void setAlEscribir(Runnable accion) { this.alEscribir = accion; }
+
+    private static boolean empiezaPorSelect(String sql) {
+        int i = 0;
+        while (i < sql.length() && Character.isWhitespace(sql.charAt(i))) i++;
+        return sql.regionMatches(true, i, "SELECT", 0, 6);
+    }
+
+    // ================================================================
+    //   CONEXIÓN FÍSICA Y PROXY
+    // ================================================================
+
+    /**
+     * Conexión real abierta contra la BD junto con sus datos de uso.
+     */
+    private final class ConexionFisica {
+
+        private final Connection real;
+        private final StatementCache sentencias;
+        private volatile long ultimoUso;
+        private volatile long prestadaDesde;
+        private volatile Exception origen;
+        private volatile boolean fugaAvisada;
+
+        ConexionFisica(Connection real) {
+            if (real == null) throw new IllegalStateException("La fábrica devolvió una conexión nula");
+            this.real = real;
+            this.sentencias = new StatementCache(statementCacheSize);
+            this.ultimoUso = System.currentTimeMillis();
+        }
+
+        void prestada(Exception origen) {
+            this.prestadaDesde = System.currentTimeMillis();
+            this.origen = origen;
+            this.fugaAvisada = false;
+        }
+
+        boolean esValida() {
+            if (System.currentTimeMillis() - ultimoUso < VALIDAR_TRAS_MS) return true;
+            try {
+                return real.isValid(validationTimeoutSec);
+            } catch (SQLException e) {
+                return false;
+            }
+        }
+
+        void cerrarFisica() {
+            sentencias.cerrarTodas();
+            try {
+                real.close();
+            } catch (SQLException ignored) {}
+        }
+
+        Connection crearProxy(Traza traza) {
+            return (Connection) Proxy.newProxyInstance(
+                    ConnectionPool.class.getClassLoader(),
+                    new Class<?>[]{Connection.class},
+                    new ManejadorConexion(this, traza));
+        }
+    }
+
+    /**
+     * Proxy que ve el DAO: close() devuelve la conexión al pool
+     * y cualquier uso posterior falla en lugar de tocar una conexión ajena.
+     * prepareStatement(sql) pasa por la caché de sentencias de la conexión.
+     * Las sentencias que entrega van envueltas por {@link MetricasSQL}
+     * y el préstamo entero es un evento JFR ({@link Traza#operacionDAO()}).
+     */
+    private final class ManejadorConexion implements InvocationHandler {
+
+        private final ConexionFisica fisica;
+        private final Traza traza;
+        private boolean devuelta = false;
+        private boolean escrita = false;
+
+        ManejadorConexion(ConexionFisica fisica, Traza traza) {
+            this.fisica = fisica;
+            this.traza = traza;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            switch (method.getName()) {
+                case "close":
+                    if (!devuelta) {
+                        devuelta = true;
+                        devolver(fisica);
+                        traza.close();
+                        Runnable aviso = alEscribir;
+                        if (escrita && aviso != null) aviso.run();
+                    }
+                    return null;
+                case "isClosed":
+                    return devuelta || fisica.real.isClosed();
+                case "equals":
+                    return proxy == args[0];
+                case "hashCode":
+                    return System.identityHashCode(proxy);
+                case "toString":
+                    return "Conexión del pool '" + nombre + "' -> " + fisica.real;
+                default:
+                    break;
+            }
+
+            if (devuelta) throw new SQLException("La conexión ya se devolvió al pool");
+
+            if (!escrita && args != null && args.length > 0 && args[0] instanceof String
+                    && method.getName().startsWith("prepare")) {
+                escrita = !empiezaPorSelect((String) args[0]);
+            }
+
+            if ("prepareStatement".equals(method.getName()) && args.length <= 2
+                    && (args.length == 1 || args[1] instanceof Integer)) {
+                Integer generatedKeys = args.length == 2 ? (Integer) args[1] : null;
+                String sql = (String) args[0];
+                return MetricasSQL.medir(fisica.sentencias.preparar(fisica.real, (Connection) proxy, sql, generatedKeys), sql, traza);
+            }
+
+            Object resultado;
+            try {
+                resultado = method.invoke(fisica.real, args);
+            } catch (InvocationTargetException e) {
+                throw e.getCause();
+            }
+
+            // createStatement, prepareCall y el resto de prepareStatement también se miden
+            if (resultado instanceof Statement) {
+                String sql = args != null && args.length > 0 && args[0] instanceof String ? (String) args[0] : null;
+                return MetricasSQL.medir((Statement) resultado, sql, traza);
+            }
+            return resultado;
+        }
+    }
+}
@@ -0,0 +1,575 @@
+package com.uber.database;
+
+import com.uber.utils.Traza;
+
+import java.sql.Connection;
+import java.sql.DatabaseMetaData;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Reparto de la flota por ciudades en varias BD (shards).
+ *
+ * Con shards.activos=true, las filas de Estacion, Vehiculo, Reserva y Tiene
+ * de cada ciudad viven en el shard al que está asignada la ciudad de la
+ * estación (Estacion.ciudad). Usuario, Movimiento y Mantenimiento se quedan en
+ * la BD principal ({@link ConnectionBD}); Mantenimiento además se copia en cada
+ * shard porque Tiene la referencia. Configuración en db.properties:
+ * <pre>
+ * shards.activos=true
+ * shards.lista=norte,sur
+ * shards.porDefecto=norte
+ * shard.norte.url=jdbc:mysql://...      (o jdbc:h2:..., o h2mem para una BD en memoria vacía)
+ * shard.norte.ciudades=Madrid,Barcelona
+ * shard.sur.url=...
+ * shard.sur.ciudades=Sevilla
+ * </pre>
+ *
+ * Cada shard numera sus filas nuevas en su propio tramo de ids (el n-ésimo
+ * empieza en n * shards.tramoIds), así un id de estación, vehículo o reserva
+ * no se repite entre shards y basta para saber dónde está la fila
+ * ({@link #shardDeVehiculo}). Las consultas de administración que cruzan
+ * ciudades se lanzan a la vez en todos los shards y se juntan los resultados
+ * ({@link #enTodos}).
+ *
+ * Como Usuario y Reserva pueden estar en BD distintas, al activar los shards
+ * se quitan las claves ajenas que las unen (Reserva → Usuario en los shards y
+ * Movimiento → Reserva en la principal). Para pasar las ciudades de una BD a
+ * otra está {@link com.uber.utils.RebalanceoShards}.
+ *
+ * Con shards.activos=false (lo normal) no hace nada: todos los métodos dan
+ * conexiones de la BD principal y los DAO funcionan como siempre.
+ */
+public final class MapaShards {
+
+    /** Nombre de la BD principal cuando hace falta tratarla como un shard más (p. ej. origen de un rebalanceo). */
+    public static final String PRINCIPAL = "principal";
+
+    /**
+     * Consulta que se lanza contra una BD (un shard o la principal).
+     *
+     * @param <T> tipo del resultado
+     */
+    @FunctionalInterface
+    public interface ConsultaShard<T> {
+        T ejecutar(Connection conn) throws SQLException;
+    }
+
+    private static final String SELECT_ESTACION = "SELECT 1 FROM Estacion WHERE id_estacion = ?";
+    private static final String SELECT_VEHICULO = "SELECT 1 FROM Vehiculo WHERE id_vehiculo = ?";
+    private static final String SELECT_RESERVA = "SELECT 1 FROM Reserva WHERE id_reserva = ?";
+
+    private static final String SELECT_MANTENIMIENTOS = "SELECT id_mantenimiento, tipo, descripcion FROM Mantenimiento";
+    private static final String INSERT_MANTENIMIENTO = "INSERT INTO Mantenimiento (id_mantenimiento, tipo, descripcion) VALUES (?, ?, ?)";
+    private static final String UPDATE_MANTENIMIENTO = "UPDATE Mantenimiento SET tipo = ?, descripcion = ? WHERE id_mantenimiento = ?";
+
+    // Tablas cuyos ids van por tramos en cada shard, con su columna autonumérica
+    private static final String[][] TABLAS_CON_TRAMO = {
+            {"Estacion", "id_estacion"}, {"Vehiculo", "id_vehiculo"}, {"Reserva", "id_reserva"}
+    };
+
+    // Pools por shard, en el orden de shards.lista (null hasta cargar la configuración; vacío si no hay shards)
+    private static volatile Map<String, ConnectionPool> pools = null;
+    private static final Map<String, String> URLS_MEMORIA = new LinkedHashMap<>();
+    private static ExecutorService ejecutor = null;
+
+    // Ciudad (en minúsculas) → shard, y cómo se escribe la ciudad
+    private static final Map<String, String> CIUDADES = new ConcurrentHashMap<>();
+    private static final Map<String, String> NOMBRES_CIUDAD = new ConcurrentHashMap<>();
+    private static volatile String porDefecto = PRINCIPAL;
+
+    // Dónde está cada id ya buscado
+    private static final Map<Integer, String> SHARD_ESTACION = new ConcurrentHashMap<>();
+    private static final Map<Integer, String> SHARD_VEHICULO = new ConcurrentHashMap<>();
+    private static final Map<Integer, String> SHARD_RESERVA = new ConcurrentHashMap<>();
+
+    private MapaShards() {}
+
+    // ================================================================
+    //   CONFIGURACIÓN
+    // ================================================================
+
+    /**
+     * @return true si la flota está repartida en shards (shards.activos=true)
+     */
+    public static boolean activos() {
+        return !shards().isEmpty();
+    }
+
+    /**
+     * @return nombres de los shards en el orden de shards.lista (vacía si no están activos)
+     */
+    public static List<String> nombres() {
+        return new ArrayList<>(shards().keySet());
+    }
+
+    /**
+     * @return ciudades asignadas a un shard en la configuración (sin contar las que van por defecto)
+     */
+    public static List<String> ciudadesDe(String shard) {
+        shards();
+        List<String> lista = new ArrayList<>();
+        CIUDADES.forEach((ciudad, s) -> {
+            if (s.equals(shard)) lista.add(NOMBRES_CIUDAD.getOrDefault(ciudad, ciudad));
+        });
+        Collections.sort(lista);
+        return lista;
+    }
+
+    /**
+     * @return pools de los shards; la primera vez carga la configuración y los abre
+     */
+    private static Map<String, ConnectionPool> shards() {
+        Map<String, ConnectionPool> actuales = pools;
+        return actuales != null ? actuales : cargar();
+    }
+
+    private static synchronized Map<String, ConnectionPool> cargar() {
+        if (pools != null) return pools;
+
+        Properties props = ConnectionBD.getConfig();
+        Map<String, ConnectionPool> nuevos = new LinkedHashMap<>();
+
+        if (!"true".equalsIgnoreCase(props.getProperty("shards.activos", "false").trim())) {
+            pools = nuevos;
+            return pools;
+        }
+
+        List<String> lista = lista(props.getProperty("shards.lista", ""));
+        if (lista.isEmpty()) {
+            System.err.println("❌ shards.activos=true pero shards.lista está vacía: se usa solo la BD principal.");
+            pools = nuevos;
+            return pools;
+        }
+
+        int tramo = ConnectionBD.entero(props, "shards.tramoIds", 10_000_000);
+        for (int i = 0; i < lista.size(); i++) {
+            String nombre = lista.get(i);
+            ConnectionPool pool = crearPool(nombre, props);
+            nuevos.put(nombre, pool);
+            preparar(nombre, pool, (long) (i + 1) * tramo);
+
+            for (String ciudad : lista(props.getProperty("shard." + nombre + ".ciudades", ""))) {
+                CIUDADES.put(clave(ciudad), nombre);
+                NOMBRES_CIUDAD.put(clave(ciudad), ciudad);
+            }
+        }
+
+        String defecto = props.getProperty("shards.porDefecto", "").trim();
+        porDefecto = nuevos.containsKey(defecto) ? defecto : lista.get(0);
+
+        try (Connection conn = ConnectionBD.getConnection()) {
+            quitarClaveAjena(conn, "Movimiento", "Reserva");
+        } catch (SQLException e) {
+            e.printStackTrace();
+        }
+
+        AtomicInteger contador = new AtomicInteger();
+        ejecutor = Executors.newCachedThreadPool(r -> {
+            Thread t = new Thread(r, "shard-" + contador.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        });
+
+        System.out.println("🗺️ Flota repartida en " + nuevos.size() + " shards: " + lista
+                + " (ciudades sin asignar → " + porDefecto + ")");
+        pools = nuevos;
+        return pools;
+    }
+
+    /**
+     * Crea el pool de un shard. Los tamaños y tiempos son los del pool principal
+     * salvo shard.&lt;nombre&gt;.minSize y maxSize.
+     */
+    private static ConnectionPool crearPool(String nombre, Properties props) {
+        String prefijo = "shard." + nombre + ".";
+        String url = props.getProperty(prefijo + "url", "").trim();
+        String user = props.getProperty(prefijo + "user", props.getProperty("h2.user"));
+        String password = props.getProperty(prefijo + "password", props.getProperty("h2.password"));
+
+        if ("h2mem".equalsIgnoreCase(url)) {
+            url = ConnectionBDH2Memoria.crearShard(props.getProperty("h2mem.script"), user, password);
+            URLS_MEMORIA.put(url, user + "\n" + (password != null ? password : ""));
+        }
+
+        String destino = url;
+        ConnectionPool.FabricaConexiones fabrica = destino.startsWith("jdbc:h2:")
+                ? () -> ConnectionBDH2.getConnection(destino, user, password)
+                : () -> ConnectionBDMySQL.getConnection(destino, user, password);
+
+        return new ConnectionPool(
+                "shard-" + nombre,
+                fabrica,
+                ConnectionBD.entero(props, prefijo + "minSize", ConnectionBD.entero(props, "pool.minSize", 2)),
+                ConnectionBD.entero(props, prefijo + "maxSize", ConnectionBD.entero(props, "pool.maxSize", 10)),
+                ConnectionBD.entero(props, "pool.idleTimeoutMs", 300_000),
+                ConnectionBD.entero(props, "pool.borrowTimeoutMs", 5_000),
+                ConnectionBD.entero(props, "pool.validationTimeoutSec", 2),
+                ConnectionBD.entero(props, "pool.leakThresholdMs", 30_000),
+                ConnectionBD.entero(props, "pool.statementCacheSize", 50)
+        );
+    }
+
+    /**
+     * Deja un shard listo: migraciones, sin la clave ajena a Usuario, con el
+     * catálogo de mantenimientos y numerando desde su tramo de ids.
+     */
+    private static void preparar(String nombre, ConnectionPool pool, long inicioTramo) {
+        Migraciones.aplicar(pool);
+
+        try (Connection conn = pool.getConnection()) {
+            quitarClaveAjena(conn, "Reserva", "Usuario");
+            copiarMantenimientos(conn);
+
+            for (String[] t : TABLAS_CON_TRAMO) {
+                ajustarSiguienteId(conn, t[0], t[1], inicioTramo);
+            }
+
+        } catch (SQLException e) {
+            System.err.println("❌ No se pudo preparar el shard " + nombre + ": " + e.getMessage());
+            e.printStackTrace();
+        }
+    }
+
+    /**
+     * Quita las claves ajenas de una tabla hacia otra que está en otra BD.
+     */
+    private static void quitarClaveAjena(Connection conn, String tabla, String referida) throws SQLException {
+        DatabaseMetaData md = conn.getMetaData();
+        boolean h2 = esH2(conn);
+        Set<String> claves = new LinkedHashSet<>();
+
+        // H2 guarda los nombres en mayúsculas; MySQL en Linux, tal como se crearon (uber.sql: minúsculas)
+        String nombreTabla = h2 ? tabla.toUpperCase(Locale.ROOT) : tabla.toLowerCase(Locale.ROOT);
+        try (ResultSet rs = md.getImportedKeys(conn.getCatalog(), null, nombreTabla)) {
+            while (rs.next()) {
+                if (referida.equalsIgnoreCase(rs.getString("PKTABLE_NAME"))) claves.add(rs.getString("FK_NAME"));
+            }
+        }
+
+        for (String clave : claves) {
+            try (Statement st = conn.createStatement()) {
+                st.execute("ALTER TABLE " + tabla + (h2 ? " DROP CONSTRAINT " : " DROP FOREIGN KEY ") + clave);
+            }
+            System.out.println("🔓 Quitada la clave ajena " + clave + " (" + tabla + " → " + referida + "): están en BD distintas.");
+        }
+    }
+
+    /**
+     * Si la tabla todavía no ha numerado nada en su tramo, hace que el siguiente id sea el inicio del tramo.
+     */
+    private static void ajustarSiguienteId(Connection conn, String tabla, String columna, long inicio) throws SQLException {
+        long maximo;
+        try (Statement st = conn.createStatement();
+             ResultSet rs = st.executeQuery("SELECT MAX(" + columna + ") FROM " + tabla)) {
+            maximo = rs.next() ? rs.getLong(1) : 0;
+        }
+        if (maximo >= inicio) return;
+
+        try (Statement st = conn.createStatement()) {
+            st.execute(esH2(conn)
+                    ? "ALTER TABLE " + tabla + " ALTER COLUMN " + columna + " RESTART WITH " + inicio
+                    : "ALTER TABLE " + tabla + " AUTO_INCREMENT = " + inicio);
+        }
+    }
+
+    /**
+     * Copia en un shard los mantenimientos de la BD principal que le falten o
+     * que hayan cambiado. Los borrados no se copian: una fila de más en el
+     * catálogo de un shard no molesta, y puede que alguna fila de Tiene la use.
+     */
+    private static void copiarMantenimientos(Connection shard) throws SQLException {
+        Map<Integer, String[]> principal = new LinkedHashMap<>();
+        try (Connection conn = ConnectionBD.getConnection();
+             Statement st = conn.createStatement();
+             ResultSet rs = st.executeQuery(SELECT_MANTENIMIENTOS)) {
+            while (rs.next()) principal.put(rs.getInt(1), new String[]{rs.getString(2), rs.getString(3)});
+        }
+
+        Set<Integer> existentes = new HashSet<>();
+        try (Statement st = shard.createStatement();
+             ResultSet rs = st.executeQuery(SELECT_MANTENIMIENTOS)) {
+            while (rs.next()) existentes.add(rs.getInt(1));
+        }
+
+        try (PreparedStatement insert = shard.prepareStatement(INSERT_MANTENIMIENTO);
+             PreparedStatement update = shard.prepareStatement(UPDATE_MANTENIMIENTO)) {
+            for (Map.Entry<Integer, String[]> m : principal.entrySet()) {
+                if (existentes.contains(m.getKey())) {
+                    update.setString(1, m.getValue()[0]);
+                    update.setString(2, m.getValue()[1]);
+                    update.setInt(3, m.getKey());
+                    update.executeUpdate();
+                } else {
+                    insert.setInt(1, m.getKey());
+                    insert.setString(2, m.getValue()[0]);
+                    insert.setString(3, m.getValue()[1]);
+                    insert.executeUpdate();
+                }
+            }
+        }
+    }
+
+    /**
+     * Vuelve a copiar el catálogo de mantenimientos en todos los shards.
+     * Lo llama {@link com.uber.dao.MantenimientoDAO} después de escribir.
+     */
+    public static void sincronizarMantenimientos() {
+        for (Map.Entry<String, ConnectionPool> s : shards().entrySet()) {
+            try (Connection conn = s.getValue().getConnection()) {
+                copiarMantenimientos(conn);
+            } catch (SQLException e) {
+                System.err.println("❌ No se pudo copiar el catálogo de mantenimientos al shard " + s.getKey());
+                e.printStackTrace();
+            }
+        }
+    }
+
+    // ================================================================
+    //   ENRUTADO
+    // ================================================================
+
+    /**
+     * Presta una conexión de un shard (o de la BD principal con {@link #PRINCIPAL}).
+     *
+     * @param shard nombre del shard
+     * @return conexión del pool de ese shard
+     * @throws SQLException si el shard no existe o no hay conexión a tiempo
+     */
+    public static Connection getConnection(String shard) throws SQLException {
+        if (PRINCIPAL.equals(shard)) return ConnectionBD.getConnection();
+
+        ConnectionPool pool = shards().get(shard);
+        if (pool == null) throw new SQLException("Shard desconocido: " + shard);
+        return pool.getConnection();
+    }
+
+    /**
+     * @return shard al que está asignada la ciudad ({@link #PRINCIPAL} si no hay shards)
+     */
+    public static String shardDeCiudad(String ciudad) {
+        if (!activos()) return PRINCIPAL;
+        return ciudad != null ? CIUDADES.getOrDefault(clave(ciudad), porDefecto) : porDefecto;
+    }
+
+    /**
+     * @return shard donde está la estación (el de por defecto si no está en ninguno)
+     * @throws SQLException si falla la búsqueda
+     */
+    public static String shardDeEstacion(int idEstacion) throws SQLException {
+        return ubicar(SHARD_ESTACION, SELECT_ESTACION, idEstacion);
+    }
+
+    /**
+     * @return shard donde está el vehículo (el de por defecto si no está en ninguno)
+     * @throws SQLException si falla la búsqueda
+     */
+    public static String shardDeVehiculo(int idVehiculo) throws SQLException {
+        return ubicar(SHARD_VEHICULO, SELECT_VEHICULO, idVehiculo);
+    }
+
+    /**
+     * @return shard donde está la reserva (el de por defecto si no está en ninguno)
+     * @throws SQLException si falla la búsqueda
+     */
+    public static String shardDeReserva(int idReserva) throws SQLException {
+        return ubicar(SHARD_RESERVA, SELECT_RESERVA, idReserva);
+    }
+
+    /** Conexión para escribir en el shard de una ciudad. */
+    public static Connection conexionCiudad(String ciudad) throws SQLException {
+        return getConnection(shardDeCiudad(ciudad));
+    }
+
+    /** Conexión del shard donde está la estación. */
+    public static Connection conexionEstacion(int idEstacion) throws SQLException {
+        return getConnection(shardDeEstacion(idEstacion));
+    }
+
+    /** Conexión del shard donde está el vehículo (y sus reservas y mantenimientos). */
+    public static Connection conexionVehiculo(int idVehiculo) throws SQLException {
+        return getConnection(shardDeVehiculo(idVehiculo));
+    }
+
+    /** Conexión del shard donde está la reserva. */
+    public static Connection conexionReserva(int idReserva) throws SQLException {
+        return getConnection(shardDeReserva(idReserva));
+    }
+
+    /**
+     * Como {@link #conexionVehiculo}, pero sin shards se lee de la réplica si la hay.
+     */
+    public static Connection lecturaVehiculo(int idVehiculo) throws SQLException {
+        return activos() ? conexionVehiculo(idVehiculo) : ConnectionBD.getConnectionLectura();
+    }
+
+    /**
+     * Busca en qué shard está un id y lo recuerda. Los ids no se repiten entre
+     * shards, así que el primero que lo tiene es el bueno.
+     */
+    private static String ubicar(Map<Integer, String> cache, String sql, int id) throws SQLException {
+        if (!activos()) return PRINCIPAL;
+
+        String shard = cache.get(id);
+        if (shard != null) return shard;
+
+        for (String nombre : shards().keySet()) {
+            try (Connection conn = getConnection(nombre);
+                 PreparedStatement ps = conn.prepareStatement(sql)) {
+                ps.setInt(1, id);
+                try (ResultSet rs = ps.executeQuery()) {
+                    if (rs.next()) {
+                        cache.put(id, nombre);
+                        return nombre;
+                    }
+                }
+            }
+        }
+        return porDefecto;
+    }
+
+    /**
+     * Cambia de shard una ciudad (lo hace {@link com.uber.utils.RebalanceoShards}
+     * después de mover sus filas) y olvida dónde estaba cada id.
+     *
+     * @param ciudad ciudad de las estaciones
+     * @param shard  nuevo shard
+     */
+    public static void asignar(String ciudad, String shard) {
+        shards();
+        CIUDADES.put(clave(ciudad), shard);
+        NOMBRES_CIUDAD.put(clave(ciudad), ciudad.trim());
+        SHARD_ESTACION.clear();
+        SHARD_VEHICULO.clear();
+        SHARD_RESERVA.clear();
+    }
+
+    // ================================================================
+    //   CONSULTAS EN TODOS LOS SHARDS (scatter-gather)
+    // ================================================================
+
+    /**
+     * Lanza la consulta en todos los shards a la vez y devuelve un resultado
+     * por shard, en el orden de shards.lista. Si falla en alguno, falla entera:
+     * unos totales con un shard de menos parecerían buenos y no lo serían.
+     *
+     * Sin shards se ejecuta una vez en la BD principal (en la réplica, si la hay).
+     *
+     * @param consulta consulta a lanzar en cada BD
+     * @param <T> tipo del resultado
+     * @return un resultado por shard
+     * @throws SQLException si falla en algún shard
+     */
+    public static <T> List<T> enTodos(ConsultaShard<T> consulta) throws SQLException {
+        Map<String, ConnectionPool> mapa = shards();
+
+        if (mapa.isEmpty()) {
+            try (Connection conn = ConnectionBD.getConnectionLectura()) {
+                return Collections.singletonList(consulta.ejecutar(conn));
+            }
+        }
+
+        List<Future<T>> tareas = new ArrayList<>();
+        for (ConnectionPool pool : mapa.values()) {
+            // El nombre de la operación se toma aquí: en el hilo del ejecutor ya no está el DAO en la pila
+            tareas.add(ejecutor.submit(Traza.conOperacion(() -> {
+                try (Connection conn = pool.getConnection()) {
+                    return consulta.ejecutar(conn);
+                }
+            })));
+        }
+
+        List<T> resultados = new ArrayList<>(tareas.size());
+        try {
+            for (Future<T> tarea : tareas) resultados.add(tarea.get());
+
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SQLException("Consulta en los shards interrumpida", e);
+
+        } catch (ExecutionException e) {
+            tareas.forEach(t -> t.cancel(false));
+            if (e.getCause() instanceof SQLException sql) throw sql;
+            throw new SQLException("Error consultando los shards", e.getCause());
+        }
+        return resultados;
+    }
+
+    /**
+     * Igual que {@link #enTodos}, para consultas que devuelven filas: las junta en una lista.
+     * Quien llama ordena o corta el resultado si hace falta.
+     *
+     * @param consulta consulta a lanzar en cada BD
+     * @param <T> tipo de las filas
+     * @return filas de todos los shards
+     * @throws SQLException si falla en algún shard
+     */
+    public static <T> List<T> juntar(ConsultaShard<List<T>> consulta) throws SQLException {
+        List<T> todas = new ArrayList<>();
+        for (List<T> parte : enTodos(consulta)) todas.addAll(parte);
+        return todas;
+    }
+
+    /**
+     * Cierra los pools de los shards (y borra los que eran H2 en memoria).
+     * Lo llama {@link ConnectionBD#closeConnection()}.
+     */
+    static synchronized void cerrar() {
+        if (pools == null) return;
+
+        pools.values().forEach(ConnectionPool::close);
+        URLS_MEMORIA.forEach((url, credenciales) -> {
+            String[] partes = credenciales.split("\n", -1);
+            ConnectionBDH2Memoria.borrar(url, partes[0], partes[1]);
+        });
+        if (ejecutor != null) ejecutor.shutdownNow();
+
+        pools = null;
+        ejecutor = null;
+        URLS_MEMORIA.clear();
+        CIUDADES.clear();
+        NOMBRES_CIUDAD.clear();
+        SHARD_ESTACION.clear();
+        SHARD_VEHICULO.clear();
+        SHARD_RESERVA.clear();
+    }
+
+    // ================================================================
+    //   AUXILIARES
+    // ================================================================
+
+    private static boolean esH2(Connection conn) throws SQLException {
+        return conn.getMetaData().getDatabaseProductName().toUpperCase(Locale.ROOT).contains("H2");
+    }
+
+    private static String clave(String ciudad) {
+        return ciudad.trim().toLowerCase(Locale.ROOT);
+    }
+
+    /** "a, b,,c" → [a, b, c] */
+    private static List<String> lista(String texto) {
+        List<String> lista = new ArrayList<>();
+        for (String parte : texto.split(",")) {
+            if (!parte.isBlank()) lista.add(parte.trim());
+        }
+        return lista;
+    }
+}
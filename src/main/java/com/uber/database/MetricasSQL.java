@@ -0,0 +1,372 @@
+package com.uber.database;
+
+import com.uber.utils.Traza;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.CallableStatement;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.regex.Pattern;
+
+/**
+ * Tiempos de las sentencias SQL que pasan por el pool.
+ *
+ * {@link ConnectionPool} envuelve cada Statement que entrega con un proxy que
+ * mide las llamadas execute*. Por cada texto SQL se guardan ejecuciones,
+ * errores, filas y un histograma de duraciones del que salen p50/p95/p99 y el
+ * máximo. Las sentencias que superan metricas.lentaMs se escriben en el log.
+ *
+ * Los SQL se agrupan normalizados (literales y listas IN como ?), así que un
+ * Statement con los valores pegados en el texto cuenta como un único SQL. Aun
+ * así el número de SQL distintos está acotado: a partir de MAX_SQL, lo nuevo se
+ * suma a "(otras sentencias)" en lugar de crecer sin límite.
+ *
+ * Está pensado para dejarlo siempre activo: cada ejecución son dos lecturas
+ * del reloj y unos pocos contadores sin bloqueos. Se desactiva del todo con
+ * metricas.activas=false en db.properties (entonces no se crea ningún proxy).
+ */
+public final class MetricasSQL {
+
+    /**
+     * Foto de las estadísticas de un SQL. Los tiempos van en milisegundos.
+     */
+    public record Resumen(String sql, long ejecuciones, long errores, long filas,
+                          double p50, double p95, double p99, double max, double total) {}
+
+    // Histograma logarítmico en microsegundos: 8 subdivisiones por potencia de 2 (error < 12,5 %)
+    private static final int SUBDIVISIONES = 8;
+    private static final int BITS_SUB = 3;
+    private static final int CUBETAS = 64 * SUBDIVISIONES;
+
+    // Textos SQL distintos que se recuerdan sin normalizar
+    private static final int MAX_TEXTOS = 2000;
+    // SQL normalizados distintos con estadística propia; el resto va a OTRAS
+    static final int MAX_SQL = 500;
+    static final String OTRAS = "(otras sentencias)";
+
+    // Cadenas y números sueltos (no los que forman parte de un nombre, como idx_v2) cuentan como ?
+    private static final Pattern CADENA = Pattern.compile("'(?:[^']|'')*'");
+    private static final Pattern NUMERO = Pattern.compile("\\b\\d+(\\.\\d+)?\\b");
+    // "IN (?, ?, ?)" de cualquier tamaño cuenta como el mismo SQL
+    private static final Pattern LISTA_IN = Pattern.compile("(?i)\\bIN\\s*\\(\\s*\\?(\\s*,\\s*\\?)*\\s*\\)");
+    private static final Pattern ESPACIOS = Pattern.compile("\\s+");
+
+    private static final ConcurrentHashMap<String, Estadistica> POR_SQL = new ConcurrentHashMap<>();
+    private static final ConcurrentHashMap<String, Estadistica> POR_TEXTO = new ConcurrentHashMap<>();
+
+    private static volatile boolean activas = true;
+    private static volatile long lentaNanos = TimeUnit.MILLISECONDS.toNanos(500);
+
+    private MetricasSQL() {}
+
+    /**
+     * Aplica la configuración de db.properties. La llama {@link ConnectionBD} al crear el pool.
+     *
+     * @param activar si se miden las sentencias
+     * @param lentaMs a partir de cuántos ms una sentencia se escribe en el log (0 = nunca)
+     */
+    static void configurar(boolean activar, long lentaMs) {
+        activas = activar;
+        lentaNanos = lentaMs > 0 ? TimeUnit.MILLISECONDS.toNanos(lentaMs) : Long.MAX_VALUE;
+    }
+
+    /** @return true si se están midiendo las sentencias */
+    public static boolean isActivas() {
+        return activas;
+    }
+
+    /**
+     * Estadísticas de todos los SQL ejecutados, del que más tiempo total lleva al que menos.
+     *
+     * @return lista de resúmenes
+     */
+    public static List<Resumen> snapshot() {
+        List<Resumen> lista = new ArrayList<>();
+        POR_SQL.forEach((sql, e) -> lista.add(e.resumir(sql)));
+        lista.sort(Comparator.comparingDouble(Resumen::total).reversed());
+        return lista;
+    }
+
+    /**
+     * Borra todas las estadísticas.
+     */
+    public static void reiniciar() {
+        POR_SQL.clear();
+        POR_TEXTO.clear();
+    }
+
+    // ================================================================
+    //   PROXY DE SENTENCIAS
+    // ================================================================
+
+    /**
+     * Envuelve una sentencia para medirla. Si las métricas están desactivadas
+     * devuelve la misma sentencia.
+     *
+     * @param st  sentencia real (o la de la caché)
+     * @param sql   texto con el que se preparó; null para un Statement normal
+     * @param traza evento JFR de la operación DAO, al que se suman las filas
+     * @return sentencia medida
+     */
+    static Statement medir(Statement st, String sql, Traza traza) {
+        if (!activas || st == null) return st;
+
+        Class<?> tipo = st instanceof CallableStatement ? CallableStatement.class
+                : st instanceof PreparedStatement ? PreparedStatement.class
+                : Statement.class;
+
+        return (Statement) Proxy.newProxyInstance(
+                MetricasSQL.class.getClassLoader(),
+                new Class<?>[]{tipo},
+                new SentenciaMedida(st, sql, traza));
+    }
+
+    private static Estadistica estadistica(String texto) {
+        Estadistica e = POR_TEXTO.get(texto);
+        if (e != null) return e;
+
+        String clave = normalizar(texto);
+        e = POR_SQL.get(clave);
+        if (e == null) {
+            // Entre hilos se puede pasar del límite por muy poco: no importa
+            e = POR_SQL.computeIfAbsent(POR_SQL.size() < MAX_SQL ? clave : OTRAS, k -> new Estadistica());
+        }
+        if (POR_TEXTO.size() < MAX_TEXTOS) POR_TEXTO.put(texto, e);
+        return e;
+    }
+
+    static String normalizar(String sql) {
+        String s = CADENA.matcher(sql).replaceAll("?");
+        s = NUMERO.matcher(s).replaceAll("?");
+        s = LISTA_IN.matcher(s).replaceAll("IN (?...)");
+        return ESPACIOS.matcher(s).replaceAll(" ").trim();
+    }
+
+    /**
+     * Mide las llamadas execute* de una sentencia.
+     */
+    private static final class SentenciaMedida implements InvocationHandler {
+
+        private final Statement real;
+        private final String sql;
+        private final Estadistica preparada;
+        private final Traza traza;
+        private FilasLeidas ultimoResultado;
+
+        SentenciaMedida(Statement real, String sql, Traza traza) {
+            this.real = real;
+            this.sql = sql;
+            this.preparada = sql != null ? estadistica(sql) : null;
+            this.traza = traza;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            String nombre = method.getName();
+
+            if ("close".equals(nombre) && ultimoResultado != null) {
+                ultimoResultado.volcar();
+            }
+            if (!nombre.startsWith("execute")) {
+                return invocar(method, args);
+            }
+
+            // En un Statement normal el SQL llega en cada execute(sql)
+            Estadistica e = preparada;
+            String texto = sql;
+            if (e == null) {
+                texto = args != null && args.length > 0 && args[0] instanceof String ? (String) args[0] : "(lote de Statement)";
+                e = estadistica(texto);
+            }
+
+            long inicio = System.nanoTime();
+            Object resultado;
+            try {
+                resultado = invocar(method, args);
+            } catch (Throwable t) {
+                e.error();
+                throw t;
+            }
+            long duracion = System.nanoTime() - inicio;
+
+            long filas = filas(resultado);
+            e.registrar(duracion, filas);
+            traza.filas(filas);
+
+            if (duracion >= lentaNanos) {
+                System.err.printf("🐢 SQL lento (%.1f ms): %s%n", duracion / 1e6, texto);
+            }
+
+            if (resultado instanceof ResultSet) {
+                if (ultimoResultado != null) ultimoResultado.volcar();
+                ultimoResultado = new FilasLeidas((ResultSet) resultado, e, traza);
+                return ultimoResultado.crearProxy();
+            }
+            return resultado;
+        }
+
+        private Object invocar(Method method, Object[] args) throws Throwable {
+            try {
+                return method.invoke(real, args);
+            } catch (InvocationTargetException ex) {
+                throw ex.getCause();
+            }
+        }
+
+        private static long filas(Object resultado) {
+            if (resultado instanceof Integer) return Math.max(0, (Integer) resultado);
+            if (resultado instanceof Long) return Math.max(0, (Long) resultado);
+
+            long total = 0;
+            if (resultado instanceof int[]) {
+                for (int n : (int[]) resultado) if (n > 0) total += n;
+            } else if (resultado instanceof long[]) {
+                for (long n : (long[]) resultado) if (n > 0) total += n;
+            }
+            return total;
+        }
+    }
+
+    /**
+     * Cuenta las filas que se leen de un ResultSet y las suma al cerrarlo.
+     */
+    private static final class FilasLeidas implements InvocationHandler {
+
+        private final ResultSet real;
+        private final Estadistica estadistica;
+        private final Traza traza;
+        private long filas = 0;
+        private boolean volcado = false;
+
+        FilasLeidas(ResultSet real, Estadistica estadistica, Traza traza) {
+            this.real = real;
+            this.estadistica = estadistica;
+            this.traza = traza;
+        }
+
+        ResultSet crearProxy() {
+            return (ResultSet) Proxy.newProxyInstance(
+                    MetricasSQL.class.getClassLoader(),
+                    new Class<?>[]{ResultSet.class},
+                    this);
+        }
+
+        void volcar() {
+            if (volcado) return;
+            volcado = true;
+            estadistica.sumarFilas(filas);
+            traza.filas(filas);
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            if ("close".equals(method.getName())) volcar();
+
+            Object resultado;
+            try {
+                resultado = method.invoke(real, args);
+            } catch (InvocationTargetException ex) {
+                throw ex.getCause();
+            }
+
+            if ("next".equals(method.getName()) && Boolean.TRUE.equals(resultado)) filas++;
+            return resultado;
+        }
+    }
+
+    // ================================================================
+    //   ESTADÍSTICA DE UN SQL
+    // ================================================================
+
+    /**
+     * Contadores de un SQL. Todo se actualiza sin bloqueos.
+     */
+    private static final class Estadistica {
+
+        private final LongAdder ejecuciones = new LongAdder();
+        private final LongAdder errores = new LongAdder();
+        private final LongAdder filas = new LongAdder();
+        private final LongAdder totalNanos = new LongAdder();
+        private final LongAccumulator maxNanos = new LongAccumulator(Math::max, 0);
+        private final AtomicLongArray cubetas = new AtomicLongArray(CUBETAS);
+
+        void registrar(long nanos, long filasAfectadas) {
+            ejecuciones.increment();
+            totalNanos.add(nanos);
+            maxNanos.accumulate(nanos);
+            if (filasAfectadas > 0) filas.add(filasAfectadas);
+            cubetas.incrementAndGet(cubeta(nanos / 1000));
+        }
+
+        void sumarFilas(long n) {
+            if (n > 0) filas.add(n);
+        }
+
+        void error() {
+            errores.increment();
+        }
+
+        Resumen resumir(String sql) {
+            long[] copia = new long[CUBETAS];
+            long total = 0;
+            for (int i = 0; i < CUBETAS; i++) {
+                copia[i] = cubetas.get(i);
+                total += copia[i];
+            }
+
+            return new Resumen(sql, ejecuciones.sum(), errores.sum(), filas.sum(),
+                    percentil(copia, total, 0.50), percentil(copia, total, 0.95), percentil(copia, total, 0.99),
+                    maxNanos.get() / 1e6, totalNanos.sum() / 1e6);
+        }
+
+        /**
+         * Índice de la cubeta de un valor: los 8 primeros valores van uno por cubeta
+         * y a partir de ahí cada potencia de 2 se parte en 8.
+         */
+        private static int cubeta(long micros) {
+            if (micros < SUBDIVISIONES) return (int) Math.max(0, micros);
+
+            int exponente = 63 - Long.numberOfLeadingZeros(micros);
+            int sub = (int) (micros >>> (exponente - BITS_SUB)) & (SUBDIVISIONES - 1);
+            return Math.min(CUBETAS - 1, (exponente - BITS_SUB + 1) * SUBDIVISIONES + sub);
+        }
+
+        /** Valor más bajo (en µs) que cae en la cubeta. */
+        private static long inicioCubeta(int i) {
+            if (i < SUBDIVISIONES) return i;
+
+            int exponente = i / SUBDIVISIONES + BITS_SUB - 1;
+            long sub = i % SUBDIVISIONES;
+            return (SUBDIVISIONES + sub) << (exponente - BITS_SUB);
+        }
+
+        private static double percentil(long[] cubetas, long total, double p) {
+            if (total == 0) return 0;
+
+            long objetivo = (long) Math.ceil(total * p);
+            long acumulado = 0;
+            for (int i = 0; i < cubetas.length; i++) {
+                acumulado += cubetas[i];
+                if (acumulado >= objetivo) {
+                    // Punto medio de la cubeta, en ms
+                    double desde = inicioCubeta(i);
+                    double hasta = i + 1 < CUBETAS ? inicioCubeta(i + 1) : desde;
+                    return (desde + hasta) / 2 / 1000.0;
+                }
+            }
+            return 0;
+        }
+    }
+}
@@ -0,0 +1,173 @@
+package com.uber.database;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Migraciones versionadas del esquema, para MySQL y H2.
+ *
+ * Cada migración es un script de src/main/resources/db/migration llamado
+ * V&lt;versión&gt;__&lt;descripción&gt;.sql. La tabla schema_version guarda las
+ * que ya se han aplicado en esa BD; al crear el pool ({@link ConnectionBD})
+ * se aplican en orden las que falten.
+ *
+ * uber.sql es la versión 0. Los scripts solo deben usar SQL que entiendan las
+ * dos BD. Como MySQL no tiene CREATE INDEX IF NOT EXISTS, un índice que ya
+ * existe no se considera error: así una BD creada con un uber.sql más nuevo
+ * (que ya trae algún índice) puede aplicar la migración igual.
+ *
+ * Para añadir una migración se crea el script y se añade su nombre a {@link #SCRIPTS}.
+ */
+public final class Migraciones {
+
+    // En orden; los recursos de un jar no se pueden listar, así que van aquí
+    private static final List<String> SCRIPTS = List.of(
+            "V1__indices_consultas_frecuentes.sql",
+            "V2__historial_saldo.sql"
+    );
+
+    private static final String CREATE_SCHEMA_VERSION =
+            "CREATE TABLE IF NOT EXISTS schema_version (" +
+                    "version INT NOT NULL PRIMARY KEY, " +
+                    "descripcion VARCHAR(200) NOT NULL, " +
+                    "aplicada TIMESTAMP NOT NULL)";
+
+    private static final String SELECT_VERSION = "SELECT MAX(version) FROM schema_version";
+    private static final String INSERT_VERSION = "INSERT INTO schema_version (version, descripcion, aplicada) VALUES (?, ?, ?)";
+
+    // Error "el índice ya existe": ER_DUP_KEYNAME en MySQL, INDEX_ALREADY_EXISTS_1 en H2
+    private static final int MYSQL_INDICE_DUPLICADO = 1061;
+    private static final int H2_INDICE_DUPLICADO = 42111;
+
+    private Migraciones() {}
+
+    /**
+     * Aplica las migraciones pendientes en la BD configurada.
+     *
+     * @return número de migraciones aplicadas
+     */
+    public static int aplicar() {
+        return aplicar(ConnectionBD.getPool());
+    }
+
+    /**
+     * Aplica las migraciones pendientes usando una conexión del pool.
+     * Si la BD todavía no tiene las tablas de uber.sql no hace nada.
+     * Si una migración falla se deja de aplicar el resto y se escribe el error;
+     * la siguiente vez que arranque se volverá a intentar.
+     *
+     * @param pool pool recién creado
+     * @return número de migraciones aplicadas
+     */
+    static synchronized int aplicar(ConnectionPool pool) {
+        int aplicadas = 0;
+
+        try (Connection conn = pool.getConnection()) {
+            if (!hayEsquema(conn)) {
+                System.out.println("ℹ️ La BD no tiene todavía las tablas de uber.sql: no se aplican migraciones.");
+                return 0;
+            }
+
+            try (Statement st = conn.createStatement()) {
+                st.execute(CREATE_SCHEMA_VERSION);
+            }
+            int actual = versionActual(conn);
+
+            for (String script : SCRIPTS) {
+                int version = version(script);
+                if (version <= actual) continue;
+
+                aplicarScript(conn, script);
+                registrar(conn, version, descripcion(script));
+                aplicadas++;
+                System.out.println("🛠️ Migración V" + version + " aplicada: " + descripcion(script));
+            }
+
+        } catch (SQLException | IOException e) {
+            System.err.println("❌ Error aplicando migraciones: " + e.getMessage());
+            e.printStackTrace();
+        }
+
+        return aplicadas;
+    }
+
+    /**
+     * @return versión más alta aplicada (0 si ninguna)
+     */
+    private static int versionActual(Connection conn) throws SQLException {
+        try (Statement st = conn.createStatement();
+             ResultSet rs = st.executeQuery(SELECT_VERSION)) {
+            return rs.next() ? rs.getInt(1) : 0;
+        }
+    }
+
+    private static boolean hayEsquema(Connection conn) throws SQLException {
+        try (ResultSet rs = conn.getMetaData().getTables(conn.getCatalog(), null, "%", new String[]{"TABLE"})) {
+            while (rs.next()) {
+                if ("reserva".equalsIgnoreCase(rs.getString("TABLE_NAME"))) return true;
+            }
+        }
+        return false;
+    }
+
+    private static void aplicarScript(Connection conn, String script) throws SQLException, IOException {
+        for (String sql : sentencias(script)) {
+            try (Statement st = conn.createStatement()) {
+                st.execute(sql);
+            } catch (SQLException e) {
+                if (e.getErrorCode() != MYSQL_INDICE_DUPLICADO && e.getErrorCode() != H2_INDICE_DUPLICADO) throw e;
+                System.out.println("ℹ️ Ya existía: " + sql);
+            }
+        }
+    }
+
+    private static void registrar(Connection conn, int version, String descripcion) throws SQLException {
+        try (PreparedStatement ps = conn.prepareStatement(INSERT_VERSION)) {
+            ps.setInt(1, version);
+            ps.setString(2, descripcion);
+            ps.setTimestamp(3, Timestamp.valueOf(LocalDateTime.now()));
+            ps.executeUpdate();
+        }
+    }
+
+    /**
+     * Lee un script y lo parte en sentencias por los ';'. Las líneas que
+     * empiezan por "--" son comentarios y se quitan.
+     */
+    private static List<String> sentencias(String script) throws IOException {
+        try (InputStream in = Migraciones.class.getResourceAsStream("/db/migration/" + script)) {
+            if (in == null) throw new IOException("No se encuentra la migración " + script);
+
+            StringBuilder sb = new StringBuilder();
+            for (String linea : new String(in.readAllBytes(), StandardCharsets.UTF_8).split("\n")) {
+                if (!linea.trim().startsWith("--")) sb.append(linea).append('\n');
+            }
+
+            List<String> lista = new ArrayList<>();
+            for (String sql : sb.toString().split(";")) {
+                if (!sql.isBlank()) lista.add(sql.trim());
+            }
+            return lista;
+        }
+    }
+
+    /** "V12__algo.sql" → 12 */
+    private static int version(String script) {
+        return Integer.parseInt(script.substring(1, script.indexOf("__")));
+    }
+
+    /** "V1__indices_consultas.sql" → "indices consultas" */
+    private static String descripcion(String script) {
+        return script.substring(script.indexOf("__") + 2, script.length() - ".sql".length()).replace('_', ' ');
+    }
+}
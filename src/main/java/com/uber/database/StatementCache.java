@@ -0,0 +1,214 @@
+package com.uber.database;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Caché LRU de PreparedStatement de una conexión física.
+ * Los DAO siguen llamando a prepareStatement(...) y cerrando la sentencia
+ * con try-with-resources; el close() la devuelve a esta caché en lugar de
+ * cerrarla, así la siguiente vez que se pida el mismo SQL no se vuelve a
+ * preparar en el servidor.
+ *
+ * Solo guarda las sentencias libres (las que están en uso se sacan de la
+ * caché mientras tanto) y cierra de verdad la que se expulsa por LRU.
+ *
+ * Una sentencia a la que se le ha cambiado la configuración (fetch size,
+ * máximo de filas, timeout...) tampoco se guarda: se cierra al devolverla,
+ * para que quien pida después el mismo SQL no herede esos valores.
+ */
+public class StatementCache {
+
+    // Contadores globales de todas las conexiones
+    private static final LongAdder ACIERTOS = new LongAdder();
+    private static final LongAdder FALLOS = new LongAdder();
+    private static final LongAdder EXPULSIONES = new LongAdder();
+
+    // Métodos que cambian la sentencia más allá de una ejecución
+    private static final Set<String> CONFIGURACION = Set.of(
+            "setFetchSize", "setFetchDirection", "setMaxRows", "setLargeMaxRows", "setMaxFieldSize",
+            "setQueryTimeout", "setEscapeProcessing", "setPoolable", "setCursorName", "closeOnCompletion");
+
+    private final int capacidad;
+    private final Map<String, PreparedStatement> libres;
+
+    /**
+     * @param capacidad número máximo de sentencias libres guardadas (0 = sin caché)
+     */
+    public StatementCache(int capacidad) {
+        this.capacidad = capacidad;
+
+        // accessOrder = true: la primera entrada es la menos usada recientemente
+        this.libres = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, PreparedStatement> eldest) {
+                if (size() > StatementCache.this.capacidad) {
+                    EXPULSIONES.increment();
+                    cerrar(eldest.getValue());
+                    return true;
+                }
+                return false;
+            }
+        };
+    }
+
+    /**
+     * Devuelve una sentencia preparada para el SQL indicado,
+     * reutilizando una de la caché si la hay.
+     *
+     * @param real           conexión física donde se prepara
+     * @param logica         conexión que ve el DAO (la que devuelve getConnection())
+     * @param sql            texto SQL
+     * @param generatedKeys  Statement.RETURN_GENERATED_KEYS o NO_GENERATED_KEYS; null si no se indicó
+     * @return sentencia lista para usar; al cerrarla vuelve a la caché
+     * @throws SQLException si falla la preparación
+     */
+    synchronized PreparedStatement preparar(Connection real, Connection logica,
+                                            String sql, Integer generatedKeys) throws SQLException {
+        String clave = generatedKeys == null ? sql : generatedKeys + "#" + sql;
+
+        PreparedStatement ps = libres.remove(clave);
+        if (ps != null && !ps.isClosed()) {
+            ACIERTOS.increment();
+        } else {
+            FALLOS.increment();
+            ps = generatedKeys == null
+                    ? real.prepareStatement(sql)
+                    : real.prepareStatement(sql, generatedKeys);
+        }
+
+        return (PreparedStatement) Proxy.newProxyInstance(
+                StatementCache.class.getClassLoader(),
+                new Class<?>[]{PreparedStatement.class},
+                new SentenciaEnCache(clave, ps, logica));
+    }
+
+    /**
+     * Vuelve a guardar una sentencia que el DAO ha cerrado.
+     *
+     * @param configurada true si se le cambió la configuración: entonces se cierra
+     */
+    private synchronized void devolver(String clave, PreparedStatement ps, boolean configurada) {
+        if (capacidad <= 0 || configurada) {
+            cerrar(ps);
+            return;
+        }
+
+        try {
+            ps.clearParameters();
+            ps.clearBatch();
+        } catch (SQLException e) {
+            cerrar(ps);
+            return;
+        }
+
+        // Si el mismo SQL estaba en uso dos veces a la vez, nos quedamos con una sola
+        PreparedStatement previa = libres.put(clave, ps);
+        if (previa != null && previa != ps) cerrar(previa);
+    }
+
+    /**
+     * Cierra todas las sentencias guardadas.
+     * Se llama cuando la conexión física se cierra.
+     */
+    synchronized void cerrarTodas() {
+        for (PreparedStatement ps : libres.values()) cerrar(ps);
+        libres.clear();
+    }
+
+    private static void cerrar(Statement st) {
+        try {
+            st.close();
+        } catch (SQLException ignored) {}
+    }
+
+    /** @return veces que se reutilizó una sentencia ya preparada */
+    public static long getAciertos() { return ACIERTOS.sum(); }
+
+    /** @return veces que hubo que preparar la sentencia en el servidor */
+    public static long getFallos() { return FALLOS.sum(); }
+
+    /** @return sentencias cerradas por falta de espacio en la caché */
+    public static long getExpulsiones() { return EXPULSIONES.sum(); }
+
+    /**
+     * Proxy de la sentencia que recibe el DAO.
+     * close() la devuelve a la caché después de cerrar el último ResultSet abierto.
+     */
+    private final class SentenciaEnCache implements InvocationHandler {
+
+        private final String clave;
+        private final PreparedStatement real;
+        private final Connection logica;
+        private ResultSet ultimoResultado;
+        private boolean cerrada = false;
+        private boolean configurada = false;
+
+        SentenciaEnCache(String clave, PreparedStatement real, Connection logica) {
+            this.clave = clave;
+            this.real = real;
+            this.logica = logica;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            switch (method.getName()) {
+                case "close":
+                    if (!cerrada) {
+                        cerrada = true;
+                        cerrarResultado();
+                        devolver(clave, real, configurada);
+                    }
+                    return null;
+                case "isClosed":
+                    return cerrada || real.isClosed();
+                case "getConnection":
+                    return logica;
+                case "equals":
+                    return proxy == args[0];
+                case "hashCode":
+                    return System.identityHashCode(proxy);
+                case "toString":
+                    return "Sentencia en caché -> " + real;
+                default:
+                    break;
+            }
+
+            if (cerrada) throw new SQLException("La sentencia ya está cerrada");
+            if (CONFIGURACION.contains(method.getName())) configurada = true;
+
+            Object resultado;
+            try {
+                resultado = method.invoke(real, args);
+            } catch (InvocationTargetException e) {
+                throw e.getCause();
+            }
+
+            // Recordamos el último ResultSet para cerrarlo al devolver la sentencia
+            if (resultado instanceof ResultSet) {
+                ultimoResultado = (ResultSet) resultado;
+            }
+            return resultado;
+        }
+
+        private void cerrarResultado() {
+            if (ultimoResultado != null) {
+                try {
+                    ultimoResultado.close();
+                } catch (SQLException ignored) {}
+                ultimoResultado = null;
+            }
+        }
+    }
+}
@@ -0,0 +1,11 @@
+package com.uber.enums;
+
+/**
+ * Resultado de liquidar (cerrar y cobrar) una reserva.
+ */
+public enum ResultadoLiquidacion {
+    LIQUIDADA,
+    NO_ACTIVA, // ya estaba cancelada o finalizada: no se ha cobrado nada
+    SIN_SALDO, // el usuario no tiene saldo para pagarla: sigue activa
+    ERROR
+}
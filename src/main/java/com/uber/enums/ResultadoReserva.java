@@ -0,0 +1,12 @@
+package com.uber.enums;
+
+/**
+ * Resultado de intentar reservar un vehículo.
+ * Permite distinguir un vehículo que ya ha cogido otro cliente de un fallo de la BD.
+ */
+public enum ResultadoReserva {
+    OK,
+    VEHICULO_OCUPADO,
+    FRANJA_OCUPADA, // otra reserva activa del vehículo se solapa con las fechas pedidas
+    ERROR
+}
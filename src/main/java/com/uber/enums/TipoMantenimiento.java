@@ -1,5 +1,8 @@
 package com.uber.enums;
 
+import java.util.HashMap;
+import java.util.Map;
+
 /**
  * Lista de tipos de mantenimiento que puede tener un vehículo.
  * Se usa para clasificar los registros de la tabla Mantenimiento.
@@ -9,5 +12,23 @@ public enum TipoMantenimiento {
     REVISION_GENERAL,
     CAMBIO_BATERIA,
     FRENOS,
-    DIAGNOSTICO
+    DIAGNOSTICO;
+
+    // Tipos por nombre, construido una vez al cargar la clase
+    private static final Map<String, TipoMantenimiento> POR_NOMBRE = new HashMap<>();
+
+    static {
+        for (TipoMantenimiento t : values()) POR_NOMBRE.put(t.name(), t);
+    }
+
+    /**
+     * Igual que valueOf, pero sin lanzar excepción: sirve para leer la BD,
+     * donde puede haber tipos que esta versión no conoce.
+     *
+     * @param nombre nombre guardado en la columna tipo
+     * @return el tipo, o null si es null o no existe
+     */
+    public static TipoMantenimiento desdeNombre(String nombre) {
+        return nombre != null ? POR_NOMBRE.get(nombre) : null;
+    }
 }
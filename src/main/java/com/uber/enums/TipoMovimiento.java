@@ -0,0 +1,12 @@
+package com.uber.enums;
+
+/**
+ * Tipos de apunte del historial de saldo (tabla Movimiento).
+ * Las recargas y los reembolsos suman; los cobros de viajes restan.
+ */
+public enum TipoMovimiento {
+    SALDO_INICIAL, // saldo que ya tenía el usuario antes de existir el historial
+    RECARGA,
+    COBRO_VIAJE,
+    REEMBOLSO
+}
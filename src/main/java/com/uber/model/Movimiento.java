@@ -0,0 +1,51 @@
+package com.uber.model;
+
+import com.uber.enums.TipoMovimiento;
+
+import java.time.LocalDateTime;
+
+/**
+ * Apunte del historial de saldo de un usuario.
+ * Los apuntes no se modifican ni se borran: cada cambio de saldo añade uno nuevo.
+ */
+public class Movimiento {
+
+    /*** Atributos del apunte. */
+    private int idMovimiento;
+    private Usuario usuario;
+    private TipoMovimiento tipo;
+    private double importe;          // positivo si suma saldo, negativo si resta
+    private double saldoResultante;  // saldo del usuario justo después del apunte
+    private Reserva reserva;         // viaje cobrado o reembolsado (puede ser null)
+    private LocalDateTime fechaHora;
+
+    /** Constructor vacío */
+    public Movimiento() {}
+
+    /** Getters y Setters */
+    public int getIdMovimiento() { return idMovimiento; }
+    public void setIdMovimiento(int idMovimiento) { this.idMovimiento = idMovimiento; }
+
+    public Usuario getUsuario() { return usuario; }
+    public void setUsuario(Usuario usuario) { this.usuario = usuario; }
+
+    public TipoMovimiento getTipo() { return tipo; }
+    public void setTipo(TipoMovimiento tipo) { this.tipo = tipo; }
+
+    public double getImporte() { return importe; }
+    public void setImporte(double importe) { this.importe = importe; }
+
+    public double getSaldoResultante() { return saldoResultante; }
+    public void setSaldoResultante(double saldoResultante) { this.saldoResultante = saldoResultante; }
+
+    public Reserva getReserva() { return reserva; }
+    public void setReserva(Reserva reserva) { this.reserva = reserva; }
+
+    public LocalDateTime getFechaHora() { return fechaHora; }
+    public void setFechaHora(LocalDateTime fechaHora) { this.fechaHora = fechaHora; }
+
+    @Override
+    public String toString() {
+        return tipo + " de " + importe + "€ (saldo " + saldoResultante + "€) el " + fechaHora;
+    }
+}
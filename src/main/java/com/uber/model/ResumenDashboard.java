@@ -0,0 +1,61 @@
+package com.uber.model;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Datos del panel de resumen del administrador.
+ * Contiene los contadores generales y los vehículos que generan avisos
+ * (batería baja o inactivos).
+ */
+public class ResumenDashboard {
+
+    /*** Contadores del resumen. */
+    private long totalVehiculos;
+    private long disponibles;
+    private long enUso;
+    private long enMantenimiento;
+    private long totalUsuarios;
+    private long totalEstaciones;
+
+    /*** Vehículos con avisos (solo id, marca, batería y estado). */
+    private List<Vehiculo> alertas = new ArrayList<>();
+
+    /** Constructor vacío */
+    public ResumenDashboard() {}
+
+    /** Getters y Setters */
+    public long getTotalVehiculos() { return totalVehiculos; }
+    public void setTotalVehiculos(long totalVehiculos) { this.totalVehiculos = totalVehiculos; }
+
+    public long getDisponibles() { return disponibles; }
+    public void setDisponibles(long disponibles) { this.disponibles = disponibles; }
+
+    public long getEnUso() { return enUso; }
+    public void setEnUso(long enUso) { this.enUso = enUso; }
+
+    public long getEnMantenimiento() { return enMantenimiento; }
+    public void setEnMantenimiento(long enMantenimiento) { this.enMantenimiento = enMantenimiento; }
+
+    public long getTotalUsuarios() { return totalUsuarios; }
+    public void setTotalUsuarios(long totalUsuarios) { this.totalUsuarios = totalUsuarios; }
+
+    public long getTotalEstaciones() { return totalEstaciones; }
+    public void setTotalEstaciones(long totalEstaciones) { this.totalEstaciones = totalEstaciones; }
+
+    public List<Vehiculo> getAlertas() { return alertas; }
+    public void setAlertas(List<Vehiculo> alertas) { this.alertas = alertas; }
+
+    @Override
+    public String toString() {
+        return "ResumenDashboard{" +
+                "totalVehiculos=" + totalVehiculos +
+                ", disponibles=" + disponibles +
+                ", enUso=" + enUso +
+                ", enMantenimiento=" + enMantenimiento +
+                ", totalUsuarios=" + totalUsuarios +
+                ", totalEstaciones=" + totalEstaciones +
+                ", alertas=" + alertas.size() +
+                '}';
+    }
+}
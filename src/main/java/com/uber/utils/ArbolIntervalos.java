@@ -0,0 +1,191 @@
+package com.uber.utils;
+
+/**
+ * Árbol de intervalos semiabiertos [inicio, fin) sobre valores long.
+ *
+ * Es un árbol AVL ordenado por (inicio, id) en el que cada nodo guarda además
+ * el mayor "fin" de su subárbol. Con ese dato se puede saber si algún intervalo
+ * se solapa con otro bajando por una sola rama, así que insertar, borrar y
+ * consultar cuestan O(log n).
+ *
+ * No es seguro para varios hilos; quien lo use debe sincronizar.
+ */
+public class ArbolIntervalos {
+
+    private static final class Nodo {
+        final long inicio;
+        final long fin;
+        final int id;
+
+        long maxFin;
+        int altura = 1;
+        Nodo izq;
+        Nodo der;
+
+        Nodo(long inicio, long fin, int id) {
+            this.inicio = inicio;
+            this.fin = fin;
+            this.id = id;
+            this.maxFin = fin;
+        }
+    }
+
+    private Nodo raiz;
+    private int tamano;
+
+    /**
+     * Añade un intervalo. El id lo identifica para poder borrarlo después.
+     *
+     * @param inicio inicio (incluido)
+     * @param fin    fin (excluido)
+     * @param id     identificador del intervalo
+     */
+    public void insertar(long inicio, long fin, int id) {
+        raiz = insertar(raiz, new Nodo(inicio, fin, id));
+    }
+
+    /**
+     * Borra el intervalo con ese inicio e id.
+     *
+     * @return true si estaba en el árbol
+     */
+    public boolean eliminar(long inicio, int id) {
+        int antes = tamano;
+        raiz = eliminar(raiz, inicio, id);
+        return tamano < antes;
+    }
+
+    /**
+     * Indica si algún intervalo del árbol se solapa con [desde, hasta).
+     *
+     * @param desde inicio (incluido)
+     * @param hasta fin (excluido)
+     * @return true si hay al menos un solape
+     */
+    public boolean haySolape(long desde, long hasta) {
+        Nodo n = raiz;
+        while (n != null) {
+            if (n.inicio < hasta && n.fin > desde) return true;
+
+            // Si el subárbol izquierdo tiene algún fin posterior a "desde",
+            // el solape, si existe, tiene que estar ahí
+            if (n.izq != null && n.izq.maxFin > desde) {
+                n = n.izq;
+            } else {
+                n = n.der;
+            }
+        }
+        return false;
+    }
+
+    /** @return número de intervalos guardados */
+    public int getTamano() {
+        return tamano;
+    }
+
+    /** @return true si no hay intervalos */
+    public boolean estaVacio() {
+        return tamano == 0;
+    }
+
+    /** @return altura del árbol (0 si está vacío); para comprobar el equilibrio en las pruebas */
+    int getAltura() {
+        return altura(raiz);
+    }
+
+    // ================================================================
+    //   AVL
+    // ================================================================
+
+    private Nodo insertar(Nodo n, Nodo nuevo) {
+        if (n == null) {
+            tamano++;
+            return nuevo;
+        }
+
+        int cmp = comparar(nuevo.inicio, nuevo.id, n);
+        if (cmp < 0) {
+            n.izq = insertar(n.izq, nuevo);
+        } else if (cmp > 0) {
+            n.der = insertar(n.der, nuevo);
+        } else {
+            return n; // ya estaba
+        }
+        return equilibrar(n);
+    }
+
+    private Nodo eliminar(Nodo n, long inicio, int id) {
+        if (n == null) return null;
+
+        int cmp = comparar(inicio, id, n);
+        if (cmp < 0) {
+            n.izq = eliminar(n.izq, inicio, id);
+        } else if (cmp > 0) {
+            n.der = eliminar(n.der, inicio, id);
+        } else {
+            tamano--;
+            if (n.izq == null) return n.der;
+            if (n.der == null) return n.izq;
+
+            // Se sustituye por el menor del subárbol derecho
+            Nodo sucesor = n.der;
+            while (sucesor.izq != null) sucesor = sucesor.izq;
+
+            Nodo reemplazo = new Nodo(sucesor.inicio, sucesor.fin, sucesor.id);
+            tamano++; // eliminar() del sucesor lo vuelve a restar
+            reemplazo.der = eliminar(n.der, sucesor.inicio, sucesor.id);
+            reemplazo.izq = n.izq;
+            n = reemplazo;
+        }
+        return equilibrar(n);
+    }
+
+    private static int comparar(long inicio, int id, Nodo n) {
+        int cmp = Long.compare(inicio, n.inicio);
+        return cmp != 0 ? cmp : Integer.compare(id, n.id);
+    }
+
+    private static int altura(Nodo n) {
+        return n == null ? 0 : n.altura;
+    }
+
+    private static void actualizar(Nodo n) {
+        n.altura = 1 + Math.max(altura(n.izq), altura(n.der));
+        n.maxFin = n.fin;
+        if (n.izq != null) n.maxFin = Math.max(n.maxFin, n.izq.maxFin);
+        if (n.der != null) n.maxFin = Math.max(n.maxFin, n.der.maxFin);
+    }
+
+    private static Nodo equilibrar(Nodo n) {
+        actualizar(n);
+        int balance = altura(n.izq) - altura(n.der);
+
+        if (balance > 1) {
+            if (altura(n.izq.izq) < altura(n.izq.der)) n.izq = rotarIzquierda(n.izq);
+            return rotarDerecha(n);
+        }
+        if (balance < -1) {
+            if (altura(n.der.der) < altura(n.der.izq)) n.der = rotarDerecha(n.der);
+            return rotarIzquierda(n);
+        }
+        return n;
+    }
+
+    private static Nodo rotarDerecha(Nodo n) {
+        Nodo l = n.izq;
+        n.izq = l.der;
+        l.der = n;
+        actualizar(n);
+        actualizar(l);
+        return l;
+    }
+
+    private static Nodo rotarIzquierda(Nodo n) {
+        Nodo r = n.der;
+        n.der = r.izq;
+        r.izq = n;
+        actualizar(n);
+        actualizar(r);
+        return r;
+    }
+}
@@ -0,0 +1,135 @@
+package com.uber.utils;
+
+import com.uber.dao.AsyncDAO;
+import javafx.application.Platform;
+import javafx.scene.Node;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+/**
+ * Cargas de datos pendientes de una vista.
+ * Lanza las consultas con {@link AsyncDAO} y entrega el resultado en el hilo
+ * de JavaFX con Platform.runLater. Al cambiar de pestaña se llama a
+ * {@link #cancelarTodo()} para que las respuestas atrasadas no pisen la vista nueva.
+ *
+ * Todos los métodos se llaman desde el hilo de JavaFX.
+ */
+public class CargaVista {
+
+    private final List<CompletableFuture<?>> enCurso = new ArrayList<>();
+
+    /**
+     * Ejecuta una consulta en segundo plano y pasa el resultado a la interfaz.
+     *
+     * @param consulta    llamada al DAO (se ejecuta fuera del hilo de JavaFX)
+     * @param alTerminar  código que pinta el resultado (se ejecuta en el hilo de JavaFX)
+     * @param <T> tipo del resultado
+     * @return futuro de la consulta, por si se quiere cancelar individualmente
+     */
+    public <T> CompletableFuture<T> cargar(Supplier<T> consulta, Consumer<T> alTerminar) {
+        return cargar(null, consulta, alTerminar);
+    }
+
+    /**
+     * Igual que {@link #cargar(Supplier, Consumer)}, pero la carga entera (consulta
+     * y pintado) queda registrada como una acción de usuario en JFR ({@link Traza}).
+     * Si el resultado es una colección o un mapa, su tamaño cuenta como filas.
+     *
+     * @param accion      nombre de la acción, "Controlador.metodo" (null = sin evento)
+     * @param consulta    llamada al DAO (se ejecuta fuera del hilo de JavaFX)
+     * @param alTerminar  código que pinta el resultado (se ejecuta en el hilo de JavaFX)
+     * @param <T> tipo del resultado
+     * @return futuro de la consulta, por si se quiere cancelar individualmente
+     */
+    public <T> CompletableFuture<T> cargar(String accion, Supplier<T> consulta, Consumer<T> alTerminar) {
+        Traza traza = accion != null ? Traza.accion(accion) : null;
+        CompletableFuture<T> futuro = AsyncDAO.ejecutar(consulta);
+        enCurso.add(futuro);
+
+        futuro.whenComplete((resultado, error) -> Platform.runLater(() -> {
+            enCurso.remove(futuro);
+            try {
+                if (futuro.isCancelled()) return;
+
+                if (error != null) {
+                    error.printStackTrace();
+                    return;
+                }
+                if (traza != null) traza.filas(tamano(resultado));
+                alTerminar.accept(resultado);
+
+            } finally {
+                if (traza != null) traza.close();
+            }
+        }));
+
+        return futuro;
+    }
+
+    /**
+     * Ejecuta en segundo plano una acción del usuario que escribe en la BD
+     * (reservar, pagar, recargar...) y bloquea los controles indicados hasta
+     * que termina, para que no se lance dos veces.
+     *
+     * A diferencia de las cargas, no se cancela con {@link #cancelarTodo()}:
+     * aunque el usuario cambie de pestaña, el resultado se le tiene que avisar.
+     *
+     * @param accion      nombre de la acción para JFR, "Controlador.metodo"
+     * @param operacion   llamada al DAO (se ejecuta fuera del hilo de JavaFX)
+     * @param alTerminar  código que muestra el resultado (se ejecuta en el hilo de JavaFX)
+     * @param bloquear    controles que se desactivan mientras dura la acción
+     * @param <T> tipo del resultado
+     * @return futuro de la acción
+     */
+    public <T> CompletableFuture<T> ejecutar(String accion, Supplier<T> operacion, Consumer<T> alTerminar,
+                                             Node... bloquear) {
+        for (Node n : bloquear) n.setDisable(true);
+
+        Traza traza = Traza.accion(accion);
+        CompletableFuture<T> futuro = AsyncDAO.ejecutar(operacion);
+
+        futuro.whenComplete((resultado, error) -> Platform.runLater(() -> {
+            try {
+                if (error != null) {
+                    error.printStackTrace();
+                    return;
+                }
+                traza.filas(tamano(resultado));
+                alTerminar.accept(resultado);
+
+            } finally {
+                for (Node n : bloquear) n.setDisable(false);
+                traza.close();
+            }
+        }));
+
+        return futuro;
+    }
+
+    /**
+     * Cancela todas las cargas que aún no han terminado.
+     */
+    public void cancelarTodo() {
+        for (CompletableFuture<?> f : enCurso) {
+            f.cancel(false);
+        }
+        enCurso.clear();
+    }
+
+    private static long tamano(Object resultado) {
+        if (resultado instanceof Collection<?> c) return c.size();
+        if (resultado instanceof Map<?, ?> m) return m.size();
+        return 0;
+    }
+
+    /** @return true si queda alguna carga por terminar */
+    public boolean hayCargasPendientes() {
+        return !enCurso.isEmpty();
+    }
+}
@@ -0,0 +1,437 @@
+package com.uber.utils;
+
+import com.uber.database.ConnectionBD;
+import com.uber.enums.TipoMantenimiento;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Rellena la BD configurada en db.properties con datos inventados para
+ * pruebas de carga y de rendimiento: estaciones, usuarios (con su apunte de
+ * saldo inicial), vehículos, reservas e historial de mantenimientos.
+ *
+ * Los datos se añaden a los que ya haya, con ids a partir del máximo actual.
+ * Con la misma semilla y los mismos volúmenes, sobre la misma BD de partida,
+ * se generan siempre exactamente los mismos datos.
+ *
+ * Cada tabla se parte en trozos de {@link #FILAS_POR_TROZO} filas. Cada trozo
+ * va en su propia transacción con INSERT de {@link #FILAS_POR_SENTENCIA} filas
+ * cada uno, y varios trozos se escriben a la vez (tantos como conexiones
+ * tiene el pool). Las tablas se cargan por fases para respetar las claves ajenas:
+ * primero estaciones y usuarios, luego vehículos, y al final reservas,
+ * mantenimientos y apuntes.
+ *
+ * Uso:
+ * <pre>
+ * java com.uber.utils.GeneradorDatos --reservas 10000000 --usuarios 500000 --semilla 7
+ * </pre>
+ * Opciones (todas opcionales): --estaciones, --usuarios, --vehiculos,
+ * --reservas, --mantenimientos y --semilla. La BD se elige como siempre,
+ * con db.properties o con -Ddb.type=... al arrancar.
+ */
+public class GeneradorDatos {
+
+    static final int FILAS_POR_SENTENCIA = 500;
+    static final int FILAS_POR_TROZO = 10_000;
+
+    private static final String[] CIUDADES = {
+            "Madrid", "Barcelona", "Valencia", "Sevilla", "Zaragoza", "Málaga", "Murcia", "Palma",
+            "Bilbao", "Alicante", "Córdoba", "Valladolid", "Vigo", "Gijón", "Granada", "Oviedo"
+    };
+    private static final String[] NOMBRES = {
+            "Lucía", "Hugo", "Martina", "Mateo", "Sofía", "Leo", "Julia", "Daniel", "Paula", "Pablo",
+            "Valeria", "Álvaro", "Emma", "Manuel", "Carla", "Adrián", "Sara", "David", "Noa", "Javier"
+    };
+    private static final String[] APELLIDOS = {
+            "García", "Rodríguez", "González", "Fernández", "López", "Martínez", "Sánchez", "Pérez",
+            "Gómez", "Martín", "Jiménez", "Ruiz", "Hernández", "Díaz", "Moreno", "Muñoz", "Álvarez", "Romero"
+    };
+    private static final String[] METODOS_PAGO = {"Tarjeta", "PayPal", "Bizum"};
+    private static final String[][] MARCAS = {
+            {"COCHE", "Toyota", "Corolla", "Seat", "León", "Renault", "Zoe", "Tesla", "Model 3"},
+            {"MOTO", "Yamaha", "NMAX", "Honda", "PCX", "Vespa", "Elettrica", "Silence", "S01"},
+            {"PATINETE", "Xiaomi", "Pro 2", "Segway", "Ninebot Max", "Cecotec", "Bongo", "Niu", "KQi3"}
+    };
+    private static final String[] NOTAS = {
+            "Revisión programada", "Aviso del cliente", "Detectado en inspección", "Desgaste normal", null
+    };
+
+    // Precio por hora de cada tipo de vehículo, en el orden de MARCAS
+    private static final double[] PRECIO_HORA = {9.0, 5.0, 3.0};
+    private static final int DIAS_DE_HISTORIA = 730;
+
+    /**
+     * Volúmenes que se quieren generar.
+     */
+    public record Volumen(int estaciones, int usuarios, int vehiculos, int reservas, int mantenimientos) {}
+
+    /**
+     * Escribe una fila en las posiciones de la sentencia a partir de {@code pos}.
+     */
+    @FunctionalInterface
+    private interface Fila {
+        void escribir(PreparedStatement ps, int pos, int indice, SplittableRandom azar) throws SQLException;
+    }
+
+    private final long semilla;
+    private final LocalDateTime ahora;
+    private final ExecutorService escritores;
+    private final AtomicLong escritas = new AtomicLong();
+
+    // Primer id de cada tabla para los datos nuevos
+    private int primeraEstacion, primerUsuario, primerVehiculo, primeraReserva, primerMovimiento;
+    private List<Integer> idsMantenimiento;
+    private Volumen volumen;
+
+    /**
+     * @param semilla semilla de los datos: la misma semilla da los mismos datos
+     */
+    public GeneradorDatos(long semilla) {
+        this.semilla = semilla;
+        // Las fechas se calculan desde un momento fijo para que la semilla baste para repetirlas
+        this.ahora = LocalDateTime.of(2026, 1, 1, 0, 0);
+        this.escritores = Executors.newFixedThreadPool(
+                Math.max(1, Math.min(ConnectionBD.getPool().getMaxSize(), Runtime.getRuntime().availableProcessors())));
+    }
+
+    public static void main(String[] args) {
+        Volumen v = new Volumen(
+                opcion(args, "--estaciones", 500),
+                opcion(args, "--usuarios", 100_000),
+                opcion(args, "--vehiculos", 10_000),
+                opcion(args, "--reservas", 1_000_000),
+                opcion(args, "--mantenimientos", 100_000));
+
+        GeneradorDatos generador = new GeneradorDatos(opcion(args, "--semilla", 42));
+        try {
+            generador.generar(v);
+        } catch (SQLException e) {
+            e.printStackTrace();
+        } finally {
+            generador.cerrar();
+            ConnectionBD.closeConnection();
+        }
+    }
+
+    /**
+     * Genera todos los datos del volumen indicado.
+     *
+     * @param v cuántas filas de cada tabla
+     * @throws SQLException si falla alguna inserción (lo ya confirmado se queda en la BD)
+     */
+    public void generar(Volumen v) throws SQLException {
+        this.volumen = v;
+        long inicio = System.currentTimeMillis();
+
+        prepararIds();
+        System.out.println("🏭 Generando " + v + " con semilla " + semilla);
+
+        esperar(
+                generar("Estacion", "id_estacion, ciudad, nombre_estacion, direccion, capacidad",
+                        5, v.estaciones(), this::estacion),
+                generar("Usuario", "id_usuario, nombre, apellidos, email, contrasena, telefono, metodo_pago, saldo, estado_cuenta, rol",
+                        10, v.usuarios(), this::usuario));
+
+        esperar(
+                generar("Vehiculo", "id_vehiculo, tipo, marca, modelo, estado_vehiculo, id_estacion, nivel_bateria, kilometraje",
+                        8, v.vehiculos(), this::vehiculo));
+
+        esperar(
+                generar("Movimiento", "id_movimiento, id_usuario, tipo, importe, saldo_resultante, id_reserva, fecha_hora",
+                        7, v.usuarios(), this::saldoInicial),
+                generar("Reserva", "id_reserva, id_usuario, id_vehiculo, fecha_hora_inicio, fecha_hora_fin, coste, estado",
+                        7, v.reservas(), this::reserva),
+                generar("Tiene", "id_vehiculo, id_mantenimiento, fecha_hora, coste, notas",
+                        5, v.mantenimientos(), this::mantenimiento));
+
+        ajustarAutoincrementos();
+
+        long ms = System.currentTimeMillis() - inicio;
+        System.out.printf("✅ %d filas generadas en %.1f s (%.0f filas/s)%n",
+                escritas.get(), ms / 1000.0, escritas.get() * 1000.0 / Math.max(1, ms));
+    }
+
+    /**
+     * Para los escritores. Se llama al terminar.
+     */
+    public void cerrar() {
+        escritores.shutdown();
+    }
+
+    // ================================================================
+    //   ESCRITURA POR TROZOS
+    // ================================================================
+
+    /**
+     * Reparte una tabla en trozos y los manda a los escritores.
+     *
+     * @return tareas de todos los trozos
+     */
+    private List<Future<?>> generar(String tabla, String columnas, int numColumnas, int total, Fila fila) {
+        List<Future<?>> tareas = new ArrayList<>();
+        int trozo = 0;
+
+        for (int desde = 0; desde < total; desde += FILAS_POR_TROZO) {
+            int hasta = Math.min(desde + FILAS_POR_TROZO, total);
+            int desdeFinal = desde;
+            // Cada trozo tiene su propio generador derivado de la semilla: da igual qué hilo lo escriba
+            SplittableRandom azar = new SplittableRandom(semilla * 1_000_003L + tabla.hashCode() * 8_191L + trozo++);
+
+            tareas.add(escritores.submit(() -> {
+                escribirTrozo(tabla, columnas, numColumnas, desdeFinal, hasta, fila, azar);
+                return null;
+            }));
+        }
+        return tareas;
+    }
+
+    private void escribirTrozo(String tabla, String columnas, int numColumnas, int desde, int hasta,
+                               Fila fila, SplittableRandom azar) throws SQLException {
+        try (Connection conn = ConnectionBD.getConnection()) {
+            conn.setAutoCommit(false);
+
+            try {
+                for (int i = desde; i < hasta; i += FILAS_POR_SENTENCIA) {
+                    int filas = Math.min(FILAS_POR_SENTENCIA, hasta - i);
+
+                    try (PreparedStatement ps = conn.prepareStatement(insertar(tabla, columnas, numColumnas, filas))) {
+                        for (int f = 0; f < filas; f++) {
+                            fila.escribir(ps, f * numColumnas + 1, i + f, azar);
+                        }
+                        ps.executeUpdate();
+                    }
+                }
+                conn.commit();
+
+            } catch (SQLException | RuntimeException e) {
+                conn.rollback();
+                throw e;
+
+            } finally {
+                conn.setAutoCommit(true);
+            }
+        }
+
+        long total = escritas.addAndGet(hasta - desde);
+        if (total / 100_000 != (total - (hasta - desde)) / 100_000) {
+            System.out.println("   ... " + total + " filas");
+        }
+    }
+
+    /** INSERT de varias filas: VALUES (?, ?), (?, ?), ... */
+    private static String insertar(String tabla, String columnas, int numColumnas, int filas) {
+        String hueco = "(" + String.join(", ", Collections.nCopies(numColumnas, "?")) + ")";
+        return "INSERT INTO " + tabla + " (" + columnas + ") VALUES "
+                + String.join(", ", Collections.nCopies(filas, hueco));
+    }
+
+    /** Espera a que terminen todas las tablas de una fase. */
+    @SafeVarargs
+    private static void esperar(List<Future<?>>... tablas) throws SQLException {
+        try {
+            for (List<Future<?>> tareas : tablas) {
+                for (Future<?> t : tareas) t.get();
+            }
+
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SQLException("Generación interrumpida", e);
+
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof SQLException) throw (SQLException) e.getCause();
+            throw new SQLException("Error generando datos", e.getCause());
+        }
+    }
+
+    // ================================================================
+    //   FILAS DE CADA TABLA
+    // ================================================================
+
+    private void estacion(PreparedStatement ps, int p, int i, SplittableRandom azar) throws SQLException {
+        String ciudad = CIUDADES[azar.nextInt(CIUDADES.length)];
+        ps.setInt(p, primeraEstacion + i);
+        ps.setString(p + 1, ciudad);
+        ps.setString(p + 2, "Estación " + ciudad + " " + (i + 1));
+        ps.setString(p + 3, "Calle " + APELLIDOS[azar.nextInt(APELLIDOS.length)] + " " + (1 + azar.nextInt(200)));
+        ps.setInt(p + 4, 5 + azar.nextInt(46));
+    }
+
+    private void usuario(PreparedStatement ps, int p, int i, SplittableRandom azar) throws SQLException {
+        int id = primerUsuario + i;
+        ps.setInt(p, id);
+        ps.setString(p + 1, NOMBRES[azar.nextInt(NOMBRES.length)]);
+        ps.setString(p + 2, APELLIDOS[azar.nextInt(APELLIDOS.length)] + " " + APELLIDOS[azar.nextInt(APELLIDOS.length)]);
+        ps.setString(p + 3, "usuario" + id + "@generado.uber");
+        ps.setString(p + 4, "clave" + id);
+        ps.setString(p + 5, "6" + (10_000_000 + azar.nextInt(90_000_000)));
+        ps.setString(p + 6, METODOS_PAGO[azar.nextInt(METODOS_PAGO.length)]);
+        ps.setDouble(p + 7, saldoInicial(id));
+        ps.setString(p + 8, azar.nextInt(100) < 97 ? "ACTIVO" : "SUSPENDIDO");
+        ps.setString(p + 9, "CLIENTE");
+    }
+
+    /** Apunte SALDO_INICIAL de cada usuario generado, para que el saldo cuadre con el historial. */
+    private void saldoInicial(PreparedStatement ps, int p, int i, SplittableRandom azar) throws SQLException {
+        int id = primerUsuario + i;
+        ps.setInt(p, primerMovimiento + i);
+        ps.setInt(p + 1, id);
+        ps.setString(p + 2, "SALDO_INICIAL");
+        ps.setDouble(p + 3, saldoInicial(id));
+        ps.setDouble(p + 4, saldoInicial(id));
+        ps.setNull(p + 5, Types.INTEGER);
+        ps.setTimestamp(p + 6, Timestamp.valueOf(ahora.minusDays(DIAS_DE_HISTORIA + 1)));
+    }
+
+    /** Saldo de un usuario generado: se calcula del id para que usuario y apunte coincidan. */
+    private double saldoInicial(int idUsuario) {
+        return new SplittableRandom(semilla ^ idUsuario).nextInt(0, 50_001) / 100.0;
+    }
+
+    private void vehiculo(PreparedStatement ps, int p, int i, SplittableRandom azar) throws SQLException {
+        String[] marcas = MARCAS[azar.nextInt(MARCAS.length)];
+        int modelo = 1 + 2 * azar.nextInt((marcas.length - 1) / 2);
+        int estado = azar.nextInt(100);
+
+        ps.setInt(p, primerVehiculo + i);
+        ps.setString(p + 1, marcas[0]);
+        ps.setString(p + 2, marcas[modelo]);
+        ps.setString(p + 3, marcas[modelo + 1]);
+        ps.setString(p + 4, estado < 85 ? "DISPONIBLE" : estado < 95 ? "MANTENIMIENTO" : "INACTIVO");
+        ps.setInt(p + 5, primeraEstacion + azar.nextInt(volumen.estaciones()));
+        ps.setDouble(p + 6, 5 + azar.nextInt(96));
+        ps.setDouble(p + 7, azar.nextInt(80_000));
+    }
+
+    /**
+     * Reservas ya terminadas repartidas por los últimos dos años: así no dejan
+     * vehículos ocupados ni entran en el índice de disponibilidad.
+     */
+    private void reserva(PreparedStatement ps, int p, int i, SplittableRandom azar) throws SQLException {
+        int tipo = azar.nextInt(PRECIO_HORA.length);
+        int horas = 1 + azar.nextInt(8);
+        LocalDateTime inicio = ahora.minusMinutes(azar.nextLong(DIAS_DE_HISTORIA * 24L * 60));
+        boolean cancelada = azar.nextInt(100) < 8;
+
+        ps.setInt(p, primeraReserva + i);
+        ps.setInt(p + 1, primerUsuario + azar.nextInt(volumen.usuarios()));
+        ps.setInt(p + 2, primerVehiculo + azar.nextInt(volumen.vehiculos()));
+        ps.setTimestamp(p + 3, Timestamp.valueOf(inicio));
+        ps.setTimestamp(p + 4, Timestamp.valueOf(inicio.plusHours(horas)));
+        ps.setDouble(p + 5, cancelada ? 0 : horas * PRECIO_HORA[tipo]);
+        ps.setString(p + 6, cancelada ? "CANCELADA" : "FINALIZADA");
+    }
+
+    /**
+     * Historial de mantenimientos. Cada vuelta sobre los vehículos cae en un día
+     * distinto, así la clave (vehículo, mantenimiento, fecha) nunca se repite.
+     */
+    private void mantenimiento(PreparedStatement ps, int p, int i, SplittableRandom azar) throws SQLException {
+        int vuelta = i / volumen.vehiculos();
+        LocalDateTime fecha = ahora.minusDays(vuelta % DIAS_DE_HISTORIA)
+                .minusYears(vuelta / DIAS_DE_HISTORIA)
+                .withHour(8 + azar.nextInt(10)).withMinute(azar.nextInt(60)).withSecond(0);
+
+        ps.setInt(p, primerVehiculo + i % volumen.vehiculos());
+        ps.setInt(p + 1, idsMantenimiento.get(azar.nextInt(idsMantenimiento.size())));
+        ps.setTimestamp(p + 2, Timestamp.valueOf(fecha));
+        ps.setDouble(p + 3, 20 + azar.nextInt(400));
+
+        String nota = NOTAS[azar.nextInt(NOTAS.length)];
+        if (nota != null) ps.setString(p + 4, nota);
+        else ps.setNull(p + 4, Types.VARCHAR);
+    }
+
+    // ================================================================
+    //   IDS
+    // ================================================================
+
+    /**
+     * Lee el último id de cada tabla y se asegura de que existen los tipos
+     * de mantenimiento.
+     */
+    private void prepararIds() throws SQLException {
+        if ((volumen.reservas() > 0 && (volumen.usuarios() == 0 || volumen.vehiculos() == 0))
+                || (volumen.vehiculos() > 0 && volumen.estaciones() == 0)) {
+            throw new SQLException("Para generar reservas hacen falta usuarios y vehículos, y para vehículos, estaciones");
+        }
+
+        try (Connection conn = ConnectionBD.getConnection();
+             Statement st = conn.createStatement()) {
+
+            primeraEstacion = maximo(st, "SELECT MAX(id_estacion) FROM Estacion") + 1;
+            primerUsuario = maximo(st, "SELECT MAX(id_usuario) FROM Usuario") + 1;
+            primerVehiculo = maximo(st, "SELECT MAX(id_vehiculo) FROM Vehiculo") + 1;
+            primeraReserva = maximo(st, "SELECT MAX(id_reserva) FROM Reserva") + 1;
+            primerMovimiento = maximo(st, "SELECT MAX(id_movimiento) FROM Movimiento") + 1;
+
+            idsMantenimiento = new ArrayList<>();
+            try (ResultSet rs = st.executeQuery("SELECT id_mantenimiento FROM Mantenimiento ORDER BY id_mantenimiento")) {
+                while (rs.next()) idsMantenimiento.add(rs.getInt(1));
+            }
+            if (idsMantenimiento.isEmpty()) {
+                for (TipoMantenimiento t : TipoMantenimiento.values()) {
+                    st.executeUpdate("INSERT INTO Mantenimiento (tipo, descripcion) VALUES ('" + t + "', 'Generado')");
+                }
+                try (ResultSet rs = st.executeQuery("SELECT id_mantenimiento FROM Mantenimiento ORDER BY id_mantenimiento")) {
+                    while (rs.next()) idsMantenimiento.add(rs.getInt(1));
+                }
+            }
+        }
+    }
+
+    private static int maximo(Statement st, String sql) throws SQLException {
+        try (ResultSet rs = st.executeQuery(sql)) {
+            return rs.next() ? rs.getInt(1) : 0;
+        }
+    }
+
+    /**
+     * Los ids se han insertado a mano. MySQL mueve solo el AUTO_INCREMENT,
+     * pero H2 no: hay que decirle por dónde seguir.
+     */
+    private void ajustarAutoincrementos() throws SQLException {
+        try (Connection conn = ConnectionBD.getConnection();
+             Statement st = conn.createStatement()) {
+
+            if (!"H2".equalsIgnoreCase(conn.getMetaData().getDatabaseProductName())) return;
+
+            String[][] tablas = {
+                    {"Estacion", "id_estacion"}, {"Usuario", "id_usuario"}, {"Vehiculo", "id_vehiculo"},
+                    {"Reserva", "id_reserva"}, {"Movimiento", "id_movimiento"}
+            };
+            for (String[] t : tablas) {
+                int siguiente = maximo(st, "SELECT MAX(" + t[1] + ") FROM " + t[0]) + 1;
+                st.executeUpdate("ALTER TABLE " + t[0] + " ALTER COLUMN " + t[1] + " RESTART WITH " + siguiente);
+            }
+        }
+    }
+
+    private static int opcion(String[] args, String nombre, int porDefecto) {
+        for (int i = 0; i < args.length - 1; i++) {
+            if (args[i].equals(nombre)) {
+                try {
+                    return Integer.parseInt(args[i + 1].replace("_", ""));
+                } catch (NumberFormatException e) {
+                    System.err.println("Valor no válido para " + nombre + ": " + args[i + 1]);
+                }
+            }
+        }
+        return porDefecto;
+    }
+}
@@ -0,0 +1,386 @@
+package com.uber.utils;
+
+import com.uber.dao.Filtro;
+import com.uber.dao.ReservaDAO;
+import com.uber.dao.UsuarioDAO;
+import com.uber.dao.VehiculoDAO;
+import com.uber.database.ConnectionBD;
+import com.uber.database.MetricasSQL;
+import com.uber.enums.EstadoReserva;
+import com.uber.enums.EstadoVehiculo;
+import com.uber.enums.ResultadoReserva;
+import com.uber.enums.TipoVehiculo;
+import com.uber.model.Reserva;
+import com.uber.model.Usuario;
+import com.uber.model.Vehiculo;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.SplittableRandom;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Prueba de carga sin interfaz: simula N clientes a la vez haciendo lo mismo
+ * que hacen en la aplicación, con los DAO de siempre y contra la BD de
+ * db.properties (o la que se elija con -Ddb.type=..., -Dh2.url=..., -Dpool.maxSize=...).
+ *
+ * Cada cliente repite en bucle hasta que se acaba el tiempo:
+ * <ol>
+ *   <li>login con {@link UsuarioDAO#login} de un usuario cliente activo,</li>
+ *   <li>consulta del catálogo de vehículos disponibles ({@link VehiculoDAO#buscar}),</li>
+ *   <li>reserva de uno de ellos ({@link ReservaDAO#reservar}); si otro cliente se lo
+ *       ha quitado se prueba con otro, hasta {@link #MAX_INTENTOS} veces,</li>
+ *   <li>y cancelación o finalización de la reserva.</li>
+ * </ol>
+ *
+ * Al terminar se escribe, por operación, el número de llamadas, errores,
+ * operaciones por segundo y percentiles de latencia; por reserva, los
+ * conflictos y reintentos; y las sentencias SQL que más tiempo se han llevado.
+ *
+ * Los usuarios se leen de la BD al empezar (clientes ACTIVOS), así que sirve
+ * cualquier BD con datos; con {@link GeneradorDatos} se rellena una vacía.
+ *
+ * Uso:
+ * <pre>
+ * java com.uber.utils.PruebaCarga --clientes 50 --segundos 120 --cancelar 30
+ * </pre>
+ * Opciones (todas opcionales): --clientes, --segundos, --cancelar (porcentaje de
+ * reservas que se cancelan en vez de finalizarse), --pausaMs (espera entre la
+ * reserva y su fin), --usuarios (cuántos usuarios distintos se usan) y --semilla.
+ */
+public class PruebaCarga {
+
+    static final int MAX_INTENTOS = 3;
+
+    private static final double COSTE = 5.0;
+    private static final double BATERIA_MINIMA = 20.0;
+
+    /**
+     * Pasos del flujo de un cliente que se miden.
+     */
+    enum Operacion {
+        LOGIN("Login"),
+        CATALOGO("Catálogo"),
+        RESERVA("Reserva"),
+        CANCELACION("Cancelación"),
+        FINALIZACION("Finalización");
+
+        final String nombre;
+
+        Operacion(String nombre) {
+            this.nombre = nombre;
+        }
+    }
+
+    /**
+     * Latencias de una operación. Cada cliente tiene las suyas y se juntan al final,
+     * así que no hace falta sincronizar nada mientras dura la prueba.
+     */
+    private static final class Muestras {
+        private long[] nanos = new long[1024];
+        private int n = 0;
+        private long errores = 0;
+
+        void anotar(long duracion, boolean ok) {
+            if (n == nanos.length) nanos = Arrays.copyOf(nanos, n * 2);
+            nanos[n++] = duracion;
+            if (!ok) errores++;
+        }
+
+        void sumar(Muestras otras) {
+            for (int i = 0; i < otras.n; i++) anotar(otras.nanos[i], true);
+            errores += otras.errores;
+        }
+
+        /** @return percentil p (0-1) en ms; las muestras tienen que estar ordenadas */
+        double percentil(double p) {
+            if (n == 0) return 0;
+            int i = (int) Math.ceil(n * p) - 1;
+            return nanos[Math.max(0, Math.min(n - 1, i))] / 1e6;
+        }
+
+        void ordenar() {
+            Arrays.sort(nanos, 0, n);
+        }
+    }
+
+    /**
+     * Lo que ha pasado en un cliente (o en todos, una vez sumados).
+     */
+    private static final class Resultado {
+        final Map<Operacion, Muestras> muestras = new EnumMap<>(Operacion.class);
+        long flujos = 0;            // vueltas completas: login, catálogo, reserva y fin
+        long vehiculoOcupado = 0;   // ResultadoReserva.VEHICULO_OCUPADO
+        long franjaOcupada = 0;     // ResultadoReserva.FRANJA_OCUPADA
+        long reintentos = 0;        // reservas repetidas con otro vehículo tras un conflicto
+        long abandonos = 0;         // sin vehículos o con conflicto en todos los intentos
+
+        Resultado() {
+            for (Operacion o : Operacion.values()) muestras.put(o, new Muestras());
+        }
+
+        void sumar(Resultado otro) {
+            for (Operacion o : Operacion.values()) muestras.get(o).sumar(otro.muestras.get(o));
+            flujos += otro.flujos;
+            vehiculoOcupado += otro.vehiculoOcupado;
+            franjaOcupada += otro.franjaOcupada;
+            reintentos += otro.reintentos;
+            abandonos += otro.abandonos;
+        }
+    }
+
+    private final int clientes;
+    private final int segundos;
+    private final int porcentajeCancelar;
+    private final int pausaMs;
+    private final long semilla;
+
+    private final UsuarioDAO usuarioDAO = new UsuarioDAO();
+    private final VehiculoDAO vehiculoDAO = new VehiculoDAO();
+    private final ReservaDAO reservaDAO = new ReservaDAO();
+
+    private List<Usuario> usuarios;
+    private volatile long fin;
+
+    /**
+     * @param clientes hilos que hacen de cliente a la vez
+     * @param segundos duración de la prueba
+     * @param porcentajeCancelar de cada 100 reservas, cuántas se cancelan (el resto se finalizan)
+     * @param pausaMs espera entre reservar y cancelar/finalizar
+     * @param semilla semilla de las decisiones de los clientes
+     */
+    public PruebaCarga(int clientes, int segundos, int porcentajeCancelar, int pausaMs, long semilla) {
+        this.clientes = clientes;
+        this.segundos = segundos;
+        this.porcentajeCancelar = porcentajeCancelar;
+        this.pausaMs = pausaMs;
+        this.semilla = semilla;
+    }
+
+    public static void main(String[] args) {
+        PruebaCarga prueba = new PruebaCarga(
+                opcion(args, "--clientes", 20),
+                opcion(args, "--segundos", 60),
+                opcion(args, "--cancelar", 30),
+                opcion(args, "--pausaMs", 0),
+                opcion(args, "--semilla", 42));
+
+        try {
+            if (prueba.cargarUsuarios(opcion(args, "--usuarios", 10_000))) {
+                prueba.ejecutar();
+            }
+        } finally {
+            ConnectionBD.closeConnection();
+        }
+    }
+
+    /**
+     * Lee los clientes activos con los que se hará login.
+     *
+     * @param maximo cuántos usuarios como mucho
+     * @return false si no hay ninguno
+     */
+    boolean cargarUsuarios(int maximo) {
+        usuarios = new ArrayList<>();
+        List<Filtro> filtros = List.of(Filtro.igual("rol", "CLIENTE"), Filtro.igual("estado_cuenta", "ACTIVO"));
+
+        int ultimo = 0;
+        while (usuarios.size() < maximo) {
+            List<Usuario> pagina = usuarioDAO.page(ultimo, Math.min(1000, maximo - usuarios.size()), filtros);
+            if (pagina.isEmpty()) break;
+            usuarios.addAll(pagina);
+            ultimo = pagina.get(pagina.size() - 1).getIdUsuario();
+        }
+
+        if (usuarios.isEmpty()) {
+            System.err.println("❌ No hay clientes activos en la BD. Se pueden crear con GeneradorDatos.");
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * Lanza los clientes, espera a que se acabe el tiempo y escribe el informe.
+     */
+    void ejecutar() {
+        System.out.printf("🚦 Prueba de carga: %d clientes durante %d s, %d usuarios, pool de %d conexiones%n",
+                clientes, segundos, usuarios.size(), ConnectionBD.getPool().getMaxSize());
+
+        MetricasSQL.reiniciar();
+        ExecutorService hilos = Executors.newFixedThreadPool(clientes);
+        List<Future<Resultado>> futuros = new ArrayList<>();
+
+        long inicio = System.nanoTime();
+        fin = inicio + segundos * 1_000_000_000L;
+        for (int i = 0; i < clientes; i++) {
+            SplittableRandom azar = new SplittableRandom(semilla * 1_000_003 + i);
+            futuros.add(hilos.submit(() -> cliente(azar)));
+        }
+
+        Resultado total = new Resultado();
+        try {
+            for (Future<Resultado> f : futuros) {
+                try {
+                    total.sumar(f.get());
+                } catch (ExecutionException e) {
+                    // Un cliente que revienta no invalida lo que han medido los demás
+                    System.err.println("❌ Un cliente terminó con error:");
+                    e.getCause().printStackTrace();
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            hilos.shutdownNow();
+        }
+
+        informe(total, (System.nanoTime() - inicio) / 1e9);
+    }
+
+    // ================================================================
+    //   UN CLIENTE
+    // ================================================================
+
+    private Resultado cliente(SplittableRandom azar) {
+        Resultado r = new Resultado();
+        TipoVehiculo[] tipos = TipoVehiculo.values();
+
+        while (System.nanoTime() < fin && !Thread.currentThread().isInterrupted()) {
+            // 1. Login
+            Usuario candidato = usuarios.get(azar.nextInt(usuarios.size()));
+            long t = System.nanoTime();
+            Usuario usuario = usuarioDAO.login(candidato.getEmail(), candidato.getContrasena());
+            r.muestras.get(Operacion.LOGIN).anotar(System.nanoTime() - t, usuario != null);
+            if (usuario == null) continue;
+
+            // 2. Catálogo: a veces todos los tipos, a veces uno
+            TipoVehiculo tipo = azar.nextBoolean() ? null : tipos[azar.nextInt(tipos.length)];
+            t = System.nanoTime();
+            List<Vehiculo> disponibles = vehiculoDAO.buscar(tipo, EstadoVehiculo.DISPONIBLE, null, null, BATERIA_MINIMA);
+            r.muestras.get(Operacion.CATALOGO).anotar(System.nanoTime() - t, true);
+
+            // 3. Reserva, probando con otro vehículo si alguien se adelanta
+            Reserva reserva = reservar(r, usuario, disponibles, azar);
+            if (reserva == null) continue;
+
+            if (pausaMs > 0) {
+                try {
+                    Thread.sleep(pausaMs);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+
+            // 4. Cancelación o finalización
+            int idVehiculo = reserva.getVehiculo().getIdVehiculo();
+            if (azar.nextInt(100) < porcentajeCancelar) {
+                t = System.nanoTime();
+                boolean ok = reservaDAO.cancelarReserva(reserva.getIdReserva(), idVehiculo);
+                r.muestras.get(Operacion.CANCELACION).anotar(System.nanoTime() - t, ok);
+            } else {
+                t = System.nanoTime();
+                boolean ok = reservaDAO.finalizarReserva(reserva.getIdReserva(), idVehiculo, usuario.getIdUsuario(), COSTE);
+                r.muestras.get(Operacion.FINALIZACION).anotar(System.nanoTime() - t, ok);
+                // Si no se pudo cobrar se cancela para no dejar el vehículo cogido
+                if (!ok) reservaDAO.cancelarReserva(reserva.getIdReserva(), idVehiculo);
+            }
+            r.flujos++;
+        }
+        return r;
+    }
+
+    /**
+     * @return la reserva creada, o null si no se consiguió ningún vehículo
+     */
+    private Reserva reservar(Resultado r, Usuario usuario, List<Vehiculo> disponibles, SplittableRandom azar) {
+        for (int intento = 1; intento <= MAX_INTENTOS && !disponibles.isEmpty(); intento++) {
+            if (intento > 1) r.reintentos++;
+
+            Vehiculo v = disponibles.get(azar.nextInt(disponibles.size()));
+            LocalDateTime inicio = LocalDateTime.now();
+            Reserva reserva = new Reserva();
+            reserva.setUsuario(usuario);
+            reserva.setVehiculo(v);
+            reserva.setFechaHoraInicio(inicio);
+            reserva.setFechaHoraFin(inicio.plusHours(1));
+            reserva.setCoste(COSTE);
+            reserva.setEstado(EstadoReserva.ACTIVA);
+
+            long t = System.nanoTime();
+            ResultadoReserva resultado = reservaDAO.reservar(reserva);
+            r.muestras.get(Operacion.RESERVA).anotar(System.nanoTime() - t, resultado != ResultadoReserva.ERROR);
+
+            switch (resultado) {
+                case OK:
+                    return reserva;
+                case VEHICULO_OCUPADO:
+                    r.vehiculoOcupado++;
+                    break;
+                case FRANJA_OCUPADA:
+                    r.franjaOcupada++;
+                    break;
+                default:
+                    return null;
+            }
+        }
+        r.abandonos++;
+        return null;
+    }
+
+    // ================================================================
+    //   INFORME
+    // ================================================================
+
+    private void informe(Resultado total, double duracion) {
+        System.out.printf("%n📊 Resultados (%.1f s)%n", duracion);
+        System.out.printf("%-14s %10s %8s %9s %9s %9s %9s %9s%n",
+                "Operación", "Llamadas", "Errores", "Op/s", "p50 ms", "p95 ms", "p99 ms", "máx ms");
+
+        long llamadas = 0;
+        long errores = 0;
+        for (Operacion o : Operacion.values()) {
+            Muestras m = total.muestras.get(o);
+            m.ordenar();
+            llamadas += m.n;
+            errores += m.errores;
+            System.out.printf("%-14s %10d %8d %9.1f %9.2f %9.2f %9.2f %9.2f%n",
+                    o.nombre, m.n, m.errores, m.n / duracion,
+                    m.percentil(0.50), m.percentil(0.95), m.percentil(0.99), m.percentil(1.0));
+        }
+
+        long reservas = total.muestras.get(Operacion.RESERVA).n;
+        System.out.printf("%nFlujos completos: %d (%.1f/s)%n", total.flujos, total.flujos / duracion);
+        System.out.printf("Conflictos al reservar: %d vehículo ocupado, %d franja ocupada (%.2f %% de los intentos)%n",
+                total.vehiculoOcupado, total.franjaOcupada,
+                reservas > 0 ? 100.0 * (total.vehiculoOcupado + total.franjaOcupada) / reservas : 0);
+        System.out.printf("Reintentos con otro vehículo: %d, reservas abandonadas: %d%n", total.reintentos, total.abandonos);
+        System.out.printf("Tasa de error: %.2f %% (%d de %d llamadas)%n",
+                llamadas > 0 ? 100.0 * errores / llamadas : 0, errores, llamadas);
+
+        if (MetricasSQL.isActivas()) {
+            System.out.println("\n🔎 SQL con más tiempo total:");
+            MetricasSQL.snapshot().stream().limit(5).forEach(s ->
+                    System.out.printf("  %8.0f ms  %7d ej.  p95 %6.2f ms  %s%n", s.total(), s.ejecuciones(), s.p95(), s.sql()));
+        }
+    }
+
+    private static int opcion(String[] args, String nombre, int porDefecto) {
+        for (int i = 0; i < args.length - 1; i++) {
+            if (args[i].equals(nombre)) {
+                try {
+                    return Integer.parseInt(args[i + 1].replace("_", ""));
+                } catch (NumberFormatException e) {
+                    System.err.println("Valor no válido para " + nombre + ": " + args[i + 1]);
+                }
+            }
+        }
+        return porDefecto;
+    }
+}
@@ -0,0 +1,277 @@
+package com.uber.utils;
+
+import com.uber.database.ConnectionBD;
+import com.uber.database.MapaShards;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Mueve las ciudades de una BD a otra cuando la flota está repartida en
+ * shards ({@link MapaShards}): las estaciones de la ciudad, sus vehículos y
+ * las reservas y mantenimientos de esos vehículos. Las filas conservan su id.
+ *
+ * Se usa con la aplicación parada, con la configuración de shards ya puesta:
+ * <pre>
+ * java com.uber.utils.RebalanceoShards --repartir
+ * java com.uber.utils.RebalanceoShards --ciudad Sevilla --a sur
+ * </pre>
+ * --repartir lleva cada ciudad, esté donde esté (también en la BD principal,
+ * al activar los shards por primera vez), al shard que le toca según
+ * db.properties. --ciudad ... --a ... la mueve a otro shard y dice qué línea
+ * cambiar en db.properties para que la aplicación la busque allí.
+ *
+ * Cada traslado copia las filas en el destino en una transacción, comprueba
+ * que en el origen siguen siendo las mismas (si alguien ha escrito mientras
+ * tanto, se deshace la copia) y solo entonces las borra del origen.
+ */
+public final class RebalanceoShards {
+
+    // Filas de cada tabla que pertenecen a una ciudad, en el orden en que se pueden insertar
+    private static final String[][] TABLAS = {
+            {"Estacion", "ciudad = ?"},
+            {"Vehiculo", "id_estacion IN (SELECT id_estacion FROM Estacion WHERE ciudad = ?)"},
+            {"Reserva", "id_vehiculo IN (SELECT v.id_vehiculo FROM Vehiculo v "
+                    + "JOIN Estacion e ON v.id_estacion = e.id_estacion WHERE e.ciudad = ?)"},
+            {"Tiene", "id_vehiculo IN (SELECT v.id_vehiculo FROM Vehiculo v "
+                    + "JOIN Estacion e ON v.id_estacion = e.id_estacion WHERE e.ciudad = ?)"}
+    };
+
+    private static final String SELECT_CIUDADES = "SELECT DISTINCT ciudad FROM Estacion";
+    private static final int FILAS_POR_LOTE = 500;
+
+    /**
+     * Resultado de mover una ciudad.
+     *
+     * @param filas filas movidas de cada tabla
+     */
+    public record Traslado(String ciudad, String origen, String destino, Map<String, Integer> filas) {}
+
+    private RebalanceoShards() {}
+
+    public static void main(String[] args) {
+        String ciudad = opcion(args, "--ciudad");
+        String destino = opcion(args, "--a");
+
+        try {
+            if (!MapaShards.activos()) {
+                System.err.println("❌ Los shards no están activos (shards.activos en db.properties).");
+                return;
+            }
+
+            List<Traslado> hechos = new ArrayList<>();
+            if (ciudad != null && destino != null) {
+                hechos.add(mover(ciudad, opcion(args, "--desde"), destino));
+            } else if (List.of(args).contains("--repartir")) {
+                hechos.addAll(repartir());
+            } else {
+                System.err.println("Uso: RebalanceoShards --repartir | --ciudad <ciudad> --a <shard> [--desde <shard>]");
+                return;
+            }
+
+            for (Traslado t : hechos) {
+                System.out.println("🚚 " + t.ciudad() + ": " + t.origen() + " → " + t.destino() + " " + t.filas());
+            }
+            if (ciudad != null) {
+                System.out.println("Para que la aplicación lo use, en db.properties:");
+                for (String shard : MapaShards.nombres()) {
+                    System.out.println("  shard." + shard + ".ciudades=" + String.join(",", MapaShards.ciudadesDe(shard)));
+                }
+            }
+
+        } catch (SQLException e) {
+            e.printStackTrace();
+        } finally {
+            ConnectionBD.closeConnection();
+        }
+    }
+
+    /**
+     * Lleva cada ciudad al shard que le toca según la configuración, desde la
+     * BD principal o desde cualquier otro shard donde esté.
+     *
+     * @return traslados hechos
+     * @throws SQLException si falla algún traslado (los anteriores quedan hechos)
+     */
+    public static List<Traslado> repartir() throws SQLException {
+        List<Traslado> hechos = new ArrayList<>();
+
+        List<String> origenes = new ArrayList<>();
+        origenes.add(MapaShards.PRINCIPAL);
+        origenes.addAll(MapaShards.nombres());
+
+        for (String origen : origenes) {
+            for (String ciudad : ciudades(origen)) {
+                String destino = MapaShards.shardDeCiudad(ciudad);
+                if (!destino.equals(origen)) hechos.add(mover(ciudad, origen, destino));
+            }
+        }
+        return hechos;
+    }
+
+    /**
+     * Mueve una ciudad a otro shard y la asigna a él mientras dure el proceso.
+     *
+     * @param ciudad  ciudad de las estaciones
+     * @param origen  BD donde está ahora (null para buscarla)
+     * @param destino shard al que se lleva
+     * @return filas movidas
+     * @throws SQLException si no se puede mover; si falla antes de borrar del origen, no cambia nada
+     */
+    public static Traslado mover(String ciudad, String origen, String destino) throws SQLException {
+        if (!MapaShards.nombres().contains(destino)) throw new SQLException("Shard de destino desconocido: " + destino);
+        if (origen == null) origen = buscar(ciudad);
+        if (origen == null || origen.equals(destino)) {
+            MapaShards.asignar(ciudad, destino);
+            return new Traslado(ciudad, destino, destino, Map.of());
+        }
+
+        Map<String, Integer> copiadas = new LinkedHashMap<>();
+
+        try (Connection desde = MapaShards.getConnection(origen);
+             Connection hacia = MapaShards.getConnection(destino)) {
+            hacia.setAutoCommit(false);
+
+            try {
+                for (String[] t : TABLAS) {
+                    copiadas.put(t[0], copiar(desde, hacia, t[0], t[1], ciudad));
+                }
+
+                for (String[] t : TABLAS) {
+                    int ahora = contar(desde, t[0], t[1], ciudad);
+                    if (ahora != copiadas.get(t[0])) {
+                        throw new SQLException("Han cambiado filas de " + t[0] + " de " + ciudad
+                                + " durante el traslado (" + copiadas.get(t[0]) + " → " + ahora + "): se deshace");
+                    }
+                }
+                hacia.commit();
+
+            } catch (SQLException | RuntimeException e) {
+                hacia.rollback();
+                throw e;
+
+            } finally {
+                hacia.setAutoCommit(true);
+            }
+
+            borrar(desde, ciudad, origen);
+        }
+
+        MapaShards.asignar(ciudad, destino);
+        return new Traslado(ciudad, origen, destino, copiadas);
+    }
+
+    /**
+     * Copia las filas de una tabla columna a columna, por lotes.
+     */
+    private static int copiar(Connection desde, Connection hacia, String tabla, String condicion, String ciudad)
+            throws SQLException {
+        int total = 0;
+
+        try (PreparedStatement select = desde.prepareStatement("SELECT * FROM " + tabla + " WHERE " + condicion)) {
+            select.setString(1, ciudad);
+            select.setFetchSize(ConnectionBD.getFetchSize());
+
+            try (ResultSet rs = select.executeQuery()) {
+                ResultSetMetaData md = rs.getMetaData();
+                int columnas = md.getColumnCount();
+
+                List<String> nombres = new ArrayList<>();
+                for (int i = 1; i <= columnas; i++) nombres.add(md.getColumnLabel(i));
+                String insert = "INSERT INTO " + tabla + " (" + String.join(", ", nombres) + ") VALUES ("
+                        + String.join(", ", Collections.nCopies(columnas, "?")) + ")";
+
+                try (PreparedStatement ps = hacia.prepareStatement(insert)) {
+                    while (rs.next()) {
+                        for (int i = 1; i <= columnas; i++) ps.setObject(i, rs.getObject(i));
+                        ps.addBatch();
+                        if (++total % FILAS_POR_LOTE == 0) ps.executeBatch();
+                    }
+                    if (total % FILAS_POR_LOTE != 0) ps.executeBatch();
+                }
+            }
+        }
+        return total;
+    }
+
+    /**
+     * Borra la ciudad del origen en una transacción, en el orden contrario al de la copia.
+     * Si falla, las filas quedan en los dos sitios y hay que borrarlas a mano del origen.
+     */
+    private static void borrar(Connection desde, String ciudad, String origen) throws SQLException {
+        desde.setAutoCommit(false);
+
+        try {
+            for (int i = TABLAS.length - 1; i >= 0; i--) {
+                try (PreparedStatement ps = desde.prepareStatement(
+                        "DELETE FROM " + TABLAS[i][0] + " WHERE " + TABLAS[i][1])) {
+                    ps.setString(1, ciudad);
+                    ps.executeUpdate();
+                }
+            }
+            desde.commit();
+
+        } catch (SQLException | RuntimeException e) {
+            desde.rollback();
+            System.err.println("❌ " + ciudad + " ya está copiada en su destino pero no se pudo borrar de "
+                    + origen + ": hay que borrarla allí a mano antes de volver a usar la aplicación.");
+            throw e;
+
+        } finally {
+            desde.setAutoCommit(true);
+        }
+    }
+
+    private static int contar(Connection conn, String tabla, String condicion, String ciudad) throws SQLException {
+        try (PreparedStatement ps = conn.prepareStatement("SELECT COUNT(*) FROM " + tabla + " WHERE " + condicion)) {
+            ps.setString(1, ciudad);
+            try (ResultSet rs = ps.executeQuery()) {
+                return rs.next() ? rs.getInt(1) : 0;
+            }
+        }
+    }
+
+    /**
+     * @return ciudades con estaciones en esa BD
+     */
+    private static List<String> ciudades(String bd) throws SQLException {
+        List<String> lista = new ArrayList<>();
+        try (Connection conn = MapaShards.getConnection(bd);
+             PreparedStatement ps = conn.prepareStatement(SELECT_CIUDADES);
+             ResultSet rs = ps.executeQuery()) {
+            while (rs.next()) lista.add(rs.getString(1));
+        }
+        return lista;
+    }
+
+    /**
+     * @return primera BD (la principal y luego los shards) que tiene estaciones de la ciudad, o null
+     */
+    private static String buscar(String ciudad) throws SQLException {
+        List<String> bds = new ArrayList<>();
+        bds.add(MapaShards.PRINCIPAL);
+        bds.addAll(MapaShards.nombres());
+
+        for (String bd : bds) {
+            try (Connection conn = MapaShards.getConnection(bd)) {
+                if (contar(conn, TABLAS[0][0], TABLAS[0][1], ciudad) > 0) return bd;
+            }
+        }
+        return null;
+    }
+
+    private static String opcion(String[] args, String nombre) {
+        for (int i = 0; i < args.length - 1; i++) {
+            if (args[i].equals(nombre)) return args[i + 1];
+        }
+        return null;
+    }
+}
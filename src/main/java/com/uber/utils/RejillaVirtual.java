@@ -0,0 +1,150 @@
+package com.uber.utils;
+
+import javafx.geometry.Pos;
+import javafx.scene.Node;
+import javafx.scene.control.Label;
+import javafx.scene.control.ListCell;
+import javafx.scene.control.ListView;
+import javafx.scene.layout.HBox;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Supplier;
+
+/**
+ * Rejilla de tarjetas que solo crea las que se ven en pantalla.
+ *
+ * Por debajo es un ListView en el que cada fila contiene tantas tarjetas como
+ * caben a lo ancho. El ListView solo crea celdas para las filas visibles y las
+ * reutiliza al hacer scroll, así que con miles de elementos se siguen teniendo
+ * unas pocas decenas de tarjetas. Cada tarjeta se construye una vez y luego
+ * solo se le cambian los datos con {@link Tarjeta#mostrar(Object)}.
+ *
+ * Todos los métodos se llaman desde el hilo de JavaFX.
+ *
+ * @param <T> tipo de los elementos
+ */
+public class RejillaVirtual<T> {
+
+    /**
+     * Tarjeta reutilizable: se crea una vez y se rellena con distintos elementos.
+     *
+     * @param <T> tipo del elemento que muestra
+     */
+    public interface Tarjeta<T> {
+        /** @return nodo raíz de la tarjeta */
+        Node getNodo();
+
+        /** Pinta los datos del elemento en la tarjeta. */
+        void mostrar(T elemento);
+    }
+
+    // Relleno lateral de las celdas (style.css) más el ancho de la barra de scroll
+    private static final double MARGEN_CELDA = 40;
+
+    private final ListView<List<T>> lista;
+    private final double anchoTarjeta;
+    private final double separacion;
+    private final Supplier<Tarjeta<T>> fabrica;
+
+    private List<T> elementos = List.of();
+    private int columnas = 1;
+
+    /**
+     * @param lista        ListView donde se dibuja la rejilla
+     * @param anchoTarjeta ancho fijo de cada tarjeta
+     * @param separacion   espacio horizontal entre tarjetas
+     * @param fabrica      crea una tarjeta vacía
+     * @param textoVacio   mensaje cuando no hay elementos
+     */
+    public RejillaVirtual(ListView<List<T>> lista, double anchoTarjeta, double separacion,
+                          Supplier<Tarjeta<T>> fabrica, String textoVacio) {
+        this.lista = lista;
+        this.anchoTarjeta = anchoTarjeta;
+        this.separacion = separacion;
+        this.fabrica = fabrica;
+
+        lista.setFocusTraversable(false);
+        lista.setPlaceholder(new Label(textoVacio));
+        lista.setCellFactory(lv -> new FilaTarjetas());
+
+        // Al cambiar el ancho se recalcula cuántas tarjetas caben por fila
+        lista.widthProperty().addListener((obs, antes, ahora) -> {
+            int nuevas = calcularColumnas(ahora.doubleValue());
+            if (nuevas != columnas) {
+                columnas = nuevas;
+                agrupar();
+            }
+        });
+    }
+
+    /**
+     * Sustituye los elementos de la rejilla.
+     *
+     * @param elementos elementos a mostrar, en orden
+     */
+    public void setElementos(List<T> elementos) {
+        this.elementos = elementos;
+        columnas = calcularColumnas(lista.getWidth());
+        agrupar();
+        lista.scrollTo(0);
+    }
+
+    /**
+     * Reparte los elementos en filas. Las filas son vistas (subList) de la
+     * lista original, no copias.
+     */
+    private void agrupar() {
+        List<List<T>> filas = new ArrayList<>((elementos.size() + columnas - 1) / columnas);
+        for (int i = 0; i < elementos.size(); i += columnas) {
+            filas.add(elementos.subList(i, Math.min(i + columnas, elementos.size())));
+        }
+        lista.getItems().setAll(filas);
+    }
+
+    private int calcularColumnas(double ancho) {
+        // Se descuenta el relleno de la lista, el de las celdas y la barra de scroll
+        double util = ancho - lista.snappedLeftInset() - lista.snappedRightInset() - MARGEN_CELDA;
+        return Math.max(1, (int) ((util + separacion) / (anchoTarjeta + separacion)));
+    }
+
+    /**
+     * Celda del ListView: una fila con varias tarjetas que se reutilizan.
+     */
+    private final class FilaTarjetas extends ListCell<List<T>> {
+
+        private final HBox fila = new HBox(separacion);
+        private final List<Tarjeta<T>> tarjetas = new ArrayList<>();
+
+        FilaTarjetas() {
+            fila.setAlignment(Pos.TOP_LEFT);
+        }
+
+        @Override
+        protected void updateItem(List<T> elementosFila, boolean empty) {
+            super.updateItem(elementosFila, empty);
+
+            if (empty || elementosFila == null) {
+                setGraphic(null);
+                return;
+            }
+
+            // Solo se crean tarjetas nuevas si la fila es más larga que las anteriores
+            while (tarjetas.size() < elementosFila.size()) {
+                Tarjeta<T> t = fabrica.get();
+                tarjetas.add(t);
+                fila.getChildren().add(t.getNodo());
+            }
+
+            for (int i = 0; i < tarjetas.size(); i++) {
+                Node nodo = tarjetas.get(i).getNodo();
+                boolean usada = i < elementosFila.size();
+                if (usada) tarjetas.get(i).mostrar(elementosFila.get(i));
+                nodo.setVisible(usada);
+                nodo.setManaged(usada);
+            }
+
+            setGraphic(fila);
+        }
+    }
+}
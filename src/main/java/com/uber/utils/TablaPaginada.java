@@ -0,0 +1,138 @@
+package com.uber.utils;
+
+import javafx.application.Platform;
+import javafx.collections.FXCollections;
+import javafx.collections.ObservableList;
+import javafx.geometry.Orientation;
+import javafx.scene.Node;
+import javafx.scene.control.ScrollBar;
+import javafx.scene.control.TableView;
+
+import java.util.List;
+
+/**
+ * Rellena un TableView por páginas a medida que el usuario baja con el scroll.
+ * Solo se pide a la BD la primera página al mostrar la tabla; cuando la barra
+ * se acerca al final se pide la siguiente con las cargas de {@link CargaVista}.
+ *
+ * Todos los métodos se llaman desde el hilo de JavaFX.
+ *
+ * @param <T> tipo de las filas
+ */
+public class TablaPaginada<T> {
+
+    /**
+     * Origen de las páginas (normalmente un método page(...) de un DAO).
+     *
+     * @param <T> tipo de las filas
+     */
+    @FunctionalInterface
+    public interface FuentePaginas<T> {
+        /**
+         * @param ultimo último elemento ya mostrado (null para la primera página)
+         * @param limite número máximo de elementos a devolver
+         * @return elementos siguientes a {@code ultimo}
+         */
+        List<T> pagina(T ultimo, int limite);
+    }
+
+    // Se pide la siguiente página al pasar de este punto del scroll
+    private static final double UMBRAL_SCROLL = 0.9;
+
+    // Alto mínimo de una fila, para saber si la tabla está llena sin esperar al layout
+    private static final double ALTO_FILA_MINIMO = 20;
+
+    private final TableView<T> tabla;
+    private final CargaVista cargas;
+    private final int tamPagina;
+    private final FuentePaginas<T> fuente;
+    private final ObservableList<T> filas = FXCollections.observableArrayList();
+
+    private boolean cargando = false;
+    private boolean fin = false;
+    private boolean scrollEnganchado = false;
+
+    // Cambia en cada recarga para descartar páginas de una carga anterior
+    private int generacion = 0;
+
+    /**
+     * @param tabla     tabla a rellenar
+     * @param cargas    cargas de la vista (se cancelan al cambiar de pestaña)
+     * @param tamPagina filas por página
+     * @param fuente    consulta que devuelve cada página
+     */
+    public TablaPaginada(TableView<T> tabla, CargaVista cargas, int tamPagina, FuentePaginas<T> fuente) {
+        this.tabla = tabla;
+        this.cargas = cargas;
+        this.tamPagina = tamPagina;
+        this.fuente = fuente;
+
+        tabla.setItems(filas);
+        tabla.skinProperty().addListener((obs, antes, ahora) -> engancharScroll());
+        engancharScroll();
+    }
+
+    /**
+     * Vacía la tabla y vuelve a pedir la primera página.
+     */
+    public void recargar() {
+        generacion++;
+        filas.clear();
+        cargando = false;
+        fin = false;
+        cargarSiguiente();
+    }
+
+    /**
+     * Pide la página siguiente si no hay otra en camino y quedan datos.
+     */
+    private void cargarSiguiente() {
+        if (cargando || fin) return;
+        cargando = true;
+
+        int gen = generacion;
+        T ultimo = filas.isEmpty() ? null : filas.get(filas.size() - 1);
+
+        cargas.cargar(() -> fuente.pagina(ultimo, tamPagina), pagina -> {
+            if (gen != generacion) return;
+
+            filas.addAll(pagina);
+            cargando = false;
+            fin = pagina.size() < tamPagina;
+
+            // Si las filas no llenan la tabla no habrá scroll y nunca se llegaría al umbral
+            if (filas.size() * ALTO_FILA_MINIMO < tabla.getHeight()) cargarSiguiente();
+
+        }).whenComplete((r, error) -> {
+            // Cancelada o con error: se permite volver a pedirla
+            if (error != null) Platform.runLater(() -> {
+                if (gen == generacion) cargando = false;
+            });
+        });
+    }
+
+    /**
+     * Busca la barra vertical de la tabla y escucha cuándo se acerca al final.
+     * La barra solo existe cuando la tabla ya tiene skin.
+     */
+    private void engancharScroll() {
+        if (scrollEnganchado) return;
+
+        ScrollBar barra = barraVertical();
+        if (barra == null) return;
+
+        barra.valueProperty().addListener((obs, antes, ahora) -> {
+            if (ahora.doubleValue() >= barra.getMax() * UMBRAL_SCROLL) cargarSiguiente();
+        });
+        scrollEnganchado = true;
+    }
+
+    private ScrollBar barraVertical() {
+        for (Node n : tabla.lookupAll(".scroll-bar")) {
+            if (n instanceof ScrollBar sb && sb.getOrientation() == Orientation.VERTICAL) {
+                return sb;
+            }
+        }
+        return null;
+    }
+}
@@ -0,0 +1,234 @@
+package com.uber.utils;
+
+import com.uber.model.Usuario;
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+import java.util.Collection;
+import java.util.Set;
+import java.util.concurrent.Callable;
+
+/**
+ * Eventos de JDK Flight Recorder (JFR) para ver en qué se va el tiempo de la aplicación.
+ *
+ * Hay dos tipos de evento, con la operación, la duración, las filas y el usuario:
+ * <ul>
+ *   <li>"com.uber.OperacionDAO": cada llamada a un método público de un DAO, de
+ *       principio a fin, la responda la BD o una caché (p. ej. "VehiculoDAO.getAll").
+ *       Las filas son las que devuelve o modifica el método, se midan o no las
+ *       sentencias con {@link com.uber.database.MetricasSQL}. Lo que pase dentro
+ *       (conexiones del pool, otros DAO, consultas a los shards) cuenta dentro de
+ *       ese evento; el pool solo emite uno propio si pide la conexión código que no
+ *       está dentro de ningún método DAO.</li>
+ *   <li>"com.uber.AccionUsuario": acciones de la interfaz (login, reservar, cargas de pestañas).</li>
+ * </ul>
+ *
+ * Si no hay ninguna grabación en marcha no se crea nada y el coste es una comprobación.
+ * Para grabar en un cliente que ya está abierto:
+ * <pre>
+ * jcmd &lt;pid&gt; JFR.start name=uber duration=2m filename=uber.jfr
+ * </pre>
+ * y luego se abre uber.jfr con JDK Mission Control (carpeta "Uber").
+ *
+ * Se usa con try-with-resources:
+ * <pre>
+ * try (Traza t = Traza.accion("AdminController.cargarUsuarios")) {
+ *     List&lt;Usuario&gt; lista = usuarioDAO.getAll();
+ *     t.filas(lista.size());
+ * }
+ * </pre>
+ * En los DAO va como primer recurso del try del método:
+ * <pre>
+ * try (Traza traza = Traza.operacionDAO();
+ *      Connection conn = ConnectionBD.getConnection(); ...) {
+ *     ...
+ *     return traza.filas(lista);
+ * }
+ * </pre>
+ */
+public final class Traza implements AutoCloseable {
+
+    /**
+     * Campos comunes a los eventos de la aplicación.
+     */
+    abstract static class Evento extends Event {
+        @Label("Operación")
+        String operacion;
+
+        @Label("Filas")
+        long filas;
+
+        @Label("Usuario")
+        @Description("Id del usuario con la sesión iniciada (0 si no hay ninguno)")
+        int idUsuario;
+    }
+
+    @Name("com.uber.OperacionDAO")
+    @Label("Operación DAO")
+    @Category({"Uber", "Base de datos"})
+    @Description("Duración de una llamada a un método DAO")
+    static final class EventoDAO extends Evento {}
+
+    @Name("com.uber.AccionUsuario")
+    @Label("Acción de usuario")
+    @Category({"Uber", "Interfaz"})
+    @Description("Acción de la interfaz, desde que se lanza hasta que se pinta el resultado")
+    static final class EventoAccion extends Evento {}
+
+    // Clases del paquete dao que no son la operación en sí, solo la ayudan
+    private static final Set<String> AUXILIARES_DAO = Set.of("com.uber.dao.Cursor", "com.uber.dao.AsyncDAO");
+
+    private static final StackWalker PILA = StackWalker.getInstance();
+
+    // Operación DAO para la que trabaja el hilo cuando no es el que la llamó (ver conOperacion)
+    private static final ThreadLocal<String> OPERACION_DEL_HILO = new ThreadLocal<>();
+
+    // Operación DAO abierta en el hilo: lo que empiece dentro no emite otro evento
+    private static final ThreadLocal<Traza> DAO_DEL_HILO = new ThreadLocal<>();
+
+    // Se devuelve cuando no se está grabando: no hace nada
+    private static final Traza NADA = new Traza(null);
+
+    private final Evento evento;
+    private boolean cerrada = false;
+
+    private Traza(Evento evento) {
+        this.evento = evento;
+    }
+
+    /**
+     * Empieza el evento de una acción de la interfaz.
+     *
+     * @param operacion nombre de la acción, "Controlador.metodo"
+     * @return traza que hay que cerrar al terminar la acción
+     */
+    public static Traza accion(String operacion) {
+        return iniciar(new EventoAccion(), operacion);
+    }
+
+    /**
+     * Empieza el evento de una operación DAO. El nombre se toma del primer
+     * método de com.uber.dao en la pila, así que hay que llamarlo desde el hilo
+     * que hace la operación, o desde una tarea envuelta con {@link #conOperacion}.
+     * Si no se está grabando, ni siquiera se mira la pila.
+     *
+     * Si el hilo ya está dentro de otra operación DAO, no se empieza otro
+     * evento: la traza devuelta no hace nada y todo cuenta en la de fuera.
+     *
+     * @return traza que hay que cerrar al terminar la operación
+     */
+    public static Traza operacionDAO() {
+        EventoDAO evento = new EventoDAO();
+        if (!evento.isEnabled() || DAO_DEL_HILO.get() != null) return NADA;
+
+        Traza traza = iniciar(evento, operacionActual());
+        DAO_DEL_HILO.set(traza);
+        return traza;
+    }
+
+    /**
+     * Prepara una tarea que va a usar conexiones desde otro hilo (p. ej. una
+     * consulta a un shard) para que sus eventos lleven el nombre de la operación
+     * DAO que la lanza. Hay que llamarlo en el hilo que lanza la tarea.
+     *
+     * @param tarea trabajo que se ejecutará en otro hilo
+     * @param <T> tipo del resultado
+     * @return la misma tarea, con la operación del hilo actual
+     */
+    public static <T> Callable<T> conOperacion(Callable<T> tarea) {
+        if (!new EventoDAO().isEnabled()) return tarea;
+
+        // Dentro de una operación DAO abierta, el otro hilo trabaja para ella
+        Traza abierta = DAO_DEL_HILO.get();
+        String operacion = abierta == null ? operacionActual() : null;
+        return () -> {
+            String anterior = OPERACION_DEL_HILO.get();
+            Traza anteriorDAO = DAO_DEL_HILO.get();
+            if (operacion != null) OPERACION_DEL_HILO.set(operacion);
+            if (abierta != null) DAO_DEL_HILO.set(abierta);
+            try {
+                return tarea.call();
+            } finally {
+                if (anterior != null) OPERACION_DEL_HILO.set(anterior);
+                else OPERACION_DEL_HILO.remove();
+                if (anteriorDAO != null) DAO_DEL_HILO.set(anteriorDAO);
+                else DAO_DEL_HILO.remove();
+            }
+        };
+    }
+
+    private static String operacionActual() {
+        String heredada = OPERACION_DEL_HILO.get();
+        if (heredada != null) return heredada;
+
+        return PILA.walk(pila -> pila
+                .filter(f -> f.getClassName().startsWith("com.uber.dao.")
+                        && !AUXILIARES_DAO.contains(f.getClassName().split("\\$", 2)[0]))
+                .findFirst()
+                .map(f -> f.getClassName().substring("com.uber.dao.".length()) + "." + f.getMethodName())
+                .orElse("(fuera de los DAO)"));
+    }
+
+    private static Traza iniciar(Evento evento, String operacion) {
+        if (!evento.isEnabled()) return NADA;
+
+        evento.operacion = operacion;
+        evento.begin();
+        return new Traza(evento);
+    }
+
+    /**
+     * Suma filas leídas o modificadas a la operación.
+     *
+     * @param n número de filas
+     * @return el mismo n, para poder escribir {@code return traza.filas(ps.executeUpdate()) > 0}
+     */
+    public long filas(long n) {
+        if (evento != null && n > 0) evento.filas += n;
+        return n;
+    }
+
+    /**
+     * Suma como filas los elementos de una lista (o cualquier colección).
+     *
+     * @param filas lo que devuelve la operación
+     * @return la misma colección
+     */
+    public <C extends Collection<?>> C filas(C filas) {
+        if (evento != null && filas != null) filas(filas.size());
+        return filas;
+    }
+
+    /**
+     * Suma una fila si se ha encontrado el objeto.
+     *
+     * @param fila lo que devuelve la operación (null si no se encontró)
+     * @return el mismo objeto
+     */
+    public <T> T fila(T fila) {
+        if (fila != null) filas(1);
+        return fila;
+    }
+
+    /**
+     * Termina el evento y lo guarda si supera el umbral de la grabación.
+     * El usuario se toma aquí, así el login ya sale con el usuario que ha entrado.
+     * Cerrarla otra vez no hace nada.
+     */
+    @Override
+    public void close() {
+        if (evento == null || cerrada) return;
+        cerrada = true;
+        if (DAO_DEL_HILO.get() == this) DAO_DEL_HILO.remove();
+
+        evento.end();
+        if (evento.shouldCommit()) {
+            Usuario u = Sesion.getInstancia().getUsuarioLogueado();
+            evento.idUsuario = u != null ? u.getIdUsuario() : 0;
+            evento.commit();
+        }
+    }
+}
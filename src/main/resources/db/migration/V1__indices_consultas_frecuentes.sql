@@ -0,0 +1,17 @@
+-- Índices compuestos para las consultas que más se repiten.
+-- Sirve igual para MySQL y H2: solo usa CREATE INDEX nombre ON tabla (columnas).
+-- Si un índice ya existe (p. ej. la BD se creó con un uber.sql que ya lo trae) se salta.
+
+-- Reservas de un usuario, de la más reciente a la más antigua (ReservaDAO.getReservasPorUsuario)
+CREATE INDEX idx_reserva_usuario_inicio ON reserva (id_usuario, fecha_hora_inicio);
+
+-- Reservas activas y vencidas (IndiceDisponibilidad, ExpiradorReservas)
+CREATE INDEX idx_reserva_estado_fin ON reserva (estado, fecha_hora_fin);
+
+-- Último mantenimiento de un vehículo (TieneDAO.getUltimoMantenimiento)
+CREATE INDEX idx_tiene_vehiculo_fecha ON tiene (id_vehiculo, fecha_hora);
+
+-- Catálogo filtrado por estado, tipo y batería, o por estación (VehiculoDAO.buscarEnBD)
+CREATE INDEX idx_estado_tipo_bateria ON vehiculo (estado_vehiculo, tipo, nivel_bateria);
+CREATE INDEX idx_estacion_estado ON vehiculo (id_estacion, estado_vehiculo, nivel_bateria);
+CREATE INDEX idx_ciudad ON estacion (ciudad);
@@ -0,0 +1,27 @@
+-- Historial de saldo (MovimientoDAO): cada recarga, cobro o reembolso es un apunte
+-- y Usuario.saldo es la suma de los apuntes del usuario.
+-- Sirve igual para MySQL y H2. Si la tabla ya existe (BD creada antes de esta
+-- migración con la tabla a mano) no se toca.
+
+CREATE TABLE IF NOT EXISTS movimiento (
+  id_movimiento INT NOT NULL AUTO_INCREMENT,
+  id_usuario INT NOT NULL,
+  tipo ENUM('SALDO_INICIAL','RECARGA','COBRO_VIAJE','REEMBOLSO') NOT NULL,
+  importe DOUBLE NOT NULL,
+  saldo_resultante DOUBLE NOT NULL,
+  id_reserva INT DEFAULT NULL,
+  fecha_hora DATETIME NOT NULL,
+  PRIMARY KEY (id_movimiento),
+  CONSTRAINT movimiento_ibfk_1 FOREIGN KEY (id_usuario) REFERENCES usuario (id_usuario),
+  CONSTRAINT movimiento_ibfk_2 FOREIGN KEY (id_reserva) REFERENCES reserva (id_reserva)
+);
+
+-- Extracto de un usuario, del más reciente al más antiguo (MovimientoDAO.getPorUsuario)
+CREATE INDEX idx_usuario_movimiento ON movimiento (id_usuario, id_movimiento);
+
+-- El saldo que ya tenían los usuarios pasa a ser su primer apunte
+INSERT INTO movimiento (id_usuario, tipo, importe, saldo_resultante, id_reserva, fecha_hora)
+SELECT u.id_usuario, 'SALDO_INICIAL', u.saldo, u.saldo, NULL, CURRENT_TIMESTAMP
+FROM usuario u
+WHERE u.saldo <> 0
+  AND NOT EXISTS (SELECT 1 FROM movimiento m WHERE m.id_usuario = u.id_usuario);
@@ -0,0 +1,159 @@
+package com.uber.dao;
+
+import com.uber.dao.LiquidacionReservas.Liquidacion;
+import com.uber.database.ConnectionBD;
+import com.uber.enums.ResultadoLiquidacion;
+import com.uber.model.Movimiento;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Pruebas de la liquidación por lotes contra la BD H2 en memoria (uber.sql).
+ */
+class LiquidacionReservasTest {
+
+    @BeforeAll
+    static void crearBD() {
+        System.setProperty("db.type", "h2mem");
+        ConnectionBD.closeConnection();
+    }
+
+    @AfterAll
+    static void borrarBD() {
+        ConnectionBD.closeConnection();
+    }
+
+    @Test
+    void liquidaUnLoteEntero() throws SQLException {
+        double saldoJuan = saldo(1);
+        double saldoMaria = saldo(2);
+        crearReserva(9001, 1, 5, 10);
+        crearReserva(9002, 2, 3, 4);
+
+        Map<Integer, ResultadoLiquidacion> r = new LiquidacionReservas(10).liquidar(List.of(
+                new Liquidacion(9001, 5, 1, 10, null),
+                new Liquidacion(9002, 3, 2, 4, null)));
+
+        assertEquals(Map.of(9001, ResultadoLiquidacion.LIQUIDADA, 9002, ResultadoLiquidacion.LIQUIDADA), r);
+        assertEquals("FINALIZADA", estado(9001));
+        assertEquals("FINALIZADA", estado(9002));
+        assertEquals(saldoJuan - 10, saldo(1), 1e-9);
+        assertEquals(saldoMaria - 4, saldo(2), 1e-9);
+        assertEquals(saldoJuan - 10, cobro(9001), 1e-9);
+    }
+
+    @Test
+    void quienNoTieneSaldoNoEchaAtrasElRestoDelLote() throws SQLException {
+        double saldoJuan = saldo(1);
+        double saldoLuis = saldo(3);
+        crearReserva(9011, 1, 5, 2);
+        crearReserva(9012, 3, 3, saldoLuis + 50);
+        crearReserva(9013, 1, 3, 3);
+
+        // Al de la 9012 no le llega: su reserva sigue abierta y las demás se liquidan en el mismo lote
+        Map<Integer, ResultadoLiquidacion> r = new LiquidacionReservas(10).liquidar(List.of(
+                new Liquidacion(9011, 5, 1, 2, null),
+                new Liquidacion(9012, 3, 3, saldoLuis + 50, null),
+                new Liquidacion(9013, 3, 1, 3, null)));
+
+        assertEquals(List.of(9011, 9012, 9013), List.copyOf(r.keySet()), "En el orden recibido");
+        assertEquals(ResultadoLiquidacion.LIQUIDADA, r.get(9011));
+        assertEquals(ResultadoLiquidacion.SIN_SALDO, r.get(9012));
+        assertEquals(ResultadoLiquidacion.LIQUIDADA, r.get(9013));
+
+        assertEquals("FINALIZADA", estado(9011));
+        assertEquals("ACTIVA", estado(9012));
+        assertEquals("FINALIZADA", estado(9013));
+
+        assertEquals(saldoJuan - 5, saldo(1), 1e-9);
+        assertEquals(saldoLuis, saldo(3), 1e-9);
+        assertNull(cobro(9012));
+    }
+
+    @Test
+    void noCobraDosVecesLaMismaReserva() throws SQLException {
+        double saldoAna = saldo(4);
+        crearReserva(9021, 4, 5, 7);
+
+        Liquidacion l = new Liquidacion(9021, 5, 4, 7, null);
+        Map<Integer, ResultadoLiquidacion> r = new LiquidacionReservas(10).liquidar(List.of(l, l));
+        assertEquals(ResultadoLiquidacion.LIQUIDADA, r.get(9021));
+
+        assertEquals(ResultadoLiquidacion.NO_ACTIVA, new LiquidacionReservas(10).liquidar(List.of(l)).get(9021));
+        assertEquals(saldoAna - 7, saldo(4), 1e-9);
+    }
+
+    @Test
+    void conDeudaCobraAunqueNoLlegueElSaldo() throws SQLException {
+        double saldoDavid = saldo(9);
+        crearReserva(9031, 9, 5, saldoDavid + 20);
+        crearReserva(9032, 9, 3, 5);
+
+        Map<Integer, ResultadoLiquidacion> r = new LiquidacionReservas(10).liquidarConDeuda(List.of(
+                new Liquidacion(9031, 5, 9, saldoDavid + 20, null),
+                new Liquidacion(9032, 3, 9, 5, null)));
+
+        assertEquals(ResultadoLiquidacion.LIQUIDADA, r.get(9031));
+        assertEquals(ResultadoLiquidacion.LIQUIDADA, r.get(9032));
+        assertEquals(-25, saldo(9), 1e-9);
+        assertEquals(-20, cobro(9031), 1e-9);
+        assertEquals(-25, cobro(9032), 1e-9);
+    }
+
+    // ================================================================
+    //   DATOS
+    // ================================================================
+
+    private static void crearReserva(int id, int idUsuario, int idVehiculo, double coste) throws SQLException {
+        try (Connection conn = ConnectionBD.getConnection();
+             PreparedStatement ps = conn.prepareStatement("INSERT INTO Reserva (id_reserva, id_usuario, id_vehiculo, "
+                     + "fecha_hora_inicio, fecha_hora_fin, coste, estado) VALUES (?, ?, ?, ?, NULL, ?, 'ACTIVA')")) {
+            ps.setInt(1, id);
+            ps.setInt(2, idUsuario);
+            ps.setInt(3, idVehiculo);
+            ps.setTimestamp(4, Timestamp.valueOf(LocalDateTime.now().minusHours(1)));
+            ps.setDouble(5, coste);
+            ps.executeUpdate();
+        }
+    }
+
+    private static String estado(int idReserva) throws SQLException {
+        try (Connection conn = ConnectionBD.getConnection();
+             PreparedStatement ps = conn.prepareStatement("SELECT estado FROM Reserva WHERE id_reserva = ?")) {
+            ps.setInt(1, idReserva);
+            try (ResultSet rs = ps.executeQuery()) {
+                assertTrue(rs.next());
+                return rs.getString(1);
+            }
+        }
+    }
+
+    private static double saldo(int idUsuario) throws SQLException {
+        try (Connection conn = ConnectionBD.getConnection();
+             PreparedStatement ps = conn.prepareStatement("SELECT saldo FROM Usuario WHERE id_usuario = ?")) {
+            ps.setInt(1, idUsuario);
+            try (ResultSet rs = ps.executeQuery()) {
+                assertTrue(rs.next());
+                return rs.getDouble(1);
+            }
+        }
+    }
+
+    /** @return saldo resultante del cobro de la reserva, o null si no se cobró */
+    private static Double cobro(int idReserva) {
+        Movimiento m = new MovimientoDAO().getCobroReserva(idReserva);
+        return m != null ? m.getSaldoResultante() : null;
+    }
+}
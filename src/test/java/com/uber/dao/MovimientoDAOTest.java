@@ -0,0 +1,175 @@
+package com.uber.dao;
+
+import com.uber.dao.MovimientoDAO.Apunte;
+import com.uber.database.ConnectionBD;
+import com.uber.enums.TipoMovimiento;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Pruebas del historial de saldo contra la BD H2 en memoria (uber.sql más la migración V2).
+ */
+class MovimientoDAOTest {
+
+    private final MovimientoDAO dao = new MovimientoDAO();
+
+    @BeforeAll
+    static void crearBD() {
+        System.setProperty("db.type", "h2mem");
+        ConnectionBD.closeConnection();
+    }
+
+    @AfterAll
+    static void borrarBD() {
+        ConnectionBD.closeConnection();
+    }
+
+    @Test
+    void elLoteEncadenaLosSaldosResultantes() throws SQLException {
+        double saldoJuan = saldo(1);
+        double saldoMaria = saldo(2);
+        int ultimo = ultimoMovimiento();
+
+        List<Apunte> apuntes = List.of(
+                new Apunte(1, TipoMovimiento.RECARGA, 10, null),
+                new Apunte(2, TipoMovimiento.RECARGA, 5, null),
+                new Apunte(1, TipoMovimiento.COBRO_VIAJE, -3, null),
+                new Apunte(1, TipoMovimiento.RECARGA, 1.5, null),
+                new Apunte(2, TipoMovimiento.COBRO_VIAJE, -20, null));
+
+        assertEquals(List.of(), enTransaccion(apuntes));
+
+        assertEquals(saldoJuan + 8.5, saldo(1), 1e-9);
+        assertEquals(saldoMaria - 15, saldo(2), 1e-9);
+
+        // Cada apunte lleva el saldo que dejó, en el orden en que se aplicaron
+        List<double[]> nuevos = movimientosDesde(ultimo);
+        assertEquals(5, nuevos.size());
+        assertArrayEquals(new double[]{1, 10, saldoJuan + 10}, nuevos.get(0), 1e-9);
+        assertArrayEquals(new double[]{2, 5, saldoMaria + 5}, nuevos.get(1), 1e-9);
+        assertArrayEquals(new double[]{1, -3, saldoJuan + 7}, nuevos.get(2), 1e-9);
+        assertArrayEquals(new double[]{1, 1.5, saldoJuan + 8.5}, nuevos.get(3), 1e-9);
+        assertArrayEquals(new double[]{2, -20, saldoMaria - 15}, nuevos.get(4), 1e-9);
+    }
+
+    @Test
+    void unaRecargaDelLoteCubreUnCobroPosterior() throws SQLException {
+        double saldoLuis = saldo(3);
+
+        assertEquals(List.of(), enTransaccion(List.of(
+                new Apunte(3, TipoMovimiento.RECARGA, 5, null),
+                new Apunte(3, TipoMovimiento.COBRO_VIAJE, -(saldoLuis + 5), null))));
+
+        assertEquals(0, saldo(3), 1e-9);
+    }
+
+    @Test
+    void soloSeRechazaElApunteQueDejariaElSaldoNegativo() throws SQLException {
+        double saldoAna = saldo(4);
+        double saldoDavid = saldo(9);
+        int ultimo = ultimoMovimiento();
+
+        Apunte sinSaldo = new Apunte(9, TipoMovimiento.COBRO_VIAJE, -(saldoDavid + 1), null);
+        assertEquals(List.of(sinSaldo), enTransaccion(List.of(
+                new Apunte(4, TipoMovimiento.RECARGA, 10, null),
+                sinSaldo,
+                new Apunte(9, TipoMovimiento.COBRO_VIAJE, -1, null))));
+
+        // El resto del lote se aplica y encadena los saldos sin contar el rechazado
+        assertEquals(saldoAna + 10, saldo(4), 1e-9);
+        assertEquals(saldoDavid - 1, saldo(9), 1e-9);
+        List<double[]> nuevos = movimientosDesde(ultimo);
+        assertEquals(2, nuevos.size());
+        assertArrayEquals(new double[]{4, 10, saldoAna + 10}, nuevos.get(0), 1e-9);
+        assertArrayEquals(new double[]{9, -1, saldoDavid - 1}, nuevos.get(1), 1e-9);
+    }
+
+    @Test
+    void conDeudaNoSeRechazaNingunApunte() throws SQLException {
+        double saldoJesus = saldo(11);
+
+        try (Connection conn = ConnectionBD.getConnection()) {
+            assertEquals(List.of(), dao.registrarLote(conn, List.of(
+                    new Apunte(11, TipoMovimiento.COBRO_VIAJE, -(saldoJesus + 3), null)), true));
+        }
+        assertEquals(-3, saldo(11), 1e-9);
+    }
+
+    @Test
+    void registrarSinSaldoNoCambiaNada() throws SQLException {
+        double saldoJuan = saldo(14);
+        int ultimo = ultimoMovimiento();
+
+        assertNull(dao.registrar(14, TipoMovimiento.COBRO_VIAJE, -(saldoJuan + 1), null));
+        assertEquals(saldoJuan, saldo(14), 1e-9);
+        assertTrue(movimientosDesde(ultimo).isEmpty());
+
+        assertEquals(saldoJuan + 2, dao.registrar(14, TipoMovimiento.RECARGA, 2, null).getSaldoResultante(), 1e-9);
+    }
+
+    // ================================================================
+    //   DATOS
+    // ================================================================
+
+    /**
+     * Aplica el lote sin deuda en una transacción y la confirma.
+     *
+     * @return apuntes rechazados
+     */
+    private List<Apunte> enTransaccion(List<Apunte> apuntes) throws SQLException {
+        try (Connection conn = ConnectionBD.getConnection()) {
+            conn.setAutoCommit(false);
+            try {
+                List<Apunte> rechazados = dao.registrarLote(conn, apuntes, false);
+                conn.commit();
+                return rechazados;
+            } finally {
+                conn.setAutoCommit(true);
+            }
+        }
+    }
+
+    private static double saldo(int idUsuario) throws SQLException {
+        try (Connection conn = ConnectionBD.getConnection();
+             PreparedStatement ps = conn.prepareStatement("SELECT saldo FROM Usuario WHERE id_usuario = ?")) {
+            ps.setInt(1, idUsuario);
+            try (ResultSet rs = ps.executeQuery()) {
+                assertTrue(rs.next());
+                return rs.getDouble(1);
+            }
+        }
+    }
+
+    private static int ultimoMovimiento() throws SQLException {
+        try (Connection conn = ConnectionBD.getConnection();
+             PreparedStatement ps = conn.prepareStatement("SELECT COALESCE(MAX(id_movimiento), 0) FROM Movimiento");
+             ResultSet rs = ps.executeQuery()) {
+            rs.next();
+            return rs.getInt(1);
+        }
+    }
+
+    /** @return {id_usuario, importe, saldo_resultante} de los apuntes posteriores al id, en orden */
+    private static List<double[]> movimientosDesde(int idMovimiento) throws SQLException {
+        List<double[]> lista = new ArrayList<>();
+        try (Connection conn = ConnectionBD.getConnection();
+             PreparedStatement ps = conn.prepareStatement("SELECT id_usuario, importe, saldo_resultante "
+                     + "FROM Movimiento WHERE id_movimiento > ? ORDER BY id_movimiento")) {
+            ps.setInt(1, idMovimiento);
+            try (ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) lista.add(new double[]{rs.getInt(1), rs.getDouble(2), rs.getDouble(3)});
+            }
+        }
+        return lista;
+    }
+}
@@ -0,0 +1,130 @@
+package com.uber.dao;
+
+import com.uber.database.ConnectionBD;
+import com.uber.enums.EstadoReserva;
+import com.uber.enums.ResultadoReserva;
+import com.uber.model.Reserva;
+import com.uber.model.Usuario;
+import com.uber.model.Vehiculo;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Pruebas de las reservas por franjas contra la BD H2 en memoria (uber.sql).
+ */
+class ReservaDAOTest {
+
+    private final ReservaDAO dao = new ReservaDAO();
+
+    @BeforeAll
+    static void crearBD() {
+        System.setProperty("db.type", "h2mem");
+        ConnectionBD.closeConnection();
+    }
+
+    @AfterAll
+    static void borrarBD() {
+        ConnectionBD.closeConnection();
+    }
+
+    @Test
+    void unVehiculoAdmiteFranjasQueNoSeSolapan() throws SQLException {
+        LocalDateTime ahora = LocalDateTime.now().truncatedTo(ChronoUnit.MINUTES);
+        LocalDateTime manana = ahora.plusDays(1);
+
+        Reserva ya = reserva(1, 5, ahora, ahora.plusHours(2));
+        assertEquals(ResultadoReserva.OK, dao.reservar(ya));
+        assertEquals("EN_USO", estadoVehiculo(5), "La que empieza ya ocupa el vehículo");
+
+        Reserva futura = reserva(2, 5, manana, manana.plusHours(2));
+        assertEquals(ResultadoReserva.OK, dao.reservar(futura));
+
+        assertEquals(ResultadoReserva.FRANJA_OCUPADA, dao.reservar(reserva(4, 5, manana.plusHours(1), manana.plusHours(3))));
+        assertEquals(ResultadoReserva.FRANJA_OCUPADA, dao.reservar(reserva(4, 5, ahora.plusHours(1), null)));
+
+        // Cancelar la futura no libera el vehículo que está usando la otra
+        assertTrue(dao.cancelarReserva(futura.getIdReserva(), 5));
+        assertEquals("EN_USO", estadoVehiculo(5));
+
+        assertTrue(dao.cancelarReserva(ya.getIdReserva(), 5));
+        assertEquals("DISPONIBLE", estadoVehiculo(5));
+    }
+
+    @Test
+    void unaReservaFuturaNoOcupaElVehiculo() throws SQLException {
+        LocalDateTime dentroDeUnaSemana = LocalDateTime.now().plusDays(7);
+
+        Reserva futura = reserva(9, 5, dentroDeUnaSemana, dentroDeUnaSemana.plusHours(1));
+        assertEquals(ResultadoReserva.OK, dao.reservar(futura));
+        assertEquals("DISPONIBLE", estadoVehiculo(5));
+
+        assertTrue(dao.cancelarReserva(futura.getIdReserva(), 5));
+    }
+
+    @Test
+    void laBDDetectaElSolapeAunqueNoEsteEnElIndice() throws SQLException {
+        LocalDateTime dentroDeTresDias = LocalDateTime.now().plusDays(3);
+        Reserva primera = reserva(3, 5, dentroDeTresDias, dentroDeTresDias.plusHours(2));
+        assertEquals(ResultadoReserva.OK, dao.reservar(primera));
+
+        // Otra instancia de la aplicación la habría reservado: el índice de esta no lo sabe
+        IndiceDisponibilidad.getInstancia().quitar(primera.getIdReserva());
+
+        assertEquals(ResultadoReserva.FRANJA_OCUPADA, dao.reservar(reserva(4, 5, dentroDeTresDias.plusHours(1), dentroDeTresDias.plusHours(3))));
+        assertTrue(dao.cancelarReserva(primera.getIdReserva(), 5));
+    }
+
+    @Test
+    void unaReservaSinFinBloqueaTodasLasFranjasPosteriores() {
+        // La reserva 2 de uber.sql tiene el vehículo 3 sin fecha de fin
+        LocalDateTime inicio = LocalDateTime.now().plusDays(30);
+        assertEquals(ResultadoReserva.FRANJA_OCUPADA, dao.reservar(reserva(4, 3, inicio, inicio.plusHours(1))));
+    }
+
+    @Test
+    void noSeReservaUnVehiculoEnMantenimiento() {
+        LocalDateTime inicio = LocalDateTime.now().plusDays(2);
+        assertEquals(ResultadoReserva.VEHICULO_OCUPADO, dao.reservar(reserva(4, 7, inicio, inicio.plusHours(1))));
+    }
+
+    // ================================================================
+    //   DATOS
+    // ================================================================
+
+    private static Reserva reserva(int idUsuario, int idVehiculo, LocalDateTime inicio, LocalDateTime fin) {
+        Usuario u = new Usuario();
+        u.setIdUsuario(idUsuario);
+        Vehiculo v = new Vehiculo();
+        v.setIdVehiculo(idVehiculo);
+
+        Reserva r = new Reserva();
+        r.setUsuario(u);
+        r.setVehiculo(v);
+        r.setFechaHoraInicio(inicio);
+        r.setFechaHoraFin(fin);
+        r.setCoste(5);
+        r.setEstado(EstadoReserva.ACTIVA);
+        return r;
+    }
+
+    private static String estadoVehiculo(int idVehiculo) throws SQLException {
+        try (Connection conn = ConnectionBD.getConnection();
+             PreparedStatement ps = conn.prepareStatement("SELECT estado_vehiculo FROM Vehiculo WHERE id_vehiculo = ?")) {
+            ps.setInt(1, idVehiculo);
+            try (ResultSet rs = ps.executeQuery()) {
+                assertTrue(rs.next());
+                return rs.getString(1);
+            }
+        }
+    }
+}
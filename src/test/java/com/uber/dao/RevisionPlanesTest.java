@@ -0,0 +1,46 @@
+package com.uber.dao;
+
+import com.uber.database.ConnectionBD;
+import com.uber.utils.GeneradorDatos;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import java.sql.SQLException;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Comprueba que las consultas de {@link RevisionPlanes} van por índice, sobre
+ * la BD H2 en memoria (uber.sql) rellenada con {@link GeneradorDatos}.
+ */
+class RevisionPlanesTest {
+
+    @BeforeAll
+    static void crearBD() throws SQLException {
+        System.setProperty("db.type", "h2mem");
+        ConnectionBD.closeConnection();
+
+        // Con tablas casi vacías el optimizador puede preferir recorrerlas
+        GeneradorDatos generador = new GeneradorDatos(42);
+        try {
+            generador.generar(new GeneradorDatos.Volumen(50, 2_000, 1_000, 20_000, 2_000));
+        } finally {
+            generador.cerrar();
+        }
+    }
+
+    @AfterAll
+    static void borrarBD() {
+        ConnectionBD.closeConnection();
+    }
+
+    @Test
+    void lasConsultasFrecuentesUsanIndices() throws SQLException {
+        List<RevisionPlanes.Plan> planes = RevisionPlanes.revisar();
+        assertEquals(RevisionPlanes.consultas().size(), planes.size());
+
+        assertAll(planes.stream().map(p -> () -> assertTrue(p.usaIndices(), RevisionPlanes.describir(p))));
+    }
+}
@@ -0,0 +1,76 @@
+package com.uber.dao;
+
+import com.uber.database.ConnectionBD;
+import com.uber.model.Usuario;
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Pruebas de los eventos JFR "com.uber.OperacionDAO" contra la BD H2 en memoria (uber.sql).
+ */
+class TrazaDAOTest {
+
+    @BeforeAll
+    static void crearBD() {
+        System.setProperty("db.type", "h2mem");
+        ConnectionBD.closeConnection();
+    }
+
+    @AfterAll
+    static void borrarBD() {
+        ConnectionBD.closeConnection();
+    }
+
+    @Test
+    void cadaLlamadaDaUnEventoConSusFilasAunqueLaRespondaLaCache() throws Exception {
+        VehiculoDAO vehiculos = new VehiculoDAO();
+        UsuarioDAO usuarios = new UsuarioDAO();
+        vehiculos.getById(1);  // carga la caché antes de grabar
+
+        List<RecordedEvent> eventos;
+        int totalUsuarios;
+        try (Recording grabacion = new Recording()) {
+            grabacion.enable("com.uber.OperacionDAO").withoutThreshold();
+            grabacion.start();
+
+            assertNotNull(vehiculos.getById(1));
+            assertNotNull(vehiculos.getById(2));
+            List<Usuario> lista = usuarios.getAll();
+            totalUsuarios = lista.size();
+
+            grabacion.stop();
+            Path fichero = Files.createTempFile("traza", ".jfr");
+            try {
+                grabacion.dump(fichero);
+                eventos = RecordingFile.readAllEvents(fichero);
+            } finally {
+                Files.deleteIfExists(fichero);
+            }
+        }
+
+        List<RecordedEvent> getById = deOperacion(eventos, "VehiculoDAO.getById");
+        assertEquals(2, getById.size(), "La caché no debe hacer desaparecer el evento");
+        getById.forEach(e -> assertEquals(1, e.getLong("filas")));
+
+        List<RecordedEvent> getAll = deOperacion(eventos, "UsuarioDAO.getAll");
+        assertEquals(1, getAll.size(), "La conexión del pool no debe dar un segundo evento");
+        assertTrue(totalUsuarios > 0);
+        assertEquals(totalUsuarios, getAll.get(0).getLong("filas"));
+    }
+
+    private static List<RecordedEvent> deOperacion(List<RecordedEvent> eventos, String operacion) {
+        return eventos.stream()
+                .filter(e -> operacion.equals(e.getString("operacion")))
+                .toList();
+    }
+}
@@ -0,0 +1,242 @@
+package com.uber.database;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Pruebas del pool de conexiones contra una BD H2 en memoria propia de cada prueba.
+ */
+class ConnectionPoolTest {
+
+    private static final AtomicInteger BASES = new AtomicInteger();
+
+    // Conexiones físicas que ha abierto la fábrica del pool, en orden
+    private final List<Connection> abiertas = new ArrayList<>();
+    // Conexiones físicas abiertas y sin cerrar ahora mismo, y el máximo al que se ha llegado
+    private final AtomicInteger vivas = new AtomicInteger();
+    private final AtomicInteger maxVivas = new AtomicInteger();
+    // Lo que tarda la fábrica en abrir cada conexión
+    private volatile long lentitudMs = 0;
+    private ConnectionPool pool;
+
+    @AfterEach
+    void cerrar() {
+        if (pool != null) pool.close();
+    }
+
+    private void crear(int maxSize, long borrowTimeoutMs) {
+        crear(0, maxSize, 60_000, borrowTimeoutMs);
+    }
+
+    private void crear(int minSize, int maxSize, long idleTimeoutMs, long borrowTimeoutMs) {
+        String url = "jdbc:h2:mem:pool" + BASES.incrementAndGet() + ";DB_CLOSE_DELAY=-1";
+        pool = new ConnectionPool("prueba", () -> {
+            try {
+                Thread.sleep(lentitudMs);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new SQLException("Interrumpido abriendo la conexión", e);
+            }
+            Connection c = contarCierre(DriverManager.getConnection(url, "sa", ""));
+            synchronized (abiertas) {
+                abiertas.add(c);
+            }
+            maxVivas.accumulateAndGet(vivas.incrementAndGet(), Math::max);
+            return c;
+        }, minSize, maxSize, idleTimeoutMs, borrowTimeoutMs, 1, 0, 10);
+    }
+
+    /**
+     * Envuelve la conexión física para descontarla de las vivas al cerrarla (solo la primera vez).
+     */
+    private Connection contarCierre(Connection real) {
+        AtomicBoolean cerrada = new AtomicBoolean();
+        return (Connection) Proxy.newProxyInstance(Connection.class.getClassLoader(), new Class<?>[]{Connection.class},
+                (proxy, metodo, args) -> {
+                    if (metodo.getName().equals("close") && cerrada.compareAndSet(false, true)) vivas.decrementAndGet();
+                    try {
+                        return metodo.invoke(real, args);
+                    } catch (InvocationTargetException e) {
+                        throw e.getCause();
+                    }
+                });
+    }
+
+    @Test
+    void agotaLaEsperaSiNoHayConexionLibre() throws SQLException {
+        crear(1, 200);
+
+        try (Connection ocupada = pool.getConnection()) {
+            long inicio = System.nanoTime();
+            SQLException e = assertThrows(SQLException.class, pool::getConnection);
+            long esperaMs = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - inicio);
+
+            assertTrue(e.getMessage().contains("Tiempo de espera agotado"), e.getMessage());
+            assertTrue(esperaMs >= 150, "Ha esperado " + esperaMs + " ms");
+            assertTrue(esperaMs < 2_000, "Ha esperado " + esperaMs + " ms");
+        }
+    }
+
+    @Test
+    void quienEsperaRecibeLaConexionAlDevolverse() throws Exception {
+        crear(1, 5_000);
+        Connection ocupada = pool.getConnection();
+
+        ExecutorService hilo = Executors.newSingleThreadExecutor();
+        try {
+            CountDownLatch esperando = new CountDownLatch(1);
+            Future<Boolean> otro = hilo.submit(() -> {
+                esperando.countDown();
+                try (Connection c = pool.getConnection()) {
+                    return c.isValid(1);
+                }
+            });
+
+            esperando.await();
+            Thread.sleep(100);
+            ocupada.close();
+
+            assertTrue(otro.get(5, TimeUnit.SECONDS));
+            assertEquals(1, abiertas.size(), "Se ha reutilizado la misma conexión física");
+        } finally {
+            hilo.shutdownNow();
+        }
+    }
+
+    @Test
+    void nuncaPrestaMasDeMaxSize() throws Exception {
+        crear(3, 100);
+
+        List<Connection> prestadas = new ArrayList<>();
+        for (int i = 0; i < 3; i++) prestadas.add(pool.getConnection());
+        assertEquals(3, pool.getPrestadas());
+        assertThrows(SQLException.class, pool::getConnection);
+
+        prestadas.remove(0).close();
+        prestadas.add(pool.getConnection());
+        for (Connection c : prestadas) c.close();
+        assertEquals(0, pool.getPrestadas());
+        assertEquals(3, pool.getLibres());
+        assertEquals(3, abiertas.size());
+    }
+
+    @Test
+    void conMuchosHilosNoPasaDeMaxSize() throws Exception {
+        crear(3, 10_000);
+        AtomicInteger enUso = new AtomicInteger();
+        AtomicInteger maximo = new AtomicInteger();
+        ExecutorService hilos = Executors.newFixedThreadPool(8);
+        try {
+            List<Future<?>> tareas = new ArrayList<>();
+            for (int h = 0; h < 8; h++) {
+                tareas.add(hilos.submit(() -> {
+                    for (int i = 0; i < 50; i++) {
+                        try (Connection c = pool.getConnection()) {
+                            maximo.accumulateAndGet(enUso.incrementAndGet(), Math::max);
+                            Thread.sleep(1);
+                            enUso.decrementAndGet();
+                        }
+                    }
+                    return null;
+                }));
+            }
+            for (Future<?> t : tareas) t.get(30, TimeUnit.SECONDS);
+        } finally {
+            hilos.shutdownNow();
+        }
+
+        assertTrue(maximo.get() <= 3, "Llegó a haber " + maximo.get() + " prestadas");
+        assertTrue(abiertas.size() <= 3, "Se abrieron " + abiertas.size() + " conexiones");
+    }
+
+    @Test
+    void elMantenimientoNoAbreDeMasMientrasOtrosAbrenSuConexion() throws Exception {
+        crear(2, 2, 1, 10_000);
+        assertEquals(2, pool.getLibres());
+
+        // Se caen las dos por debajo mientras están prestadas: al devolverlas el pool se queda vacío
+        Connection a = pool.getConnection();
+        Connection b = pool.getConnection();
+        abiertas.get(0).close();
+        abiertas.get(1).close();
+        a.close();
+        b.close();
+        assertEquals(0, pool.getLibres() + pool.getPrestadas());
+
+        // Dos hilos piden conexión y tardan en abrirla: mientras tanto no cuentan como abiertas
+        // y pasa el mantenimiento (cada segundo), que ve el pool por debajo del mínimo
+        lentitudMs = 1_200;
+        ExecutorService hilos = Executors.newFixedThreadPool(2);
+        try {
+            List<Future<?>> tareas = new ArrayList<>();
+            for (int h = 0; h < 2; h++) {
+                tareas.add(hilos.submit(() -> {
+                    try (Connection c = pool.getConnection()) {
+                        return c.isValid(1);
+                    }
+                }));
+            }
+            for (Future<?> t : tareas) assertEquals(true, t.get(30, TimeUnit.SECONDS));
+
+            // Lo que hubiera empezado a abrir el mantenimiento a la vez termina en este margen
+            Thread.sleep(1_500);
+        } finally {
+            hilos.shutdownNow();
+        }
+
+        assertTrue(maxVivas.get() <= 2, "Llegó a haber " + maxVivas.get() + " conexiones físicas abiertas");
+        assertEquals(2, pool.getLibres());
+    }
+
+    @Test
+    void descartaLaConexionLibreQueYaNoEsValida() throws Exception {
+        crear(2, 1_000);
+
+        pool.getConnection().close();
+        assertEquals(1, pool.getLibres());
+
+        // Se cae la conexión mientras está libre; pasado el margen sin validar, se comprueba al prestarla
+        abiertas.get(0).close();
+        Thread.sleep(600);
+
+        try (Connection c = pool.getConnection();
+             Statement st = c.createStatement();
+             ResultSet rs = st.executeQuery("SELECT 1")) {
+            assertTrue(rs.next());
+        }
+        assertEquals(2, abiertas.size(), "Se abrió una nueva en lugar de la caída");
+        assertEquals(1, pool.getLibres());
+    }
+
+    @Test
+    void noDevuelveAlPoolUnaConexionCerradaMientrasEstabaPrestada() throws SQLException {
+        crear(2, 1_000);
+
+        Connection c = pool.getConnection();
+        abiertas.get(0).close();
+        c.close();
+
+        assertEquals(0, pool.getLibres());
+        assertEquals(0, pool.getPrestadas());
+        assertThrows(SQLException.class, () -> c.createStatement(), "El proxy ya no sirve tras devolverlo");
+    }
+}
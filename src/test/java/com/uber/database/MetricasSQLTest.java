@@ -0,0 +1,62 @@
+package com.uber.database;
+
+import com.uber.utils.Traza;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Pruebas de la agrupación de SQL de las métricas.
+ */
+class MetricasSQLTest {
+
+    @AfterEach
+    void limpiar() {
+        MetricasSQL.reiniciar();
+    }
+
+    @Test
+    void losLiteralesCuentanComoParametros() {
+        assertEquals("SELECT * FROM Usuario WHERE id_usuario = ? AND email = ? AND saldo > ?",
+                MetricasSQL.normalizar("SELECT *  FROM Usuario\n WHERE id_usuario = 15 AND email = 'o''neil@x.com' AND saldo > 2.5"));
+        assertEquals("UPDATE Vehiculo SET estado_vehiculo = ? WHERE id_vehiculo IN (?...)",
+                MetricasSQL.normalizar("UPDATE Vehiculo SET estado_vehiculo = 'EN_USO' WHERE id_vehiculo IN (1, 2, 3)"));
+
+        // Los números dentro de un nombre no son literales
+        assertEquals("CREATE INDEX idx_v2 ON t2 (c1)", MetricasSQL.normalizar("CREATE INDEX idx_v2 ON t2 (c1)"));
+    }
+
+    @Test
+    void elNumeroDeSqlDistintosEstaAcotado() throws SQLException {
+        int distintos = MetricasSQL.MAX_SQL + 100;
+        try (Connection conn = DriverManager.getConnection("jdbc:h2:mem:metricas", "sa", "")) {
+            for (int i = 0; i < distintos; i++) {
+                try (Statement st = MetricasSQL.medir(conn.createStatement(), null, Traza.operacionDAO())) {
+                    // Con el valor pegado en el texto siguen siendo el mismo SQL
+                    st.execute("SELECT " + i);
+                    // Con otro alias cada uno es un SQL distinto
+                    st.execute("SELECT 1 AS c" + i);
+                }
+            }
+        }
+
+        List<MetricasSQL.Resumen> resumen = MetricasSQL.snapshot();
+        assertEquals(MetricasSQL.MAX_SQL + 1, resumen.size());
+
+        MetricasSQL.Resumen literales = buscar(resumen, "SELECT ?");
+        assertEquals(distintos, literales.ejecuciones());
+        assertEquals(101, buscar(resumen, MetricasSQL.OTRAS).ejecuciones());
+    }
+
+    private static MetricasSQL.Resumen buscar(List<MetricasSQL.Resumen> resumen, String sql) {
+        return resumen.stream().filter(r -> r.sql().equals(sql)).findFirst()
+                .orElseThrow(() -> new AssertionError("No está " + sql));
+    }
+}
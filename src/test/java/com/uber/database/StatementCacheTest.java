@@ -0,0 +1,58 @@
+package com.uber.database;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Pruebas de la caché de sentencias preparadas de una conexión.
+ */
+class StatementCacheTest {
+
+    private static final String SQL = "SELECT X FROM SYSTEM_RANGE(1, 10)";
+
+    private final StatementCache cache = new StatementCache(10);
+    private Connection conn;
+
+    @BeforeEach
+    void abrir() throws SQLException {
+        conn = DriverManager.getConnection("jdbc:h2:mem:sentencias", "sa", "");
+    }
+
+    @AfterEach
+    void cerrar() throws SQLException {
+        cache.cerrarTodas();
+        conn.close();
+    }
+
+    @Test
+    void reutilizaLaSentenciaDelMismoSql() throws SQLException {
+        long aciertos = StatementCache.getAciertos();
+
+        cache.preparar(conn, conn, SQL, null).close();
+        try (PreparedStatement ps = cache.preparar(conn, conn, SQL, null)) {
+            assertEquals(aciertos + 1, StatementCache.getAciertos());
+        }
+    }
+
+    @Test
+    void noGuardaUnaSentenciaConLaConfiguracionCambiada() throws SQLException {
+        try (PreparedStatement ps = cache.preparar(conn, conn, SQL, null)) {
+            ps.setMaxRows(1);
+        }
+
+        // Quien la pide después recibe una nueva con los valores por defecto
+        long aciertos = StatementCache.getAciertos();
+        try (PreparedStatement ps = cache.preparar(conn, conn, SQL, null)) {
+            assertEquals(aciertos, StatementCache.getAciertos());
+            assertEquals(0, ps.getMaxRows());
+        }
+    }
+}
@@ -0,0 +1,129 @@
+package com.uber.utils;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Pruebas del árbol de intervalos del índice de disponibilidad.
+ */
+class ArbolIntervalosTest {
+
+    @Test
+    void detectaSolapesConIntervalosSemiabiertos() {
+        ArbolIntervalos arbol = new ArbolIntervalos();
+        arbol.insertar(10, 20, 1);
+        arbol.insertar(30, 40, 2);
+
+        assertTrue(arbol.haySolape(15, 16));
+        assertTrue(arbol.haySolape(5, 11));
+        assertTrue(arbol.haySolape(19, 31));
+        assertTrue(arbol.haySolape(0, 100));
+
+        // [inicio, fin): tocarse en un extremo no es solape
+        assertFalse(arbol.haySolape(20, 30));
+        assertFalse(arbol.haySolape(0, 10));
+        assertFalse(arbol.haySolape(40, 50));
+    }
+
+    @Test
+    void arbolVacioNoTieneSolapes() {
+        ArbolIntervalos arbol = new ArbolIntervalos();
+
+        assertTrue(arbol.estaVacio());
+        assertFalse(arbol.haySolape(Long.MIN_VALUE, Long.MAX_VALUE));
+    }
+
+    @Test
+    void encuentraSolapeEnLaRamaIzquierdaPorSuMaxFin() {
+        ArbolIntervalos arbol = new ArbolIntervalos();
+        // El primero empieza antes que todos pero acaba después: solo se ve por maxFin
+        arbol.insertar(0, 1000, 1);
+        for (int i = 2; i <= 20; i++) arbol.insertar(i * 10L, i * 10L + 1, i);
+
+        assertTrue(arbol.haySolape(500, 501));
+        arbol.eliminar(0, 1);
+        assertFalse(arbol.haySolape(500, 501));
+    }
+
+    @Test
+    void eliminarQuitaSoloElIntervaloIndicado() {
+        ArbolIntervalos arbol = new ArbolIntervalos();
+        arbol.insertar(10, 20, 1);
+        arbol.insertar(10, 20, 2);
+
+        assertTrue(arbol.eliminar(10, 1));
+        assertEquals(1, arbol.getTamano());
+        assertTrue(arbol.haySolape(12, 13), "El de id 2 ocupa la misma franja");
+
+        assertFalse(arbol.eliminar(10, 1), "Ya no estaba");
+        assertFalse(arbol.eliminar(11, 2), "Mismo id, otro inicio");
+
+        assertTrue(arbol.eliminar(10, 2));
+        assertTrue(arbol.estaVacio());
+        assertFalse(arbol.haySolape(12, 13));
+    }
+
+    @Test
+    void insertarDosVecesElMismoIntervaloNoLoDuplica() {
+        ArbolIntervalos arbol = new ArbolIntervalos();
+        arbol.insertar(10, 20, 1);
+        arbol.insertar(10, 20, 1);
+
+        assertEquals(1, arbol.getTamano());
+    }
+
+    @Test
+    void seMantieneEquilibradoConInsercionesOrdenadas() {
+        ArbolIntervalos arbol = new ArbolIntervalos();
+        int n = 100_000;
+        for (int i = 0; i < n; i++) arbol.insertar(i * 10L, i * 10L + 5, i);
+
+        assertEquals(n, arbol.getTamano());
+        assertTrue(arbol.getAltura() <= alturaMaximaAvl(n), "Altura " + arbol.getAltura());
+
+        // Borrar la mitad por un extremo también obliga a rotar
+        for (int i = 0; i < n / 2; i++) assertTrue(arbol.eliminar(i * 10L, i));
+
+        assertEquals(n / 2, arbol.getTamano());
+        assertTrue(arbol.getAltura() <= alturaMaximaAvl(n / 2), "Altura " + arbol.getAltura());
+        assertFalse(arbol.haySolape(0, (n / 2) * 10L));
+        assertTrue(arbol.haySolape((n / 2) * 10L, (n / 2) * 10L + 1));
+    }
+
+    @Test
+    void coincideConUnaBusquedaLinealTrasOperacionesAleatorias() {
+        Random azar = new Random(42);
+        ArbolIntervalos arbol = new ArbolIntervalos();
+        List<long[]> esperados = new ArrayList<>();
+
+        for (int paso = 0; paso < 5_000; paso++) {
+            if (!esperados.isEmpty() && azar.nextInt(3) == 0) {
+                long[] quitado = esperados.remove(azar.nextInt(esperados.size()));
+                assertTrue(arbol.eliminar(quitado[0], (int) quitado[2]));
+            } else {
+                long inicio = azar.nextInt(10_000);
+                long fin = inicio + 1 + azar.nextInt(50);
+                arbol.insertar(inicio, fin, paso);
+                esperados.add(new long[]{inicio, fin, paso});
+            }
+
+            long desde = azar.nextInt(10_000);
+            long hasta = desde + 1 + azar.nextInt(50);
+            boolean solape = esperados.stream().anyMatch(e -> e[0] < hasta && e[1] > desde);
+            assertEquals(solape, arbol.haySolape(desde, hasta), "[" + desde + ", " + hasta + ") en el paso " + paso);
+        }
+
+        assertEquals(esperados.size(), arbol.getTamano());
+        assertTrue(arbol.getAltura() <= alturaMaximaAvl(esperados.size()));
+    }
+
+    // Cota de altura de un AVL: 1.44 · log2(n + 2)
+    private static int alturaMaximaAvl(int n) {
+        return (int) Math.floor(1.4405 * Math.log(n + 2) / Math.log(2));
+    }
+}
@@ -203,7 +203,8 @@ INSERT INTO `vehiculo` (`id_vehiculo`, `tipo`, `marca`, `modelo`, `estado_vehicu
 -- Indices de la tabla `estacion`
 --
 ALTER TABLE `estacion`
-  ADD PRIMARY KEY (`id_estacion`);
+  ADD PRIMARY KEY (`id_estacion`),
+  ADD KEY `idx_ciudad` (`ciudad`);
 
 --
 -- Indices de la tabla `mantenimiento`
@@ -224,7 +225,8 @@ ALTER TABLE `reserva`
 --
 ALTER TABLE `tiene`
   ADD PRIMARY KEY (`id_vehiculo`,`id_mantenimiento`,`fecha_hora`),
-  ADD KEY `id_mantenimiento` (`id_mantenimiento`);
+  ADD KEY `id_mantenimiento` (`id_mantenimiento`),
+  ADD KEY `fecha_hora` (`fecha_hora`);
 
 --
 -- Indices de la tabla `usuario`
@@ -238,7 +240,9 @@ ALTER TABLE `usuario`
 --
 ALTER TABLE `vehiculo`
   ADD PRIMARY KEY (`id_vehiculo`),
-  ADD KEY `id_estacion` (`id_estacion`);
+  ADD KEY `id_estacion` (`id_estacion`),
+  ADD KEY `idx_estado_tipo_bateria` (`estado_vehiculo`,`tipo`,`nivel_bateria`),
+  ADD KEY `idx_estacion_estado` (`id_estacion`,`estado_vehiculo`,`nivel_bateria`);
 
 --
 -- AUTO_INCREMENT de las tablas volcadas